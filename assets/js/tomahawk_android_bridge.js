@@ -0,0 +1,107 @@
+/* === This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Permission is hereby granted, free of charge, to any person obtaining a copy
+ *   of this software and associated documentation files (the "Software"), to deal
+ *   in the Software without restriction, including without limitation the rights
+ *   to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *   copies of the Software, and to permit persons to whom the Software is
+ *   furnished to do so, subject to the following conditions:
+ *
+ *   The above copyright notice and this permission notice shall be included in
+ *   all copies or substantial portions of the Software.
+ */
+
+// Every resolver runs in its own iframe, but all of them share the Java bridge of their WebView.
+// This gives the resolver in this frame its own Tomahawk object, which tags every call to the
+// bridge with the resolver's id, so that it can be routed to the right ScriptResolver.
+
+var Tomahawk = (function (bridge, resolverId) {
+    return {
+        onScriptsLoaded: function () {
+            bridge.onScriptsLoaded(resolverId);
+        },
+        callbackToJava: function (id, result, shouldReturnResult) {
+            bridge.callbackToJava(resolverId, id, result, shouldReturnResult);
+        },
+        resolverDataString: function () {
+            return bridge.resolverDataString(resolverId);
+        },
+        log: function (message) {
+            bridge.log(resolverId, message);
+        },
+        addTrackResultsString: function (results) {
+            bridge.addTrackResultsString(resolverId, results);
+        },
+        addAlbumResultsString: function (results) {
+            bridge.addAlbumResultsString(resolverId, results);
+        },
+        addArtistResultsString: function (results) {
+            bridge.addArtistResultsString(resolverId, results);
+        },
+        addAlbumTrackResultsString: function (results) {
+            bridge.addAlbumTrackResultsString(resolverId, results);
+        },
+        reportCapabilities: function (capabilities) {
+            bridge.reportCapabilities(resolverId, capabilities);
+        },
+        reportStreamUrlString: function (qid, url, stringifiedHeaders) {
+            bridge.reportStreamUrlString(resolverId, qid, url, stringifiedHeaders);
+        },
+        addCustomUrlHandler: function (protocol, callbackFuncName, isAsync) {
+            bridge.addCustomUrlHandler(resolverId, protocol, callbackFuncName, isAsync);
+        },
+        readBase64: function (fileName) {
+            return bridge.readBase64(resolverId, fileName);
+        },
+        nativeAsyncRequestString: function (reqId, url, stringifiedExtraHeaders,
+                                             stringifiedOptions) {
+            bridge.nativeAsyncRequestString(resolverId, reqId, url, stringifiedExtraHeaders,
+                stringifiedOptions);
+        },
+        hasFuzzyIndex: function () {
+            return bridge.hasFuzzyIndex(resolverId);
+        },
+        addToFuzzyIndexString: function (stringifiedIndexList) {
+            bridge.addToFuzzyIndexString(resolverId, stringifiedIndexList);
+        },
+        createFuzzyIndexString: function (stringifiedIndexList) {
+            bridge.createFuzzyIndexString(resolverId, stringifiedIndexList);
+        },
+        searchFuzzyIndexString: function (query) {
+            return bridge.searchFuzzyIndexString(resolverId, query);
+        },
+        resolveFromFuzzyIndexString: function (artist, album, title) {
+            return bridge.resolveFromFuzzyIndexString(resolverId, artist, album, title);
+        },
+        deleteFuzzyIndex: function () {
+            bridge.deleteFuzzyIndex(resolverId);
+        },
+        localStorageSetItem: function (key, value) {
+            bridge.localStorageSetItem(resolverId, key, value);
+        },
+        localStorageGetItem: function (key) {
+            return bridge.localStorageGetItem(resolverId, key);
+        },
+        localStorageRemoveItem: function (key) {
+            bridge.localStorageRemoveItem(resolverId, key);
+        },
+        keys: function () {
+            return bridge.keys(resolverId);
+        },
+        values: function () {
+            return bridge.values(resolverId);
+        },
+        onConfigTestResult: function (type, message) {
+            if (typeof message === "undefined") {
+                bridge.onConfigTestResult(resolverId, type);
+            } else {
+                bridge.onConfigTestResult(resolverId, type, message);
+            }
+        },
+        addUrlResultString: function (url, resultString) {
+            bridge.addUrlResultString(resolverId, url, resultString);
+        }
+    };
+})(window.TomahawkBridge || parent.TomahawkBridge, TomahawkResolverId);
@@ -0,0 +1,87 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Resolver;
+import org.tomahawk.tomahawk_android.TomahawkApp;
+
+import android.widget.ImageView;
+
+/**
+ * A {@link Resolver}, which the generated {@link org.tomahawk.libtomahawk.resolver.Result}s are
+ * attributed to. It poses as Rdio, because a {@link org.tomahawk.libtomahawk.resolver.Result} is
+ * bound to the media player of its resolver and the RdioMediaPlayer is the only one, which can be
+ * instantiated without a running Looper.
+ */
+class BenchmarkResolver extends Resolver {
+
+    private final int mWeight;
+
+    BenchmarkResolver(int weight) {
+        super("Benchmark", null);
+        mWeight = weight;
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isResolving() {
+        return false;
+    }
+
+    @Override
+    public void loadIcon(ImageView imageView, boolean grayOut) {
+    }
+
+    @Override
+    public void loadIconWhite(ImageView imageView) {
+    }
+
+    @Override
+    public void loadIconBackground(ImageView imageView, boolean grayOut) {
+    }
+
+    @Override
+    public String getCollectionName() {
+        return getPrettyName();
+    }
+
+    @Override
+    public boolean resolve(Query query) {
+        return true;
+    }
+
+    @Override
+    public String getId() {
+        return TomahawkApp.PLUGINNAME_RDIO;
+    }
+
+    @Override
+    public int getWeight() {
+        return mWeight;
+    }
+}
@@ -0,0 +1,183 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.tomahawk.libtomahawk.collection.Album;
+import org.tomahawk.libtomahawk.collection.Artist;
+import org.tomahawk.libtomahawk.collection.Track;
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Result;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the datasets of the benchmarks. The names are made up of a vocabulary that mixes
+ * plain words with diacritics, featuring credits and the usual remaster/live suffixes, so that the
+ * string algorithms see inputs similar to real libraries. Every dataset is generated from a fixed
+ * seed, so that runs are comparable.
+ */
+final class Datasets {
+
+    static final int LIBRARY_SIZE = 50000;
+
+    static final int PLAYLIST_SIZE = 1000;
+
+    static final int TRACKS_PER_ALBUM = 12;
+
+    static final int ALBUMS_PER_ARTIST = 4;
+
+    private static final String[] WORDS = new String[]{
+            "love", "night", "the", "of", "heart", "dream", "fire", "blue", "city", "light",
+            "Sigur", "R\u00f3s", "Bj\u00f6rk", "Mot\u00f6rhead", "Beyonc\u00e9", "Sin\u00e9ad",
+            "M\u00f6tley", "Cr\u00fce", "se\u00f1or", "d\u00e9j\u00e0", "vu", "AC/DC", "Guns", "N'",
+            "Roses", "I'm", "don't", "you", "me", "road", "river", "summer", "winter", "golden",
+            "black", "electric", "machine", "ghost", "kids", "wild", "young", "forever", "alone",
+            "together", "dance", "song", "radio", "star", "moon", "sun", "rain", "stone", "paper",
+            "silver", "\u03a9", "\u6771\u4eac", "\u041c\u043e\u0441\u043a\u0432\u0430", "#1", "99",
+            "Mr.", "Dr.", "feat.", "&", "vs."};
+
+    private static final String[] TRACK_SUFFIXES = new String[]{
+            "", "", "", "", "", " (Remastered 2011)", " (Live)", " - Radio Edit",
+            " (feat. Someone Else)", " [Bonus Track]", " - 2009 Remaster"};
+
+    private Datasets() {
+    }
+
+    static String name(Random random, int minWords, int maxWords) {
+        int wordCount = minWords + random.nextInt(maxWords - minWords + 1);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            String word = WORDS[random.nextInt(WORDS.length)];
+            if (i == 0 || random.nextInt(3) == 0) {
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            }
+            sb.append(word);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the given name with a single typo, like a resolver's slightly different metadata
+     */
+    static String typo(Random random, String name) {
+        if (name.length() < 2) {
+            return name + "s";
+        }
+        int pos = random.nextInt(name.length() - 1);
+        switch (random.nextInt(4)) {
+            case 0:
+                return name.substring(0, pos) + name.charAt(pos + 1) + name.charAt(pos)
+                        + name.substring(pos + 2);
+            case 1:
+                return name.substring(0, pos) + name.substring(pos + 1);
+            case 2:
+                return name.substring(0, pos) + 'e' + name.substring(pos);
+            default:
+                return name.toUpperCase();
+        }
+    }
+
+    /**
+     * @return a library of the given size as {track, album, artist} name triples, grouped into
+     * albums of {@link #TRACKS_PER_ALBUM} tracks and artists of {@link #ALBUMS_PER_ARTIST} albums
+     */
+    static List<String[]> library(int size, long seed) {
+        Random random = new Random(seed);
+        List<String[]> library = new ArrayList<String[]>(size);
+        String artist = null;
+        String album = null;
+        for (int i = 0; i < size; i++) {
+            if (i % (TRACKS_PER_ALBUM * ALBUMS_PER_ARTIST) == 0) {
+                artist = name(random, 1, 3) + " " + i;
+            }
+            if (i % TRACKS_PER_ALBUM == 0) {
+                album = name(random, 1, 4);
+            }
+            String track = name(random, 1, 5) + TRACK_SUFFIXES[random.nextInt(
+                    TRACK_SUFFIXES.length)];
+            library.add(new String[]{track, album, artist});
+        }
+        return library;
+    }
+
+    static List<Query> queries(List<String[]> library) {
+        List<Query> queries = new ArrayList<Query>(library.size());
+        for (String[] entry : library) {
+            queries.add(Query.get(entry[0], entry[1], entry[2], false));
+        }
+        return queries;
+    }
+
+    /**
+     * @return a new {@link Query} of the given {@link #library(int, long)} entry. Unlike the ones
+     * returned by {@link Query#get(String, String, String, boolean)} it isn't being cached, so
+     * none of its results have been scored yet.
+     */
+    static Query uncachedQuery(String[] entry) {
+        try {
+            Constructor<Query> constructor = Query.class.getDeclaredConstructor(String.class,
+                    String.class, String.class, String.class, boolean.class, boolean.class);
+            constructor.setAccessible(true);
+            return constructor.newInstance(entry[0], entry[1], entry[2], null, false, false);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the results, which the given resolver reports for the given {@link Query}. Some of
+     * them match the {@link Query} exactly, some contain typos and some are unrelated.
+     */
+    static ArrayList<Result> results(Random random, Query query, BenchmarkResolver resolver,
+            int count) {
+        ArrayList<Result> results = new ArrayList<Result>(count);
+        String trackName = query.getBasicTrack().getName();
+        String albumName = query.getBasicTrack().getAlbum().getName();
+        String artistName = query.getBasicTrack().getArtist().getName();
+        for (int i = 0; i < count; i++) {
+            String track = trackName;
+            String album = albumName;
+            String artist = artistName;
+            switch (i % 4) {
+                case 1:
+                    track = typo(random, track);
+                    break;
+                case 2:
+                    artist = typo(random, artist);
+                    album = name(random, 1, 4);
+                    break;
+                case 3:
+                    track = name(random, 1, 5);
+                    artist = name(random, 1, 3);
+                    break;
+            }
+            Artist resultArtist = Artist.get(artist);
+            Album resultAlbum = Album.get(album, resultArtist);
+            Track resultTrack = Track.get(track, resultAlbum, resultArtist);
+            results.add(Result.get(resolver.getId() + "://" + query.getCacheKey().hashCode()
+                    + "/" + i, resultTrack, resolver, query.getCacheKey()));
+        }
+        return results;
+    }
+}
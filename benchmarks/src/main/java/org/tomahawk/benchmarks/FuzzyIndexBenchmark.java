@@ -0,0 +1,123 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomahawk.libtomahawk.resolver.FuzzyIndex;
+import org.tomahawk.libtomahawk.resolver.models.ScriptResolverFuzzyIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks searching a {@link FuzzyIndex} of a whole library. The uncached searches rotate
+ * through more distinct queries than the {@link FuzzyIndex} caches, so that every search hits
+ * Lucene.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FuzzyIndexBenchmark {
+
+    private static final int QUERY_COUNT = 4096;
+
+    private static final int CACHED_QUERY_COUNT = 64;
+
+    private final String[] mArtistNames = new String[QUERY_COUNT];
+
+    private final String[] mTrackNames = new String[QUERY_COUNT];
+
+    private File mIndexDir;
+
+    private FuzzyIndex mFuzzyIndex;
+
+    private int mIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<String[]> library = Datasets.library(Datasets.LIBRARY_SIZE, 4);
+        ScriptResolverFuzzyIndex[] indexList = new ScriptResolverFuzzyIndex[library.size()];
+        for (int i = 0; i < library.size(); i++) {
+            ScriptResolverFuzzyIndex index = new ScriptResolverFuzzyIndex();
+            index.id = i;
+            index.track = library.get(i)[0];
+            index.album = library.get(i)[1];
+            index.artist = library.get(i)[2];
+            indexList[i] = index;
+        }
+        mIndexDir = File.createTempFile("fuzzyindex", "");
+        mIndexDir.delete();
+        mFuzzyIndex = new FuzzyIndex();
+        if (!mFuzzyIndex.create(mIndexDir.getPath(), true)) {
+            throw new IOException("Couldn't create FuzzyIndex in " + mIndexDir);
+        }
+        mFuzzyIndex.addScriptResolverFuzzyIndexList(indexList);
+
+        Random random = new Random(4);
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            String[] entry = library.get(random.nextInt(library.size()));
+            mArtistNames[i] = Datasets.typo(random, entry[2]);
+            mTrackNames[i] = Datasets.typo(random, entry[0]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFuzzyIndex.close();
+        File[] files = mIndexDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mIndexDir.delete();
+    }
+
+    @Benchmark
+    public double[][] search() {
+        int i = mIndex++ % QUERY_COUNT;
+        return mFuzzyIndex.search(mArtistNames[i], mTrackNames[i]);
+    }
+
+    @Benchmark
+    public double[][] searchFullText() {
+        return mFuzzyIndex.search(mTrackNames[mIndex++ % QUERY_COUNT]);
+    }
+
+    @Benchmark
+    public double[][] searchCached() {
+        int i = mIndex++ % CACHED_QUERY_COUNT;
+        return mFuzzyIndex.search(mArtistNames[i], mTrackNames[i]);
+    }
+}
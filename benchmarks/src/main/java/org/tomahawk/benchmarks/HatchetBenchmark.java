@@ -0,0 +1,173 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomahawk.libtomahawk.infosystem.InfoSystemUtils;
+import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetPlaylistEntries;
+import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetSocialActionResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks deserializing Hatchet responses with the app's ObjectMapper and its custom
+ * deserializers. The payloads are being generated in the shape of Hatchet's sideloaded responses:
+ * a playlist with {@link Datasets#PLAYLIST_SIZE} entries and a page of a friends feed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HatchetBenchmark {
+
+    private static final int SOCIALACTION_COUNT = 50;
+
+    private byte[] mPlaylistEntriesJson;
+
+    private byte[] mSocialActionsJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String[]> library = Datasets.library(Datasets.PLAYLIST_SIZE, 5);
+        mPlaylistEntriesJson = objectMapper.writeValueAsBytes(playlistEntries(library));
+        mSocialActionsJson = objectMapper.writeValueAsBytes(socialActions(library));
+    }
+
+    @Benchmark
+    public HatchetPlaylistEntries readPlaylistEntries() throws IOException {
+        return InfoSystemUtils.getObjectMapper()
+                .readValue(mPlaylistEntriesJson, HatchetPlaylistEntries.class);
+    }
+
+    @Benchmark
+    public HatchetSocialActionResponse readSocialActions() throws IOException {
+        return InfoSystemUtils.getObjectMapper()
+                .readValue(mSocialActionsJson, HatchetSocialActionResponse.class);
+    }
+
+    private static Map<String, Object> playlistEntries(List<String[]> library) {
+        List<Object> entries = new ArrayList<Object>();
+        List<String> entryIds = new ArrayList<String>();
+        Map<String, Object> tracks = new HashMap<String, Object>();
+        Map<String, Object> albums = new HashMap<String, Object>();
+        Map<String, Object> artists = new HashMap<String, Object>();
+        for (int i = 0; i < library.size(); i++) {
+            String[] entry = library.get(i);
+            String trackId = addTrack(tracks, albums, artists, entry);
+            Map<String, Object> playlistEntry = new HashMap<String, Object>();
+            playlistEntry.put("id", "entry" + i);
+            playlistEntry.put("track", trackId);
+            playlistEntry.put("album", "album" + entry[1].hashCode());
+            entries.add(playlistEntry);
+            entryIds.add("entry" + i);
+        }
+        Map<String, Object> playlist = new HashMap<String, Object>();
+        playlist.put("id", "playlist1");
+        playlist.put("title", "Benchmark Playlist");
+        playlist.put("created", "2015-01-01T12:00:00.000Z");
+        playlist.put("currentrevision", "revision1");
+        playlist.put("user", "user1");
+        playlist.put("playlistEntries", entryIds);
+
+        Map<String, Object> response = new HashMap<String, Object>();
+        response.put("playlistEntries", entries);
+        response.put("playlist", playlist);
+        response.put("tracks", new ArrayList<Object>(tracks.values()));
+        response.put("albums", new ArrayList<Object>(albums.values()));
+        response.put("artists", new ArrayList<Object>(artists.values()));
+        return response;
+    }
+
+    private static Map<String, Object> socialActions(List<String[]> library) {
+        List<Object> socialActions = new ArrayList<Object>();
+        Map<String, Object> tracks = new HashMap<String, Object>();
+        Map<String, Object> albums = new HashMap<String, Object>();
+        Map<String, Object> artists = new HashMap<String, Object>();
+        Map<String, Object> users = new HashMap<String, Object>();
+        for (int i = 0; i < SOCIALACTION_COUNT; i++) {
+            String[] entry = library.get(i);
+            String userId = "user" + (i % 7);
+            Map<String, Object> user = new HashMap<String, Object>();
+            user.put("id", userId);
+            user.put("name", "User " + (i % 7));
+            user.put("totalPlays", 1000 + i);
+            users.put(userId, user);
+
+            Map<String, Object> socialAction = new HashMap<String, Object>();
+            socialAction.put("id", "socialaction" + i);
+            socialAction.put("action", "true");
+            socialAction.put("type", "love");
+            socialAction.put("user", userId);
+            socialAction.put("track", addTrack(tracks, albums, artists, entry));
+            socialAction.put("timestamp", "2015-01-01T12:00:00.000Z");
+            socialActions.add(socialAction);
+        }
+
+        Map<String, Object> response = new HashMap<String, Object>();
+        response.put("socialActions", socialActions);
+        response.put("tracks", new ArrayList<Object>(tracks.values()));
+        response.put("albums", new ArrayList<Object>(albums.values()));
+        response.put("artists", new ArrayList<Object>(artists.values()));
+        response.put("users", new ArrayList<Object>(users.values()));
+        return response;
+    }
+
+    private static String addTrack(Map<String, Object> tracks, Map<String, Object> albums,
+            Map<String, Object> artists, String[] entry) {
+        String artistId = "artist" + entry[2].hashCode();
+        Map<String, Object> artist = new HashMap<String, Object>();
+        artist.put("id", artistId);
+        artist.put("name", entry[2]);
+        artists.put(artistId, artist);
+
+        String albumId = "album" + entry[1].hashCode();
+        Map<String, Object> album = new HashMap<String, Object>();
+        album.put("id", albumId);
+        album.put("name", entry[1]);
+        album.put("artist", artistId);
+        albums.put(albumId, album);
+
+        String trackId = "track" + (entry[0] + entry[2]).hashCode();
+        Map<String, Object> track = new HashMap<String, Object>();
+        track.put("id", trackId);
+        track.put("name", entry[0]);
+        track.put("artist", artistId);
+        track.put("duration", 180 + entry[0].length());
+        tracks.put(trackId, track);
+        return trackId;
+    }
+}
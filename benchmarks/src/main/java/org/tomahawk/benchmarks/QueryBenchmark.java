@@ -0,0 +1,178 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomahawk.libtomahawk.resolver.PipeLine;
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Result;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the scoring of reported {@link Result}s and reading them back from their {@link
+ * Query}, which happens for every entry of a playlist that is being resolved.
+ *
+ * A {@link Query} caches the scores of its {@link Result}s and the lists built of them, so
+ * reporting the same {@link Result}s twice or reading the lists twice only measures those caches.
+ * That's why every invocation of the uncached benchmarks gets a {@link Query}, which has never
+ * been resolved before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+    private static final int RESULTS_PER_QUERY = 20;
+
+    private List<Query> mQueries;
+
+    private List<ArrayList<Result>> mResults;
+
+    private int mIndex;
+
+    /**
+     * Rotates through the {@link Query}s of a playlist. Every {@link Query} it hands out is a new
+     * instance, which isn't shared with any other invocation.
+     */
+    public static abstract class QueryPool {
+
+        private List<String[]> mLibrary;
+
+        private List<ArrayList<Result>> mResults;
+
+        private int mIndex;
+
+        Query mQuery;
+
+        ArrayList<Result> mQueryResults;
+
+        @Setup(Level.Trial)
+        public void setUpPool() {
+            Random random = new Random(3);
+            BenchmarkResolver resolver = new BenchmarkResolver(90);
+            mLibrary = Datasets.library(Datasets.PLAYLIST_SIZE, 3);
+            mResults = new ArrayList<ArrayList<Result>>(mLibrary.size());
+            for (Query query : Datasets.queries(mLibrary)) {
+                mResults.add(Datasets.results(random, query, resolver, RESULTS_PER_QUERY));
+            }
+        }
+
+        void next() {
+            int i = mIndex++ % mLibrary.size();
+            mQuery = Datasets.uncachedQuery(mLibrary.get(i));
+            mQueryResults = mResults.get(i);
+        }
+    }
+
+    /**
+     * A {@link Query}, which has not been resolved yet, and the {@link Result}s reported for it
+     */
+    @State(Scope.Thread)
+    public static class FreshQuery extends QueryPool {
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            next();
+        }
+    }
+
+    /**
+     * A {@link Query}, which has just been resolved, but whose {@link Result}s haven't been read
+     * yet
+     */
+    @State(Scope.Thread)
+    public static class ResolvedQuery extends QueryPool {
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            next();
+            mQuery.addTrackResults(PipeLine.scoreTrackResults(mQuery, mQueryResults, false));
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(2);
+        BenchmarkResolver resolver = new BenchmarkResolver(90);
+        mQueries = Datasets.queries(Datasets.library(Datasets.PLAYLIST_SIZE, 2));
+        mResults = new ArrayList<ArrayList<Result>>(mQueries.size());
+        for (Query query : mQueries) {
+            ArrayList<Result> results =
+                    Datasets.results(random, query, resolver, RESULTS_PER_QUERY);
+            mResults.add(results);
+            query.addTrackResults(PipeLine.scoreTrackResults(query, results, false));
+        }
+    }
+
+    @Benchmark
+    public float howSimilar() {
+        int i = mIndex++;
+        Query query = mQueries.get((i / RESULTS_PER_QUERY) % mQueries.size());
+        Result result =
+                mResults.get((i / RESULTS_PER_QUERY) % mQueries.size()).get(i % RESULTS_PER_QUERY);
+        return query.howSimilar(result, PipeLine.PIPELINE_SEARCHTYPE_TRACKS);
+    }
+
+    /**
+     * Scores and adds all results, which a resolver has reported for a single {@link Query}, like
+     * {@link PipeLine#reportResults(Query, ArrayList, String)} does.
+     */
+    @Benchmark
+    public Result reportResults(FreshQuery state) {
+        Query query = state.mQuery;
+        query.addTrackResults(PipeLine.scoreTrackResults(query, state.mQueryResults, false));
+        return query.getPreferredTrackResult();
+    }
+
+    @Benchmark
+    public List<Result> getTrackResults(ResolvedQuery state) {
+        return state.mQuery.getTrackResults();
+    }
+
+    @Benchmark
+    public List<Query> getTrackQueries(ResolvedQuery state) {
+        return state.mQuery.getTrackQueries();
+    }
+
+    @Benchmark
+    public List<Result> getTrackResultsCached() {
+        return mQueries.get(mIndex++ % mQueries.size()).getTrackResults();
+    }
+
+    @Benchmark
+    public List<Query> getTrackQueriesCached() {
+        return mQueries.get(mIndex++ % mQueries.size()).getTrackQueries();
+    }
+}
@@ -0,0 +1,112 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomahawk.libtomahawk.collection.Album;
+import org.tomahawk.libtomahawk.collection.Artist;
+import org.tomahawk.libtomahawk.collection.TomahawkListItemComparator;
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.QueryComparator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks sorting a whole library, like the collection fragments do whenever the collection
+ * changes. Every invocation sorts a fresh copy of the shuffled library.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortBenchmark {
+
+    private List<Query> mQueries;
+
+    private List<Album> mAlbums;
+
+    private List<Artist> mArtists;
+
+    private final TomahawkListItemComparator mAlphaComparator =
+            new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA);
+
+    private final TomahawkListItemComparator mArtistAlphaComparator =
+            new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ARTIST_ALPHA);
+
+    @Setup
+    public void setUp() {
+        mQueries = Datasets.queries(Datasets.library(Datasets.LIBRARY_SIZE, 3));
+        Set<Album> albums = new LinkedHashSet<Album>();
+        Set<Artist> artists = new LinkedHashSet<Artist>();
+        for (Query query : mQueries) {
+            albums.add(query.getBasicTrack().getAlbum());
+            artists.add(query.getBasicTrack().getArtist());
+        }
+        mAlbums = new ArrayList<Album>(albums);
+        mArtists = new ArrayList<Artist>(artists);
+        Random random = new Random(3);
+        Collections.shuffle(mQueries, random);
+        Collections.shuffle(mAlbums, random);
+        Collections.shuffle(mArtists, random);
+    }
+
+    @Benchmark
+    public List<Query> sortQueriesAlpha() {
+        List<Query> queries = new ArrayList<Query>(mQueries);
+        QueryComparator.ALPHA.sort(queries);
+        return queries;
+    }
+
+    @Benchmark
+    public List<Album> sortAlbumsAlpha() {
+        List<Album> albums = new ArrayList<Album>(mAlbums);
+        mAlphaComparator.sort(albums);
+        return albums;
+    }
+
+    @Benchmark
+    public List<Album> sortAlbumsArtistAlpha() {
+        List<Album> albums = new ArrayList<Album>(mAlbums);
+        mArtistAlphaComparator.sort(albums);
+        return albums;
+    }
+
+    @Benchmark
+    public List<Artist> sortArtistsAlpha() {
+        List<Artist> artists = new ArrayList<Artist>(mArtists);
+        mAlphaComparator.sort(artists);
+        return artists;
+    }
+}
@@ -0,0 +1,79 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the string helpers, which are being called for every scored result and every
+ * constructed {@link org.tomahawk.libtomahawk.resolver.Query}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringBenchmark {
+
+    private static final int PAIR_COUNT = 1024;
+
+    private final String[] mNames = new String[PAIR_COUNT];
+
+    private final String[] mTypos = new String[PAIR_COUNT];
+
+    private List<String[]> mLibrary;
+
+    private int mIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        mLibrary = Datasets.library(PAIR_COUNT, 1);
+        for (int i = 0; i < PAIR_COUNT; i++) {
+            mNames[i] = mLibrary.get(i)[0];
+            mTypos[i] = Datasets.typo(random, mNames[i]);
+        }
+    }
+
+    @Benchmark
+    public int levenshteinDistance() {
+        int i = mIndex++ & (PAIR_COUNT - 1);
+        return TomahawkUtils.getLevenshteinDistance(mNames[i], mTypos[i]);
+    }
+
+    @Benchmark
+    public String cacheKey() {
+        String[] entry = mLibrary.get(mIndex++ & (PAIR_COUNT - 1));
+        return TomahawkUtils.getCacheKey(entry[0], entry[1], entry[2]);
+    }
+}
@@ -0,0 +1,410 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.benchmarks;
+
+import com.google.common.base.Charsets;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tomahawk.libtomahawk.utils.TagReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading the tags of a corpus of audio files, like the collection scan does for every
+ * new file. The corpus is the directory given by "-Pcorpus=/path/to/music". Without it, a corpus
+ * of mp3, FLAC, Ogg Vorbis and m4a files with the usual text tags, embedded artwork and duration
+ * headers is being generated. The files are read from the page cache after the first pass, so
+ * this measures the parsing, not the storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TagReaderBenchmark {
+
+    private static final String PROPERTY_CORPUS = "tomahawk.corpus";
+
+    private static final int GENERATED_FILE_COUNT = 300;
+
+    private static final int AUDIO_SIZE = 256 * 1024;
+
+    private static final int PICTURE_SIZE = 32 * 1024;
+
+    private File[] mFiles;
+
+    private File mGeneratedDir;
+
+    private int mIndex;
+
+    @Setup
+    public void setUp() throws IOException {
+        String corpus = System.getProperty(PROPERTY_CORPUS);
+        List<File> files = new ArrayList<File>();
+        if (corpus != null) {
+            collectFiles(new File(corpus), files);
+        } else {
+            mGeneratedDir = File.createTempFile("tagreader", "");
+            mGeneratedDir.delete();
+            mGeneratedDir.mkdirs();
+            generateCorpus(mGeneratedDir, files);
+        }
+        if (files.isEmpty()) {
+            throw new IOException("No supported audio files found in " + corpus);
+        }
+        mFiles = files.toArray(new File[files.size()]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mGeneratedDir != null) {
+            for (File file : mFiles) {
+                file.delete();
+            }
+            mGeneratedDir.delete();
+        }
+    }
+
+    @Benchmark
+    public TagReader.Tags read() throws IOException {
+        return TagReader.read(mFiles[mIndex++ % mFiles.length]);
+    }
+
+    private static void collectFiles(File dir, List<File> files) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                collectFiles(child, files);
+            } else {
+                String name = child.getName().toLowerCase(Locale.ENGLISH);
+                if (name.endsWith(".mp3") || name.endsWith(".flac") || name.endsWith(".ogg")
+                        || name.endsWith(".oga") || name.endsWith(".opus")
+                        || name.endsWith(".m4a") || name.endsWith(".m4b")) {
+                    files.add(child);
+                }
+            }
+        }
+    }
+
+    private static void generateCorpus(File dir, List<File> files) throws IOException {
+        Random random = new Random(5);
+        byte[] audio = new byte[AUDIO_SIZE];
+        random.nextBytes(audio);
+        byte[] picture = new byte[PICTURE_SIZE];
+        random.nextBytes(picture);
+        List<String[]> library = Datasets.library(GENERATED_FILE_COUNT, 5);
+        for (int i = 0; i < library.size(); i++) {
+            String[] entry = library.get(i);
+            int trackNumber = i % Datasets.TRACKS_PER_ALBUM + 1;
+            byte[] content;
+            String ext;
+            switch (i % 4) {
+                case 0:
+                    content = mp3(entry, trackNumber, picture, audio);
+                    ext = ".mp3";
+                    break;
+                case 1:
+                    content = flac(entry, trackNumber, picture, audio);
+                    ext = ".flac";
+                    break;
+                case 2:
+                    content = ogg(entry, trackNumber, audio);
+                    ext = ".ogg";
+                    break;
+                default:
+                    content = m4a(entry, trackNumber, picture, audio);
+                    ext = ".m4a";
+                    break;
+            }
+            File file = new File(dir, i + ext);
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write(content);
+            } finally {
+                out.close();
+            }
+            files.add(file);
+        }
+    }
+
+    /**
+     * @return an mp3 file with an ID3v2.4 tag and a Xing header in its first frame
+     */
+    private static byte[] mp3(String[] entry, int trackNumber, byte[] picture, byte[] audio)
+            throws IOException {
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        id3TextFrame(frames, "TIT2", entry[0]);
+        id3TextFrame(frames, "TPE1", entry[2]);
+        id3TextFrame(frames, "TALB", entry[1]);
+        id3TextFrame(frames, "TRCK", String.valueOf(trackNumber));
+        id3TextFrame(frames, "TCON", "(17)");
+        ByteArrayOutputStream apic = new ByteArrayOutputStream();
+        apic.write(3);
+        apic.write("image/jpeg".getBytes(Charsets.ISO_8859_1));
+        apic.write(0);
+        apic.write(3);
+        apic.write("Cover".getBytes(Charsets.UTF_8));
+        apic.write(0);
+        apic.write(picture);
+        id3Frame(frames, "APIC", apic.toByteArray());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBytes("ID3");
+        out.write(4);
+        out.write(0);
+        out.write(0);
+        out.writeInt(syncSafeInt(frames.size()));
+        frames.writeTo(out);
+        // MPEG-1 Layer III, 128kbit/s, 44.1kHz, joint stereo, followed by the side info
+        out.writeInt(0xfffb9064);
+        out.write(new byte[32]);
+        out.writeBytes("Xing");
+        out.writeInt(0x1);
+        out.writeInt(audio.length / 417);
+        out.write(audio);
+        return bytes.toByteArray();
+    }
+
+    private static void id3TextFrame(ByteArrayOutputStream frames, String id, String text)
+            throws IOException {
+        byte[] value = text.getBytes(Charsets.UTF_8);
+        byte[] data = new byte[value.length + 1];
+        data[0] = 3;
+        System.arraycopy(value, 0, data, 1, value.length);
+        id3Frame(frames, id, data);
+    }
+
+    private static void id3Frame(ByteArrayOutputStream frames, String id, byte[] data)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(frames);
+        out.writeBytes(id);
+        out.writeInt(syncSafeInt(data.length));
+        out.writeShort(0);
+        out.write(data);
+    }
+
+    private static int syncSafeInt(int value) {
+        return ((value & 0xfe00000) << 3) | ((value & 0x1fc000) << 2) | ((value & 0x3f80) << 1)
+                | (value & 0x7f);
+    }
+
+    /**
+     * @return a FLAC file with STREAMINFO, VORBIS_COMMENT and PICTURE metadata blocks
+     */
+    private static byte[] flac(String[] entry, int trackNumber, byte[] picture, byte[] audio)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeBytes("fLaC");
+
+        out.writeInt(34);
+        out.writeShort(4096);
+        out.writeShort(4096);
+        out.write(new byte[6]);
+        // 44.1kHz, stereo, 16 bits per sample and the total number of samples
+        long totalSamples = 44100L * 200;
+        out.writeLong((44100L << 44) | (1L << 41) | (15L << 36) | totalSamples);
+        out.write(new byte[16]);
+
+        ByteArrayOutputStream comments = new ByteArrayOutputStream();
+        writeVorbisComments(comments, entry, trackNumber);
+        out.writeInt((4 << 24) | comments.size());
+        comments.writeTo(out);
+
+        byte[] mimeType = "image/jpeg".getBytes(Charsets.ISO_8859_1);
+        out.writeInt(0x80000000 | (6 << 24) | (32 + mimeType.length + picture.length));
+        out.writeInt(3);
+        out.writeInt(mimeType.length);
+        out.write(mimeType);
+        out.writeInt(0);
+        out.writeInt(500);
+        out.writeInt(500);
+        out.writeInt(24);
+        out.writeInt(0);
+        out.writeInt(picture.length);
+        out.write(picture);
+
+        out.write(audio);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return an Ogg Vorbis file, whose last page carries the total number of samples
+     */
+    private static byte[] ogg(String[] entry, int trackNumber, byte[] audio) throws IOException {
+        ByteArrayOutputStream identification = new ByteArrayOutputStream();
+        identification.write(1);
+        identification.write("vorbis".getBytes(Charsets.ISO_8859_1));
+        writeIntLittleEndian(identification, 0);
+        identification.write(2);
+        writeIntLittleEndian(identification, 44100);
+        writeIntLittleEndian(identification, 0);
+        writeIntLittleEndian(identification, 128000);
+        writeIntLittleEndian(identification, 0);
+        identification.write(0xb8);
+        identification.write(1);
+
+        ByteArrayOutputStream comments = new ByteArrayOutputStream();
+        comments.write(3);
+        comments.write("vorbis".getBytes(Charsets.ISO_8859_1));
+        writeVorbisComments(comments, entry, trackNumber);
+        comments.write(1);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int sequence = 0;
+        oggPage(bytes, 0x02, 0, sequence++, identification.toByteArray(), 0,
+                identification.size());
+        oggPage(bytes, 0x00, 0, sequence++, comments.toByteArray(), 0, comments.size());
+        int pageSize = 254 * 255;
+        long totalSamples = 44100L * 200;
+        for (int pos = 0; pos < audio.length; pos += pageSize) {
+            int length = Math.min(pageSize, audio.length - pos);
+            boolean isLast = pos + length >= audio.length;
+            oggPage(bytes, isLast ? 0x04 : 0x00, totalSamples * (pos + length) / audio.length,
+                    sequence++, audio, pos, length);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write an Ogg page, which contains a single complete packet. The checksum is left empty.
+     */
+    private static void oggPage(ByteArrayOutputStream out, int headerType, long granule,
+            int sequence, byte[] packet, int offset, int length) throws IOException {
+        out.write("OggS".getBytes(Charsets.ISO_8859_1));
+        out.write(0);
+        out.write(headerType);
+        writeIntLittleEndian(out, (int) granule);
+        writeIntLittleEndian(out, (int) (granule >>> 32));
+        writeIntLittleEndian(out, 1);
+        writeIntLittleEndian(out, sequence);
+        writeIntLittleEndian(out, 0);
+        out.write(length / 255 + 1);
+        for (int i = 0; i < length / 255; i++) {
+            out.write(255);
+        }
+        out.write(length % 255);
+        out.write(packet, offset, length);
+    }
+
+    private static void writeVorbisComments(ByteArrayOutputStream out, String[] entry,
+            int trackNumber) throws IOException {
+        byte[] vendor = "Tomahawk benchmarks".getBytes(Charsets.UTF_8);
+        writeIntLittleEndian(out, vendor.length);
+        out.write(vendor);
+        String[] values = new String[]{"TITLE=" + entry[0], "ARTIST=" + entry[2],
+                "ALBUM=" + entry[1], "TRACKNUMBER=" + trackNumber, "GENRE=Rock"};
+        writeIntLittleEndian(out, values.length);
+        for (String value : values) {
+            byte[] comment = value.getBytes(Charsets.UTF_8);
+            writeIntLittleEndian(out, comment.length);
+            out.write(comment);
+        }
+    }
+
+    private static void writeIntLittleEndian(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    /**
+     * @return an m4a file, whose "moov" atom comes after the "mdat" atom, like it does in files
+     * that haven't been optimized for streaming
+     */
+    private static byte[] m4a(String[] entry, int trackNumber, byte[] picture, byte[] audio)
+            throws IOException {
+        ByteArrayOutputStream mvhd = new ByteArrayOutputStream();
+        DataOutputStream mvhdOut = new DataOutputStream(mvhd);
+        mvhdOut.writeInt(0);
+        mvhdOut.writeInt(0);
+        mvhdOut.writeInt(0);
+        mvhdOut.writeInt(44100);
+        mvhdOut.writeInt(44100 * 200);
+        mvhdOut.write(new byte[80]);
+
+        ByteArrayOutputStream ilst = new ByteArrayOutputStream();
+        ilstItem(ilst, "\u00a9nam", 1, entry[0].getBytes(Charsets.UTF_8));
+        ilstItem(ilst, "\u00a9ART", 1, entry[2].getBytes(Charsets.UTF_8));
+        ilstItem(ilst, "\u00a9alb", 1, entry[1].getBytes(Charsets.UTF_8));
+        ilstItem(ilst, "\u00a9gen", 1, "Rock".getBytes(Charsets.UTF_8));
+        ilstItem(ilst, "trkn", 0, new byte[]{0, 0, 0, (byte) trackNumber, 0, 12, 0, 0});
+        ilstItem(ilst, "covr", 13, picture);
+
+        ByteArrayOutputStream meta = new ByteArrayOutputStream();
+        meta.write(new byte[4]);
+        atom(meta, "ilst", ilst.toByteArray());
+        ByteArrayOutputStream udta = new ByteArrayOutputStream();
+        atom(udta, "meta", meta.toByteArray());
+        ByteArrayOutputStream moov = new ByteArrayOutputStream();
+        atom(moov, "mvhd", mvhd.toByteArray());
+        atom(moov, "udta", udta.toByteArray());
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        atom(file, "ftyp", "M4A \u0000\u0000\u0000\u0000M4A mp42isom".getBytes(
+                Charsets.ISO_8859_1));
+        atom(file, "mdat", audio);
+        atom(file, "moov", moov.toByteArray());
+        return file.toByteArray();
+    }
+
+    private static void ilstItem(ByteArrayOutputStream ilst, String type, int dataType,
+            byte[] value) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(data);
+        out.writeInt(dataType);
+        out.writeInt(0);
+        out.write(value);
+        ByteArrayOutputStream item = new ByteArrayOutputStream();
+        atom(item, "data", data.toByteArray());
+        atom(ilst, type, item.toByteArray());
+    }
+
+    private static void atom(ByteArrayOutputStream parent, String type, byte[] content)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(parent);
+        out.writeInt(8 + content.length);
+        out.write(type.getBytes(Charsets.ISO_8859_1));
+        out.write(content);
+    }
+}
@@ -23,7 +23,6 @@ import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 import org.tomahawk.tomahawk_android.utils.TomahawkListItem;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
@@ -167,7 +166,7 @@ public class Album implements TomahawkListItem {
     public ArrayList<Query> getQueries() {
         ArrayList<Query> queries = new ArrayList<Query>(mQueries);
         synchronized (this) {
-            Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALBUMPOS));
+            QueryComparator.ALBUMPOS.sort(queries);
         }
         return queries;
     }
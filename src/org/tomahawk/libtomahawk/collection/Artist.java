@@ -23,7 +23,6 @@ import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 import org.tomahawk.tomahawk_android.utils.TomahawkListItem;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -97,8 +96,7 @@ public class Artist implements TomahawkListItem {
      */
     public static ArrayList<Artist> getArtists() {
         ArrayList<Artist> artists = new ArrayList<Artist>(sArtists.values());
-        Collections.sort(artists,
-                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
+        TomahawkListItemComparator.ALPHA.sort(artists);
         return artists;
     }
 
@@ -159,7 +157,7 @@ public class Artist implements TomahawkListItem {
     public ArrayList<Query> getQueries() {
         ArrayList<Query> queries;
         queries = new ArrayList<Query>(mQueries.values());
-        Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALPHA));
+        QueryComparator.ALPHA.sort(queries);
         return queries;
     }
 
@@ -188,8 +186,7 @@ public class Artist implements TomahawkListItem {
      */
     public ArrayList<Album> getAlbums() {
         ArrayList<Album> albums = new ArrayList<Album>(mAlbums.values());
-        Collections.sort(albums,
-                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
+        TomahawkListItemComparator.ALPHA.sort(albums);
         return albums;
     }
 
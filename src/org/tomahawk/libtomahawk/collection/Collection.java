@@ -24,7 +24,6 @@ import org.tomahawk.tomahawk_android.utils.TomahawkListItem;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -121,7 +120,7 @@ public class Collection {
     public ArrayList<Query> getQueries(boolean sorted) {
         ArrayList<Query> queries = new ArrayList<Query>(mQueries.values());
         if (sorted) {
-            Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALPHA));
+            QueryComparator.ALPHA.sort(queries);
         }
         return queries;
     }
@@ -147,8 +146,7 @@ public class Collection {
     public ArrayList<Artist> getArtists(boolean sorted) {
         ArrayList<Artist> artists = new ArrayList<Artist>(mArtists.values());
         if (sorted) {
-            Collections.sort(artists,
-                    new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
+            TomahawkListItemComparator.ALPHA.sort(artists);
         }
         return artists;
     }
@@ -174,8 +172,7 @@ public class Collection {
     public ArrayList<Album> getAlbums(boolean sorted) {
         ArrayList<Album> albums = new ArrayList<Album>(mAlbums.values());
         if (sorted) {
-            Collections.sort(albums,
-                    new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
+            TomahawkListItemComparator.ALPHA.sort(albums);
         }
         return albums;
     }
@@ -196,7 +193,7 @@ public class Collection {
             albums.addAll(mArtistAlbums.get(artist).values());
         }
         if (sorted) {
-            Collections.sort(albums, new TomahawkListItemComparator(QueryComparator.COMPARE_ALPHA));
+            TomahawkListItemComparator.ALPHA.sort(albums);
         }
         return albums;
     }
@@ -217,8 +214,7 @@ public class Collection {
             queries.addAll(mArtistTracks.get(artist).values());
         }
         if (sorted) {
-            Collections
-                    .sort(queries, new TomahawkListItemComparator(QueryComparator.COMPARE_ALPHA));
+            TomahawkListItemComparator.ALPHA.sort(queries);
         }
         return queries;
     }
@@ -236,7 +232,7 @@ public class Collection {
             queries.addAll(mAlbumTracks.get(album));
         }
         if (sorted) {
-            Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALBUMPOS));
+            QueryComparator.ALBUMPOS.sort(queries);
         }
         return queries;
     }
@@ -32,12 +32,17 @@ import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -51,6 +56,12 @@ public class CollectionManager {
 
     public static final String TAG = CollectionManager.class.getSimpleName();
 
+    // The maximum number of playlist entry lists, which are being fetched at the same time
+    private static final int MAX_CONCURRENT_PLAYLIST_FETCHES = 4;
+
+    // UpdatedEvents are being posted at most once per UPDATED_EVENT_INTERVAL ms
+    private static final int UPDATED_EVENT_INTERVAL = 250;
+
     private static class Holder {
 
         private static final CollectionManager instance = new CollectionManager();
@@ -67,7 +78,9 @@ public class CollectionManager {
 
         public Collection mCollection;
 
-        public String mUpdatedItemId;
+        // The ids of all items, which have been updated. Null, if the whole collection has been
+        // updated.
+        public Set<String> mUpdatedItemIds;
 
     }
 
@@ -76,12 +89,45 @@ public class CollectionManager {
 
     private HashSet<String> mCorrespondingRequestIds = new HashSet<String>();
 
+    // Ids of the playlists, whose entry lists are waiting to be fetched
+    private final LinkedHashSet<String> mQueuedPlaylistFetches = new LinkedHashSet<String>();
+
+    // Maps the requestIds of the running entry list fetches to the ids of their playlists
+    private final HashMap<String, String> mRunningPlaylistFetches = new HashMap<String, String>();
+
     private Set<String> mShowAsDeletedPlaylistMap =
             Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     private Set<String> mShowAsCreatedPlaylistMap =
             Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
+    // Maps the collections to the ids of their updated items, which haven't been posted yet. A
+    // null value marks the whole collection as updated.
+    private final HashMap<Collection, Set<String>> mPendingUpdates
+            = new HashMap<Collection, Set<String>>();
+
+    private boolean mUpdatedEventScheduled;
+
+    private final Handler mUpdatedEventHandler = new Handler(Looper.getMainLooper());
+
+    private final Runnable mPostUpdatedEventsRunnable = new Runnable() {
+        @Override
+        public void run() {
+            HashMap<Collection, Set<String>> pendingUpdates;
+            synchronized (mPendingUpdates) {
+                pendingUpdates = new HashMap<Collection, Set<String>>(mPendingUpdates);
+                mPendingUpdates.clear();
+                mUpdatedEventScheduled = false;
+            }
+            for (Map.Entry<Collection, Set<String>> entry : pendingUpdates.entrySet()) {
+                UpdatedEvent event = new UpdatedEvent();
+                event.mCollection = entry.getKey();
+                event.mUpdatedItemIds = entry.getValue();
+                EventBus.getDefault().post(event);
+            }
+        }
+    };
+
     private CollectionManager() {
         EventBus.getDefault().register(this);
 
@@ -120,7 +166,22 @@ public class CollectionManager {
     public void onEventAsync(final InfoSystem.ResultsEvent event) {
         if (mCorrespondingRequestIds.contains(event.mInfoRequestData.getRequestId())) {
             mCorrespondingRequestIds.remove(event.mInfoRequestData.getRequestId());
-            handleHatchetPlaylistResponse(event.mInfoRequestData);
+            if (event.mSuccess) {
+                handleHatchetPlaylistResponse(event.mInfoRequestData);
+            } else {
+                // An empty result would otherwise be taken for playlists deleted on Hatchet
+                Log.d(TAG, "Hatchet sync - request of type " + event.mInfoRequestData.getType()
+                        + " failed");
+            }
+            // Free the slot of a failed entry list fetch as well, so that the sync goes on
+            boolean wasPlaylistFetch;
+            synchronized (mQueuedPlaylistFetches) {
+                wasPlaylistFetch = mRunningPlaylistFetches
+                        .remove(event.mInfoRequestData.getRequestId()) != null;
+            }
+            if (wasPlaylistFetch) {
+                startQueuedPlaylistFetches();
+            }
         }
     }
 
@@ -151,6 +212,34 @@ public class CollectionManager {
         EventBus.getDefault().post(event);
     }
 
+    /**
+     * Report that the item with the given id has been updated. All updates reported within {@link
+     * #UPDATED_EVENT_INTERVAL} ms are being posted together as one {@link UpdatedEvent} per
+     * {@link Collection}.
+     *
+     * @param collection    the {@link Collection} that has been updated, might be null
+     * @param updatedItemId the id of the updated item. Null, if the whole {@link Collection} has
+     *                      been updated.
+     */
+    public void postUpdatedEvent(Collection collection, String updatedItemId) {
+        synchronized (mPendingUpdates) {
+            if (updatedItemId == null) {
+                mPendingUpdates.put(collection, null);
+            } else if (!mPendingUpdates.containsKey(collection)) {
+                Set<String> updatedItemIds = new HashSet<String>();
+                updatedItemIds.add(updatedItemId);
+                mPendingUpdates.put(collection, updatedItemIds);
+            } else if (mPendingUpdates.get(collection) != null) {
+                mPendingUpdates.get(collection).add(updatedItemId);
+            }
+            if (!mUpdatedEventScheduled) {
+                mUpdatedEventScheduled = true;
+                mUpdatedEventHandler.postDelayed(mPostUpdatedEventsRunnable,
+                        UPDATED_EVENT_INTERVAL);
+            }
+        }
+    }
+
     public Collection getCollection(String collectionId) {
         return mCollections.get(collectionId);
     }
@@ -183,9 +272,7 @@ public class CollectionManager {
                 + query.getName() + " by " + query.getArtist().getName() + " on "
                 + query.getAlbum().getName());
         DatabaseHelper.getInstance().setLovedItem(query, doSweetSweetLovin);
-        UpdatedEvent event = new UpdatedEvent();
-        event.mUpdatedItemId = query.getCacheKey();
-        EventBus.getDefault().post(event);
+        postUpdatedEvent(null, query.getCacheKey());
         AuthenticatorUtils hatchetAuthUtils = AuthenticatorManager.getInstance()
                 .getAuthenticatorUtils(TomahawkApp.PLUGINNAME_HATCHET);
         InfoSystem.getInstance().sendSocialActionPostStruct(hatchetAuthUtils, query,
@@ -197,9 +284,7 @@ public class CollectionManager {
         Log.d(TAG, "Hatchet sync - " + (doSweetSweetLovin ? "starred" : "unstarred") + " artist "
                 + artist.getName());
         DatabaseHelper.getInstance().setLovedItem(artist, doSweetSweetLovin);
-        UpdatedEvent event = new UpdatedEvent();
-        event.mUpdatedItemId = artist.getCacheKey();
-        EventBus.getDefault().post(event);
+        postUpdatedEvent(null, artist.getCacheKey());
         AuthenticatorUtils hatchetAuthUtils = AuthenticatorManager.getInstance()
                 .getAuthenticatorUtils(TomahawkApp.PLUGINNAME_HATCHET);
         InfoSystem.getInstance().sendSocialActionPostStruct(hatchetAuthUtils, artist,
@@ -211,9 +296,7 @@ public class CollectionManager {
         Log.d(TAG, "Hatchet sync - " + (doSweetSweetLovin ? "starred" : "unstarred") + " album "
                 + album.getName() + " by " + album.getArtist().getName());
         DatabaseHelper.getInstance().setLovedItem(album, doSweetSweetLovin);
-        UpdatedEvent event = new UpdatedEvent();
-        event.mUpdatedItemId = album.getCacheKey();
-        EventBus.getDefault().post(event);
+        postUpdatedEvent(null, album.getCacheKey());
         AuthenticatorUtils hatchetAuthUtils = AuthenticatorManager.getInstance()
                 .getAuthenticatorUtils(TomahawkApp.PLUGINNAME_HATCHET);
         InfoSystem.getInstance().sendSocialActionPostStruct(hatchetAuthUtils, album,
@@ -245,7 +328,7 @@ public class CollectionManager {
         HatchetAuthenticatorUtils hatchetAuthUtils = (HatchetAuthenticatorUtils)
                 AuthenticatorManager.getInstance().getAuthenticatorUtils(
                         TomahawkApp.PLUGINNAME_HATCHET);
-        if (DatabaseHelper.getInstance().getLoggedOpsCount() == 0) {
+        if (InfoSystem.getInstance().getLoggedOpsCount() == 0) {
             Log.d(TAG, "Hatchet sync - fetching loved tracks");
             mCorrespondingRequestIds.add(InfoSystem.getInstance().resolveFavorites(
                     hatchetAuthUtils.getLoggedInUser()));
@@ -264,7 +347,7 @@ public class CollectionManager {
         HatchetAuthenticatorUtils hatchetAuthUtils = (HatchetAuthenticatorUtils)
                 AuthenticatorManager.getInstance().getAuthenticatorUtils(
                         TomahawkApp.PLUGINNAME_HATCHET);
-        if (DatabaseHelper.getInstance().getLoggedOpsCount() == 0) {
+        if (InfoSystem.getInstance().getLoggedOpsCount() == 0) {
             Log.d(TAG, "Hatchet sync - fetching starred artists");
             mCorrespondingRequestIds.add(InfoSystem.getInstance().
                     resolveStarredArtists(hatchetAuthUtils.getLoggedInUser()));
@@ -283,7 +366,7 @@ public class CollectionManager {
         HatchetAuthenticatorUtils hatchetAuthUtils = (HatchetAuthenticatorUtils)
                 AuthenticatorManager.getInstance().getAuthenticatorUtils(
                         TomahawkApp.PLUGINNAME_HATCHET);
-        if (DatabaseHelper.getInstance().getLoggedOpsCount() == 0) {
+        if (InfoSystem.getInstance().getLoggedOpsCount() == 0) {
             Log.d(TAG, "Hatchet sync - fetching starred albums");
             mCorrespondingRequestIds.add(InfoSystem.getInstance()
                     .resolveStarredAlbums(hatchetAuthUtils.getLoggedInUser()));
@@ -300,8 +383,13 @@ public class CollectionManager {
         HatchetAuthenticatorUtils hatchetAuthUtils = (HatchetAuthenticatorUtils)
                 AuthenticatorManager.getInstance().getAuthenticatorUtils(
                         TomahawkApp.PLUGINNAME_HATCHET);
-        if (DatabaseHelper.getInstance().getLoggedOpsCount() == 0) {
+        if (InfoSystem.getInstance().getLoggedOpsCount() == 0) {
             Log.d(TAG, "Hatchet sync - fetching playlists");
+            // A new sync round re-enqueues every changed playlist
+            synchronized (mQueuedPlaylistFetches) {
+                mQueuedPlaylistFetches.clear();
+                mRunningPlaylistFetches.clear();
+            }
             mCorrespondingRequestIds.add(InfoSystem.getInstance()
                     .resolvePlaylists(hatchetAuthUtils.getLoggedInUser()));
         } else {
@@ -311,31 +399,52 @@ public class CollectionManager {
     }
 
     /**
-     * Fetch the Playlist entries from the Hatchet API and store them in the local db.
+     * Fetch the Playlist entries from the Hatchet API and store them in the local db. At most
+     * {@link #MAX_CONCURRENT_PLAYLIST_FETCHES} entry lists are being fetched at the same time, the
+     * others are queued.
      */
     public void fetchHatchetPlaylistEntries(String playlistId) {
-        String hatchetId = DatabaseHelper.getInstance().getPlaylistHatchetId(playlistId);
-        String name = DatabaseHelper.getInstance().getPlaylistName(playlistId);
-        if (DatabaseHelper.getInstance().getLoggedOpsCount() == 0) {
-            if (hatchetId != null) {
-                Log.d(TAG, "Hatchet sync - fetching entry list for playlist \"" + name
-                        + "\", hatchetId: " + hatchetId);
-                QueryParams params = new QueryParams();
-                params.playlist_local_id = playlistId;
-                params.playlist_id = hatchetId;
-                String requestid = InfoSystem.getInstance().resolve(
-                        InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS, params);
-                mCorrespondingRequestIds.add(requestid);
-            } else {
-                Log.d(TAG, "Hatchet sync - couldn't fetch entry list for playlist \""
-                        + name + "\" because hatchetId was null");
+        synchronized (mQueuedPlaylistFetches) {
+            if (!mRunningPlaylistFetches.containsValue(playlistId)) {
+                mQueuedPlaylistFetches.add(playlistId);
+            }
+        }
+        startQueuedPlaylistFetches();
+    }
+
+    private void startQueuedPlaylistFetches() {
+        synchronized (mQueuedPlaylistFetches) {
+            while (mRunningPlaylistFetches.size() < MAX_CONCURRENT_PLAYLIST_FETCHES
+                    && !mQueuedPlaylistFetches.isEmpty()) {
+                Iterator<String> iterator = mQueuedPlaylistFetches.iterator();
+                String playlistId = iterator.next();
+                iterator.remove();
+                String hatchetId = DatabaseHelper.getInstance().getPlaylistHatchetId(playlistId);
+                String name = DatabaseHelper.getInstance().getPlaylistName(playlistId);
+                if (InfoSystem.getInstance().getLoggedOpsCount() != 0) {
+                    // The playlists will be fetched again, as soon as the op log has been emptied
+                    Log.d(TAG, "Hatchet sync - sending logged ops before fetching entry list for"
+                            + " playlist \"" + name + "\", hatchetId: " + hatchetId);
+                    mQueuedPlaylistFetches.clear();
+                    AuthenticatorUtils hatchetAuthUtils = AuthenticatorManager.getInstance()
+                            .getAuthenticatorUtils(TomahawkApp.PLUGINNAME_HATCHET);
+                    InfoSystem.getInstance().sendLoggedOps(hatchetAuthUtils);
+                } else if (hatchetId != null) {
+                    Log.d(TAG, "Hatchet sync - fetching entry list for playlist \"" + name
+                            + "\", hatchetId: " + hatchetId + ", "
+                            + mQueuedPlaylistFetches.size() + " more queued");
+                    QueryParams params = new QueryParams();
+                    params.playlist_local_id = playlistId;
+                    params.playlist_id = hatchetId;
+                    String requestId = InfoSystem.getInstance().resolve(
+                            InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS, params);
+                    mRunningPlaylistFetches.put(requestId, playlistId);
+                    mCorrespondingRequestIds.add(requestId);
+                } else {
+                    Log.d(TAG, "Hatchet sync - couldn't fetch entry list for playlist \""
+                            + name + "\" because hatchetId was null");
+                }
             }
-        } else {
-            Log.d(TAG, "Hatchet sync - sending logged ops before fetching entry list for playlist"
-                    + " \"" + name + "\", hatchetId: " + hatchetId);
-            AuthenticatorUtils hatchetAuthUtils = AuthenticatorManager.getInstance()
-                    .getAuthenticatorUtils(TomahawkApp.PLUGINNAME_HATCHET);
-            InfoSystem.getInstance().sendLoggedOps(hatchetAuthUtils);
         }
     }
 
@@ -412,7 +521,7 @@ public class CollectionManager {
                     Log.d(TAG, "Hatchet sync - received entry list for playlist \""
                             + filledList.getName() + "\", hatchetId: " + filledList.getHatchetId()
                             + ", count: " + filledList.getEntries().size());
-                    DatabaseHelper.getInstance().storePlaylist(filledList);
+                    DatabaseHelper.getInstance().syncPlaylist(filledList);
                 }
             } else if (data.getHttpType() == InfoRequestData.HTTPTYPE_POST) {
                 String hatchetId = DatabaseHelper.getInstance()
@@ -549,8 +658,9 @@ public class CollectionManager {
 
     private void updateTopArtists(String playlistId) {
         Playlist playlist = DatabaseHelper.getInstance().getPlaylist(playlistId);
-        if (playlist != null && playlist.getEntries().size() > 0) {
-            playlist.updateTopArtistNames();
+        if (playlist != null && playlist.size() > 0) {
+            playlist.setTopArtistNames(
+                    DatabaseHelper.getInstance().getPlaylistTopArtistNames(playlistId));
             DatabaseHelper.getInstance().updatePlaylist(playlist);
         }
     }
@@ -0,0 +1,395 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.util.CharArraySet;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Version;
+import org.tomahawk.libtomahawk.resolver.Query;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.Set;
+
+/**
+ * A persistent Lucene index over the tracks of the {@link UserCollection}. Every track is indexed
+ * with its analyzed track, artist and album name and a combined "fulltext" field. The index is
+ * kept in sync by the media scanner and is being used by the {@link
+ * org.tomahawk.libtomahawk.resolver.DataBaseResolver} to resolve queries.
+ *
+ * Every query token is matched exactly, as a prefix or fuzzily, with decreasing constant scores.
+ * Because queryNorm and coord are disabled, the score of a hit divided by the number of query
+ * tokens is a value between 0 and 1, which can be used as the hit's track score.
+ *
+ * Like the {@link UserCollection} it belongs to, the index stays open for the lifetime of the
+ * process. Every update is committed right away, so nothing is lost when the process is killed.
+ */
+class LocalCollectionIndex {
+
+    private final static String TAG = LocalCollectionIndex.class.getSimpleName();
+
+    private static final String FIELD_LOCATION = "location";
+
+    private static final String FIELD_TRACK = "track";
+
+    private static final String FIELD_ARTIST = "artist";
+
+    private static final String FIELD_ALBUM = "album";
+
+    private static final String FIELD_FULLTEXT = "fulltext";
+
+    private static final float SCORE_EXACT = 1f;
+
+    private static final float SCORE_PREFIX = 0.8f;
+
+    private static final float SCORE_FUZZY = 0.7f;
+
+    private static final int MAX_HITS = 50;
+
+    /**
+     * The hits of a single search
+     */
+    static class Hits {
+
+        // The found tracks' locations and their score between 0 and 1, ordered by score
+        final LinkedHashMap<String, Float> mScores = new LinkedHashMap<String, Float>();
+
+        // Whether or not more tracks matched than have been returned
+        boolean mIsTruncated;
+
+    }
+
+    private final String mPath;
+
+    private final Analyzer mAnalyzer;
+
+    private IndexWriter mWriter;
+
+    private volatile SearcherManager mSearcherManager;
+
+    LocalCollectionIndex(String path) {
+        mPath = path;
+        // Stop words are meaningful in track and artist names (e.g. "The The")
+        mAnalyzer = new StandardAnalyzer(Version.LUCENE_47, CharArraySet.EMPTY_SET);
+    }
+
+    /**
+     * Open the index, if it hasn't been opened yet.
+     */
+    private synchronized void ensureOpen() throws IOException {
+        if (mWriter == null) {
+            IndexWriterConfig iwc = new IndexWriterConfig(Version.LUCENE_47, mAnalyzer);
+            iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            mWriter = new IndexWriter(FSDirectory.open(new File(mPath)), iwc);
+            mSearcherManager = new SearcherManager(mWriter, true, new SearcherFactory() {
+                @Override
+                public IndexSearcher newSearcher(IndexReader reader) throws IOException {
+                    IndexSearcher searcher = new IndexSearcher(reader);
+                    searcher.setSimilarity(new DefaultSimilarity() {
+                        @Override
+                        public float coord(int overlap, int maxOverlap) {
+                            return 1f;
+                        }
+
+                        @Override
+                        public float queryNorm(float sumOfSquaredWeights) {
+                            return 1f;
+                        }
+                    });
+                    return searcher;
+                }
+            });
+        }
+    }
+
+    /**
+     * Bring the index in sync with the given {@link MediaCatalog}. Only the tracks with the given
+     * added locations are (re-)indexed and the given removed locations are deleted. If the
+     * number of indexed tracks doesn't match the catalog's size afterwards (e.g. because the index
+     * has just been created), the whole index is being rebuilt.
+     */
+    synchronized void update(MediaCatalog catalog, Set<String> addedLocations,
+            Set<String> removedLocations) {
+        try {
+            ensureOpen();
+            long time = System.currentTimeMillis();
+            for (String location : removedLocations) {
+                mWriter.deleteDocuments(new Term(FIELD_LOCATION, location));
+            }
+            for (int i = 0; i < catalog.size(); i++) {
+                if (addedLocations.contains(catalog.getLocation(i))) {
+                    mWriter.updateDocument(new Term(FIELD_LOCATION, catalog.getLocation(i)),
+                            createDocument(catalog, i));
+                }
+            }
+            mWriter.commit();
+            if (mWriter.numDocs() != catalog.size()) {
+                Log.d(TAG, "update - index out of sync (" + mWriter.numDocs() + " vs. "
+                        + catalog.size() + " tracks), rebuilding");
+                mWriter.deleteAll();
+                for (int i = 0; i < catalog.size(); i++) {
+                    mWriter.addDocument(createDocument(catalog, i));
+                }
+                mWriter.commit();
+            }
+            mSearcherManager.maybeRefresh();
+            Log.d(TAG, "update - took " + (System.currentTimeMillis() - time) + "ms");
+        } catch (IOException e) {
+            Log.e(TAG, "update: " + e.getClass() + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    private static Document createDocument(MediaCatalog catalog, int track) {
+        String title = catalog.getTitle(track);
+        String artist = catalog.getArtistName(catalog.getArtistId(track));
+        String album = catalog.getAlbumName(catalog.getAlbumId(track));
+        Document document = new Document();
+        document.add(new StringField(FIELD_LOCATION, catalog.getLocation(track),
+                Field.Store.YES));
+        document.add(new TextField(FIELD_TRACK, title, Field.Store.NO));
+        document.add(new TextField(FIELD_ARTIST, artist, Field.Store.NO));
+        document.add(new TextField(FIELD_ALBUM, album, Field.Store.NO));
+        document.add(new TextField(FIELD_FULLTEXT, title + " " + artist + " " + album,
+                Field.Store.NO));
+        return document;
+    }
+
+    /**
+     * Search the index for the given {@link Query}. Full text queries are matched against all
+     * fields, track queries have to match the track name as well as the artist name.
+     *
+     * @return the {@link Hits} of the search. null, if the index couldn't be searched.
+     */
+    Hits search(Query query) {
+        BooleanQuery luceneQuery = new BooleanQuery(true);
+        int tokenCount;
+        try {
+            if (query.isFullTextQuery()) {
+                List<String> tokens = tokenize(query.getFullTextQuery());
+                tokenCount = tokens.size();
+                luceneQuery = createTokensQuery(FIELD_FULLTEXT, tokens);
+            } else {
+                List<String> trackTokens = tokenize(query.getName());
+                List<String> artistTokens = tokenize(query.getArtist().getName());
+                tokenCount = trackTokens.size() + artistTokens.size();
+                luceneQuery.add(createTokensQuery(FIELD_TRACK, trackTokens),
+                        BooleanClause.Occur.MUST);
+                luceneQuery.add(createTokensQuery(FIELD_ARTIST, artistTokens),
+                        BooleanClause.Occur.MUST);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "search: " + e.getClass() + ": " + e.getLocalizedMessage());
+            return null;
+        }
+        Hits results = new Hits();
+        if (tokenCount == 0) {
+            return results;
+        }
+        try {
+            SearcherManager searcherManager = mSearcherManager;
+            if (searcherManager == null) {
+                ensureOpen();
+                searcherManager = mSearcherManager;
+            }
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs topDocs = searcher.search(luceneQuery, MAX_HITS);
+                for (ScoreDoc hit : topDocs.scoreDocs) {
+                    Document document = searcher.doc(hit.doc,
+                            Collections.singleton(FIELD_LOCATION));
+                    results.mScores.put(document.get(FIELD_LOCATION),
+                            Math.min(1f, hit.score / tokenCount));
+                }
+                results.mIsTruncated = topDocs.totalHits > topDocs.scoreDocs.length;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "search: " + e.getClass() + ": " + e.getLocalizedMessage());
+            return null;
+        }
+        return results;
+    }
+
+    /**
+     * Score the given track for the given full text {@link Query} like {@link #search(Query)}
+     * would, but without searching the index. Used to re-score the hits of a previous search in
+     * memory.
+     *
+     * @return the track score between 0 and 1. 0, if the track wouldn't be a hit.
+     */
+    float score(Query query, String title, String artist, String album) {
+        List<String> tokens;
+        Set<String> fieldTokens;
+        try {
+            tokens = tokenize(query.getFullTextQuery());
+            fieldTokens = new HashSet<String>(tokenize(title + " " + artist + " " + album));
+        } catch (IOException e) {
+            Log.e(TAG, "score: " + e.getClass() + ": " + e.getLocalizedMessage());
+            return 0f;
+        }
+        float score = 0f;
+        int matchCount = 0;
+        for (String token : tokens) {
+            float tokenScore = scoreToken(token, fieldTokens);
+            if (tokenScore > 0f) {
+                score += tokenScore;
+                matchCount++;
+            }
+        }
+        if (tokens.isEmpty() || matchCount < (tokens.size() + 1) / 2) {
+            return 0f;
+        }
+        return Math.min(1f, score / tokens.size());
+    }
+
+    /**
+     * @return the score of the best match of the given token in the given field tokens, the same
+     * way the query built by {@link #createTokensQuery(String, List)} scores it
+     */
+    private static float scoreToken(String token, Set<String> fieldTokens) {
+        if (fieldTokens.contains(token)) {
+            return SCORE_EXACT;
+        }
+        float score = 0f;
+        for (String fieldToken : fieldTokens) {
+            if (token.length() > 1 && fieldToken.startsWith(token)) {
+                return SCORE_PREFIX;
+            }
+            if (token.length() > 2 && score == 0f
+                    && isWithinEdits(token, fieldToken, token.length() > 5 ? 2 : 1)) {
+                score = SCORE_FUZZY;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * @return whether or not the given terms share their first character and are at most maxEdits
+     * insertions, deletions, substitutions or transpositions apart, like a {@link FuzzyQuery} with
+     * a prefix length of 1 requires
+     */
+    private static boolean isWithinEdits(String a, String b, int maxEdits) {
+        if (a.isEmpty() || b.isEmpty() || a.charAt(0) != b.charAt(0)
+                || Math.abs(a.length() - b.length()) > maxEdits) {
+            return false;
+        }
+        int[][] distances = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            distances[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            distances[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                distances[i][j] = Math.min(Math.min(distances[i - 1][j] + 1,
+                        distances[i][j - 1] + 1), distances[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2)
+                        && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    distances[i][j] = Math.min(distances[i][j], distances[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return distances[a.length()][b.length()] <= maxEdits;
+    }
+
+    /**
+     * Creates a query, which matches at least half of the given tokens in the given field. Each
+     * token is scored by its best match, be it exact, prefix or fuzzy.
+     */
+    private static BooleanQuery createTokensQuery(String field, List<String> tokens) {
+        BooleanQuery tokensQuery = new BooleanQuery(true);
+        for (String token : tokens) {
+            DisjunctionMaxQuery tokenQuery = new DisjunctionMaxQuery(0f);
+            Term term = new Term(field, token);
+            tokenQuery.add(constantScore(new TermQuery(term), SCORE_EXACT));
+            if (token.length() > 1) {
+                tokenQuery.add(constantScore(new PrefixQuery(term), SCORE_PREFIX));
+            }
+            if (token.length() > 2) {
+                int maxEdits = token.length() > 5 ? 2 : 1;
+                tokenQuery.add(constantScore(new FuzzyQuery(term, maxEdits, 1), SCORE_FUZZY));
+            }
+            tokensQuery.add(tokenQuery, BooleanClause.Occur.SHOULD);
+        }
+        tokensQuery.setMinimumNumberShouldMatch((tokens.size() + 1) / 2);
+        return tokensQuery;
+    }
+
+    private static ConstantScoreQuery constantScore(org.apache.lucene.search.Query query,
+            float score) {
+        ConstantScoreQuery constantScoreQuery = new ConstantScoreQuery(query);
+        constantScoreQuery.setBoost(score);
+        return constantScoreQuery;
+    }
+
+    private List<String> tokenize(String text) throws IOException {
+        List<String> tokens = new ArrayList<String>();
+        if (TextUtils.isEmpty(text)) {
+            return tokens;
+        }
+        TokenStream tokenStream = mAnalyzer.tokenStream(FIELD_FULLTEXT, text);
+        try {
+            CharTermAttribute termAttribute = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                tokens.add(termAttribute.toString());
+            }
+            tokenStream.end();
+        } finally {
+            tokenStream.close();
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,376 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.collection;
+
+import org.tomahawk.tomahawk_android.utils.MediaWithDate;
+import org.videolan.libvlc.Media;
+
+import android.text.TextUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * An immutable, read-optimized snapshot of the audio items in the {@link UserCollection}. Every
+ * track is stored as a row in a set of primitive columns. Artist, album and genre names are
+ * dictionary-encoded, so that every distinct name is only held once, and the artist->tracks,
+ * album->tracks and artist->albums groupings are precomputed when the catalog is built.
+ *
+ * Albums are grouped by their name only, just like the {@link UserCollection} always did.
+ */
+class MediaCatalog {
+
+    static final MediaCatalog EMPTY = new Builder().build();
+
+    private static final int[] EMPTY_INDEXES = new int[0];
+
+    // Track columns
+    private final int mSize;
+
+    private final String[] mLocations;
+
+    private final String[] mTitles;
+
+    private final int[] mArtistIds;
+
+    private final int[] mAlbumIds;
+
+    private final int[] mGenreIds;
+
+    private final int[] mTrackNumbers;
+
+    private final long[] mLengths;
+
+    private final long[] mDatesAdded;
+
+    // Dictionaries
+    private final String[] mArtistNames;
+
+    private final String[] mAlbumNames;
+
+    private final String[] mGenreNames;
+
+    private final HashMap<String, Integer> mTrackIdsByLocation;
+
+    private final HashMap<String, Integer> mArtistIdsByName;
+
+    private final HashMap<String, Integer> mAlbumIdsByName;
+
+    // Album columns
+    private final int[] mAlbumArtistIds;
+
+    private final String[] mAlbumArtworkUrls;
+
+    private final long[] mAlbumDatesAdded;
+
+    // Artist columns
+    private final long[] mArtistDatesAdded;
+
+    // Group-by indexes
+    private final int[][] mArtistTracks;
+
+    private final int[][] mAlbumTracks;
+
+    private final int[][] mArtistAlbums;
+
+    private MediaCatalog(Builder builder) {
+        mSize = builder.mSize;
+        mLocations = Arrays.copyOf(builder.mLocations, mSize);
+        mTitles = Arrays.copyOf(builder.mTitles, mSize);
+        mArtistIds = Arrays.copyOf(builder.mArtistIds, mSize);
+        mAlbumIds = Arrays.copyOf(builder.mAlbumIds, mSize);
+        mGenreIds = Arrays.copyOf(builder.mGenreIds, mSize);
+        mTrackNumbers = Arrays.copyOf(builder.mTrackNumbers, mSize);
+        mLengths = Arrays.copyOf(builder.mLengths, mSize);
+        mDatesAdded = Arrays.copyOf(builder.mDatesAdded, mSize);
+
+        mTrackIdsByLocation = new HashMap<String, Integer>(mSize * 4 / 3 + 1);
+        for (int i = 0; i < mSize; i++) {
+            mTrackIdsByLocation.put(mLocations[i], i);
+        }
+        mArtistNames = builder.mArtists.toArray();
+        mAlbumNames = builder.mAlbums.toArray();
+        mGenreNames = builder.mGenres.toArray();
+        mArtistIdsByName = builder.mArtists.mIds;
+        mAlbumIdsByName = builder.mAlbums.mIds;
+
+        int artistCount = mArtistNames.length;
+        int albumCount = mAlbumNames.length;
+        mAlbumArtistIds = new int[albumCount];
+        Arrays.fill(mAlbumArtistIds, -1);
+        mAlbumArtworkUrls = new String[albumCount];
+        mAlbumDatesAdded = new long[albumCount];
+        mArtistDatesAdded = new long[artistCount];
+        int[] artistTrackCounts = new int[artistCount];
+        int[] albumTrackCounts = new int[albumCount];
+        for (int i = 0; i < mSize; i++) {
+            int artistId = mArtistIds[i];
+            int albumId = mAlbumIds[i];
+            artistTrackCounts[artistId]++;
+            albumTrackCounts[albumId]++;
+            if (mAlbumArtistIds[albumId] < 0) {
+                mAlbumArtistIds[albumId] = artistId;
+            }
+            if (mAlbumArtworkUrls[albumId] == null
+                    && !TextUtils.isEmpty(builder.mArtworkUrls[i])) {
+                mAlbumArtworkUrls[albumId] = builder.mArtworkUrls[i];
+            }
+            mAlbumDatesAdded[albumId] = Math.max(mAlbumDatesAdded[albumId], mDatesAdded[i]);
+            mArtistDatesAdded[artistId] = Math.max(mArtistDatesAdded[artistId], mDatesAdded[i]);
+        }
+
+        mArtistTracks = new int[artistCount][];
+        for (int i = 0; i < artistCount; i++) {
+            mArtistTracks[i] = new int[artistTrackCounts[i]];
+            artistTrackCounts[i] = 0;
+        }
+        mAlbumTracks = new int[albumCount][];
+        for (int i = 0; i < albumCount; i++) {
+            mAlbumTracks[i] = new int[albumTrackCounts[i]];
+            albumTrackCounts[i] = 0;
+        }
+        for (int i = 0; i < mSize; i++) {
+            mArtistTracks[mArtistIds[i]][artistTrackCounts[mArtistIds[i]]++] = i;
+            mAlbumTracks[mAlbumIds[i]][albumTrackCounts[mAlbumIds[i]]++] = i;
+        }
+
+        // Collect the distinct albums of every artist. lastArtistOfAlbum is used to mark, which
+        // artist an album has last been added to, so that we don't need a Set per artist.
+        mArtistAlbums = new int[artistCount][];
+        int[] lastArtistOfAlbum = new int[albumCount];
+        Arrays.fill(lastArtistOfAlbum, -1);
+        int[] albums = new int[albumCount];
+        for (int artistId = 0; artistId < artistCount; artistId++) {
+            int count = 0;
+            for (int track : mArtistTracks[artistId]) {
+                int albumId = mAlbumIds[track];
+                if (lastArtistOfAlbum[albumId] != artistId) {
+                    lastArtistOfAlbum[albumId] = artistId;
+                    albums[count++] = albumId;
+                }
+            }
+            mArtistAlbums[artistId] = Arrays.copyOf(albums, count);
+        }
+    }
+
+    /**
+     * @return the number of tracks in this catalog
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the index of the track with the given location, -1 if there is no such track
+     */
+    int getTrack(String location) {
+        Integer track = mTrackIdsByLocation.get(location);
+        return track != null ? track : -1;
+    }
+
+    String getLocation(int track) {
+        return mLocations[track];
+    }
+
+    String getTitle(int track) {
+        return mTitles[track];
+    }
+
+    int getArtistId(int track) {
+        return mArtistIds[track];
+    }
+
+    int getAlbumId(int track) {
+        return mAlbumIds[track];
+    }
+
+    String getGenre(int track) {
+        return mGenreNames[mGenreIds[track]];
+    }
+
+    int getTrackNumber(int track) {
+        return mTrackNumbers[track];
+    }
+
+    long getLength(int track) {
+        return mLengths[track];
+    }
+
+    long getDateAdded(int track) {
+        return mDatesAdded[track];
+    }
+
+    int getArtistCount() {
+        return mArtistNames.length;
+    }
+
+    String getArtistName(int artistId) {
+        return mArtistNames[artistId];
+    }
+
+    long getArtistDateAdded(int artistId) {
+        return mArtistDatesAdded[artistId];
+    }
+
+    int getAlbumCount() {
+        return mAlbumNames.length;
+    }
+
+    String getAlbumName(int albumId) {
+        return mAlbumNames[albumId];
+    }
+
+    int getAlbumArtistId(int albumId) {
+        return mAlbumArtistIds[albumId];
+    }
+
+    String getAlbumArtworkUrl(int albumId) {
+        return mAlbumArtworkUrls[albumId];
+    }
+
+    long getAlbumDateAdded(int albumId) {
+        return mAlbumDatesAdded[albumId];
+    }
+
+    /**
+     * @return the indexes of all tracks by the artist with the given name (case-insensitive)
+     */
+    int[] getArtistTracks(String artistName) {
+        Integer artistId = mArtistIdsByName.get(Dictionary.key(artistName));
+        return artistId != null ? mArtistTracks[artistId] : EMPTY_INDEXES;
+    }
+
+    /**
+     * @return the indexes of all tracks on the album with the given name (case-insensitive)
+     */
+    int[] getAlbumTracks(String albumName) {
+        Integer albumId = mAlbumIdsByName.get(Dictionary.key(albumName));
+        return albumId != null ? mAlbumTracks[albumId] : EMPTY_INDEXES;
+    }
+
+    /**
+     * @return the ids of all albums by the artist with the given name (case-insensitive)
+     */
+    int[] getArtistAlbums(String artistName) {
+        Integer artistId = mArtistIdsByName.get(Dictionary.key(artistName));
+        return artistId != null ? mArtistAlbums[artistId] : EMPTY_INDEXES;
+    }
+
+    /**
+     * Maps case-insensitively distinct names to consecutive ids. The first spelling of a name that
+     * is being added is the one that is being kept.
+     */
+    private static class Dictionary {
+
+        private final HashMap<String, Integer> mIds = new HashMap<String, Integer>();
+
+        private String[] mNames = new String[16];
+
+        private static String key(String name) {
+            return name == null ? "" : name.toLowerCase(Locale.getDefault());
+        }
+
+        private int getId(String name) {
+            String key = key(name);
+            Integer id = mIds.get(key);
+            if (id == null) {
+                id = mIds.size();
+                if (id == mNames.length) {
+                    mNames = Arrays.copyOf(mNames, id * 2);
+                }
+                mNames[id] = name == null ? "" : name;
+                mIds.put(key, id);
+            }
+            return id;
+        }
+
+        private String[] toArray() {
+            return Arrays.copyOf(mNames, mIds.size());
+        }
+    }
+
+    /**
+     * Collects {@link MediaWithDate} items and packs them into a {@link MediaCatalog}. Not thread
+     * safe.
+     */
+    static class Builder {
+
+        private int mSize;
+
+        private String[] mLocations = new String[64];
+
+        private String[] mTitles = new String[64];
+
+        private String[] mArtworkUrls = new String[64];
+
+        private int[] mArtistIds = new int[64];
+
+        private int[] mAlbumIds = new int[64];
+
+        private int[] mGenreIds = new int[64];
+
+        private int[] mTrackNumbers = new int[64];
+
+        private long[] mLengths = new long[64];
+
+        private long[] mDatesAdded = new long[64];
+
+        private final Dictionary mArtists = new Dictionary();
+
+        private final Dictionary mAlbums = new Dictionary();
+
+        private final Dictionary mGenres = new Dictionary();
+
+        /**
+         * Add the given media item to the catalog. Items that aren't of type {@link
+         * Media#TYPE_AUDIO} are being ignored.
+         */
+        void add(MediaWithDate media) {
+            if (media.getType() != Media.TYPE_AUDIO) {
+                return;
+            }
+            if (mSize == mLocations.length) {
+                int capacity = mSize * 2;
+                mLocations = Arrays.copyOf(mLocations, capacity);
+                mTitles = Arrays.copyOf(mTitles, capacity);
+                mArtworkUrls = Arrays.copyOf(mArtworkUrls, capacity);
+                mArtistIds = Arrays.copyOf(mArtistIds, capacity);
+                mAlbumIds = Arrays.copyOf(mAlbumIds, capacity);
+                mGenreIds = Arrays.copyOf(mGenreIds, capacity);
+                mTrackNumbers = Arrays.copyOf(mTrackNumbers, capacity);
+                mLengths = Arrays.copyOf(mLengths, capacity);
+                mDatesAdded = Arrays.copyOf(mDatesAdded, capacity);
+            }
+            mLocations[mSize] = media.getLocation();
+            mTitles[mSize] = media.getTitle() == null ? "" : media.getTitle();
+            mArtworkUrls[mSize] = media.getArtworkURL();
+            mArtistIds[mSize] = mArtists.getId(media.getArtist());
+            mAlbumIds[mSize] = mAlbums.getId(media.getAlbum());
+            mGenreIds[mSize] = mGenres.getId(media.getGenre());
+            mTrackNumbers[mSize] = media.getTrackNumber();
+            mLengths[mSize] = media.getLength();
+            mDatesAdded[mSize] = media.getDateAdded();
+            mSize++;
+        }
+
+        MediaCatalog build() {
+            return new MediaCatalog(this);
+        }
+    }
+}
@@ -21,10 +21,14 @@ import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.tomahawk_android.activities.TomahawkMainActivity;
 import org.tomahawk.tomahawk_android.utils.TomahawkListItem;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.PriorityQueue;
+import java.util.RandomAccess;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -33,10 +37,61 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class Playlist implements TomahawkListItem {
 
+    /**
+     * The amount of {@link PlaylistEntry}s that are being materialized at once, if this {@link
+     * Playlist} is backed by an {@link EntryLoader}
+     */
+    public static final int WINDOW_SIZE = 100;
+
+    /**
+     * Loads a window of {@link PlaylistEntry}s from wherever the {@link Playlist} is stored
+     */
+    public interface EntryLoader {
+
+        /**
+         * @return the {@link PlaylistEntry}s from position offset to offset + limit (exclusive).
+         * Null, if the stored entries have been modified since the {@link Playlist} has been
+         * opened, so that the window would come back shifted.
+         */
+        List<PlaylistEntry> loadEntries(int offset, int limit);
+    }
+
+    /**
+     * A read-only {@link List}, whose items are being materialized lazily
+     */
+    public interface LazyList {
+
+        /**
+         * @return the item at the given location, if it has already been materialized. Otherwise
+         * null, without materializing it.
+         */
+        Object peek(int location);
+    }
+
+    /**
+     * Keeps track of which windows of a lazily loaded {@link Playlist} have already been
+     * materialized. Shared between all {@link Playlist}s that share the same backing list.
+     */
+    private static class EntryWindows {
+
+        private final EntryLoader mLoader;
+
+        private final boolean[] mLoaded;
+
+        private volatile boolean mIsStale;
+
+        private EntryWindows(EntryLoader loader, int count) {
+            mLoader = loader;
+            mLoaded = new boolean[(count + WINDOW_SIZE - 1) / WINDOW_SIZE];
+        }
+    }
+
     private String mName = "";
 
     private ArrayList<PlaylistEntry> mEntries = new ArrayList<PlaylistEntry>();
 
+    private EntryWindows mEntryWindows;
+
     private static ConcurrentHashMap<String, Playlist> sPlaylists
             = new ConcurrentHashMap<String, Playlist>();
 
@@ -183,7 +238,7 @@ public class Playlist implements TomahawkListItem {
 
     public void updateTopArtistNames() {
         final HashMap<String, Integer> countMap = new HashMap<>();
-        for (PlaylistEntry entry : mEntries) {
+        for (PlaylistEntry entry : getEntries()) {
             String artistName = entry.getArtist().getName();
             if (countMap.containsKey(artistName)) {
                 countMap.put(artistName, countMap.get(artistName) + 1);
@@ -230,16 +285,121 @@ public class Playlist implements TomahawkListItem {
      * Set this {@link Playlist}'s {@link Query}s
      */
     public void setEntries(ArrayList<PlaylistEntry> entries) {
+        mEntryWindows = null;
         mEntries = entries;
     }
 
+    /**
+     * Let this {@link Playlist} share the entries of the given {@link Playlist}. If the given
+     * {@link Playlist} is lazily loaded, windows that are being materialized through one of the two
+     * {@link Playlist}s are visible to both of them.
+     */
+    public void setEntries(Playlist playlist) {
+        mEntryWindows = playlist.mEntryWindows;
+        mEntries = playlist.mEntries;
+    }
+
+    /**
+     * Back this {@link Playlist} by the given {@link EntryLoader}. {@link PlaylistEntry}s are only
+     * materialized in windows of {@link #WINDOW_SIZE} around the positions that are actually being
+     * accessed.
+     *
+     * @param loader the {@link EntryLoader} to load the windows with
+     * @param count  the total amount of entries in this {@link Playlist}
+     */
+    public void setEntryLoader(EntryLoader loader, int count) {
+        mEntryWindows = new EntryWindows(loader, count);
+        mEntries = new ArrayList<PlaylistEntry>(Collections.<PlaylistEntry>nCopies(count, null));
+        mCount = count;
+    }
+
+    /**
+     * @return whether or not this {@link Playlist} still contains entries which haven't been
+     * materialized yet
+     */
+    public boolean isLazy() {
+        return mEntryWindows != null;
+    }
+
+    /**
+     * Make sure that the window containing the given position has been loaded
+     */
+    private void ensureWindowLoaded(int position) {
+        EntryWindows windows = mEntryWindows;
+        if (windows != null && position >= 0 && position < mEntries.size()) {
+            int window = position / WINDOW_SIZE;
+            synchronized (windows) {
+                if (!windows.mLoaded[window] && !windows.mIsStale) {
+                    int offset = window * WINDOW_SIZE;
+                    List<PlaylistEntry> entries = windows.mLoader.loadEntries(offset, WINDOW_SIZE);
+                    if (entries == null) {
+                        // The stored playlist has changed underneath us. Leave the remaining
+                        // windows empty until the playlist is being reopened.
+                        windows.mIsStale = true;
+                        return;
+                    }
+                    for (int i = 0; i < entries.size() && offset + i < mEntries.size(); i++) {
+                        mEntries.set(offset + i, entries.get(i));
+                    }
+                    windows.mLoaded[window] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Materialize the windows containing the positions from start to end (exclusive). Meant to be
+     * called from a background thread, so that the UI thread only has to peek at the entries.
+     */
+    public void loadWindows(int start, int end) {
+        for (int i = Math.max(start, 0) / WINDOW_SIZE * WINDOW_SIZE;
+                i < end && i < mEntries.size(); i += WINDOW_SIZE) {
+            ensureWindowLoaded(i);
+        }
+    }
+
+    /**
+     * @return whether or not the windows containing the positions from start to end (exclusive)
+     * have been materialized or can't be materialized anymore. Doesn't block while a window is
+     * being loaded, so it can be called from the UI thread.
+     */
+    public boolean isLoaded(int start, int end) {
+        EntryWindows windows = mEntryWindows;
+        if (windows != null && !windows.mIsStale) {
+            for (int i = Math.max(start, 0) / WINDOW_SIZE;
+                    i * WINDOW_SIZE < end && i < windows.mLoaded.length; i++) {
+                if (!windows.mLoaded[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Materialize every window of this {@link Playlist}. Afterwards this {@link Playlist} has its
+     * own backing list, so that it can be modified without affecting other {@link Playlist}s it
+     * might have shared its entries with.
+     */
+    private void ensureAllLoaded() {
+        if (mEntryWindows != null) {
+            for (int i = 0; i < mEntries.size(); i += WINDOW_SIZE) {
+                ensureWindowLoaded(i);
+            }
+            mEntries = new ArrayList<PlaylistEntry>(mEntries);
+            // Drop the placeholders of entries that have been removed in the meantime
+            mEntries.removeAll(Collections.singleton(null));
+            mEntryWindows = null;
+        }
+    }
+
     /**
      * @return the next {@link Query}
      */
     public PlaylistEntry getNextEntry(PlaylistEntry entry) {
-        int index = mEntries.indexOf(entry);
+        int index = getIndexOfEntry(entry);
         if (index + 1 < mEntries.size()) {
-            return mEntries.get(index + 1);
+            return getEntryAtPos(index + 1);
         }
         return null;
     }
@@ -248,9 +408,9 @@ public class Playlist implements TomahawkListItem {
      * @return the previous {@link Query}
      */
     public PlaylistEntry getPreviousEntry(PlaylistEntry entry) {
-        int index = mEntries.indexOf(entry);
+        int index = getIndexOfEntry(entry);
         if (index - 1 >= 0) {
-            return mEntries.get(index - 1);
+            return getEntryAtPos(index - 1);
         }
         return null;
     }
@@ -262,7 +422,7 @@ public class Playlist implements TomahawkListItem {
         if (mEntries.isEmpty()) {
             return null;
         }
-        return mEntries.get(0);
+        return getEntryAtPos(0);
     }
 
     /**
@@ -272,7 +432,7 @@ public class Playlist implements TomahawkListItem {
         if (mEntries.isEmpty()) {
             return null;
         }
-        return mEntries.get(mEntries.size() - 1);
+        return getEntryAtPos(mEntries.size() - 1);
     }
 
     /**
@@ -305,16 +465,57 @@ public class Playlist implements TomahawkListItem {
     }
 
     /**
-     * Return all PlaylistEntries in the {@link Playlist}
+     * Return all PlaylistEntries in the {@link Playlist}. Materializes every entry of a lazily
+     * loaded {@link Playlist}, so use {@link #getEntriesWindowed()} wherever possible.
      */
     public ArrayList<PlaylistEntry> getEntries() {
+        ensureAllLoaded();
         return mEntries;
     }
 
+    /**
+     * @return a read-only {@link List} view of this {@link Playlist}'s entries, which only
+     * materializes the windows around the positions that are being accessed
+     */
+    public List<PlaylistEntry> getEntriesWindowed() {
+        return new WindowedList<PlaylistEntry>() {
+            @Override
+            public PlaylistEntry get(int location) {
+                return getEntryAtPos(location);
+            }
+
+            @Override
+            public Object peek(int location) {
+                return peekEntryAtPos(location);
+            }
+        };
+    }
+
+    /**
+     * @return a read-only {@link List} view of this {@link Playlist}'s {@link Query}s, which only
+     * materializes the windows around the positions that are being accessed
+     */
+    public List<Query> getQueriesWindowed() {
+        return new WindowedList<Query>() {
+            @Override
+            public Query get(int location) {
+                PlaylistEntry entry = getEntryAtPos(location);
+                return entry != null ? entry.getQuery() : null;
+            }
+
+            @Override
+            public Object peek(int location) {
+                PlaylistEntry entry = peekEntryAtPos(location);
+                return entry != null ? entry.getQuery() : null;
+            }
+        };
+    }
+
     /**
      * Add an {@link ArrayList} of {@link PlaylistEntry}s at the given position
      */
     public void addEntries(int position, ArrayList<PlaylistEntry> entries) {
+        ensureAllLoaded();
         mEntries.addAll(position, entries);
     }
 
@@ -322,6 +523,7 @@ public class Playlist implements TomahawkListItem {
      * Add an {@link ArrayList} of {@link PlaylistEntry}s at the given position
      */
     public void addEntries(ArrayList<PlaylistEntry> entries) {
+        ensureAllLoaded();
         mEntries.addAll(entries);
     }
 
@@ -334,6 +536,7 @@ public class Playlist implements TomahawkListItem {
             playlistEntries.add(PlaylistEntry.get(mId, query,
                     TomahawkMainActivity.getLifetimeUniqueStringId()));
         }
+        ensureAllLoaded();
         mEntries.addAll(playlistEntries);
     }
 
@@ -341,6 +544,7 @@ public class Playlist implements TomahawkListItem {
      * Remove the {@link PlaylistEntry} at the given position from this playlist
      */
     public void deleteEntryAtPos(int position) {
+        ensureAllLoaded();
         mEntries.remove(position);
     }
 
@@ -348,6 +552,10 @@ public class Playlist implements TomahawkListItem {
      * Remove the given {@link Query} from this playlist
      */
     public boolean deleteEntry(PlaylistEntry entry) {
+        if (entry == null) {
+            return false;
+        }
+        ensureAllLoaded();
         return mEntries.remove(entry);
     }
 
@@ -370,7 +578,7 @@ public class Playlist implements TomahawkListItem {
     @Override
     public ArrayList<Query> getQueries() {
         ArrayList<Query> queries = new ArrayList<Query>();
-        for (PlaylistEntry entry : mEntries) {
+        for (PlaylistEntry entry : getEntries()) {
             queries.add(entry.getQuery());
         }
         return queries;
@@ -398,7 +606,7 @@ public class Playlist implements TomahawkListItem {
     }
 
     public PlaylistEntry getEntryWithQuery(Query query) {
-        for (PlaylistEntry entry : mEntries) {
+        for (PlaylistEntry entry : getEntries()) {
             if (entry.getQuery().equals(query)) {
                 return entry;
             }
@@ -407,13 +615,30 @@ public class Playlist implements TomahawkListItem {
     }
 
     public PlaylistEntry getEntryAtPos(int position) {
-        if (position < mEntries.size()) {
+        if (position >= 0 && position < mEntries.size()) {
+            ensureWindowLoaded(position);
             return mEntries.get(position);
         }
         return null;
     }
 
+    /**
+     * @return the {@link PlaylistEntry} at the given position, if it has already been
+     * materialized. Otherwise null, without loading its window.
+     */
+    public PlaylistEntry peekEntryAtPos(int position) {
+        ArrayList<PlaylistEntry> entries = mEntries;
+        if (position >= 0 && position < entries.size()) {
+            return entries.get(position);
+        }
+        return null;
+    }
+
     public int getIndexOfEntry(PlaylistEntry entry) {
+        if (entry == null) {
+            // Entries that haven't been materialized yet are null, so don't match those
+            return -1;
+        }
         return mEntries.indexOf(entry);
     }
 
@@ -424,4 +649,17 @@ public class Playlist implements TomahawkListItem {
         }
         return null;
     }
+
+    /**
+     * Base class for the read-only views returned by {@link #getEntriesWindowed()} and {@link
+     * #getQueriesWindowed()}
+     */
+    private abstract class WindowedList<T> extends AbstractList<T>
+            implements RandomAccess, LazyList {
+
+        @Override
+        public int size() {
+            return Playlist.this.size();
+        }
+    }
 }
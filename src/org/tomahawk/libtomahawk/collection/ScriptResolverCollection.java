@@ -17,25 +17,47 @@
  */
 package org.tomahawk.libtomahawk.collection;
 
+import com.google.common.collect.Sets;
+
+import org.tomahawk.libtomahawk.database.DatabaseHelper;
 import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.libtomahawk.resolver.Result;
 import org.tomahawk.libtomahawk.resolver.ScriptResolver;
+import org.tomahawk.libtomahawk.resolver.models.ScriptResolverResultEntry;
+import org.tomahawk.tomahawk_android.utils.ThreadManager;
+import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
 
 import android.text.TextUtils;
+import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-
-import de.greenrobot.event.EventBus;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class represents a Collection which contains tracks/albums/artists retrieved by a
  * ScriptResolver.
+ *
+ * Everything retrieved is being mirrored in the database, so that the collection can be shown
+ * instantly on the next start. Every item is being refreshed from the ScriptResolver in the
+ * background once per session, as soon as it is being accessed. Changes are being stored in a
+ * single transaction per batch and only result in an {@link CollectionManager.UpdatedEvent} if
+ * the item has actually changed.
  */
 public class ScriptResolverCollection extends Collection {
 
+    private final static String TAG = ScriptResolverCollection.class.getSimpleName();
+
     private ScriptResolver mScriptResolver;
 
+    // Cache keys of the items, which have already been refreshed in this session
+    private final Set<String> mRefreshedItems =
+            Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     public ScriptResolverCollection(ScriptResolver scriptResolver) {
         super(scriptResolver.getId(), scriptResolver.getCollectionName(), true);
 
@@ -44,70 +66,175 @@ public class ScriptResolverCollection extends Collection {
     }
 
     /**
-     * Initialize this {@link org.tomahawk.libtomahawk.collection.ScriptResolverCollection}.
+     * Initialize this {@link org.tomahawk.libtomahawk.collection.ScriptResolverCollection} with
+     * the artists and albums stored in the database and refresh its artists afterwards.
      */
     protected void initializeCollection() {
-        mScriptResolver.artists(getId());
+        ThreadManager.getInstance().execute(
+                new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_DATABASEACTION) {
+                    @Override
+                    public void run() {
+                        long time = System.currentTimeMillis();
+                        DatabaseHelper databaseHelper = DatabaseHelper.getInstance();
+                        for (Artist artist : databaseHelper.getCollectionArtists(getId())) {
+                            addArtist(artist);
+                        }
+                        for (Album album : databaseHelper.getCollectionAlbums(getId())) {
+                            addAlbum(album);
+                            addArtistAlbum(album.getArtist(), album);
+                        }
+                        Log.d(TAG, "initializeCollection - loaded " + mArtists.size()
+                                + " artists and " + mAlbums.size() + " albums of collection '"
+                                + getId() + "' in " + (System.currentTimeMillis() - time) + "ms");
+                        if (!mArtists.isEmpty()) {
+                            postUpdatedEvent(null);
+                        }
+                        mRefreshedItems.add(getId());
+                        mScriptResolver.artists(getId());
+                    }
+                }
+        );
     }
 
     public ScriptResolver getScriptResolver() {
         return mScriptResolver;
     }
 
-    public void addAlbumTrackResults(Album album, List<Result> results) {
-        ArrayList<Query> queries = new ArrayList<Query>();
-        for (Result r : results) {
-            r.setTrackScore(1f);
-            Query query = Query.get(r, isLocal());
-            query.addTrackResult(r);
-            queries.add(query);
-            addQuery(query, 0);
+    /**
+     * Called with the tracks of the given {@link Album} as retrieved by the ScriptResolver.
+     */
+    public void addAlbumTrackResults(Album album, List<ScriptResolverResultEntry> entries) {
+        List<ScriptResolverResultEntry> validEntries = new ArrayList<ScriptResolverResultEntry>();
+        for (ScriptResolverResultEntry entry : entries) {
+            if (entry != null && !TextUtils.isEmpty(entry.url)
+                    && !TextUtils.isEmpty(entry.track)) {
+                validEntries.add(entry);
+            }
+        }
+        if (setAlbumTracks(album, validEntries)) {
+            DatabaseHelper.getInstance().storeCollectionAlbumTracks(getId(), album, validEntries);
+            postUpdatedEvent(album.getCacheKey());
         }
-        addAlbumTracks(album, queries);
-        CollectionManager.UpdatedEvent event = new CollectionManager.UpdatedEvent();
-        event.mCollection = this;
-        event.mUpdatedItemId = album.getCacheKey();
-        EventBus.getDefault().post(event);
     }
 
+    /**
+     * Called with all artists as retrieved by the ScriptResolver.
+     */
     public void addArtistResults(List<Artist> artists) {
+        Map<String, Artist> newArtists = new HashMap<String, Artist>();
         for (Artist artist : artists) {
             if (!TextUtils.isEmpty(artist.getName())) {
+                newArtists.put(artist.getCacheKey(), artist);
+            }
+        }
+        if (!newArtists.keySet().equals(mArtists.keySet())) {
+            mArtists.keySet().retainAll(newArtists.keySet());
+            for (Artist artist : newArtists.values()) {
                 addArtist(artist);
             }
+            DatabaseHelper.getInstance().storeCollectionArtists(getId(),
+                    new ArrayList<Artist>(newArtists.values()));
+            postUpdatedEvent(null);
         }
     }
 
-    public void addAlbumResults(List<Album> albums) {
+    /**
+     * Called with all albums of the given {@link Artist} as retrieved by the ScriptResolver.
+     */
+    public void addAlbumResults(Artist artist, List<Album> albums) {
+        Map<String, Album> newAlbums = new ConcurrentHashMap<String, Album>();
         for (Album album : albums) {
             if (!TextUtils.isEmpty(album.getName())) {
+                newAlbums.put(album.getCacheKey(), album);
+            }
+        }
+        Map<String, Album> artistAlbums = mArtistAlbums.get(artist);
+        if (artistAlbums == null || !newAlbums.keySet().equals(artistAlbums.keySet())) {
+            if (artistAlbums != null) {
+                for (String key : artistAlbums.keySet()) {
+                    if (!newAlbums.containsKey(key)) {
+                        mAlbums.remove(key);
+                    }
+                }
+            }
+            for (Album album : newAlbums.values()) {
                 addAlbum(album);
-                addArtistAlbum(album.getArtist(), album);
-                CollectionManager.UpdatedEvent event = new CollectionManager.UpdatedEvent();
-                event.mCollection = this;
-                event.mUpdatedItemId = album.getArtist().getCacheKey();
-                EventBus.getDefault().post(event);
             }
+            mArtistAlbums.put(artist, newAlbums);
+            DatabaseHelper.getInstance().storeCollectionAlbums(getId(), artist,
+                    new ArrayList<Album>(newAlbums.values()));
+            postUpdatedEvent(artist.getCacheKey());
         }
     }
 
     @Override
-    public ArrayList<Query> getAlbumTracks(Album album, boolean sorted) {
-        if (mAlbumTracks.get(album) != null) {
-            return super.getAlbumTracks(album, sorted);
-        } else {
-            mScriptResolver.tracks(getId(), album.getArtist().getName(), album.getName());
-            return new ArrayList<Query>();
+    public ArrayList<Query> getAlbumTracks(final Album album, boolean sorted) {
+        if (mRefreshedItems.add(album.getCacheKey())) {
+            ThreadManager.getInstance().execute(
+                    new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_DATABASEACTION) {
+                        @Override
+                        public void run() {
+                            if (mAlbumTracks.get(album) == null) {
+                                List<ScriptResolverResultEntry> entries = DatabaseHelper
+                                        .getInstance().getCollectionAlbumTracks(getId(), album);
+                                if (!entries.isEmpty() && setAlbumTracks(album, entries)) {
+                                    postUpdatedEvent(album.getCacheKey());
+                                }
+                            }
+                            mScriptResolver.tracks(getId(), album.getArtist().getName(),
+                                    album.getName());
+                        }
+                    }
+            );
         }
+        return super.getAlbumTracks(album, sorted);
     }
 
     @Override
     public ArrayList<Album> getArtistAlbums(Artist artist, boolean sorted) {
-        if (mArtistAlbums.get(artist) != null) {
-            return super.getArtistAlbums(artist, sorted);
-        } else {
+        if (mRefreshedItems.add(artist.getCacheKey())) {
             mScriptResolver.albums(getId(), artist.getName());
-            return new ArrayList<Album>();
         }
+        return super.getArtistAlbums(artist, sorted);
+    }
+
+    /**
+     * Set the tracks of the given {@link Album} to the given entries.
+     *
+     * @return whether or not the tracks of the given {@link Album} have changed
+     */
+    private boolean setAlbumTracks(Album album, List<ScriptResolverResultEntry> entries) {
+        ArrayList<Result> results = mScriptResolver.parseResultList(entries, getId());
+        ArrayList<Query> queries = new ArrayList<Query>();
+        for (Result r : results) {
+            r.setTrackScore(1f);
+            Query query = Query.get(r, isLocal());
+            query.addTrackResult(r);
+            queries.add(query);
+        }
+        List<Query> oldQueries = mAlbumTracks.get(album);
+        if (oldQueries != null && oldQueries.equals(queries)) {
+            return false;
+        }
+        if (oldQueries != null) {
+            Set<String> keys = new HashSet<String>();
+            for (Query query : queries) {
+                keys.add(query.getCacheKey());
+            }
+            for (Query query : oldQueries) {
+                if (!keys.contains(query.getCacheKey())) {
+                    mQueries.remove(query.getCacheKey());
+                }
+            }
+        }
+        for (Query query : queries) {
+            addQuery(query, 0);
+        }
+        addAlbumTracks(album, queries);
+        return true;
+    }
+
+    private void postUpdatedEvent(String updatedItemId) {
+        CollectionManager.getInstance().postUpdatedEvent(this, updatedItemId);
     }
 }
@@ -20,12 +20,24 @@ package org.tomahawk.libtomahawk.collection;
 import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.tomahawk_android.utils.TomahawkListItem;
 
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * This class is used to compare two {@link TomahawkListItem}s.
+ * This class is used to compare two {@link TomahawkListItem}s. Instances are immutable and can be
+ * shared between threads.
+ *
+ * Names are compared by their locale-aware {@link CollationKey}. Use {@link #sort(List)} to sort
+ * big lists, so that every distinct name is only collated once per sort. {@link
+ * #compare(TomahawkListItem, TomahawkListItem)} collates both names on every call and is meant
+ * for ad-hoc comparisons only.
  */
 public class TomahawkListItemComparator
         implements Comparator<TomahawkListItem> {
@@ -37,10 +49,23 @@ public class TomahawkListItemComparator
 
     public static final int COMPARE_RECENTLY_ADDED = 2;
 
-    //Flag containing the current mode to be used
-    private static int mFlag = COMPARE_ALPHA;
+    public static final TomahawkListItemComparator ALPHA =
+            new TomahawkListItemComparator(COMPARE_ALPHA);
+
+    public static final TomahawkListItemComparator ARTIST_ALPHA =
+            new TomahawkListItemComparator(COMPARE_ARTIST_ALPHA);
+
+    private static final Collator sCollator = Collator.getInstance();
+
+    static {
+        // Ignore case, but not accents
+        sCollator.setStrength(Collator.SECONDARY);
+    }
+
+    //The mode to be used
+    private final int mFlag;
 
-    private HashMap mTimeStampMap;
+    private final Map mTimeStampMap;
 
     /**
      * Construct this {@link TomahawkListItemComparator}
@@ -51,6 +76,7 @@ public class TomahawkListItemComparator
     public TomahawkListItemComparator(int flag) {
         super();
         mFlag = flag;
+        mTimeStampMap = null;
     }
 
     /**
@@ -67,6 +93,32 @@ public class TomahawkListItemComparator
         mTimeStampMap = new HashMap(timeStampMap);
     }
 
+    /**
+     * @return the locale-aware, case-insensitive sort key of the given String
+     */
+    public static CollationKey getSortKey(String string) {
+        if (string == null) {
+            string = "";
+        }
+        // Collator isn't thread-safe
+        synchronized (sCollator) {
+            return sCollator.getCollationKey(string);
+        }
+    }
+
+    /**
+     * @return the sort key of the given String, which is only being computed if it isn't
+     * contained in the given map of the keys computed so far
+     */
+    private static CollationKey getSortKey(String string, Map<String, CollationKey> keys) {
+        CollationKey key = keys.get(string);
+        if (key == null) {
+            key = getSortKey(string);
+            keys.put(string, key);
+        }
+        return key;
+    }
+
     /**
      * The actual comparison method
      *
@@ -77,35 +129,92 @@ public class TomahawkListItemComparator
     public int compare(TomahawkListItem a1, TomahawkListItem a2) {
         switch (mFlag) {
             case COMPARE_ALPHA:
-                return a1.getName().compareToIgnoreCase(a2.getName());
+                return getSortKey(a1.getName()).compareTo(getSortKey(a2.getName()));
             case COMPARE_ARTIST_ALPHA:
-                return a1.getArtist().getName().compareToIgnoreCase(a2.getArtist().getName());
+                return getSortKey(a1.getArtist().getName())
+                        .compareTo(getSortKey(a2.getArtist().getName()));
             case COMPARE_RECENTLY_ADDED:
-                Long a1TimeStamp;
-                if (a1 instanceof Query) {
-                    a1TimeStamp = (Long) mTimeStampMap.get(a1);
-                } else {
-                    a1TimeStamp = (Long) mTimeStampMap.get(a1.getName().toLowerCase());
-                }
-                Long a2TimeStamp;
-                if (a1 instanceof Query) {
-                    a2TimeStamp = (Long) mTimeStampMap.get(a2);
-                } else {
-                    a2TimeStamp = (Long) mTimeStampMap.get(a2.getName().toLowerCase());
-                }
-
-                if (a1TimeStamp == null && a2TimeStamp == null) {
-                    return 0;
-                } else if (a1TimeStamp == null
-                        || (a2TimeStamp != null && a1TimeStamp > a2TimeStamp)) {
-                    return -1;
-                } else if (a2TimeStamp == null
-                        || a1TimeStamp < a2TimeStamp) {
-                    return 1;
-                } else {
-                    return 0;
-                }
+                long a1TimeStamp = getTimeStamp(a1);
+                long a2TimeStamp = getTimeStamp(a2);
+                return a1TimeStamp > a2TimeStamp ? -1 : (a1TimeStamp < a2TimeStamp ? 1 : 0);
         }
         return 0;
     }
+
+    /**
+     * Sort the given list according to this {@link TomahawkListItemComparator}'s mode. The sort key
+     * of every item is determined only once, so that the actual sorting only has to compare
+     * precomputed keys. Items with the same name share their key. The sort is stable.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends TomahawkListItem> void sort(List<T> items) {
+        // Only lives as long as this sort, so that no keys are being kept around afterwards
+        HashMap<String, CollationKey> keys = new HashMap<String, CollationKey>();
+        SortEntry[] entries = new SortEntry[items.size()];
+        int i = 0;
+        for (T item : items) {
+            SortEntry entry = new SortEntry();
+            entry.mItem = item;
+            switch (mFlag) {
+                case COMPARE_ALPHA:
+                    entry.mKey = getSortKey(item.getName(), keys);
+                    break;
+                case COMPARE_ARTIST_ALPHA:
+                    entry.mKey = getSortKey(item.getArtist().getName(), keys);
+                    break;
+                case COMPARE_RECENTLY_ADDED:
+                    entry.mTimeStamp = getTimeStamp(item);
+                    break;
+            }
+            entries[i++] = entry;
+        }
+        if (mFlag == COMPARE_RECENTLY_ADDED) {
+            Arrays.sort(entries, TIMESTAMP_ORDER);
+        } else if (mFlag == COMPARE_ALPHA || mFlag == COMPARE_ARTIST_ALPHA) {
+            Arrays.sort(entries, KEY_ORDER);
+        }
+        ListIterator<T> iterator = items.listIterator();
+        for (SortEntry entry : entries) {
+            iterator.next();
+            iterator.set((T) entry.mItem);
+        }
+    }
+
+    /**
+     * @return the timestamp of the given item, Long.MAX_VALUE if it is unknown, so that unknown
+     * items are put in front
+     */
+    private long getTimeStamp(TomahawkListItem item) {
+        Long timeStamp;
+        if (item instanceof Query) {
+            timeStamp = (Long) mTimeStampMap.get(item);
+        } else {
+            timeStamp = (Long) mTimeStampMap.get(item.getName().toLowerCase());
+        }
+        return timeStamp != null ? timeStamp : Long.MAX_VALUE;
+    }
+
+    private static class SortEntry {
+
+        private TomahawkListItem mItem;
+
+        private CollationKey mKey;
+
+        private long mTimeStamp;
+    }
+
+    private static final Comparator<SortEntry> KEY_ORDER = new Comparator<SortEntry>() {
+        @Override
+        public int compare(SortEntry lhs, SortEntry rhs) {
+            return lhs.mKey.compareTo(rhs.mKey);
+        }
+    };
+
+    private static final Comparator<SortEntry> TIMESTAMP_ORDER = new Comparator<SortEntry>() {
+        @Override
+        public int compare(SortEntry lhs, SortEntry rhs) {
+            return lhs.mTimeStamp > rhs.mTimeStamp ? -1
+                    : (lhs.mTimeStamp < rhs.mTimeStamp ? 1 : 0);
+        }
+    };
 }
@@ -24,6 +24,8 @@ import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.libtomahawk.resolver.QueryComparator;
 import org.tomahawk.libtomahawk.resolver.Resolver;
 import org.tomahawk.libtomahawk.resolver.Result;
+import org.tomahawk.libtomahawk.utils.ArtworkCache;
+import org.tomahawk.libtomahawk.utils.TagReader;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.mediaplayers.VLCMediaPlayer;
 import org.tomahawk.tomahawk_android.utils.MediaWithDate;
@@ -47,18 +49,14 @@ import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.StringTokenizer;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-
-import de.greenrobot.event.EventBus;
 
 /**
  * This class represents a user's local {@link UserCollection}.
@@ -70,15 +68,25 @@ public class UserCollection extends Collection {
     private static final String HAS_SET_DEFAULTDIRS
             = "org.tomahawk.tomahawk_android.has_set_defaultdirs";
 
-    private static final int MODE_ARTIST = 0;
+    private volatile MediaCatalog mCatalog = MediaCatalog.EMPTY;
+
+    private final LocalCollectionIndex mIndex;
 
-    private static final int MODE_ALBUM = 1;
+    // The last full text search, if the index returned all of its matches. Used to refine results
+    // while the user is typing.
+    private volatile CompleteSearch mLastCompleteSearch;
 
-    private static final int MODE_GENRE = 2;
+    private static class CompleteSearch {
 
-    private final ArrayList<MediaWithDate> mItemList;
+        private final Query mQuery;
 
-    private final ReadWriteLock mItemListLock;
+        private final ArrayList<Result> mResults;
+
+        private CompleteSearch(Query query, ArrayList<Result> results) {
+            mQuery = query;
+            mResults = results;
+        }
+    }
 
     private boolean isStopping = false;
 
@@ -91,8 +99,66 @@ public class UserCollection extends Collection {
                 PipeLine.getInstance().getResolver(TomahawkApp.PLUGINNAME_USERCOLLECTION)
                         .getCollectionName(), true);
 
-        mItemList = new ArrayList<MediaWithDate>();
-        mItemListLock = new ReentrantReadWriteLock();
+        mIndex = new LocalCollectionIndex(TomahawkApp.getContext().getFilesDir()
+                .getAbsolutePath() + File.separator + TomahawkApp.PLUGINNAME_USERCOLLECTION
+                + ".lucene");
+    }
+
+    /**
+     * Search this {@link UserCollection}'s full text index for the given {@link Query}
+     *
+     * @return the {@link Result}s of all matching tracks with their track score already set. null,
+     * if the index couldn't be searched.
+     */
+    public ArrayList<Result> search(Query query) {
+        LocalCollectionIndex.Hits hits = mIndex.search(query);
+        if (hits == null) {
+            return null;
+        }
+        ArrayList<Result> results = new ArrayList<Result>();
+        Resolver userCollectionResolver = PipeLine.getInstance().getResolver(
+                TomahawkApp.PLUGINNAME_USERCOLLECTION);
+        if (userCollectionResolver == null) {
+            return results;
+        }
+        MediaCatalog catalog = mCatalog;
+        for (Map.Entry<String, Float> hit : hits.mScores.entrySet()) {
+            int track = catalog.getTrack(hit.getKey());
+            if (track >= 0) {
+                Query trackQuery = Query.get(catalog.getTitle(track),
+                        catalog.getAlbumName(catalog.getAlbumId(track)),
+                        catalog.getArtistName(catalog.getArtistId(track)), true);
+                Result result = getResult(catalog, track, userCollectionResolver, trackQuery);
+                result.setTrackScore(hit.getValue());
+                results.add(result);
+            }
+        }
+        if (query.isFullTextQuery() && !hits.mIsTruncated) {
+            mLastCompleteSearch = new CompleteSearch(query, results);
+        }
+        return results;
+    }
+
+    /**
+     * @return the track score of the given local {@link Result} for the given full text {@link
+     * Query}, derived the same way as by {@link #search(Query)}. 0, if it wouldn't be a hit.
+     */
+    public float getSearchScore(Query query, Result result) {
+        return mIndex.score(query, result.getTrack().getName(), result.getArtist().getName(),
+                result.getAlbum().getName());
+    }
+
+    /**
+     * @return the {@link Result}s of all local tracks, which match the given full text {@link
+     * Query}, with the track score they've been found with. null, if the given {@link Query}
+     * wasn't the last one to be searched or if the index has cut off some of its matches.
+     */
+    public ArrayList<Result> getCompleteSearchResults(Query query) {
+        CompleteSearch search = mLastCompleteSearch;
+        if (search == null || search.mQuery != query) {
+            return null;
+        }
+        return new ArrayList<Result>(search.mResults);
     }
 
     /**
@@ -106,61 +172,50 @@ public class UserCollection extends Collection {
         if (userCollectionResolver == null) {
             return queries;
         }
-        for (MediaWithDate media : getAudioItems()) {
-            Artist artist = Artist.get(media.getArtist());
-            Album album = Album.get(media.getAlbum(), artist);
-            if (!TextUtils.isEmpty(media.getArtworkURL())) {
-                album.setImage(Image.get(media.getArtworkURL(), false));
-            }
-            Track track = Track.get(media.getTitle(), album, artist);
-            track.setDuration(media.getLength());
-            track.setAlbumPos(media.getTrackNumber());
-            Query query = Query.get(media.getTitle(), media.getAlbum(), media.getArtist(), true);
-            Result result = Result.get(media.getLocation(), track, userCollectionResolver,
-                    query.getCacheKey());
-            result.setTrackScore(1f);
-            query.addTrackResult(result);
+        MediaCatalog catalog = mCatalog;
+        for (int i = 0; i < catalog.size(); i++) {
+            Query query = getQuery(catalog, i, userCollectionResolver);
             queries.add(query);
-            if (mAlbumAddedTimeStamps.get(query.getAlbum().getName()) == null
-                    || mAlbumAddedTimeStamps.get(query.getAlbum().getName()) < media
-                    .getDateAdded()) {
-                mAlbumAddedTimeStamps.put(query.getAlbum().getName(), media.getDateAdded());
-            }
-            if (mArtistAddedTimeStamps.get(query.getArtist().getName()) == null
-                    || mArtistAddedTimeStamps.get(query.getArtist().getName()) < media
-                    .getDateAdded()) {
-                mArtistAddedTimeStamps.put(query.getArtist().getName(), media.getDateAdded());
-            }
-            mTrackAddedTimeStamps.put(query, media.getDateAdded());
+            mTrackAddedTimeStamps.put(query, catalog.getDateAdded(i));
         }
         if (sorted) {
-            Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALPHA));
+            QueryComparator.ALPHA.sort(queries);
         }
         return queries;
     }
 
+    /**
+     * @return the names of all artists, albums and tracks in this {@link UserCollection}
+     */
+    public ArrayList<String> getNames() {
+        MediaCatalog catalog = mCatalog;
+        ArrayList<String> names = new ArrayList<String>(
+                catalog.getArtistCount() + catalog.getAlbumCount() + catalog.size());
+        for (int i = 0; i < catalog.getArtistCount(); i++) {
+            names.add(catalog.getArtistName(i));
+        }
+        for (int i = 0; i < catalog.getAlbumCount(); i++) {
+            names.add(catalog.getAlbumName(i));
+        }
+        for (int i = 0; i < catalog.size(); i++) {
+            names.add(catalog.getTitle(i));
+        }
+        return names;
+    }
+
     /**
      * @return A {@link java.util.List} of all {@link org.tomahawk.libtomahawk.collection.Artist}s
      * in this {@link org.tomahawk.libtomahawk.collection.Collection}
      */
     @Override
     public ArrayList<Artist> getArtists(boolean sorted) {
-        HashMap<String, Artist> artistMap = new HashMap<String, Artist>();
-        for (MediaWithDate media : getAudioItems()) {
-            if (!artistMap.containsKey(media.getArtist().toLowerCase())) {
-                Artist artist = Artist.get(media.getArtist());
-                artistMap.put(media.getArtist().toLowerCase(), artist);
-            }
-            if (mArtistAddedTimeStamps.get(media.getArtist().toLowerCase()) == null
-                    || mArtistAddedTimeStamps.get(media.getArtist().toLowerCase()) < media
-                    .getDateAdded()) {
-                mArtistAddedTimeStamps.put(media.getArtist().toLowerCase(), media.getDateAdded());
-            }
+        MediaCatalog catalog = mCatalog;
+        ArrayList<Artist> artists = new ArrayList<Artist>(catalog.getArtistCount());
+        for (int i = 0; i < catalog.getArtistCount(); i++) {
+            artists.add(Artist.get(catalog.getArtistName(i)));
         }
-        ArrayList<Artist> artists = new ArrayList<Artist>(artistMap.values());
         if (sorted) {
-            Collections.sort(artists,
-                    new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
+            TomahawkListItemComparator.ALPHA.sort(artists);
         }
         return artists;
     }
@@ -171,26 +226,14 @@ public class UserCollection extends Collection {
      */
     @Override
     public ArrayList<Album> getAlbums(boolean sorted) {
-        HashMap<String, Album> albumMap = new HashMap<String, Album>();
-        for (MediaWithDate media : getAudioItems()) {
-            if (!albumMap.containsKey(media.getAlbum().toLowerCase())) {
-                Artist artist = Artist.get(media.getArtist());
-                Album album = Album.get(media.getAlbum(), artist);
-                if (!TextUtils.isEmpty(media.getArtworkURL())) {
-                    album.setImage(Image.get(media.getArtworkURL(), false));
-                }
-                albumMap.put(media.getAlbum().toLowerCase(), album);
-            }
-            if (mAlbumAddedTimeStamps.get(media.getAlbum().toLowerCase()) == null
-                    || mAlbumAddedTimeStamps.get(media.getAlbum().toLowerCase()) < media
-                    .getDateAdded()) {
-                mAlbumAddedTimeStamps.put(media.getAlbum().toLowerCase(), media.getDateAdded());
-            }
+        MediaCatalog catalog = mCatalog;
+        ArrayList<Album> albums = new ArrayList<Album>(catalog.getAlbumCount());
+        for (int i = 0; i < catalog.getAlbumCount(); i++) {
+            Artist artist = Artist.get(catalog.getArtistName(catalog.getAlbumArtistId(i)));
+            albums.add(getAlbum(catalog, i, artist));
         }
-        ArrayList<Album> albums = new ArrayList<Album>(albumMap.values());
         if (sorted) {
-            Collections.sort(albums,
-                    new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
+            TomahawkListItemComparator.ALPHA.sort(albums);
         }
         return albums;
     }
@@ -200,19 +243,14 @@ public class UserCollection extends Collection {
      */
     @Override
     public ArrayList<Album> getArtistAlbums(Artist artist, boolean sorted) {
-        HashMap<String, Album> albumMap = new HashMap<String, Album>();
-        for (MediaWithDate media : getAudioItems(artist.getName(), null, MODE_ARTIST)) {
-            if (!albumMap.containsKey(media.getAlbum().toLowerCase())) {
-                Album album = Album.get(media.getAlbum(), artist);
-                if (!TextUtils.isEmpty(media.getArtworkURL())) {
-                    album.setImage(Image.get(media.getArtworkURL(), false));
-                }
-                albumMap.put(media.getAlbum().toLowerCase(), album);
-            }
+        MediaCatalog catalog = mCatalog;
+        int[] albumIds = catalog.getArtistAlbums(artist.getName());
+        ArrayList<Album> albums = new ArrayList<Album>(albumIds.length);
+        for (int albumId : albumIds) {
+            albums.add(getAlbum(catalog, albumId, artist));
         }
-        ArrayList<Album> albums = new ArrayList<Album>(albumMap.values());
         if (sorted) {
-            Collections.sort(albums, new TomahawkListItemComparator(QueryComparator.COMPARE_ALPHA));
+            TomahawkListItemComparator.ALPHA.sort(albums);
         }
         return albums;
     }
@@ -228,24 +266,12 @@ public class UserCollection extends Collection {
         if (userCollectionResolver == null) {
             return queries;
         }
-        for (MediaWithDate media : getAudioItems(artist.getName(), null, MODE_ARTIST)) {
-            Album album = Album.get(media.getAlbum(), artist);
-            if (!TextUtils.isEmpty(media.getArtworkURL())) {
-                album.setImage(Image.get(media.getArtworkURL(), false));
-            }
-            Track track = Track.get(media.getTitle(), album, artist);
-            track.setDuration(media.getLength());
-            track.setAlbumPos(media.getTrackNumber());
-            Query query = Query.get(media.getTitle(), media.getAlbum(), media.getArtist(), true);
-            Result result = Result.get(media.getLocation(), track, userCollectionResolver,
-                    query.getCacheKey());
-            result.setTrackScore(1f);
-            query.addTrackResult(result);
-            queries.add(query);
+        MediaCatalog catalog = mCatalog;
+        for (int track : catalog.getArtistTracks(artist.getName())) {
+            queries.add(getQuery(catalog, track, userCollectionResolver));
         }
         if (sorted) {
-            Collections
-                    .sort(queries, new TomahawkListItemComparator(QueryComparator.COMPARE_ALPHA));
+            TomahawkListItemComparator.ALPHA.sort(queries);
         }
         return queries;
     }
@@ -261,24 +287,65 @@ public class UserCollection extends Collection {
         if (userCollectionResolver == null) {
             return queries;
         }
-        for (MediaWithDate media : getAudioItems(album.getName(), null, MODE_ALBUM)) {
-            Artist artist = Artist.get(media.getArtist());
-            Track track = Track.get(media.getTitle(), album, artist);
-            track.setDuration(media.getLength());
-            track.setAlbumPos(media.getTrackNumber());
-            Query query = Query.get(media.getTitle(), media.getAlbum(), media.getArtist(), true);
-            Result result = Result.get(media.getLocation(), track, userCollectionResolver,
-                    query.getCacheKey());
-            result.setTrackScore(1f);
-            query.addTrackResult(result);
-            queries.add(query);
+        MediaCatalog catalog = mCatalog;
+        for (int track : catalog.getAlbumTracks(album.getName())) {
+            queries.add(getQuery(catalog, track, userCollectionResolver));
         }
         if (sorted) {
-            Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_ALBUMPOS));
+            QueryComparator.ALBUMPOS.sort(queries);
         }
         return queries;
     }
 
+    private static Album getAlbum(MediaCatalog catalog, int albumId, Artist artist) {
+        Album album = Album.get(catalog.getAlbumName(albumId), artist);
+        String artworkUrl = catalog.getAlbumArtworkUrl(albumId);
+        if (!TextUtils.isEmpty(artworkUrl)) {
+            album.setImage(Image.get(artworkUrl, false));
+        }
+        return album;
+    }
+
+    /**
+     * Build the {@link Query} for the track at the given index of the given {@link MediaCatalog}
+     * and add the local file as a {@link Result} to it.
+     */
+    private static Query getQuery(MediaCatalog catalog, int track, Resolver resolver) {
+        Query query = Query.get(catalog.getTitle(track),
+                catalog.getAlbumName(catalog.getAlbumId(track)),
+                catalog.getArtistName(catalog.getArtistId(track)), true);
+        Result result = getResult(catalog, track, resolver, query);
+        result.setTrackScore(1f);
+        query.addTrackResult(result);
+        return query;
+    }
+
+    private static Result getResult(MediaCatalog catalog, int track, Resolver resolver,
+            Query query) {
+        Artist artist = Artist.get(catalog.getArtistName(catalog.getArtistId(track)));
+        Album album = getAlbum(catalog, catalog.getAlbumId(track), artist);
+        Track t = Track.get(catalog.getTitle(track), album, artist);
+        t.setDuration(catalog.getLength(track));
+        t.setAlbumPos(catalog.getTrackNumber(track));
+        return Result.get(catalog.getLocation(track), t, resolver, query.getCacheKey());
+    }
+
+    /**
+     * Publish the given {@link MediaCatalog} and update the added timestamps of all artists and
+     * albums accordingly.
+     */
+    private void setCatalog(MediaCatalog catalog) {
+        for (int i = 0; i < catalog.getArtistCount(); i++) {
+            mArtistAddedTimeStamps.put(catalog.getArtistName(i).toLowerCase(),
+                    catalog.getArtistDateAdded(i));
+        }
+        for (int i = 0; i < catalog.getAlbumCount(); i++) {
+            mAlbumAddedTimeStamps.put(catalog.getAlbumName(i).toLowerCase(),
+                    catalog.getAlbumDateAdded(i));
+        }
+        mCatalog = catalog;
+    }
+
     public void loadMediaItems(boolean restart) {
         if (restart && isWorking()) {
             /* do a clean restart if a scan is ongoing */
@@ -309,88 +376,7 @@ public class UserCollection extends Collection {
     }
 
     public boolean hasAudioItems() {
-        mItemListLock.readLock().lock();
-        for (int i = 0; i < mItemList.size(); i++) {
-            MediaWithDate item = mItemList.get(i);
-            if (item.getType() == Media.TYPE_AUDIO) {
-                mItemListLock.readLock().unlock();
-                return true;
-            }
-        }
-        mItemListLock.readLock().unlock();
-        return false;
-    }
-
-    public ArrayList<MediaWithDate> getAudioItems() {
-        ArrayList<MediaWithDate> audioItems = new ArrayList<MediaWithDate>();
-        mItemListLock.readLock().lock();
-        for (int i = 0; i < mItemList.size(); i++) {
-            MediaWithDate item = mItemList.get(i);
-            if (item.getType() == Media.TYPE_AUDIO) {
-                audioItems.add(item);
-            }
-        }
-        mItemListLock.readLock().unlock();
-        return audioItems;
-    }
-
-    public ArrayList<MediaWithDate> getAudioItems(String name, String name2, int mode) {
-        ArrayList<MediaWithDate> audioItems = new ArrayList<MediaWithDate>();
-        mItemListLock.readLock().lock();
-        for (int i = 0; i < mItemList.size(); i++) {
-            MediaWithDate item = mItemList.get(i);
-            if (item.getType() == Media.TYPE_AUDIO) {
-
-                boolean valid = false;
-                switch (mode) {
-                    case MODE_ARTIST:
-                        valid = name.equalsIgnoreCase(item.getArtist()) && (name2 == null || name2
-                                .equalsIgnoreCase(item.getAlbum()));
-                        break;
-                    case MODE_ALBUM:
-                        valid = name.equalsIgnoreCase(item.getAlbum());
-                        break;
-                    case MODE_GENRE:
-                        valid = name.equalsIgnoreCase(item.getGenre()) && (name2 == null || name2
-                                .equals(item.getAlbum()));
-                        break;
-                    default:
-                        break;
-                }
-                if (valid) {
-                    audioItems.add(item);
-                }
-
-            }
-        }
-        mItemListLock.readLock().unlock();
-        return audioItems;
-    }
-
-    public ArrayList<MediaWithDate> getMediaItems() {
-        return mItemList;
-    }
-
-    public MediaWithDate getMediaItem(String location) {
-        mItemListLock.readLock().lock();
-        for (int i = 0; i < mItemList.size(); i++) {
-            MediaWithDate item = mItemList.get(i);
-            if (item.getLocation().equals(location)) {
-                mItemListLock.readLock().unlock();
-                return item;
-            }
-        }
-        mItemListLock.readLock().unlock();
-        return null;
-    }
-
-    public ArrayList<MediaWithDate> getMediaItems(List<String> pathList) {
-        ArrayList<MediaWithDate> items = new ArrayList<MediaWithDate>();
-        for (int i = 0; i < pathList.size(); i++) {
-            MediaWithDate item = getMediaItem(pathList.get(i));
-            items.add(item);
-        }
-        return items;
+        return mCatalog.size() > 0;
     }
 
     private class GetMediaItemsRunnable implements Runnable {
@@ -399,9 +385,45 @@ public class UserCollection extends Collection {
 
         private final HashSet<String> directoriesScanned = new HashSet<String>();
 
+        private int mTagReaderCount;
+
+        private int mLibVlcCount;
+
         public GetMediaItemsRunnable() {
         }
 
+        /**
+         * Create a new {@link MediaWithDate} for the given file. Tries to read the file's tags
+         * directly first and only falls back to a full LibVLC parse, if the format isn't supported
+         * by the {@link TagReader} or if the file doesn't contain any tags.
+         */
+        private MediaWithDate createMedia(File file, String fileURI) {
+            try {
+                TagReader.Tags tags = TagReader.read(file);
+                if (tags != null) {
+                    mTagReaderCount++;
+                    String artworkUrl = null;
+                    if (tags.mPicture != null) {
+                        try {
+                            artworkUrl = ArtworkCache.getUri(
+                                    ArtworkCache.getInstance().put(tags.mPicture));
+                        } catch (IOException e) {
+                            Log.e(TAG, "createMedia: " + e.getClass() + ": "
+                                    + e.getLocalizedMessage());
+                        }
+                    }
+                    return new MediaWithDate(fileURI, 0, tags.mLength, Media.TYPE_AUDIO, null,
+                            tags.mTitle, tags.mArtist, tags.mGenre, tags.mAlbum, 0, 0, artworkUrl,
+                            -1, -2, file.lastModified(), tags.mTrackNumber);
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "createMedia: " + e.getClass() + ": " + e.getLocalizedMessage());
+            }
+            mLibVlcCount++;
+            return new MediaWithDate(VLCMediaPlayer.getLibVlcInstance(), fileURI,
+                    file.lastModified());
+        }
+
         @Override
         public void run() {
             SharedPreferences preferences = PreferenceManager
@@ -433,15 +455,17 @@ public class UserCollection extends Collection {
             // list of all added files
             HashSet<String> addedLocations = new HashSet<String>();
 
-            // clear all old items
-            mItemListLock.writeLock().lock();
-            mItemList.clear();
-            mItemListLock.writeLock().unlock();
+            // list of all files, which haven't been in the database before
+            HashSet<String> newLocations = new HashSet<String>();
+
+            // the new catalog, which replaces the current one once the scan has finished
+            MediaCatalog.Builder catalogBuilder = new MediaCatalog.Builder();
 
             MediaItemFilter mediaFileFilter =
                     new MediaItemFilter(DatabaseHelper.getInstance().getMediaDirs(true));
 
             ArrayList<File> mediaToScan = new ArrayList<File>();
+            long startTime = System.currentTimeMillis();
             try {
                 // Count total files, and stack them
                 while (!directories.isEmpty()) {
@@ -503,21 +527,17 @@ public class UserCollection extends Collection {
                          * user select an subfolder as well
                          */
                         if (!addedLocations.contains(fileURI)) {
-                            mItemListLock.writeLock().lock();
                             // get existing media item from database
-                            mItemList.add(existingMedias.get(fileURI));
-                            mItemListLock.writeLock().unlock();
+                            catalogBuilder.add(existingMedias.get(fileURI));
                             addedLocations.add(fileURI);
                         }
                     } else {
-                        mItemListLock.writeLock().lock();
                         // create new media item
-                        MediaWithDate m = new MediaWithDate(VLCMediaPlayer.getLibVlcInstance(),
-                                fileURI, file.lastModified());
-                        mItemList.add(m);
+                        MediaWithDate m = createMedia(file, fileURI);
+                        catalogBuilder.add(m);
+                        newLocations.add(fileURI);
                         // Add this item to database
                         DatabaseHelper.getInstance().addMedia(m);
-                        mItemListLock.writeLock().unlock();
                     }
                     if (isStopping) {
                         Log.d(TAG, "Stopping scan");
@@ -525,6 +545,9 @@ public class UserCollection extends Collection {
                     }
                 }
             } finally {
+                MediaCatalog catalog = catalogBuilder.build();
+                setCatalog(catalog);
+
                 // remove old files & folders from database if storage is mounted
                 if (!isStopping && Environment.getExternalStorageState()
                         .equals(Environment.MEDIA_MOUNTED)) {
@@ -532,14 +555,22 @@ public class UserCollection extends Collection {
                         existingMedias.remove(fileURI);
                     }
                     DatabaseHelper.getInstance().removeMedias(existingMedias.keySet());
+                    mIndex.update(catalog, newLocations, existingMedias.keySet());
+                    // Delete the artwork, which isn't referenced by any media anymore
+                    ArtworkCache.getInstance()
+                            .retainAll(DatabaseHelper.getInstance().getPictureKeys());
                 }
 
+                Log.d(TAG, "Scanned " + (mTagReaderCount + mLibVlcCount) + " new files in "
+                        + (System.currentTimeMillis() - startTime) + "ms (" + mTagReaderCount
+                        + " via TagReader, " + mLibVlcCount + " via LibVLC)");
+
                 if (mRestart) {
                     Log.d(TAG, "Restarting scan");
                     mRestart = false;
                     restartHandler.sendEmptyMessageDelayed(1, 200);
                 }
-                EventBus.getDefault().post(new CollectionManager.UpdatedEvent());
+                CollectionManager.getInstance().postUpdatedEvent(null, null);
             }
         }
     }
@@ -28,20 +28,20 @@ import org.tomahawk.libtomahawk.infosystem.InfoRequestData;
 import org.tomahawk.libtomahawk.infosystem.InfoSystemUtils;
 import org.tomahawk.libtomahawk.infosystem.QueryParams;
 import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.models.ScriptResolverResultEntry;
+import org.tomahawk.libtomahawk.utils.ArtworkCache;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.activities.TomahawkMainActivity;
 import org.tomahawk.tomahawk_android.utils.MediaWithDate;
+import org.tomahawk.tomahawk_android.utils.ThreadManager;
+import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
 
 import android.content.ContentValues;
-import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
-import android.database.sqlite.SQLiteFullException;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.util.Log;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -50,6 +50,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import de.greenrobot.event.EventBus;
 
@@ -93,10 +95,26 @@ public class DatabaseHelper {
     // Database fields
     private SQLiteDatabase mDatabase;
 
+    /**
+     * Counts how often the stored entries of each playlist have been modified, so that windows of
+     * lazily loaded {@link Playlist}s aren't being read against a different state of the playlist
+     * than the one they were opened with
+     */
+    private final ConcurrentHashMap<String, AtomicInteger> mEntriesModCounts
+            = new ConcurrentHashMap<String, AtomicInteger>();
+
     private DatabaseHelper() {
         TomahawkSQLiteHelper dbHelper = new TomahawkSQLiteHelper(TomahawkApp.getContext());
         dbHelper.close();
         mDatabase = dbHelper.getWritableDatabase();
+        // Finish the migration of the media pictures, which might be left from onUpgrade
+        ThreadManager.getInstance().execute(
+                new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_DATABASEACTION) {
+                    @Override
+                    public void run() {
+                        TomahawkSQLiteHelper.convertLegacyPictures(mDatabase);
+                    }
+                });
     }
 
     public static DatabaseHelper getInstance() {
@@ -142,6 +160,7 @@ public class DatabaseHelper {
                     values.put(TomahawkSQLiteHelper.PLAYLISTS_COLUMN_HATCHETID,
                             playlist.getHatchetId());
 
+                    onEntriesModified(playlist.getId());
                     mDatabase.beginTransaction();
                     mDatabase.insertWithOnConflict(TomahawkSQLiteHelper.TABLE_PLAYLISTS, null,
                             values,
@@ -196,6 +215,134 @@ public class DatabaseHelper {
         }).start();
     }
 
+    /**
+     * Store the given {@link Playlist}, which has been fetched from Hatchet, by only applying the
+     * differences to the already stored entries. Entries, which are still at the same index, are
+     * left untouched, moved entries only get their index updated and only new entries are being
+     * inserted.
+     *
+     * @param playlist the given {@link Playlist}
+     */
+    public void syncPlaylist(final Playlist playlist) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (DatabaseHelper.this) {
+                    long startTime = System.currentTimeMillis();
+                    // Map the stored entries by their entry id and remember their row id and index
+                    HashMap<String, long[]> storedEntries = new HashMap<String, long[]>();
+                    ArrayList<Long> obsoleteRowIds = new ArrayList<Long>();
+                    String[] columns = new String[]{TomahawkSQLiteHelper.TRACKS_COLUMN_ID,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYID,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYINDEX,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME};
+                    Cursor cursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_TRACKS, columns,
+                            TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + " = ?",
+                            new String[]{playlist.getId()}, null, null, null);
+                    cursor.moveToFirst();
+                    while (!cursor.isAfterLast()) {
+                        String key = cursor.getString(1) + "\t" + cursor.getString(3) + "\t"
+                                + cursor.getString(4) + "\t" + cursor.getString(5);
+                        if (cursor.getString(1) == null || storedEntries.containsKey(key)) {
+                            obsoleteRowIds.add(cursor.getLong(0));
+                        } else {
+                            storedEntries.put(key, new long[]{cursor.getLong(0), cursor.getInt(2)});
+                        }
+                        cursor.moveToNext();
+                    }
+                    cursor.close();
+
+                    int inserted = 0;
+                    int moved = 0;
+                    ContentValues values = new ContentValues();
+                    onEntriesModified(playlist.getId());
+                    mDatabase.beginTransaction();
+                    try {
+                        values.put(TomahawkSQLiteHelper.PLAYLISTS_COLUMN_NAME, playlist.getName());
+                        values.put(TomahawkSQLiteHelper.PLAYLISTS_COLUMN_CURRENTREVISION,
+                                playlist.getCurrentRevision());
+                        values.put(TomahawkSQLiteHelper.PLAYLISTS_COLUMN_HATCHETID,
+                                playlist.getHatchetId());
+                        if (mDatabase.update(TomahawkSQLiteHelper.TABLE_PLAYLISTS, values,
+                                TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID + " = ?",
+                                new String[]{playlist.getId()}) == 0) {
+                            values.put(TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID, playlist.getId());
+                            mDatabase.insert(TomahawkSQLiteHelper.TABLE_PLAYLISTS, null, values);
+                        }
+                        ArrayList<PlaylistEntry> entries = playlist.getEntries();
+                        for (int i = 0; i < entries.size(); i++) {
+                            PlaylistEntry entry = entries.get(i);
+                            Track track = entry.getQuery().getBasicTrack();
+                            String key = entry.getId() + "\t" + track.getName() + "\t"
+                                    + track.getArtist().getName() + "\t"
+                                    + track.getAlbum().getName();
+                            long[] storedEntry = storedEntries.remove(key);
+                            if (storedEntry != null) {
+                                if (storedEntry[1] != i) {
+                                    values.clear();
+                                    values.put(
+                                            TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYINDEX,
+                                            i);
+                                    mDatabase.update(TomahawkSQLiteHelper.TABLE_TRACKS, values,
+                                            TomahawkSQLiteHelper.TRACKS_COLUMN_ID + " = ?",
+                                            new String[]{String.valueOf(storedEntry[0])});
+                                    moved++;
+                                }
+                                continue;
+                            }
+                            values.clear();
+                            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID,
+                                    playlist.getId());
+                            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME,
+                                    track.getName());
+                            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME,
+                                    track.getArtist().getName());
+                            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME,
+                                    track.getAlbum().getName());
+                            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT,
+                                    entry.getQuery().getTopTrackResultKey());
+                            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYINDEX, i);
+                            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET,
+                                    entry.getQuery().isFetchedViaHatchet() ? TRUE : FALSE);
+                            values.put(TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYID,
+                                    entry.getId());
+                            mDatabase.insert(TomahawkSQLiteHelper.TABLE_TRACKS, null, values);
+                            inserted++;
+                        }
+                        for (long[] storedEntry : storedEntries.values()) {
+                            obsoleteRowIds.add(storedEntry[0]);
+                        }
+                        for (Long rowId : obsoleteRowIds) {
+                            mDatabase.delete(TomahawkSQLiteHelper.TABLE_TRACKS,
+                                    TomahawkSQLiteHelper.TRACKS_COLUMN_ID + " = ?",
+                                    new String[]{String.valueOf(rowId)});
+                        }
+                        if (inserted > 0 || moved > 0 || !obsoleteRowIds.isEmpty()) {
+                            // Clear the top artists, so that they're computed from the changed
+                            // entries the next time the playlist is being read
+                            values.clear();
+                            values.put(TomahawkSQLiteHelper.PLAYLISTS_COLUMN_TOPARTISTS, "");
+                            mDatabase.update(TomahawkSQLiteHelper.TABLE_PLAYLISTS, values,
+                                    TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID + " = ?",
+                                    new String[]{playlist.getId()});
+                        }
+                        mDatabase.setTransactionSuccessful();
+                    } finally {
+                        mDatabase.endTransaction();
+                    }
+                    Log.d(TAG, "syncPlaylist - \"" + playlist.getName() + "\": " + inserted
+                            + " inserted, " + moved + " moved, " + obsoleteRowIds.size()
+                            + " deleted in " + (System.currentTimeMillis() - startTime) + "ms");
+                    PlaylistsUpdatedEvent event = new PlaylistsUpdatedEvent();
+                    event.mPlaylistId = playlist.getId();
+                    EventBus.getDefault().post(event);
+                }
+            }
+        }).start();
+    }
+
     /**
      * Rename the given {@link Playlist}
      *
@@ -208,10 +355,8 @@ public class DatabaseHelper {
             public void run() {
                 synchronized (this) {
                     if (playlist != null) {
-                        String topArtistsString = "";
-                        for (String s : playlist.getTopArtistNames()) {
-                            topArtistsString += s + "\t\t";
-                        }
+                        String topArtistsString =
+                                joinTopArtistNames(playlist.getTopArtistNames());
 
                         ContentValues values = new ContentValues();
                         values.put(TomahawkSQLiteHelper.PLAYLISTS_COLUMN_NAME, newName);
@@ -251,10 +396,8 @@ public class DatabaseHelper {
             public void run() {
                 synchronized (this) {
                     if (playlist != null) {
-                        String topArtistsString = "";
-                        for (String s : playlist.getTopArtistNames()) {
-                            topArtistsString += s + "\t\t";
-                        }
+                        String topArtistsString =
+                                joinTopArtistNames(playlist.getTopArtistNames());
 
                         ContentValues values = new ContentValues();
                         values.put(TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID, playlist.getId());
@@ -291,10 +434,7 @@ public class DatabaseHelper {
     public void updatePlaylistHatchetId(final String playlistId, final String hatchetId) {
         Playlist playlist = getEmptyPlaylist(playlistId);
         if (playlist != null) {
-            String topArtistsString = "";
-            for (String s : playlist.getTopArtistNames()) {
-                topArtistsString += s + "\t\t";
-            }
+            String topArtistsString = joinTopArtistNames(playlist.getTopArtistNames());
 
             ContentValues values = new ContentValues();
             values.put(TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID, playlist.getId());
@@ -407,9 +547,8 @@ public class DatabaseHelper {
             if (rawTopArtistsString != null && rawTopArtistsString.length() > 0) {
                 playlist.setTopArtistNames(rawTopArtistsString.split("\t\t"));
             } else {
-                playlist = getPlaylist(playlistId);
-                playlist.updateTopArtistNames();
-                DatabaseHelper.getInstance().updatePlaylist(playlist);
+                playlist.setTopArtistNames(getPlaylistTopArtistNames(playlistId));
+                updatePlaylist(playlist);
             }
             playlistsCursor.close();
             playlist.setCount(getPlaylistTrackCount(playlistId));
@@ -433,11 +572,15 @@ public class DatabaseHelper {
     }
 
     /**
+     * Get the stored {@link org.tomahawk.libtomahawk.collection.Playlist} with playlistId as its
+     * id. Only the playlist's header is being read here. Its entries are loaded lazily in windows
+     * of {@link Playlist#WINDOW_SIZE} once they are being accessed.
+     *
      * @param playlistId the id by which to get the correct {@link org.tomahawk.libtomahawk.collection.Playlist}
      * @return the stored {@link org.tomahawk.libtomahawk.collection.Playlist} with playlistId as
      * its id
      */
-    public Playlist getPlaylist(String playlistId, boolean reverseEntries) {
+    public Playlist getPlaylist(final String playlistId, final boolean reverseEntries) {
         String[] columns = new String[]{TomahawkSQLiteHelper.PLAYLISTS_COLUMN_NAME,
                 TomahawkSQLiteHelper.PLAYLISTS_COLUMN_CURRENTREVISION,
                 TomahawkSQLiteHelper.PLAYLISTS_COLUMN_HATCHETID,
@@ -447,82 +590,143 @@ public class DatabaseHelper {
                 columns, TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID + " = ?",
                 new String[]{playlistId}, null, null, null);
         if (playlistsCursor.moveToFirst()) {
-            columns = new String[]{TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME,
-                    TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME,
-                    TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME,
-                    TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT,
-                    TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET,
-                    TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYID};
-            Cursor tracksCursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_TRACKS, columns,
-                    TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + " = ?",
-                    new String[]{playlistId}, null, null,
-                    TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYINDEX + (reverseEntries
-                            ? " DESC" : " ASC"));
-            ArrayList<PlaylistEntry> queries = new ArrayList<PlaylistEntry>();
-            tracksCursor.moveToFirst();
-            while (!tracksCursor.isAfterLast()) {
-                String trackName = tracksCursor.getString(0);
-                String artistName = tracksCursor.getString(1);
-                String albumName = tracksCursor.getString(2);
-                String resultHint = tracksCursor.getString(3);
-                Query query = Query.get(trackName, albumName, artistName, resultHint, false,
-                        tracksCursor.getInt(4) == TRUE);
-                String entryId;
-                if (tracksCursor.getString(5) != null) {
-                    entryId = tracksCursor.getString(5);
-                } else {
-                    entryId = TomahawkMainActivity.getLifetimeUniqueStringId();
-                }
-                PlaylistEntry entry = PlaylistEntry.get(playlistId, query, entryId);
-                queries.add(entry);
-                tracksCursor.moveToNext();
-            }
             Playlist playlist = Playlist.fromEntriesList(playlistsCursor.getString(0),
-                    playlistsCursor.getString(1), queries);
+                    playlistsCursor.getString(1), new ArrayList<PlaylistEntry>());
             playlist.setId(playlistId);
             playlist.setHatchetId(playlistsCursor.getString(2));
+            // Read the mod count before the track count, so that a modification in between
+            // makes the loader discard its windows instead of reading them shifted
+            final AtomicInteger entriesModCount = getEntriesModCount(playlistId);
+            final int modCount = entriesModCount.get();
+            playlist.setEntryLoader(new Playlist.EntryLoader() {
+                @Override
+                public List<PlaylistEntry> loadEntries(int offset, int limit) {
+                    List<PlaylistEntry> entries =
+                            getPlaylistEntries(playlistId, reverseEntries, offset, limit);
+                    return entriesModCount.get() == modCount ? entries : null;
+                }
+            }, getPlaylistTrackCount(playlistId));
             playlist.setFilled(true);
-            tracksCursor.close();
             String rawTopArtistsString = playlistsCursor.getString(3);
-            if (rawTopArtistsString != null && rawTopArtistsString.length() > 0) {
-                playlist.setTopArtistNames(rawTopArtistsString.split("\t\t"));
-            } else {
-                playlist.setTopArtistNames(new String[]{});
-            }
-            playlist.updateTopArtistNames();
-            DatabaseHelper.getInstance().updatePlaylist(playlist);
             playlistsCursor.close();
-            playlist.setCount(getPlaylistTrackCount(playlistId));
+            // Only write the playlist back to the database, if its top artists have changed
+            String[] topArtistNames = getPlaylistTopArtistNames(playlistId);
+            playlist.setTopArtistNames(topArtistNames);
+            if (rawTopArtistsString == null
+                    || !rawTopArtistsString.equals(joinTopArtistNames(topArtistNames))) {
+                updatePlaylist(playlist);
+            }
             return playlist;
         }
         playlistsCursor.close();
         return null;
     }
 
+    /**
+     * @return the counter of modifications to the stored entries of the playlist with the given id
+     */
+    private AtomicInteger getEntriesModCount(String playlistId) {
+        AtomicInteger modCount = mEntriesModCounts.get(playlistId);
+        if (modCount == null) {
+            modCount = new AtomicInteger();
+            AtomicInteger existing = mEntriesModCounts.putIfAbsent(playlistId, modCount);
+            if (existing != null) {
+                modCount = existing;
+            }
+        }
+        return modCount;
+    }
+
+    /**
+     * Has to be called before the stored entries of the playlist with the given id are being
+     * modified. Windows which are being loaded concurrently are then discarded by their {@link
+     * Playlist.EntryLoader}, since they might already reflect the modification.
+     */
+    private void onEntriesModified(String playlistId) {
+        getEntriesModCount(playlistId).incrementAndGet();
+    }
+
+    /**
+     * Load a window of the {@link PlaylistEntry}s stored for the playlist with the given id
+     *
+     * @param playlistId     the id of the {@link org.tomahawk.libtomahawk.collection.Playlist}
+     * @param reverseEntries whether or not the entries are being read in reverse order
+     * @param offset         the position of the first entry to load
+     * @param limit          the maximum amount of entries to load
+     * @return the loaded {@link PlaylistEntry}s
+     */
+    public List<PlaylistEntry> getPlaylistEntries(String playlistId, boolean reverseEntries,
+            int offset, int limit) {
+        String[] columns = new String[]{TomahawkSQLiteHelper.TRACKS_COLUMN_TRACKNAME,
+                TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME,
+                TomahawkSQLiteHelper.TRACKS_COLUMN_ALBUMNAME,
+                TomahawkSQLiteHelper.TRACKS_COLUMN_RESULTHINT,
+                TomahawkSQLiteHelper.TRACKS_COLUMN_ISFETCHEDVIAHATCHET,
+                TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYID};
+        Cursor tracksCursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_TRACKS, columns,
+                TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + " = ?",
+                new String[]{playlistId}, null, null,
+                TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTENTRYINDEX + (reverseEntries
+                        ? " DESC" : " ASC"), offset + "," + limit);
+        ArrayList<PlaylistEntry> entries = new ArrayList<PlaylistEntry>(tracksCursor.getCount());
+        tracksCursor.moveToFirst();
+        while (!tracksCursor.isAfterLast()) {
+            String trackName = tracksCursor.getString(0);
+            String artistName = tracksCursor.getString(1);
+            String albumName = tracksCursor.getString(2);
+            String resultHint = tracksCursor.getString(3);
+            Query query = Query.get(trackName, albumName, artistName, resultHint, false,
+                    tracksCursor.getInt(4) == TRUE);
+            String entryId;
+            if (tracksCursor.getString(5) != null) {
+                entryId = tracksCursor.getString(5);
+            } else {
+                entryId = TomahawkMainActivity.getLifetimeUniqueStringId();
+            }
+            entries.add(PlaylistEntry.get(playlistId, query, entryId));
+            tracksCursor.moveToNext();
+        }
+        tracksCursor.close();
+        return entries;
+    }
+
     /**
      * @param playlistId the id by which to get the correct {@link org.tomahawk.libtomahawk.collection.Playlist}
-     * @return the stored {@link org.tomahawk.libtomahawk.collection.Playlist} with playlistId as
-     * its id
+     * @return the names of the artists that appear most often in the playlist with the given id,
+     * most frequent first
      */
-    public int getPlaylistTrackCount(String playlistId) {
-        int count = 0;
-        String[] columns = new String[]{TomahawkSQLiteHelper.PLAYLISTS_COLUMN_NAME,
-                TomahawkSQLiteHelper.PLAYLISTS_COLUMN_CURRENTREVISION,
-                TomahawkSQLiteHelper.PLAYLISTS_COLUMN_CURRENTTRACKINDEX};
+    public String[] getPlaylistTopArtistNames(String playlistId) {
+        Cursor cursor = mDatabase.rawQuery("SELECT `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME + "` FROM `"
+                + TomahawkSQLiteHelper.TABLE_TRACKS + "` WHERE `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + "` = ? GROUP BY `"
+                + TomahawkSQLiteHelper.TRACKS_COLUMN_ARTISTNAME + "` ORDER BY COUNT(*) DESC",
+                new String[]{playlistId});
+        String[] topArtistNames = new String[cursor.getCount()];
+        cursor.moveToFirst();
+        while (!cursor.isAfterLast()) {
+            topArtistNames[cursor.getPosition()] = cursor.getString(0);
+            cursor.moveToNext();
+        }
+        cursor.close();
+        return topArtistNames;
+    }
 
-        Cursor playlistsCursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_PLAYLISTS,
-                columns, TomahawkSQLiteHelper.PLAYLISTS_COLUMN_ID + " = ?",
-                new String[]{playlistId}, null, null, null);
-        if (playlistsCursor.moveToFirst()) {
-            columns = new String[]{TomahawkSQLiteHelper.TRACKS_COLUMN_ID};
-            Cursor tracksCursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_TRACKS, columns,
-                    TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + " = ?",
-                    new String[]{playlistId}, null, null, null);
-            count = tracksCursor.getCount();
-            tracksCursor.close();
+    private static String joinTopArtistNames(String[] topArtistNames) {
+        String topArtistsString = "";
+        for (String s : topArtistNames) {
+            topArtistsString += s + "\t\t";
         }
-        playlistsCursor.close();
-        return count;
+        return topArtistsString;
+    }
+
+    /**
+     * @param playlistId the id by which to get the correct {@link org.tomahawk.libtomahawk.collection.Playlist}
+     * @return the amount of entries stored for the playlist with the given id
+     */
+    public int getPlaylistTrackCount(String playlistId) {
+        return (int) DatabaseUtils.queryNumEntries(mDatabase, TomahawkSQLiteHelper.TABLE_TRACKS,
+                TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + " = ?", new String[]{playlistId});
     }
 
     /**
@@ -536,7 +740,7 @@ public class DatabaseHelper {
             @Override
             public void run() {
                 synchronized (this) {
-
+                    onEntriesModified(playlistId);
                     mDatabase.beginTransaction();
                     mDatabase.delete(TomahawkSQLiteHelper.TABLE_TRACKS,
                             TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + " = ?",
@@ -563,7 +767,7 @@ public class DatabaseHelper {
             @Override
             public void run() {
                 synchronized (this) {
-
+                    onEntriesModified(playlistId);
                     mDatabase.beginTransaction();
                     mDatabase.delete(TomahawkSQLiteHelper.TABLE_TRACKS,
                             TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + " = ? AND "
@@ -590,6 +794,7 @@ public class DatabaseHelper {
                 synchronized (this) {
                     int trackCount = getPlaylistTrackCount(playlistId);
 
+                    onEntriesModified(playlistId);
                     mDatabase.beginTransaction();
                     // Store every single Track in the database and store the relationship
                     // by storing the playlists's id with it
@@ -639,6 +844,7 @@ public class DatabaseHelper {
                 synchronized (this) {
                     int trackCount = getPlaylistTrackCount(playlistId);
 
+                    onEntriesModified(playlistId);
                     mDatabase.beginTransaction();
                     // Store every single Track in the database and store the relationship
                     // by storing the playlists's id with it
@@ -758,7 +964,7 @@ public class DatabaseHelper {
             queries.add(query);
             addQueriesToPlaylist(LOVEDITEMS_PLAYLIST_ID, queries);
         } else {
-
+            onEntriesModified(LOVEDITEMS_PLAYLIST_ID);
             mDatabase.beginTransaction();
             mDatabase.delete(TomahawkSQLiteHelper.TABLE_TRACKS,
                     TomahawkSQLiteHelper.TRACKS_COLUMN_PLAYLISTID + " = ? AND "
@@ -912,22 +1118,239 @@ public class DatabaseHelper {
         return starredAlbums;
     }
 
-    public Cursor getSearchHistoryCursor(String entry) {
+    /**
+     * @return all {@link Artist}s in the mirror of the collection with the given id
+     */
+    public ArrayList<Artist> getCollectionArtists(String collectionId) {
+        ArrayList<Artist> artists = new ArrayList<Artist>();
+        Cursor cursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_COLLECTION_ARTISTS,
+                new String[]{TomahawkSQLiteHelper.COLLECTION_ARTISTS_COLUMN_ARTISTNAME},
+                TomahawkSQLiteHelper.COLLECTION_ARTISTS_COLUMN_COLLECTIONID + " = ?",
+                new String[]{collectionId}, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                artists.add(Artist.get(cursor.getString(0)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return artists;
+    }
 
-        return mDatabase.query(TomahawkSQLiteHelper.TABLE_SEARCHHISTORY, null,
-                TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY + " LIKE ?",
-                new String[]{entry + "%"}, null, null,
-                TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ID + " DESC");
+    /**
+     * @return all {@link Album}s in the mirror of the collection with the given id
+     */
+    public ArrayList<Album> getCollectionAlbums(String collectionId) {
+        ArrayList<Album> albums = new ArrayList<Album>();
+        Cursor cursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_COLLECTION_ALBUMS,
+                new String[]{TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_ARTISTNAME,
+                        TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_ALBUMNAME},
+                TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_COLLECTIONID + " = ?",
+                new String[]{collectionId}, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                albums.add(Album.get(cursor.getString(1), Artist.get(cursor.getString(0))));
+            }
+        } finally {
+            cursor.close();
+        }
+        return albums;
     }
 
-    public void addEntryToSearchHistory(String entry) {
-        ContentValues values = new ContentValues();
+    /**
+     * @return the tracks of the given {@link Album} in the mirror of the collection with the given
+     * id, in the order they have been stored in. An empty list if the {@link Album}'s tracks
+     * haven't been stored yet.
+     */
+    public ArrayList<ScriptResolverResultEntry> getCollectionAlbumTracks(String collectionId,
+            Album album) {
+        ArrayList<ScriptResolverResultEntry> entries = new ArrayList<ScriptResolverResultEntry>();
+        String[] columns = new String[]{TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ARTISTNAME,
+                TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_TRACKNAME,
+                TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ALBUMPOS,
+                TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_DISCNUMBER,
+                TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_YEAR,
+                TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_DURATION,
+                TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_URL,
+                TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_BITRATE,
+                TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_SIZE,
+                TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_PURCHASEURL,
+                TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_LINKURL};
+        Cursor cursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_COLLECTION_TRACKS, columns,
+                TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_COLLECTIONID + " = ? AND "
+                        + TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ALBUMARTISTNAME
+                        + " = ? AND " + TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ALBUMNAME
+                        + " = ?",
+                new String[]{collectionId, album.getArtist().getName(), album.getName()},
+                null, null, TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ID);
+        try {
+            while (cursor.moveToNext()) {
+                ScriptResolverResultEntry entry = new ScriptResolverResultEntry();
+                entry.artist = cursor.getString(0);
+                entry.album = album.getName();
+                entry.track = cursor.getString(1);
+                entry.albumpos = cursor.getInt(2);
+                entry.discnumber = cursor.getInt(3);
+                entry.year = cursor.getString(4);
+                entry.duration = cursor.getInt(5);
+                entry.url = cursor.getString(6);
+                entry.bitrate = cursor.getInt(7);
+                entry.size = cursor.getInt(8);
+                entry.purchaseUrl = cursor.getString(9);
+                entry.linkUrl = cursor.getString(10);
+                entries.add(entry);
+            }
+        } finally {
+            cursor.close();
+        }
+        return entries;
+    }
 
+    /**
+     * Replace all artists in the mirror of the collection with the given id. Albums and tracks of
+     * artists, which are no longer part of the collection, are being removed as well.
+     */
+    public synchronized void storeCollectionArtists(String collectionId, List<Artist> artists) {
         mDatabase.beginTransaction();
-        values.put(TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY, entry.trim());
-        mDatabase.insert(TomahawkSQLiteHelper.TABLE_SEARCHHISTORY, null, values);
-        mDatabase.setTransactionSuccessful();
-        mDatabase.endTransaction();
+        try {
+            mDatabase.delete(TomahawkSQLiteHelper.TABLE_COLLECTION_ARTISTS,
+                    TomahawkSQLiteHelper.COLLECTION_ARTISTS_COLUMN_COLLECTIONID + " = ?",
+                    new String[]{collectionId});
+            ContentValues values = new ContentValues();
+            for (Artist artist : artists) {
+                values.clear();
+                values.put(TomahawkSQLiteHelper.COLLECTION_ARTISTS_COLUMN_COLLECTIONID,
+                        collectionId);
+                values.put(TomahawkSQLiteHelper.COLLECTION_ARTISTS_COLUMN_ARTISTNAME,
+                        artist.getName());
+                mDatabase.insertWithOnConflict(TomahawkSQLiteHelper.TABLE_COLLECTION_ARTISTS,
+                        null, values, SQLiteDatabase.CONFLICT_IGNORE);
+            }
+            String artistNames = "SELECT "
+                    + TomahawkSQLiteHelper.COLLECTION_ARTISTS_COLUMN_ARTISTNAME + " FROM "
+                    + TomahawkSQLiteHelper.TABLE_COLLECTION_ARTISTS + " WHERE "
+                    + TomahawkSQLiteHelper.COLLECTION_ARTISTS_COLUMN_COLLECTIONID + " = ?";
+            mDatabase.delete(TomahawkSQLiteHelper.TABLE_COLLECTION_ALBUMS,
+                    TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_COLLECTIONID + " = ? AND "
+                            + TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_ARTISTNAME
+                            + " NOT IN (" + artistNames + ")",
+                    new String[]{collectionId, collectionId});
+            mDatabase.delete(TomahawkSQLiteHelper.TABLE_COLLECTION_TRACKS,
+                    TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_COLLECTIONID + " = ? AND "
+                            + TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ALBUMARTISTNAME
+                            + " NOT IN (" + artistNames + ")",
+                    new String[]{collectionId, collectionId});
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Replace all albums of the given {@link Artist} in the mirror of the collection with the
+     * given id. Tracks of albums, which are no longer part of the collection, are being removed as
+     * well.
+     */
+    public synchronized void storeCollectionAlbums(String collectionId, Artist artist,
+            List<Album> albums) {
+        mDatabase.beginTransaction();
+        try {
+            mDatabase.delete(TomahawkSQLiteHelper.TABLE_COLLECTION_ALBUMS,
+                    TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_COLLECTIONID + " = ? AND "
+                            + TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_ARTISTNAME + " = ?",
+                    new String[]{collectionId, artist.getName()});
+            ContentValues values = new ContentValues();
+            for (Album album : albums) {
+                values.clear();
+                values.put(TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_COLLECTIONID,
+                        collectionId);
+                values.put(TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_ARTISTNAME,
+                        artist.getName());
+                values.put(TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_ALBUMNAME,
+                        album.getName());
+                mDatabase.insertWithOnConflict(TomahawkSQLiteHelper.TABLE_COLLECTION_ALBUMS,
+                        null, values, SQLiteDatabase.CONFLICT_IGNORE);
+            }
+            mDatabase.delete(TomahawkSQLiteHelper.TABLE_COLLECTION_TRACKS,
+                    TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_COLLECTIONID + " = ? AND "
+                            + TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ALBUMARTISTNAME
+                            + " = ? AND " + TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ALBUMNAME
+                            + " NOT IN (SELECT "
+                            + TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_ALBUMNAME + " FROM "
+                            + TomahawkSQLiteHelper.TABLE_COLLECTION_ALBUMS + " WHERE "
+                            + TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_COLLECTIONID
+                            + " = ? AND " + TomahawkSQLiteHelper.COLLECTION_ALBUMS_COLUMN_ARTISTNAME
+                            + " = ?)",
+                    new String[]{collectionId, artist.getName(), collectionId, artist.getName()});
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * Replace all tracks of the given {@link Album} in the mirror of the collection with the given
+     * id.
+     */
+    public synchronized void storeCollectionAlbumTracks(String collectionId, Album album,
+            List<ScriptResolverResultEntry> entries) {
+        mDatabase.beginTransaction();
+        try {
+            mDatabase.delete(TomahawkSQLiteHelper.TABLE_COLLECTION_TRACKS,
+                    TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_COLLECTIONID + " = ? AND "
+                            + TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ALBUMARTISTNAME
+                            + " = ? AND " + TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ALBUMNAME
+                            + " = ?",
+                    new String[]{collectionId, album.getArtist().getName(), album.getName()});
+            ContentValues values = new ContentValues();
+            for (ScriptResolverResultEntry entry : entries) {
+                values.clear();
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_COLLECTIONID,
+                        collectionId);
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ALBUMARTISTNAME,
+                        album.getArtist().getName());
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ALBUMNAME,
+                        album.getName());
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ARTISTNAME,
+                        entry.artist);
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_TRACKNAME, entry.track);
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_ALBUMPOS,
+                        entry.albumpos);
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_DISCNUMBER,
+                        entry.discnumber);
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_YEAR, entry.year);
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_DURATION,
+                        entry.duration);
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_URL, entry.url);
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_BITRATE, entry.bitrate);
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_SIZE, entry.size);
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_PURCHASEURL,
+                        entry.purchaseUrl);
+                values.put(TomahawkSQLiteHelper.COLLECTION_TRACKS_COLUMN_LINKURL, entry.linkUrl);
+                mDatabase.insert(TomahawkSQLiteHelper.TABLE_COLLECTION_TRACKS, null, values);
+            }
+            mDatabase.setTransactionSuccessful();
+        } finally {
+            mDatabase.endTransaction();
+        }
+    }
+
+    /**
+     * @return all entries of the search history table, the oldest entry first. Only used to
+     * import the search history into the {@link SearchSuggestionIndex}.
+     */
+    public List<String> getSearchHistoryEntries() {
+        List<String> entries = new ArrayList<String>();
+        Cursor cursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_SEARCHHISTORY,
+                new String[]{TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY}, null, null, null,
+                null, TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ID + " ASC");
+        cursor.moveToFirst();
+        while (!cursor.isAfterLast()) {
+            entries.add(cursor.getString(0));
+            cursor.moveToNext();
+        }
+        cursor.close();
+        return entries;
     }
 
     /**
@@ -938,8 +1361,9 @@ public class DatabaseHelper {
      *                  determines where and how to send the data to the API. Contains also the
      *                  JSON-String which contains the data to send.
      * @param timeStamp a timestamp indicating when this operation has been added to the oplog
+     * @return the id of the logged operation
      */
-    public void addOpToInfoSystemOpLog(InfoRequestData opToLog, int timeStamp) {
+    public int addOpToInfoSystemOpLog(InfoRequestData opToLog, int timeStamp) {
         ContentValues values = new ContentValues();
 
         mDatabase.beginTransaction();
@@ -961,9 +1385,10 @@ public class DatabaseHelper {
             }
             values.put(TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_PARAMS, paramsJsonString);
         }
-        mDatabase.insert(TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOG, null, values);
+        long id = mDatabase.insert(TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOG, null, values);
         mDatabase.setTransactionSuccessful();
         mDatabase.endTransaction();
+        return (int) id;
     }
 
     /**
@@ -1035,20 +1460,8 @@ public class DatabaseHelper {
     }
 
     /**
-     * @return the count of all logged ops that should be delivered to the API
-     */
-    public int getLoggedOpsCount() {
-        String[] columns = new String[]{TomahawkSQLiteHelper.INFOSYSTEMOPLOG_COLUMN_ID};
-
-        Cursor opLogCursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_INFOSYSTEMOPLOG,
-                columns, null, null, null, null, null);
-        int count = opLogCursor.getCount();
-        opLogCursor.close();
-        return count;
-    }
-
-    /**
-     * Add a new media to the database. The picture can only added by update.
+     * Add a new media to the database. If its artwork url points to the {@link ArtworkCache},
+     * the picture's key is being stored as well, so that the picture is being kept.
      *
      * @param media which you like to add to the database
      */
@@ -1066,6 +1479,8 @@ public class DatabaseHelper {
         values.put(TomahawkSQLiteHelper.MEDIA_WIDTH, media.getWidth());
         values.put(TomahawkSQLiteHelper.MEDIA_HEIGHT, media.getHeight());
         values.put(TomahawkSQLiteHelper.MEDIA_ARTWORKURL, media.getArtworkURL());
+        values.put(TomahawkSQLiteHelper.MEDIA_PICTURE_KEY,
+                ArtworkCache.getKey(media.getArtworkURL()));
         values.put(TomahawkSQLiteHelper.MEDIA_AUDIOTRACK, media.getAudioTrack());
         values.put(TomahawkSQLiteHelper.MEDIA_SPUTRACK, media.getSpuTrack());
         values.put(TomahawkSQLiteHelper.MEDIA_DATEADDED, media.getDateAdded());
@@ -1238,32 +1653,20 @@ public class DatabaseHelper {
         return media;
     }
 
-    public synchronized Bitmap getPicture(Context context, String location) {
-        /* Used for the lazy loading */
-        Cursor cursor;
-        Bitmap picture = null;
-        byte[] blob;
-
-        cursor = mDatabase.query(
-                TomahawkSQLiteHelper.TABLE_MEDIA,
-                new String[]{TomahawkSQLiteHelper.MEDIA_PICTURE},
-                TomahawkSQLiteHelper.MEDIA_LOCATION + "=?",
-                new String[]{location},
-                null, null, null);
-        if (cursor.moveToFirst()) {
-            blob = cursor.getBlob(0);
-            if (blob != null && blob.length > 1 && blob.length < 500000) {
-                try {
-                    picture = BitmapFactory.decodeByteArray(blob, 0, blob.length);
-                } catch (OutOfMemoryError e) {
-                    picture = null;
-                } finally {
-                    blob = null;
-                }
-            }
+    /**
+     * @return the keys of all pictures that are being referenced by the media table
+     */
+    public Set<String> getPictureKeys() {
+        Set<String> keys = new HashSet<String>();
+        Cursor cursor = mDatabase.rawQuery("SELECT DISTINCT "
+                + TomahawkSQLiteHelper.MEDIA_PICTURE_KEY + " FROM "
+                + TomahawkSQLiteHelper.TABLE_MEDIA + " WHERE "
+                + TomahawkSQLiteHelper.MEDIA_PICTURE_KEY + " IS NOT NULL", null);
+        while (cursor.moveToNext()) {
+            keys.add(cursor.getString(0));
         }
         cursor.close();
-        return picture;
+        return keys;
     }
 
     public synchronized void removeMedia(String location) {
@@ -1298,14 +1701,9 @@ public class DatabaseHelper {
         ContentValues values = new ContentValues();
         switch (col) {
             case MEDIA_PICTURE:
-                if (object != null) {
-                    Bitmap picture = (Bitmap) object;
-                    ByteArrayOutputStream out = new ByteArrayOutputStream();
-                    picture.compress(Bitmap.CompressFormat.JPEG, 90, out);
-                    values.put(TomahawkSQLiteHelper.MEDIA_PICTURE, out.toByteArray());
-                } else {
-                    values.put(TomahawkSQLiteHelper.MEDIA_PICTURE, new byte[1]);
-                }
+                // Either the picture's key in the ArtworkCache or null, if there is no picture
+                values.put(TomahawkSQLiteHelper.MEDIA_PICTURE_KEY,
+                        object != null ? (String) object : "");
                 break;
             case MEDIA_TIME:
                 if (object != null) {
@@ -1337,19 +1735,6 @@ public class DatabaseHelper {
         mDatabase.endTransaction();
     }
 
-    public static void setPicture(MediaWithDate m, Bitmap p) {
-        Log.d(TAG, "Setting new picture for " + m.getTitle());
-        try {
-            getInstance().updateMedia(
-                    m.getLocation(),
-                    TomahawkSQLiteHelper.mediaColumn.MEDIA_PICTURE,
-                    p);
-        } catch (SQLiteFullException e) {
-            Log.d(TAG, "SQLiteFullException while setting picture");
-        }
-        m.setPictureParsed(true);
-    }
-
     public boolean isMediaDirComplete(String path) {
         Cursor cursor = mDatabase.query(TomahawkSQLiteHelper.TABLE_MEDIADIRS,
                 new String[]{TomahawkSQLiteHelper.MEDIADIRS_PATH},
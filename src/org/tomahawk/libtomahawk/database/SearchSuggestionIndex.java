@@ -0,0 +1,482 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.database;
+
+import org.tomahawk.libtomahawk.collection.CollectionManager;
+import org.tomahawk.libtomahawk.collection.UserCollection;
+import org.tomahawk.tomahawk_android.TomahawkApp;
+import org.tomahawk.tomahawk_android.utils.ThreadManager;
+import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.greenrobot.event.EventBus;
+
+/**
+ * An in-memory index of the search history and the names of all artists, albums and tracks in the
+ * local collection, which provides the suggestions shown while the user is typing a search.
+ *
+ * The search history is kept in a prefix trie. Every node caches the best ranked entries below it,
+ * so that looking up suggestions only means walking down the prefix. An entry's rank combines how
+ * often and how recently it has been searched for. The local names are kept in a sorted array and
+ * are only suggested after the history entries.
+ *
+ * Everything is loaded lazily on a background thread and the history is persisted in a compact
+ * binary file, so that the UI thread never has to touch the disk.
+ */
+public class SearchSuggestionIndex {
+
+    private final static String TAG = SearchSuggestionIndex.class.getSimpleName();
+
+    public static final int MAX_SUGGESTIONS = 8;
+
+    private static final String FILE_NAME = "searchhistory.bin";
+
+    private static final int FILE_VERSION = 1;
+
+    private static final int MAX_HISTORY_ENTRIES = 1000;
+
+    // The time after which a search counts half as much as one that has just been made
+    private static final double HALF_LIFE = 7 * 24 * 60 * 60 * 1000;
+
+    private static final char[] EMPTY_KEYS = new char[0];
+
+    private static final Node[] EMPTY_CHILDREN = new Node[0];
+
+    private static final Entry[] EMPTY_ENTRIES = new Entry[0];
+
+    private static class Holder {
+
+        private static final SearchSuggestionIndex instance = new SearchSuggestionIndex();
+
+    }
+
+    private static class Entry {
+
+        final String mText;
+
+        int mCount;
+
+        long mLastUsed;
+
+        // The logarithm of the sum of all uses, each weighted by 2^(timestamp / HALF_LIFE). Since
+        // the weights grow over time instead of decaying, the order of the entries never changes
+        // unless an entry is used again.
+        double mRank;
+
+        Entry(String text) {
+            mText = text;
+        }
+
+        void use(long timeStamp) {
+            double weight = timeStamp / HALF_LIFE * Math.log(2);
+            if (mCount == 0) {
+                mRank = weight;
+            } else {
+                double max = Math.max(mRank, weight);
+                double min = Math.min(mRank, weight);
+                mRank = max + Math.log1p(Math.exp(min - max));
+            }
+            mCount++;
+            mLastUsed = timeStamp;
+        }
+    }
+
+    private static class Node {
+
+        char[] mKeys = EMPTY_KEYS;
+
+        Node[] mChildren = EMPTY_CHILDREN;
+
+        // The best ranked entries in this node's subtree, in descending order
+        Entry[] mTop = EMPTY_ENTRIES;
+
+        Node getChild(char c) {
+            int i = Arrays.binarySearch(mKeys, c);
+            return i >= 0 ? mChildren[i] : null;
+        }
+
+        Node getOrAddChild(char c) {
+            int i = Arrays.binarySearch(mKeys, c);
+            if (i >= 0) {
+                return mChildren[i];
+            }
+            i = -i - 1;
+            char[] keys = new char[mKeys.length + 1];
+            Node[] children = new Node[mChildren.length + 1];
+            System.arraycopy(mKeys, 0, keys, 0, i);
+            System.arraycopy(mChildren, 0, children, 0, i);
+            System.arraycopy(mKeys, i, keys, i + 1, mKeys.length - i);
+            System.arraycopy(mChildren, i, children, i + 1, mChildren.length - i);
+            Node child = new Node();
+            keys[i] = c;
+            children[i] = child;
+            mKeys = keys;
+            mChildren = children;
+            return child;
+        }
+
+        void updateTop(Entry entry) {
+            ArrayList<Entry> top = new ArrayList<Entry>(Arrays.asList(mTop));
+            if (!top.contains(entry)) {
+                if (top.size() >= MAX_SUGGESTIONS) {
+                    if (top.get(top.size() - 1).mRank >= entry.mRank) {
+                        return;
+                    }
+                    top.remove(top.size() - 1);
+                }
+                top.add(entry);
+            }
+            Collections.sort(top, RANK_COMPARATOR);
+            mTop = top.toArray(new Entry[top.size()]);
+        }
+    }
+
+    private static final Comparator<Entry> RANK_COMPARATOR = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry lhs, Entry rhs) {
+            return Double.compare(rhs.mRank, lhs.mRank);
+        }
+    };
+
+    private final AtomicBoolean mLoadStarted = new AtomicBoolean(false);
+
+    // Guarded by this
+    private Node mHistoryRoot = new Node();
+
+    // Guarded by this
+    private final HashMap<String, Entry> mHistoryEntries = new HashMap<String, Entry>();
+
+    // Guarded by this. Entries added before the history has been loaded.
+    private ArrayList<Entry> mPendingEntries = new ArrayList<Entry>();
+
+    // The normalized local names in ascending order and the original names at the same positions
+    private volatile String[][] mLocalNames = new String[][]{new String[0], new String[0]};
+
+    private final AtomicBoolean mPersistScheduled = new AtomicBoolean(false);
+
+    private SearchSuggestionIndex() {
+        EventBus.getDefault().register(this);
+    }
+
+    public static SearchSuggestionIndex getInstance() {
+        return Holder.instance;
+    }
+
+    @SuppressWarnings("unused")
+    public void onEventAsync(CollectionManager.UpdatedEvent event) {
+        if (mLoadStarted.get() && event.mUpdatedItemIds == null && (event.mCollection == null
+                || TomahawkApp.PLUGINNAME_USERCOLLECTION.equals(event.mCollection.getId()))) {
+            loadLocalNames();
+        }
+    }
+
+    /**
+     * @return the suggestions for the given prefix. The best ranked history entries first,
+     * followed by matching names from the local collection. Empty, if the index hasn't been
+     * loaded yet.
+     */
+    public List<String> getSuggestions(String prefix) {
+        ensureLoaded();
+        String key = normalize(prefix);
+        ArrayList<String> suggestions = new ArrayList<String>(MAX_SUGGESTIONS);
+        HashSet<String> suggestedKeys = new HashSet<String>();
+        synchronized (this) {
+            Node node = mHistoryRoot;
+            for (int i = 0; i < key.length() && node != null; i++) {
+                node = node.getChild(key.charAt(i));
+            }
+            if (node != null) {
+                for (Entry entry : node.mTop) {
+                    suggestions.add(entry.mText);
+                    suggestedKeys.add(normalize(entry.mText));
+                }
+            }
+        }
+        if (key.length() > 0) {
+            String[][] localNames = mLocalNames;
+            int i = Arrays.binarySearch(localNames[0], key);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            for (; i < localNames[0].length && suggestions.size() < MAX_SUGGESTIONS; i++) {
+                if (!localNames[0][i].startsWith(key)) {
+                    break;
+                }
+                if (suggestedKeys.add(localNames[0][i])) {
+                    suggestions.add(localNames[1][i]);
+                }
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Add the given text to the search history, or rank it higher if it's already in there.
+     */
+    public void add(String text) {
+        ensureLoaded();
+        text = text.trim();
+        if (TextUtils.isEmpty(text)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (mPendingEntries != null) {
+                Entry entry = new Entry(text);
+                entry.use(now);
+                mPendingEntries.add(entry);
+                return;
+            }
+            Entry entry = mHistoryEntries.get(normalize(text));
+            if (entry == null) {
+                entry = new Entry(text);
+                mHistoryEntries.put(normalize(text), entry);
+            }
+            entry.use(now);
+            if (mHistoryEntries.size() > MAX_HISTORY_ENTRIES) {
+                trimHistory();
+            } else {
+                insert(mHistoryRoot, entry);
+            }
+        }
+        schedulePersist();
+    }
+
+    private void ensureLoaded() {
+        if (mLoadStarted.compareAndSet(false, true)) {
+            ThreadManager.getInstance().execute(
+                    new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_DATABASEACTION) {
+                        @Override
+                        public void run() {
+                            loadHistory();
+                            loadLocalNames();
+                        }
+                    });
+        }
+    }
+
+    private void loadHistory() {
+        ArrayList<Entry> entries = readHistory();
+        if (entries == null) {
+            // No history file yet, so import the history from the database once
+            entries = new ArrayList<Entry>();
+            List<String> texts = DatabaseHelper.getInstance().getSearchHistoryEntries();
+            long timeStamp = System.currentTimeMillis() - texts.size();
+            for (String text : texts) {
+                Entry entry = new Entry(text);
+                entry.use(timeStamp++);
+                entries.add(entry);
+            }
+            schedulePersist();
+        }
+        synchronized (this) {
+            for (Entry entry : entries) {
+                mHistoryEntries.put(normalize(entry.mText), entry);
+            }
+            for (Entry pending : mPendingEntries) {
+                Entry entry = mHistoryEntries.get(normalize(pending.mText));
+                if (entry == null) {
+                    entry = new Entry(pending.mText);
+                    mHistoryEntries.put(normalize(pending.mText), entry);
+                }
+                entry.use(pending.mLastUsed);
+            }
+            if (!mPendingEntries.isEmpty()) {
+                schedulePersist();
+            }
+            mPendingEntries = null;
+            trimHistory();
+        }
+    }
+
+    private void loadLocalNames() {
+        long startTime = System.currentTimeMillis();
+        UserCollection userCollection = (UserCollection) CollectionManager.getInstance()
+                .getCollection(TomahawkApp.PLUGINNAME_USERCOLLECTION);
+        if (userCollection == null) {
+            return;
+        }
+        final ArrayList<String> names = userCollection.getNames();
+        final String[] keys = new String[names.size()];
+        Integer[] order = new Integer[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            keys[i] = normalize(names.get(i));
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                return keys[lhs].compareTo(keys[rhs]);
+            }
+        });
+        String[][] localNames = new String[][]{new String[keys.length], new String[keys.length]};
+        for (int i = 0; i < order.length; i++) {
+            localNames[0][i] = keys[order[i]];
+            localNames[1][i] = names.get(order[i]);
+        }
+        mLocalNames = localNames;
+        Log.d(TAG, "Indexed " + keys.length + " local names in "
+                + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * Drop the worst ranked entries, if there are too many, and rebuild the trie. Must be called
+     * while holding the lock.
+     */
+    private void trimHistory() {
+        ArrayList<Entry> entries = new ArrayList<Entry>(mHistoryEntries.values());
+        if (entries.size() > MAX_HISTORY_ENTRIES) {
+            Collections.sort(entries, RANK_COMPARATOR);
+            for (Entry entry : entries.subList(MAX_HISTORY_ENTRIES, entries.size())) {
+                mHistoryEntries.remove(normalize(entry.mText));
+            }
+            entries = new ArrayList<Entry>(entries.subList(0, MAX_HISTORY_ENTRIES));
+        }
+        Node root = new Node();
+        for (Entry entry : entries) {
+            insert(root, entry);
+        }
+        mHistoryRoot = root;
+    }
+
+    private static void insert(Node root, Entry entry) {
+        String key = normalize(entry.mText);
+        Node node = root;
+        node.updateTop(entry);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrAddChild(key.charAt(i));
+            node.updateTop(entry);
+        }
+    }
+
+    private void schedulePersist() {
+        if (mPersistScheduled.compareAndSet(false, true)) {
+            ThreadManager.getInstance().execute(
+                    new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_DATABASEACTION) {
+                        @Override
+                        public void run() {
+                            mPersistScheduled.set(false);
+                            writeHistory();
+                        }
+                    });
+        }
+    }
+
+    /**
+     * @return the persisted history entries. null, if there is no history file yet.
+     */
+    private static ArrayList<Entry> readHistory() {
+        File file = new File(TomahawkApp.getContext().getFilesDir(), FILE_NAME);
+        if (!file.exists()) {
+            return null;
+        }
+        ArrayList<Entry> entries = new ArrayList<Entry>();
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() == FILE_VERSION) {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    Entry entry = new Entry(in.readUTF());
+                    entry.mCount = in.readInt();
+                    entry.mLastUsed = in.readLong();
+                    entry.mRank = in.readDouble();
+                    entries.add(entry);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "readHistory: " + e.getClass() + ": " + e.getLocalizedMessage());
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "readHistory: " + e.getClass() + ": " + e.getLocalizedMessage());
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void writeHistory() {
+        ArrayList<Entry> entries;
+        synchronized (this) {
+            entries = new ArrayList<Entry>(mHistoryEntries.size());
+            for (Entry entry : mHistoryEntries.values()) {
+                Entry copy = new Entry(entry.mText);
+                copy.mCount = entry.mCount;
+                copy.mLastUsed = entry.mLastUsed;
+                copy.mRank = entry.mRank;
+                entries.add(copy);
+            }
+        }
+        File dir = TomahawkApp.getContext().getFilesDir();
+        File tmpFile = new File(dir, FILE_NAME + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(FILE_VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.mText);
+                out.writeInt(entry.mCount);
+                out.writeLong(entry.mLastUsed);
+                out.writeDouble(entry.mRank);
+            }
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(new File(dir, FILE_NAME))) {
+                Log.e(TAG, "writeHistory: Couldn't rename " + tmpFile);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "writeHistory: " + e.getClass() + ": " + e.getLocalizedMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "writeHistory: " + e.getClass() + ": " + e.getLocalizedMessage());
+                }
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.getDefault());
+    }
+}
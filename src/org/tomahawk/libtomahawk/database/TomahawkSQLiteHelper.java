@@ -18,16 +18,19 @@
 package org.tomahawk.libtomahawk.database;
 
 import org.tomahawk.libtomahawk.infosystem.InfoRequestData;
+import org.tomahawk.libtomahawk.utils.ArtworkCache;
 import org.tomahawk.tomahawk_android.activities.TomahawkMainActivity;
 
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.provider.BaseColumns;
 import android.util.Log;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -118,8 +121,18 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
 
     public static final String MEDIA_TYPE = "type";
 
+    /**
+     * Legacy column, which contained the JPEG-compressed picture. Pictures are now stored in the
+     * {@link org.tomahawk.libtomahawk.utils.ArtworkCache}.
+     */
     public static final String MEDIA_PICTURE = "picture";
 
+    /**
+     * The key of the picture in the {@link org.tomahawk.libtomahawk.utils.ArtworkCache}. An empty
+     * String if the media has been parsed and doesn't contain a picture.
+     */
+    public static final String MEDIA_PICTURE_KEY = "picture_key";
+
     public static final String MEDIA_TITLE = "title";
 
     public static final String MEDIA_ARTIST = "artist";
@@ -155,12 +168,69 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
 
     public static final String MEDIADIRS_BLACKLISTED = "blacklisted";
 
+    // mirror of the ScriptResolverCollections
+    public static final String TABLE_COLLECTION_ARTISTS = "collection_artists";
+
+    public static final String COLLECTION_ARTISTS_COLUMN_COLLECTIONID = "collectionid";
+
+    public static final String COLLECTION_ARTISTS_COLUMN_ARTISTNAME = "artistname";
+
+    public static final String TABLE_COLLECTION_ALBUMS = "collection_albums";
+
+    public static final String COLLECTION_ALBUMS_COLUMN_COLLECTIONID = "collectionid";
+
+    public static final String COLLECTION_ALBUMS_COLUMN_ARTISTNAME = "artistname";
+
+    public static final String COLLECTION_ALBUMS_COLUMN_ALBUMNAME = "albumname";
+
+    public static final String TABLE_COLLECTION_TRACKS = "collection_tracks";
+
+    public static final String COLLECTION_TRACKS_COLUMN_ID = "id";
+
+    public static final String COLLECTION_TRACKS_COLUMN_COLLECTIONID = "collectionid";
+
+    /**
+     * The name of the artist of the album, which the track has been fetched with. Might differ
+     * from {@link #COLLECTION_TRACKS_COLUMN_ARTISTNAME} on compilations.
+     */
+    public static final String COLLECTION_TRACKS_COLUMN_ALBUMARTISTNAME = "albumartistname";
+
+    public static final String COLLECTION_TRACKS_COLUMN_ALBUMNAME = "albumname";
+
+    public static final String COLLECTION_TRACKS_COLUMN_ARTISTNAME = "artistname";
+
+    public static final String COLLECTION_TRACKS_COLUMN_TRACKNAME = "trackname";
+
+    public static final String COLLECTION_TRACKS_COLUMN_ALBUMPOS = "albumpos";
+
+    public static final String COLLECTION_TRACKS_COLUMN_DISCNUMBER = "discnumber";
+
+    public static final String COLLECTION_TRACKS_COLUMN_YEAR = "year";
+
+    public static final String COLLECTION_TRACKS_COLUMN_DURATION = "duration";
+
+    public static final String COLLECTION_TRACKS_COLUMN_URL = "url";
+
+    public static final String COLLECTION_TRACKS_COLUMN_BITRATE = "bitrate";
+
+    public static final String COLLECTION_TRACKS_COLUMN_SIZE = "size";
+
+    public static final String COLLECTION_TRACKS_COLUMN_PURCHASEURL = "purchaseurl";
+
+    public static final String COLLECTION_TRACKS_COLUMN_LINKURL = "linkurl";
+
 
     public static final String TABLE_ALBUMS = "albums"; //Legacy
 
+    /**
+     * Holds the picture blobs of the media table until {@link #convertLegacyPictures} has moved
+     * them into the {@link org.tomahawk.libtomahawk.utils.ArtworkCache}
+     */
+    public static final String TABLE_LEGACY_PICTURES = "legacy_pictures";
+
     private static final String DATABASE_NAME = "userplaylists.db";
 
-    private static final int DATABASE_VERSION = 16;
+    private static final int DATABASE_VERSION = 19;
 
     // Database creation sql statements
     private static final String CREATE_TABLE_PLAYLISTS =
@@ -187,6 +257,11 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
                     + " REFERENCES `" + TABLE_PLAYLISTS + "` (`" + PLAYLISTS_COLUMN_ID
                     + "`));";
 
+    private static final String CREATE_INDEX_TRACKS_PLAYLISTID =
+            "CREATE INDEX IF NOT EXISTS `" + TABLE_TRACKS + "_" + TRACKS_COLUMN_PLAYLISTID
+                    + "_idx` ON `" + TABLE_TRACKS + "` (`" + TRACKS_COLUMN_PLAYLISTID + "`, `"
+                    + TRACKS_COLUMN_PLAYLISTENTRYINDEX + "`);";
+
     private static final String CREATE_TABLE_SEARCHHISTORY =
             "CREATE TABLE `" + TABLE_SEARCHHISTORY + "` (  `"
                     + SEARCHHISTORY_COLUMN_ID + "` INTEGER PRIMARY KEY AUTOINCREMENT, `"
@@ -218,7 +293,7 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
             + MEDIA_TIME + " INTEGER, "
             + MEDIA_LENGTH + " INTEGER, "
             + MEDIA_TYPE + " INTEGER, "
-            + MEDIA_PICTURE + " BLOB, "
+            + MEDIA_PICTURE_KEY + " TEXT, "
             + MEDIA_TITLE + " VARCHAR(200), "
             + MEDIA_ARTIST + " VARCHAR(200), "
             + MEDIA_GENRE + " VARCHAR(200), "
@@ -238,6 +313,46 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
             + MEDIADIRS_BLACKLISTED + " INTEGER "
             + ");";
 
+    private static final String CREATE_TABLE_COLLECTION_ARTISTS =
+            "CREATE TABLE IF NOT EXISTS `" + TABLE_COLLECTION_ARTISTS + "` (  `"
+                    + COLLECTION_ARTISTS_COLUMN_COLLECTIONID + "` TEXT , `"
+                    + COLLECTION_ARTISTS_COLUMN_ARTISTNAME + "` TEXT ,"
+                    + " PRIMARY KEY (`" + COLLECTION_ARTISTS_COLUMN_COLLECTIONID + "`, `"
+                    + COLLECTION_ARTISTS_COLUMN_ARTISTNAME + "`));";
+
+    private static final String CREATE_TABLE_COLLECTION_ALBUMS =
+            "CREATE TABLE IF NOT EXISTS `" + TABLE_COLLECTION_ALBUMS + "` (  `"
+                    + COLLECTION_ALBUMS_COLUMN_COLLECTIONID + "` TEXT , `"
+                    + COLLECTION_ALBUMS_COLUMN_ARTISTNAME + "` TEXT , `"
+                    + COLLECTION_ALBUMS_COLUMN_ALBUMNAME + "` TEXT ,"
+                    + " PRIMARY KEY (`" + COLLECTION_ALBUMS_COLUMN_COLLECTIONID + "`, `"
+                    + COLLECTION_ALBUMS_COLUMN_ARTISTNAME + "`, `"
+                    + COLLECTION_ALBUMS_COLUMN_ALBUMNAME + "`));";
+
+    private static final String CREATE_TABLE_COLLECTION_TRACKS =
+            "CREATE TABLE IF NOT EXISTS `" + TABLE_COLLECTION_TRACKS + "` (  `"
+                    + COLLECTION_TRACKS_COLUMN_ID + "` INTEGER PRIMARY KEY AUTOINCREMENT, `"
+                    + COLLECTION_TRACKS_COLUMN_COLLECTIONID + "` TEXT , `"
+                    + COLLECTION_TRACKS_COLUMN_ALBUMARTISTNAME + "` TEXT , `"
+                    + COLLECTION_TRACKS_COLUMN_ALBUMNAME + "` TEXT , `"
+                    + COLLECTION_TRACKS_COLUMN_ARTISTNAME + "` TEXT , `"
+                    + COLLECTION_TRACKS_COLUMN_TRACKNAME + "` TEXT , `"
+                    + COLLECTION_TRACKS_COLUMN_ALBUMPOS + "` INTEGER , `"
+                    + COLLECTION_TRACKS_COLUMN_DISCNUMBER + "` INTEGER , `"
+                    + COLLECTION_TRACKS_COLUMN_YEAR + "` TEXT , `"
+                    + COLLECTION_TRACKS_COLUMN_DURATION + "` INTEGER , `"
+                    + COLLECTION_TRACKS_COLUMN_URL + "` TEXT , `"
+                    + COLLECTION_TRACKS_COLUMN_BITRATE + "` INTEGER , `"
+                    + COLLECTION_TRACKS_COLUMN_SIZE + "` INTEGER , `"
+                    + COLLECTION_TRACKS_COLUMN_PURCHASEURL + "` TEXT , `"
+                    + COLLECTION_TRACKS_COLUMN_LINKURL + "` TEXT );";
+
+    private static final String CREATE_INDEX_COLLECTION_TRACKS_ALBUM =
+            "CREATE INDEX IF NOT EXISTS `" + TABLE_COLLECTION_TRACKS + "_album_idx` ON `"
+                    + TABLE_COLLECTION_TRACKS + "` (`" + COLLECTION_TRACKS_COLUMN_COLLECTIONID
+                    + "`, `" + COLLECTION_TRACKS_COLUMN_ALBUMARTISTNAME + "`, `"
+                    + COLLECTION_TRACKS_COLUMN_ALBUMNAME + "`);";
+
     public TomahawkSQLiteHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
@@ -249,12 +364,17 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
     public void onCreate(SQLiteDatabase database) {
         database.execSQL(CREATE_TABLE_PLAYLISTS);
         database.execSQL(CREATE_TABLE_TRACKS);
+        database.execSQL(CREATE_INDEX_TRACKS_PLAYLISTID);
         database.execSQL(CREATE_TABLE_SEARCHHISTORY);
         database.execSQL(CREATE_TABLE_INFOSYSTEMOPLOG);
         database.execSQL(CREATE_TABLE_LOVED_ALBUMS);
         database.execSQL(CREATE_TABLE_LOVED_ARTISTS);
         database.execSQL(CREATE_TABLE_MEDIA);
         database.execSQL(CREATE_TABLE_MEDIADIRS);
+        database.execSQL(CREATE_TABLE_COLLECTION_ARTISTS);
+        database.execSQL(CREATE_TABLE_COLLECTION_ALBUMS);
+        database.execSQL(CREATE_TABLE_COLLECTION_TRACKS);
+        database.execSQL(CREATE_INDEX_COLLECTION_TRACKS_ALBUM);
     }
 
     @Override
@@ -339,7 +459,7 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
         } else if (oldVersion == 15) {
             db.execSQL("ALTER TABLE `" + TABLE_PLAYLISTS + "` ADD COLUMN `"
                     + PLAYLISTS_COLUMN_TOPARTISTS + "` TEXT");
-        } else {
+        } else if (oldVersion < 8) {
             db.execSQL("DROP TABLE IF EXISTS `" + TABLE_TRACKS + "`;");
             db.execSQL("DROP TABLE IF EXISTS `" + TABLE_ALBUMS + "`;");
             db.execSQL("DROP TABLE IF EXISTS `" + TABLE_PLAYLISTS + "`;");
@@ -351,6 +471,105 @@ public class TomahawkSQLiteHelper extends SQLiteOpenHelper {
             db.execSQL("DROP TABLE IF EXISTS `" + TABLE_MEDIADIRS + "`;");
             onCreate(db);
         }
+        if (oldVersion < 17) {
+            db.execSQL(CREATE_INDEX_TRACKS_PLAYLISTID);
+        }
+        if (oldVersion >= 15 && oldVersion < 18) {
+            // Older versions have already recreated the media table with the current schema
+            migrateMediaPictures(db);
+        }
+        if (oldVersion < 19) {
+            db.execSQL(CREATE_TABLE_COLLECTION_ARTISTS);
+            db.execSQL(CREATE_TABLE_COLLECTION_ALBUMS);
+            db.execSQL(CREATE_TABLE_COLLECTION_TRACKS);
+            db.execSQL(CREATE_INDEX_COLLECTION_TRACKS_ALBUM);
+        }
+    }
+
+    /**
+     * Move the picture blobs out of the media table into {@link #TABLE_LEGACY_PICTURES} and
+     * recreate the media table without the blob column. Writing the blobs to the {@link
+     * ArtworkCache} is left to {@link #convertLegacyPictures}, so that the upgrade doesn't have to
+     * wait for it.
+     */
+    private static void migrateMediaPictures(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE `" + TABLE_LEGACY_PICTURES + "` (`" + MEDIA_LOCATION
+                + "` TEXT PRIMARY KEY NOT NULL, `" + MEDIA_PICTURE + "` BLOB);");
+        db.execSQL("INSERT INTO `" + TABLE_LEGACY_PICTURES + "` SELECT " + MEDIA_LOCATION + ","
+                + MEDIA_PICTURE + " FROM `" + TABLE_MEDIA + "` WHERE " + MEDIA_PICTURE
+                + " IS NOT NULL;");
+        String columns = MEDIA_LOCATION + "," + MEDIA_TIME + "," + MEDIA_LENGTH + ","
+                + MEDIA_TYPE + "," + MEDIA_TITLE + "," + MEDIA_ARTIST + "," + MEDIA_GENRE + ","
+                + MEDIA_ALBUM + "," + MEDIA_WIDTH + "," + MEDIA_HEIGHT + "," + MEDIA_ARTWORKURL
+                + "," + MEDIA_AUDIOTRACK + "," + MEDIA_SPUTRACK + "," + MEDIA_DATEADDED + ","
+                + MEDIA_TRACKNUMBER;
+        db.execSQL("ALTER TABLE `" + TABLE_MEDIA + "` RENAME TO `" + TABLE_MEDIA + "_old`;");
+        db.execSQL(CREATE_TABLE_MEDIA);
+        db.execSQL("INSERT INTO `" + TABLE_MEDIA + "` (" + columns + ") SELECT " + columns
+                + " FROM `" + TABLE_MEDIA + "_old`;");
+        db.execSQL("DROP TABLE `" + TABLE_MEDIA + "_old`;");
+    }
+
+    /**
+     * Write the picture blobs, which {@link #migrateMediaPictures} has left in {@link
+     * #TABLE_LEGACY_PICTURES}, to the {@link ArtworkCache} and store their keys in the media table.
+     * Every converted row is removed right away, so that an interrupted conversion is resumed on
+     * the next start. Must not be called on the UI thread.
+     */
+    public static void convertLegacyPictures(SQLiteDatabase db) {
+        if (DatabaseUtils.queryNumEntries(db, "sqlite_master", "type = 'table' AND name = ?",
+                new String[]{TABLE_LEGACY_PICTURES}) == 0) {
+            return;
+        }
+        long time = System.currentTimeMillis();
+        List<String> locations = new ArrayList<String>();
+        Cursor cursor = db.query(TABLE_LEGACY_PICTURES, new String[]{MEDIA_LOCATION}, null, null,
+                null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                locations.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        ContentValues values = new ContentValues();
+        for (String location : locations) {
+            String pictureKey = null;
+            // Query every blob on its own, so that only one of them is held in memory at a time
+            cursor = db.query(TABLE_LEGACY_PICTURES, new String[]{MEDIA_PICTURE},
+                    MEDIA_LOCATION + "=?", new String[]{location}, null, null, null);
+            try {
+                if (cursor.moveToFirst()) {
+                    byte[] blob = cursor.getBlob(0);
+                    if (blob != null && blob.length > 1) {
+                        pictureKey = ArtworkCache.getInstance().put(blob);
+                    } else {
+                        pictureKey = "";
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                Log.e(TAG, "convertLegacyPictures: " + e.getClass() + ": "
+                        + e.getLocalizedMessage());
+            } finally {
+                cursor.close();
+            }
+            db.beginTransaction();
+            try {
+                if (pictureKey != null) {
+                    // Don't overwrite a picture, which has been parsed in the meantime
+                    values.put(MEDIA_PICTURE_KEY, pictureKey);
+                    db.update(TABLE_MEDIA, values, MEDIA_LOCATION + "=? AND " + MEDIA_PICTURE_KEY
+                            + " IS NULL", new String[]{location});
+                }
+                db.delete(TABLE_LEGACY_PICTURES, MEDIA_LOCATION + "=?", new String[]{location});
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        db.execSQL("DROP TABLE IF EXISTS `" + TABLE_LEGACY_PICTURES + "`;");
+        Log.d(TAG, "convertLegacyPictures - moved " + locations.size() + " pictures in "
+                + (System.currentTimeMillis() - time) + "ms");
     }
 
 }
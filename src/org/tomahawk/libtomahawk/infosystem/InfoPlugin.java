@@ -20,10 +20,15 @@ package org.tomahawk.libtomahawk.infosystem;
 import org.tomahawk.libtomahawk.authentication.AuthenticatorUtils;
 import org.tomahawk.tomahawk_android.utils.TomahawkListItem;
 
+import java.util.List;
+
 public abstract class InfoPlugin {
 
     public abstract void send(InfoRequestData infoRequestData, AuthenticatorUtils authenticatorUtils);
 
+    public abstract void send(List<InfoRequestData> infoRequestDatas,
+            AuthenticatorUtils authenticatorUtils);
+
     public abstract void resolve(InfoRequestData infoRequestData);
 
     public abstract void resolve(InfoRequestData infoRequestData, TomahawkListItem itemToBeFilled);
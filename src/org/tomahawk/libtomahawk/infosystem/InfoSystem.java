@@ -42,15 +42,26 @@ import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetSocialActionPos
 import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.activities.TomahawkMainActivity;
+import org.tomahawk.tomahawk_android.utils.ThreadManager;
 import org.tomahawk.tomahawk_android.utils.TomahawkListItem;
+import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 import de.greenrobot.event.EventBus;
@@ -62,6 +73,15 @@ public class InfoSystem {
 
     private static final String TAG = InfoSystem.class.getSimpleName();
 
+    // The maximum number of logged ops, which are sent in one batch
+    private static final int MAX_BATCH_SIZE = 50;
+
+    private static final long MIN_RETRY_DELAY = 5 * 1000;
+
+    private static final long MAX_RETRY_DELAY = 30 * 60 * 1000;
+
+    private static final int MAX_CANCELLED_REQUESTS = 100;
+
     private static class Holder {
 
         private static final InfoSystem instance = new InfoSystem();
@@ -87,9 +107,28 @@ public class InfoSystem {
     private ConcurrentHashMap<String, InfoRequestData> mSentRequests
             = new ConcurrentHashMap<String, InfoRequestData>();
 
+    // LoggedOps, which are currently being sent or are queued in mQueuedLoggedOps
     private ConcurrentHashMap<Integer, InfoRequestData> mLoggedOpsMap
             = new ConcurrentHashMap<Integer, InfoRequestData>();
 
+    // LoggedOps, which haven't been sent yet, ordered by their id. This mirrors the op log table
+    // once it has been loaded, so that the table doesn't have to be queried again.
+    private TreeMap<Integer, InfoRequestData> mPendingLoggedOps
+            = new TreeMap<Integer, InfoRequestData>();
+
+    private boolean mLoggedOpsLoaded;
+
+    private int mSendFailureCount;
+
+    // The time before which no logged ops are being sent, because the last attempt failed
+    private long mNextSendTime;
+
+    private boolean mRetryScheduled;
+
+    private final Handler mRetryHandler = new Handler(Looper.getMainLooper());
+
+    private AuthenticatorUtils mLoggedOpsAuthenticatorUtils;
+
     // We store "create playlists"-loggedOps separately, because we need to check whether or not all
     // "create playlists"-loggedOps have been pushed to Hatchet before sending the corresponding
     // playlist entries
@@ -99,6 +138,17 @@ public class InfoSystem {
     // LoggedOps waiting to be sent as soon as mPlaylistsLoggedOpsMap is empty
     private ArrayList<InfoRequestData> mQueuedLoggedOps = new ArrayList<InfoRequestData>();
 
+    // Ids of the requests, whose results are no longer of interest to anybody. Only the most
+    // recently cancelled ones are being kept, since ids of requests which had already finished
+    // are never removed again.
+    private final Set<String> mCancelledRequestIds = Collections.synchronizedSet(
+            Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > MAX_CANCELLED_REQUESTS;
+                }
+            }));
+
     private Query mLastPlaybackLogEntry = null;
 
     private Query mNowPlaying = null;
@@ -427,8 +477,7 @@ public class InfoSystem {
                 InfoRequestData infoRequestData = new InfoRequestData(requestId,
                         InfoRequestData.INFOREQUESTDATA_TYPE_PLAYBACKLOGENTRIES, null,
                         InfoRequestData.HTTPTYPE_POST, jsonString);
-                DatabaseHelper.getInstance().addOpToInfoSystemOpLog(infoRequestData,
-                        (int) (timeStamp / 1000));
+                logOp(infoRequestData, (int) (timeStamp / 1000));
                 sendLoggedOps(authenticatorUtils);
             } catch (JsonProcessingException e) {
                 Log.e(TAG, "sendPlaybackEntryPostStruct: " + e.getClass() + ": "
@@ -484,8 +533,7 @@ public class InfoSystem {
             InfoRequestData infoRequestData = new InfoRequestData(requestId,
                     InfoRequestData.INFOREQUESTDATA_TYPE_SOCIALACTIONS, null,
                     InfoRequestData.HTTPTYPE_POST, jsonString);
-            DatabaseHelper.getInstance().addOpToInfoSystemOpLog(infoRequestData,
-                    (int) (timeStamp / 1000));
+            logOp(infoRequestData, (int) (timeStamp / 1000));
             sendLoggedOps(authenticatorUtils);
         } catch (JsonProcessingException e) {
             Log.e(TAG, "sendSocialActionPostStruct: " + e.getClass() + ": "
@@ -527,8 +575,7 @@ public class InfoSystem {
             InfoRequestData infoRequestData = new InfoRequestData(requestId,
                     InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS, params,
                     InfoRequestData.HTTPTYPE_POST, jsonString);
-            DatabaseHelper.getInstance().addOpToInfoSystemOpLog(infoRequestData,
-                    (int) (timeStamp / 1000));
+            logOp(infoRequestData, (int) (timeStamp / 1000));
             return sendLoggedOps(authenticatorUtils);
         } catch (JsonProcessingException e) {
             Log.e(TAG, "sendPlaylistPostStruct: " + e.getClass() + ": "
@@ -556,8 +603,7 @@ public class InfoSystem {
             InfoRequestData infoRequestData = new InfoRequestData(requestId,
                     InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS_PLAYLISTENTRIES, params,
                     InfoRequestData.HTTPTYPE_POST, jsonString);
-            DatabaseHelper.getInstance().addOpToInfoSystemOpLog(infoRequestData,
-                    (int) (timeStamp / 1000));
+            logOp(infoRequestData, (int) (timeStamp / 1000));
             sendLoggedOps(authenticatorUtils);
         } catch (JsonProcessingException e) {
             Log.e(TAG, "sendPlaylistEntriesPostStruct: " + e.getClass() + ": "
@@ -573,8 +619,7 @@ public class InfoSystem {
         InfoRequestData infoRequestData = new InfoRequestData(requestId,
                 InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS, params,
                 InfoRequestData.HTTPTYPE_DELETE, null);
-        DatabaseHelper.getInstance().addOpToInfoSystemOpLog(infoRequestData,
-                (int) (timeStamp / 1000));
+        logOp(infoRequestData, (int) (timeStamp / 1000));
         sendLoggedOps(authenticatorUtils);
     }
 
@@ -588,8 +633,7 @@ public class InfoSystem {
         InfoRequestData infoRequestData = new InfoRequestData(requestId,
                 InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS_PLAYLISTENTRIES, params,
                 InfoRequestData.HTTPTYPE_DELETE, null);
-        DatabaseHelper.getInstance().addOpToInfoSystemOpLog(infoRequestData,
-                (int) (timeStamp / 1000));
+        logOp(infoRequestData, (int) (timeStamp / 1000));
         sendLoggedOps(authenticatorUtils);
     }
 
@@ -643,6 +687,23 @@ public class InfoSystem {
         }
     }
 
+    /**
+     * Cancel the request with the given requestId. If the request hasn't been processed yet, it
+     * is being skipped. Otherwise its results are dropped instead of being reported.
+     */
+    public void cancel(String requestId) {
+        if (requestId != null) {
+            mCancelledRequestIds.add(requestId);
+        }
+    }
+
+    /**
+     * @return whether or not the request with the given requestId has been cancelled
+     */
+    public boolean isCancelled(String requestId) {
+        return mCancelledRequestIds.contains(requestId);
+    }
+
     /**
      * Get the InfoRequestData with the given Id
      */
@@ -655,6 +716,9 @@ public class InfoSystem {
      * requestIds have received their results
      */
     public void reportResults(InfoRequestData infoRequestData, boolean success) {
+        if (mCancelledRequestIds.remove(infoRequestData.getRequestId())) {
+            return;
+        }
         ResultsEvent event = new ResultsEvent();
         event.mInfoRequestData = infoRequestData;
         event.mSuccess = success;
@@ -662,37 +726,224 @@ public class InfoSystem {
     }
 
 
-    public synchronized List<String> sendLoggedOps(AuthenticatorUtils authenticatorUtils) {
+    /**
+     * Store the given op in the op log table and keep it in memory until it has been sent.
+     */
+    private synchronized void logOp(InfoRequestData infoRequestData, int timeStamp) {
+        ensureLoggedOpsLoaded();
+        int loggedOpId = DatabaseHelper.getInstance()
+                .addOpToInfoSystemOpLog(infoRequestData, timeStamp);
+        mPendingLoggedOps.put(loggedOpId, new InfoRequestData(infoRequestData.getRequestId(),
+                infoRequestData.getType(), infoRequestData.getQueryParams(), loggedOpId,
+                infoRequestData.getHttpType(), infoRequestData.getJsonStringToSend()));
+    }
+
+    /**
+     * @return the number of logged ops, which haven't been delivered to the API yet
+     */
+    public synchronized int getLoggedOpsCount() {
+        ensureLoggedOpsLoaded();
+        return mPendingLoggedOps.size() + mLoggedOpsMap.size();
+    }
+
+    private void ensureLoggedOpsLoaded() {
+        if (!mLoggedOpsLoaded) {
+            mLoggedOpsLoaded = true;
+            for (InfoRequestData loggedOp : DatabaseHelper.getInstance().getLoggedOps()) {
+                if (!mLoggedOpsMap.containsKey(loggedOp.getLoggedOpId())) {
+                    mPendingLoggedOps.put(loggedOp.getLoggedOpId(), loggedOp);
+                }
+            }
+        }
+    }
+
+    public List<String> sendLoggedOps(AuthenticatorUtils authenticatorUtils) {
+        return sendLoggedOps(authenticatorUtils, false);
+    }
+
+    /**
+     * Send all pending logged ops. Redundant ops are merged beforehand and the remaining ones are
+     * sent in batches per endpoint. If the last attempt has failed, nothing is sent until the
+     * retry delay has passed, unless ignoreBackoff is set.
+     *
+     * @param ignoreBackoff set to true, if the ops should be sent immediately, e.g. because the
+     *                      network connection has just been restored
+     * @return the requestIds of all ops, which are going to be sent
+     */
+    public synchronized List<String> sendLoggedOps(AuthenticatorUtils authenticatorUtils,
+            boolean ignoreBackoff) {
+        mLoggedOpsAuthenticatorUtils = authenticatorUtils;
+        ensureLoggedOpsLoaded();
+        coalesceLoggedOps();
         List<String> requestIds = new ArrayList<String>();
-        List<InfoRequestData> loggedOps = DatabaseHelper.getInstance().getLoggedOps();
-        for (InfoRequestData loggedOp : loggedOps) {
-            if (!mLoggedOpsMap.containsKey(loggedOp.getLoggedOpId())) {
-                mLoggedOpsMap.put(loggedOp.getLoggedOpId(), loggedOp);
-                if (loggedOp.getType()
-                        == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS_PLAYLISTENTRIES
-                        || (loggedOp.getHttpType() == InfoRequestData.HTTPTYPE_DELETE
-                        && loggedOp.getType() == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS)) {
-                    mQueuedLoggedOps.add(loggedOp);
-                } else {
-                    if (loggedOp.getType() == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS) {
-                        mPlaylistsLoggedOpsMap.put(loggedOp.getLoggedOpId(), loggedOp);
-                    }
-                    send(loggedOp, authenticatorUtils);
+        for (InfoRequestData loggedOp : mPendingLoggedOps.values()) {
+            requestIds.add(loggedOp.getRequestId());
+        }
+        if (ignoreBackoff) {
+            mNextSendTime = 0;
+        }
+        long delay = mNextSendTime - System.currentTimeMillis();
+        if (delay > 0) {
+            scheduleRetry(delay);
+            return requestIds;
+        }
+        LinkedHashMap<Integer, List<InfoRequestData>> batches =
+                new LinkedHashMap<Integer, List<InfoRequestData>>();
+        for (InfoRequestData loggedOp : mPendingLoggedOps.values()) {
+            mLoggedOpsMap.put(loggedOp.getLoggedOpId(), loggedOp);
+            if (loggedOp.getType()
+                    == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS_PLAYLISTENTRIES
+                    || (loggedOp.getHttpType() == InfoRequestData.HTTPTYPE_DELETE
+                    && loggedOp.getType() == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS)) {
+                mQueuedLoggedOps.add(loggedOp);
+            } else {
+                if (loggedOp.getType() == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS) {
+                    mPlaylistsLoggedOpsMap.put(loggedOp.getLoggedOpId(), loggedOp);
                 }
-                requestIds.add(loggedOp.getRequestId());
+                addToBatch(batches, loggedOp);
             }
         }
+        mPendingLoggedOps.clear();
+        sendBatches(batches, authenticatorUtils);
         trySendingQueuedOps();
         return requestIds;
     }
 
+    /**
+     * Drop pending logged ops, which have been made obsolete by a later op. Only the latest social
+     * action for the same item is kept, and deleting a playlist makes its pending entry changes
+     * obsolete. If the playlist hasn't been created on Hatchet yet, all of its ops are dropped.
+     */
+    private void coalesceLoggedOps() {
+        List<InfoRequestData> obsoleteOps = new ArrayList<InfoRequestData>();
+        HashMap<String, InfoRequestData> latestSocialActions =
+                new HashMap<String, InfoRequestData>();
+        HashMap<String, InfoRequestData> playlistCreations = new HashMap<String, InfoRequestData>();
+        HashMap<String, List<InfoRequestData>> playlistChanges =
+                new HashMap<String, List<InfoRequestData>>();
+        for (InfoRequestData loggedOp : mPendingLoggedOps.values()) {
+            if (loggedOp.getType() == InfoRequestData.INFOREQUESTDATA_TYPE_SOCIALACTIONS) {
+                try {
+                    HatchetSocialAction action = InfoSystemUtils.getObjectMapper().readValue(
+                            loggedOp.getJsonStringToSend(),
+                            HatchetSocialActionPostStruct.class).socialAction;
+                    String key = action.type + "\t" + action.trackString + "\t"
+                            + action.artistString + "\t" + action.albumString;
+                    InfoRequestData previousOp = latestSocialActions.put(key, loggedOp);
+                    if (previousOp != null) {
+                        obsoleteOps.add(previousOp);
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "coalesceLoggedOps: " + e.getClass() + ": "
+                            + e.getLocalizedMessage());
+                }
+            } else if (loggedOp.getType() == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS
+                    || loggedOp.getType()
+                    == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS_PLAYLISTENTRIES) {
+                String localId = loggedOp.getQueryParams() != null
+                        ? loggedOp.getQueryParams().playlist_local_id : null;
+                if (localId == null) {
+                    continue;
+                }
+                if (loggedOp.getType() == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS
+                        && loggedOp.getHttpType() == InfoRequestData.HTTPTYPE_POST) {
+                    playlistCreations.put(localId, loggedOp);
+                } else if (loggedOp.getType() == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS
+                        && loggedOp.getHttpType() == InfoRequestData.HTTPTYPE_DELETE) {
+                    List<InfoRequestData> changes = playlistChanges.remove(localId);
+                    if (changes != null) {
+                        obsoleteOps.addAll(changes);
+                    }
+                    InfoRequestData creation = playlistCreations.remove(localId);
+                    if (creation != null) {
+                        obsoleteOps.add(creation);
+                        obsoleteOps.add(loggedOp);
+                    }
+                } else {
+                    List<InfoRequestData> changes = playlistChanges.get(localId);
+                    if (changes == null) {
+                        changes = new ArrayList<InfoRequestData>();
+                        playlistChanges.put(localId, changes);
+                    }
+                    changes.add(loggedOp);
+                }
+            }
+        }
+        if (!obsoleteOps.isEmpty()) {
+            Log.d(TAG, "Hatchet sync - dropping " + obsoleteOps.size() + " obsolete logged ops");
+            for (InfoRequestData obsoleteOp : obsoleteOps) {
+                mPendingLoggedOps.remove(obsoleteOp.getLoggedOpId());
+            }
+            DatabaseHelper.getInstance().removeOpsFromInfoSystemOpLog(obsoleteOps);
+        }
+    }
+
+    private static void addToBatch(LinkedHashMap<Integer, List<InfoRequestData>> batches,
+            InfoRequestData loggedOp) {
+        // Ops are batched per endpoint, which is determined by their type and http type
+        int endpoint = loggedOp.getType() * 10 + loggedOp.getHttpType();
+        List<InfoRequestData> batch = batches.get(endpoint);
+        if (batch == null) {
+            batch = new ArrayList<InfoRequestData>();
+            batches.put(endpoint, batch);
+        }
+        batch.add(loggedOp);
+    }
+
+    private void sendBatches(LinkedHashMap<Integer, List<InfoRequestData>> batches,
+            AuthenticatorUtils authenticatorUtils) {
+        for (List<InfoRequestData> batch : batches.values()) {
+            for (int i = 0; i < batch.size(); i += MAX_BATCH_SIZE) {
+                List<InfoRequestData> chunk = new ArrayList<InfoRequestData>(
+                        batch.subList(i, Math.min(i + MAX_BATCH_SIZE, batch.size())));
+                for (InfoRequestData loggedOp : chunk) {
+                    mSentRequests.put(loggedOp.getRequestId(), loggedOp);
+                }
+                for (InfoPlugin infoPlugin : mInfoPlugins) {
+                    infoPlugin.send(chunk, authenticatorUtils);
+                }
+            }
+        }
+    }
+
+    private void scheduleRetry(long delay) {
+        if (!mRetryScheduled) {
+            mRetryScheduled = true;
+            Log.d(TAG, "Hatchet sync - retrying to send logged ops in " + delay / 1000 + "s");
+            mRetryHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (InfoSystem.this) {
+                        mRetryScheduled = false;
+                    }
+                    ThreadManager.getInstance().execute(
+                            new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_INFOSYSTEM_LOW) {
+                                @Override
+                                public void run() {
+                                    sendLoggedOps(mLoggedOpsAuthenticatorUtils);
+                                }
+                            });
+                }
+            }, delay);
+        }
+    }
+
     public synchronized void onLoggedOpsSent(ArrayList<String> doneRequestsIds, boolean success) {
         List<InfoRequestData> loggedOps = new ArrayList<InfoRequestData>();
+        boolean requeued = false;
         HashSet<Integer> requestTypes = new HashSet<Integer>();
         HashSet<String> playlistIds = new HashSet<String>();
         for (String doneRequestId : doneRequestsIds) {
             if (mSentRequests.containsKey(doneRequestId)) {
                 InfoRequestData loggedOp = mSentRequests.get(doneRequestId);
+                if (!success) {
+                    // Keep the op in memory, so that it's retried without reading the op log
+                    if (mLoggedOpsMap.remove(loggedOp.getLoggedOpId()) == loggedOp) {
+                        mPendingLoggedOps.put(loggedOp.getLoggedOpId(), loggedOp);
+                        requeued = true;
+                    }
+                    continue;
+                }
                 loggedOps.add(loggedOp);
                 requestTypes.add(loggedOp.getType());
                 if (loggedOp.getType()
@@ -711,13 +962,22 @@ public class InfoSystem {
                 mLoggedOpsMap.remove(loggedOp.getLoggedOpId());
             }
         }
-        if (success) {
+        if (!success) {
+            if (requeued) {
+                long delay = Math.min(MIN_RETRY_DELAY << Math.min(mSendFailureCount, 16),
+                        MAX_RETRY_DELAY);
+                mSendFailureCount++;
+                mNextSendTime = System.currentTimeMillis() + delay;
+                scheduleRetry(delay);
+            }
+        } else {
+            mSendFailureCount = 0;
             for (InfoRequestData loggedOp : loggedOps) {
                 mPlaylistsLoggedOpsMap.remove(loggedOp.getLoggedOpId());
             }
             trySendingQueuedOps();
             DatabaseHelper.getInstance().removeOpsFromInfoSystemOpLog(loggedOps);
-            if (DatabaseHelper.getInstance().getLoggedOpsCount() == 0) {
+            if (mPendingLoggedOps.isEmpty() && mLoggedOpsMap.isEmpty()) {
                 if (!requestTypes.isEmpty()) {
                     OpLogIsEmptiedEvent event = new OpLogIsEmptiedEvent();
                     event.mRequestTypes = requestTypes;
@@ -730,6 +990,8 @@ public class InfoSystem {
 
     private synchronized void trySendingQueuedOps() {
         if (mPlaylistsLoggedOpsMap.isEmpty()) {
+            LinkedHashMap<Integer, List<InfoRequestData>> batches =
+                    new LinkedHashMap<Integer, List<InfoRequestData>>();
             while (!mQueuedLoggedOps.isEmpty()) {
                 InfoRequestData queuedLoggedOp = mQueuedLoggedOps.remove(0);
                 QueryParams params = queuedLoggedOp.getQueryParams();
@@ -737,14 +999,15 @@ public class InfoSystem {
                         .getPlaylistHatchetId(params.playlist_local_id);
                 if (hatchetId != null) {
                     params.playlist_id = hatchetId;
-                    send(queuedLoggedOp, AuthenticatorManager.getInstance().getAuthenticatorUtils(
-                            TomahawkApp.PLUGINNAME_HATCHET));
+                    addToBatch(batches, queuedLoggedOp);
                 } else {
                     Log.e(TAG, "Hatchet sync - Couldn't send queued logged op, because the stored "
                             + "local playlist id was no longer valid");
                     discardLoggedOp(queuedLoggedOp);
                 }
             }
+            sendBatches(batches, AuthenticatorManager.getInstance().getAuthenticatorUtils(
+                    TomahawkApp.PLUGINNAME_HATCHET));
         }
     }
 
@@ -0,0 +1,353 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.infosystem;
+
+import org.tomahawk.libtomahawk.infosystem.deserializer.DeserializerUtils;
+import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetAlbumInfo;
+import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetArtistInfo;
+import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetPlaylistInfo;
+import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetSocialAction;
+import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetSocialActionResponse;
+import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetTimeline;
+import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetTrackInfo;
+import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetUserInfo;
+import org.tomahawk.libtomahawk.infosystem.hatchet.models.Mappable;
+import org.tomahawk.libtomahawk.utils.TomahawkUtils;
+import org.tomahawk.tomahawk_android.TomahawkApp;
+import org.tomahawk.tomahawk_android.utils.ThreadManager;
+import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores the social actions and friends feed timelines of {@link User}s. Every fetched page is
+ * being merged into the timeline it belongs to, so that it always is a single list ordered from
+ * the newest to the oldest {@link SocialAction}. The newest {@link #MAX_PERSISTED_ITEMS} of every
+ * timeline are being persisted, so that they can be shown instantly on the next start, while the
+ * newest page is being refreshed.
+ */
+public class TimelineStore {
+
+    private final static String TAG = TimelineStore.class.getSimpleName();
+
+    private static final String DIR_NAME = "timelines";
+
+    // The maximum number of items per timeline, which are being persisted
+    private static final int MAX_PERSISTED_ITEMS = 200;
+
+    private static class Holder {
+
+        private static final TimelineStore instance = new TimelineStore();
+
+    }
+
+    private static class Timeline {
+
+        private final List<HatchetSocialAction> mSocialActions =
+                new ArrayList<HatchetSocialAction>();
+
+        private final Set<String> mSocialActionIds = new HashSet<String>();
+
+        private final Map<String, HatchetTrackInfo> mTracks =
+                new HashMap<String, HatchetTrackInfo>();
+
+        private final Map<String, HatchetArtistInfo> mArtists =
+                new HashMap<String, HatchetArtistInfo>();
+
+        private final Map<String, HatchetAlbumInfo> mAlbums =
+                new HashMap<String, HatchetAlbumInfo>();
+
+        private final Map<String, HatchetPlaylistInfo> mPlaylists =
+                new HashMap<String, HatchetPlaylistInfo>();
+
+        private final Map<String, HatchetUserInfo> mUsers =
+                new HashMap<String, HatchetUserInfo>();
+
+        private boolean mEndReached;
+
+        // The converted SocialActions, null if they have to be converted again
+        private List<SocialAction> mConverted;
+
+        // Incremented with every added page, so that older snapshots aren't persisted after newer
+        // ones
+        private long mVersion;
+
+        // The version of the persisted snapshot. Guarded by the TimelineStore's lock.
+        private long mPersistedVersion;
+    }
+
+    private final ConcurrentHashMap<String, Timeline> mTimelines =
+            new ConcurrentHashMap<String, Timeline>();
+
+    private TimelineStore() {
+    }
+
+    public static TimelineStore getInstance() {
+        return Holder.instance;
+    }
+
+    /**
+     * @param type one of {@link InfoRequestData#INFOREQUESTDATA_TYPE_USERS_SOCIALACTIONS} and
+     *             {@link InfoRequestData#INFOREQUESTDATA_TYPE_USERS_FRIENDSFEED}
+     * @return the timeline of the given type of the given {@link User}, the newest {@link
+     * SocialAction} first. Loads the persisted timeline on first access, so this shouldn't be
+     * called on the UI thread.
+     */
+    public List<SocialAction> getSocialActions(int type, User user) {
+        Timeline timeline = getTimeline(type, user.getId());
+        synchronized (timeline) {
+            if (timeline.mConverted == null) {
+                List<SocialAction> socialActions = new ArrayList<SocialAction>();
+                for (HatchetSocialAction socialAction : timeline.mSocialActions) {
+                    socialActions.add(convert(timeline, socialAction));
+                }
+                timeline.mConverted = Collections.unmodifiableList(socialActions);
+            }
+            return timeline.mConverted;
+        }
+    }
+
+    /**
+     * @return whether or not the oldest {@link SocialAction} of the given timeline has been
+     * fetched
+     */
+    public boolean isEndReached(int type, User user) {
+        Timeline timeline = getTimeline(type, user.getId());
+        synchronized (timeline) {
+            return timeline.mEndReached;
+        }
+    }
+
+    /**
+     * Merge the given page of the timeline of the given type into the stored timeline.
+     *
+     * If the given page is the newest one and overlaps with the stored timeline, all new items are
+     * put in front of the stored ones. If it doesn't overlap, there might be a gap between the
+     * page and the stored items, so these are being dropped. Older pages are being appended,
+     * without the items that are already part of the timeline.
+     */
+    public void addPage(int type, String userId, int offset, int limit,
+            HatchetSocialActionResponse response) {
+        List<HatchetSocialAction> page = response.socialActions;
+        if (page == null) {
+            page = new ArrayList<HatchetSocialAction>();
+        }
+        Timeline timeline = getTimeline(type, userId);
+        synchronized (timeline) {
+            if (offset == 0) {
+                boolean overlaps = false;
+                for (HatchetSocialAction socialAction : page) {
+                    if (timeline.mSocialActionIds.contains(socialAction.id)) {
+                        overlaps = true;
+                        break;
+                    }
+                }
+                List<HatchetSocialAction> oldSocialActions =
+                        new ArrayList<HatchetSocialAction>(timeline.mSocialActions);
+                timeline.mSocialActions.clear();
+                timeline.mSocialActionIds.clear();
+                append(timeline, page);
+                if (overlaps) {
+                    append(timeline, oldSocialActions);
+                } else {
+                    timeline.mEndReached = false;
+                }
+            } else {
+                append(timeline, page);
+            }
+            if (page.size() < limit) {
+                timeline.mEndReached = true;
+            }
+            putAll(timeline.mTracks, response.tracks);
+            putAll(timeline.mArtists, response.artists);
+            putAll(timeline.mAlbums, response.albums);
+            putAll(timeline.mPlaylists, response.playlists);
+            putAll(timeline.mUsers, response.users);
+            timeline.mConverted = null;
+            timeline.mVersion++;
+        }
+        persist(type, userId, timeline);
+    }
+
+    private Timeline getTimeline(int type, String userId) {
+        String key = type + "_" + userId;
+        Timeline timeline = mTimelines.get(key);
+        if (timeline == null) {
+            Timeline newTimeline = new Timeline();
+            // Hold the lock while loading, so that nobody gets to see the timeline before that
+            synchronized (newTimeline) {
+                timeline = mTimelines.putIfAbsent(key, newTimeline);
+                if (timeline == null) {
+                    timeline = newTimeline;
+                    load(type, userId, timeline);
+                }
+            }
+        }
+        return timeline;
+    }
+
+    private void load(int type, String userId, Timeline timeline) {
+        File file = getFile(type, userId);
+        if (!file.exists()) {
+            return;
+        }
+        try {
+            HatchetTimeline stored = InfoSystemUtils.getObjectMapper()
+                    .readValue(file, HatchetTimeline.class);
+            if (stored.socialActions != null) {
+                append(timeline, stored.socialActions);
+            }
+            putAll(timeline.mTracks, stored.tracks);
+            putAll(timeline.mArtists, stored.artists);
+            putAll(timeline.mAlbums, stored.albums);
+            putAll(timeline.mPlaylists, stored.playlists);
+            putAll(timeline.mUsers, stored.users);
+            timeline.mEndReached = stored.endReached;
+        } catch (IOException e) {
+            Log.e(TAG, "load: " + e.getClass() + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Write the newest {@link #MAX_PERSISTED_ITEMS} of the given {@link Timeline} to disk in the
+     * background, together with only the objects they refer to. The writes aren't necessarily
+     * being run in order, so a snapshot is being skipped, if a newer one has been written already.
+     */
+    private void persist(final int type, final String userId, final Timeline timeline) {
+        final HatchetTimeline stored = new HatchetTimeline();
+        final long version;
+        synchronized (timeline) {
+            version = timeline.mVersion;
+            int count = Math.min(timeline.mSocialActions.size(), MAX_PERSISTED_ITEMS);
+            stored.socialActions =
+                    new ArrayList<HatchetSocialAction>(timeline.mSocialActions.subList(0, count));
+            stored.tracks = new ArrayList<HatchetTrackInfo>();
+            stored.artists = new ArrayList<HatchetArtistInfo>();
+            stored.albums = new ArrayList<HatchetAlbumInfo>();
+            stored.playlists = new ArrayList<HatchetPlaylistInfo>();
+            stored.users = new ArrayList<HatchetUserInfo>();
+            Set<String> ids = new HashSet<String>();
+            for (HatchetSocialAction socialAction : stored.socialActions) {
+                HatchetTrackInfo track = timeline.mTracks.get(socialAction.track);
+                HatchetAlbumInfo album = timeline.mAlbums.get(socialAction.album);
+                addOnce(stored.tracks, track, ids);
+                addOnce(stored.albums, album, ids);
+                addOnce(stored.artists, timeline.mArtists.get(socialAction.artist), ids);
+                if (track != null) {
+                    addOnce(stored.artists, timeline.mArtists.get(track.artist), ids);
+                }
+                if (album != null) {
+                    addOnce(stored.artists, timeline.mArtists.get(album.artist), ids);
+                }
+                addOnce(stored.playlists, timeline.mPlaylists.get(socialAction.playlist), ids);
+                addOnce(stored.users, timeline.mUsers.get(socialAction.user), ids);
+                addOnce(stored.users, timeline.mUsers.get(socialAction.target), ids);
+            }
+            stored.endReached = timeline.mEndReached
+                    && count == timeline.mSocialActions.size();
+        }
+        ThreadManager.getInstance().execute(
+                new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_DATABASEACTION) {
+                    @Override
+                    public void run() {
+                        synchronized (TimelineStore.this) {
+                            if (version <= timeline.mPersistedVersion) {
+                                return;
+                            }
+                            timeline.mPersistedVersion = version;
+                            File file = getFile(type, userId);
+                            File tempFile = new File(file.getPath() + ".tmp");
+                            try {
+                                file.getParentFile().mkdirs();
+                                InfoSystemUtils.getObjectMapper().writeValue(tempFile, stored);
+                                if (!tempFile.renameTo(file)) {
+                                    Log.e(TAG, "persist: couldn't rename " + tempFile);
+                                }
+                            } catch (IOException e) {
+                                Log.e(TAG, "persist: " + e.getClass() + ": "
+                                        + e.getLocalizedMessage());
+                            } finally {
+                                tempFile.delete();
+                            }
+                        }
+                    }
+                }
+        );
+    }
+
+    private static SocialAction convert(Timeline timeline, HatchetSocialAction socialAction) {
+        HatchetTrackInfo track = TomahawkUtils.carelessGet(timeline.mTracks, socialAction.track);
+        HatchetAlbumInfo album = TomahawkUtils.carelessGet(timeline.mAlbums, socialAction.album);
+        HatchetArtistInfo artist = null;
+        if (socialAction.artist != null) {
+            artist = TomahawkUtils.carelessGet(timeline.mArtists, socialAction.artist);
+        } else if (track != null) {
+            artist = TomahawkUtils.carelessGet(timeline.mArtists, track.artist);
+        } else if (album != null) {
+            artist = TomahawkUtils.carelessGet(timeline.mArtists, album.artist);
+        }
+        HatchetUserInfo user = TomahawkUtils.carelessGet(timeline.mUsers, socialAction.user);
+        HatchetUserInfo target = TomahawkUtils.carelessGet(timeline.mUsers, socialAction.target);
+        HatchetPlaylistInfo playlist =
+                TomahawkUtils.carelessGet(timeline.mPlaylists, socialAction.playlist);
+        return InfoSystemUtils.convertToSocialAction(socialAction, track, artist, album, user,
+                target, playlist);
+    }
+
+    private static void append(Timeline timeline, List<HatchetSocialAction> socialActions) {
+        for (HatchetSocialAction socialAction : socialActions) {
+            if (socialAction != null && timeline.mSocialActionIds.add(socialAction.id)) {
+                timeline.mSocialActions.add(socialAction);
+            }
+        }
+    }
+
+    private static <T extends Mappable> void putAll(Map<String, T> map, Map<String, T> items) {
+        if (items != null) {
+            map.putAll(items);
+        }
+    }
+
+    private static <T extends Mappable> void putAll(Map<String, T> map, List<T> items) {
+        if (items != null) {
+            map.putAll(DeserializerUtils.listToMap(items));
+        }
+    }
+
+    private static <T extends Mappable> void addOnce(List<T> list, T item, Set<String> ids) {
+        if (item != null && ids.add(item.getClass().getSimpleName() + item.id)) {
+            list.add(item);
+        }
+    }
+
+    private static File getFile(int type, String userId) {
+        return new File(new File(TomahawkApp.getContext().getFilesDir(), DIR_NAME),
+                type + "_" + userId + ".json");
+    }
+}
@@ -27,10 +27,7 @@ import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.utils.TomahawkListItem;
 
-import android.util.SparseArray;
-
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -64,10 +61,6 @@ public class User implements TomahawkListItem {
 
     private int mTotalPlays;
 
-    private SparseArray<List<SocialAction>> mSocialActions = new SparseArray<List<SocialAction>>();
-
-    private SparseArray<List<SocialAction>> mFriendsFeed = new SparseArray<List<SocialAction>>();
-
     private Playlist mPlaybackLog;
 
     private Playlist mFavorites;
@@ -112,8 +105,7 @@ public class User implements TomahawkListItem {
      */
     public static ArrayList<User> getUsers() {
         ArrayList<User> users = new ArrayList<User>(sUsers.values());
-        Collections.sort(users,
-                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_ALPHA));
+        TomahawkListItemComparator.ALPHA.sort(users);
         return users;
     }
 
@@ -222,22 +214,6 @@ public class User implements TomahawkListItem {
         mTotalPlays = totalPlays;
     }
 
-    public SparseArray<List<SocialAction>> getSocialActions() {
-        return mSocialActions;
-    }
-
-    public void setSocialActions(ArrayList<SocialAction> socialActions, int pageNumber) {
-        mSocialActions.put(pageNumber, socialActions);
-    }
-
-    public SparseArray<List<SocialAction>> getFriendsFeed() {
-        return mFriendsFeed;
-    }
-
-    public void setFriendsFeed(ArrayList<SocialAction> friendsFeed, int pageNumber) {
-        mFriendsFeed.put(pageNumber, friendsFeed);
-    }
-
     public Playlist getPlaybackLog() {
         return mPlaybackLog;
     }
@@ -38,7 +38,7 @@ import org.tomahawk.libtomahawk.infosystem.InfoSystem;
 import org.tomahawk.libtomahawk.infosystem.InfoSystemUtils;
 import org.tomahawk.libtomahawk.infosystem.JacksonConverter;
 import org.tomahawk.libtomahawk.infosystem.QueryParams;
-import org.tomahawk.libtomahawk.infosystem.SocialAction;
+import org.tomahawk.libtomahawk.infosystem.TimelineStore;
 import org.tomahawk.libtomahawk.infosystem.User;
 import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetAlbumInfo;
 import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetAlbums;
@@ -53,7 +53,6 @@ import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetRelationshipStr
 import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetRelationshipsStruct;
 import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetSearch;
 import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetSearchItem;
-import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetSocialAction;
 import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetSocialActionResponse;
 import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetTrackInfo;
 import org.tomahawk.libtomahawk.infosystem.hatchet.models.HatchetTracks;
@@ -288,43 +287,8 @@ public class HatchetInfoPlugin extends InfoPlugin {
                 if (response != null) {
                     User userToBeFilled = (User) mItemsToBeFilled
                             .get(infoRequestData.getRequestId());
-                    if (response.socialActions != null && response.socialActions.size() > 0) {
-                        ArrayList<SocialAction> socialActions = new ArrayList<SocialAction>();
-                        for (HatchetSocialAction hatchetSocialAction : response.socialActions) {
-                            HatchetTrackInfo track = TomahawkUtils.carelessGet(response.tracks,
-                                    hatchetSocialAction.track);
-                            HatchetAlbumInfo album = TomahawkUtils.carelessGet(response.albums,
-                                    hatchetSocialAction.album);
-                            HatchetArtistInfo artist = null;
-                            if (hatchetSocialAction.artist != null) {
-                                artist = TomahawkUtils.carelessGet(response.artists,
-                                        hatchetSocialAction.artist);
-                            } else if (track != null) {
-                                artist = TomahawkUtils.carelessGet(response.artists, track.artist);
-                            } else if (album != null) {
-                                artist = TomahawkUtils.carelessGet(response.artists, album.artist);
-                            }
-                            HatchetUserInfo user = TomahawkUtils.carelessGet(response.users,
-                                    hatchetSocialAction.user);
-                            HatchetUserInfo target = TomahawkUtils.carelessGet(response.users,
-                                    hatchetSocialAction.target);
-                            HatchetPlaylistInfo playlist = TomahawkUtils
-                                    .carelessGet(response.playlists,
-                                            hatchetSocialAction.playlist);
-                            socialActions.add(InfoSystemUtils.convertToSocialAction(
-                                    hatchetSocialAction, track, artist, album, user, target,
-                                    playlist));
-                        }
-                        if (infoRequestData.getType()
-                                == InfoRequestData.INFOREQUESTDATA_TYPE_USERS_SOCIALACTIONS) {
-                            userToBeFilled
-                                    .setSocialActions(socialActions, params.offset / params.limit);
-                        } else if (infoRequestData.getType()
-                                == InfoRequestData.INFOREQUESTDATA_TYPE_USERS_FRIENDSFEED) {
-                            userToBeFilled
-                                    .setFriendsFeed(socialActions, params.offset / params.limit);
-                        }
-                    }
+                    TimelineStore.getInstance().addPage(infoRequestData.getType(),
+                            params.userid, params.offset, params.limit, response);
                     infoRequestData.setResult(userToBeFilled);
                     return true;
                 }
@@ -643,74 +607,7 @@ public class HatchetInfoPlugin extends InfoPlugin {
                 boolean success = false;
                 String accessToken = mHatchetAuthenticatorUtils.ensureAccessTokens();
                 if (accessToken != null) {
-                    String data = infoRequestData.getJsonStringToSend();
-                    try {
-                        if (infoRequestData.getType()
-                                == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYBACKLOGENTRIES) {
-                            mHatchet.postPlaybackLogEntries(accessToken,
-                                    new TypedByteArray("application/json; charset=utf-8",
-                                            data.getBytes(Charsets.UTF_8)));
-                        } else if (infoRequestData.getType()
-                                == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYBACKLOGENTRIES_NOWPLAYING) {
-                            mHatchet.postPlaybackLogEntriesNowPlaying(accessToken,
-                                    new TypedByteArray("application/json; charset=utf-8",
-                                            data.getBytes(Charsets.UTF_8)));
-                        } else if (infoRequestData.getType()
-                                == InfoRequestData.INFOREQUESTDATA_TYPE_SOCIALACTIONS) {
-                            mHatchet.postSocialActions(accessToken,
-                                    new TypedByteArray("application/json; charset=utf-8",
-                                            data.getBytes(Charsets.UTF_8)));
-                        } else if (infoRequestData.getType()
-                                == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS) {
-                            if (infoRequestData.getHttpType()
-                                    == InfoRequestData.HTTPTYPE_POST) {
-                                HatchetPlaylistEntries entries = mHatchet.postPlaylists(accessToken,
-                                        new TypedByteArray("application/json; charset=utf-8",
-                                                data.getBytes(Charsets.UTF_8)));
-                                infoRequestData.setResult(entries);
-                            } else if (infoRequestData.getHttpType()
-                                    == InfoRequestData.HTTPTYPE_DELETE) {
-                                mHatchet.deletePlaylists(accessToken,
-                                        infoRequestData.getQueryParams().playlist_id);
-                            } else if (infoRequestData.getHttpType()
-                                    == InfoRequestData.HTTPTYPE_PUT) {
-                                mHatchet.putPlaylists(accessToken,
-                                        infoRequestData.getQueryParams().playlist_id,
-                                        new TypedByteArray("application/json; charset=utf-8",
-                                                data.getBytes(Charsets.UTF_8)));
-                            }
-                        } else if (infoRequestData.getType()
-                                == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS_PLAYLISTENTRIES) {
-                            if (infoRequestData.getHttpType()
-                                    == InfoRequestData.HTTPTYPE_POST) {
-                                mHatchet.postPlaylistsPlaylistEntries(accessToken,
-                                        infoRequestData.getQueryParams().playlist_id,
-                                        new TypedByteArray("application/json; charset=utf-8",
-                                                data.getBytes(Charsets.UTF_8)));
-                            } else if (infoRequestData.getHttpType()
-                                    == InfoRequestData.HTTPTYPE_DELETE) {
-                                mHatchet.deletePlaylistsPlaylistEntries(accessToken,
-                                        infoRequestData.getQueryParams().playlist_id,
-                                        infoRequestData.getQueryParams().entry_id);
-                            }
-                        } else if (infoRequestData.getType()
-                                == InfoRequestData.INFOREQUESTDATA_TYPE_RELATIONSHIPS) {
-                            if (infoRequestData.getHttpType()
-                                    == InfoRequestData.HTTPTYPE_POST) {
-                                mHatchet.postRelationship(accessToken,
-                                        new TypedByteArray("application/json; charset=utf-8",
-                                                data.getBytes(Charsets.UTF_8)));
-                            } else if (infoRequestData.getHttpType()
-                                    == InfoRequestData.HTTPTYPE_DELETE) {
-                                mHatchet.deleteRelationShip(accessToken,
-                                        infoRequestData.getQueryParams().relationship_id);
-                            }
-                        }
-                        success = true;
-                    } catch (RetrofitError e) {
-                        Log.e(TAG, "send: Request to " + e.getUrl() + " failed: " + e.getClass()
-                                + ": " + e.getLocalizedMessage());
-                    }
+                    success = sendSynchronously(infoRequestData, accessToken);
                 }
                 InfoSystem.getInstance().onLoggedOpsSent(doneRequestsIds, success);
                 InfoSystem.getInstance().reportResults(infoRequestData, success);
@@ -719,6 +616,122 @@ public class HatchetInfoPlugin extends InfoPlugin {
         ThreadManager.getInstance().execute(runnable);
     }
 
+    /**
+     * Send the given batch of InfoRequestData objects one after the other, using the same access
+     * token. If a request fails, the remaining ones aren't sent and are reported as failed, so
+     * that they can be retried later in the same order.
+     */
+    @Override
+    public void send(final List<InfoRequestData> infoRequestDatas,
+            AuthenticatorUtils authenticatorUtils) {
+        mHatchetAuthenticatorUtils = (HatchetAuthenticatorUtils) authenticatorUtils;
+        TomahawkRunnable runnable = new TomahawkRunnable(
+                TomahawkRunnable.PRIORITY_IS_INFOSYSTEM_MEDIUM) {
+            @Override
+            public void run() {
+                ArrayList<String> doneRequestsIds = new ArrayList<String>();
+                ArrayList<String> failedRequestsIds = new ArrayList<String>();
+                String accessToken = mHatchetAuthenticatorUtils.ensureAccessTokens();
+                for (InfoRequestData infoRequestData : infoRequestDatas) {
+                    if (accessToken != null && failedRequestsIds.isEmpty()
+                            && sendSynchronously(infoRequestData, accessToken)) {
+                        doneRequestsIds.add(infoRequestData.getRequestId());
+                    } else {
+                        failedRequestsIds.add(infoRequestData.getRequestId());
+                    }
+                }
+                if (!doneRequestsIds.isEmpty()) {
+                    InfoSystem.getInstance().onLoggedOpsSent(doneRequestsIds, true);
+                }
+                if (!failedRequestsIds.isEmpty()) {
+                    InfoSystem.getInstance().onLoggedOpsSent(failedRequestsIds, false);
+                }
+                for (InfoRequestData infoRequestData : infoRequestDatas) {
+                    InfoSystem.getInstance().reportResults(infoRequestData,
+                            doneRequestsIds.contains(infoRequestData.getRequestId()));
+                }
+            }
+        };
+        ThreadManager.getInstance().execute(runnable);
+    }
+
+    /**
+     * Send the given InfoRequestData's json string to the Hatchet API on the current thread
+     *
+     * @return whether or not the request was successful
+     */
+    private boolean sendSynchronously(InfoRequestData infoRequestData, String accessToken) {
+        String data = infoRequestData.getJsonStringToSend();
+        try {
+            if (infoRequestData.getType()
+                    == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYBACKLOGENTRIES) {
+                mHatchet.postPlaybackLogEntries(accessToken,
+                        new TypedByteArray("application/json; charset=utf-8",
+                                data.getBytes(Charsets.UTF_8)));
+            } else if (infoRequestData.getType()
+                    == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYBACKLOGENTRIES_NOWPLAYING) {
+                mHatchet.postPlaybackLogEntriesNowPlaying(accessToken,
+                        new TypedByteArray("application/json; charset=utf-8",
+                                data.getBytes(Charsets.UTF_8)));
+            } else if (infoRequestData.getType()
+                    == InfoRequestData.INFOREQUESTDATA_TYPE_SOCIALACTIONS) {
+                mHatchet.postSocialActions(accessToken,
+                        new TypedByteArray("application/json; charset=utf-8",
+                                data.getBytes(Charsets.UTF_8)));
+            } else if (infoRequestData.getType()
+                    == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS) {
+                if (infoRequestData.getHttpType()
+                        == InfoRequestData.HTTPTYPE_POST) {
+                    HatchetPlaylistEntries entries = mHatchet.postPlaylists(accessToken,
+                            new TypedByteArray("application/json; charset=utf-8",
+                                    data.getBytes(Charsets.UTF_8)));
+                    infoRequestData.setResult(entries);
+                } else if (infoRequestData.getHttpType()
+                        == InfoRequestData.HTTPTYPE_DELETE) {
+                    mHatchet.deletePlaylists(accessToken,
+                            infoRequestData.getQueryParams().playlist_id);
+                } else if (infoRequestData.getHttpType()
+                        == InfoRequestData.HTTPTYPE_PUT) {
+                    mHatchet.putPlaylists(accessToken,
+                            infoRequestData.getQueryParams().playlist_id,
+                            new TypedByteArray("application/json; charset=utf-8",
+                                    data.getBytes(Charsets.UTF_8)));
+                }
+            } else if (infoRequestData.getType()
+                    == InfoRequestData.INFOREQUESTDATA_TYPE_PLAYLISTS_PLAYLISTENTRIES) {
+                if (infoRequestData.getHttpType()
+                        == InfoRequestData.HTTPTYPE_POST) {
+                    mHatchet.postPlaylistsPlaylistEntries(accessToken,
+                            infoRequestData.getQueryParams().playlist_id,
+                            new TypedByteArray("application/json; charset=utf-8",
+                                    data.getBytes(Charsets.UTF_8)));
+                } else if (infoRequestData.getHttpType()
+                        == InfoRequestData.HTTPTYPE_DELETE) {
+                    mHatchet.deletePlaylistsPlaylistEntries(accessToken,
+                            infoRequestData.getQueryParams().playlist_id,
+                            infoRequestData.getQueryParams().entry_id);
+                }
+            } else if (infoRequestData.getType()
+                    == InfoRequestData.INFOREQUESTDATA_TYPE_RELATIONSHIPS) {
+                if (infoRequestData.getHttpType()
+                        == InfoRequestData.HTTPTYPE_POST) {
+                    mHatchet.postRelationship(accessToken,
+                            new TypedByteArray("application/json; charset=utf-8",
+                                    data.getBytes(Charsets.UTF_8)));
+                } else if (infoRequestData.getHttpType()
+                        == InfoRequestData.HTTPTYPE_DELETE) {
+                    mHatchet.deleteRelationShip(accessToken,
+                            infoRequestData.getQueryParams().relationship_id);
+                }
+            }
+            return true;
+        } catch (RetrofitError e) {
+            Log.e(TAG, "send: Request to " + e.getUrl() + " failed: " + e.getClass()
+                    + ": " + e.getLocalizedMessage());
+        }
+        return false;
+    }
+
     /**
      * _fetch_ data from the Hatchet API (e.g. artist's top-hits, image etc.)
      */
@@ -737,9 +750,13 @@ public class HatchetInfoPlugin extends InfoPlugin {
         TomahawkRunnable runnable = new TomahawkRunnable(priority) {
             @Override
             public void run() {
+                if (InfoSystem.getInstance().isCancelled(infoRequestData.getRequestId())) {
+                    InfoSystem.getInstance().reportResults(infoRequestData, false);
+                    return;
+                }
+                boolean success = false;
                 try {
-                    boolean success = getParseConvert(infoRequestData);
-                    InfoSystem.getInstance().reportResults(infoRequestData, success);
+                    success = getParseConvert(infoRequestData);
                 } catch (ClientProtocolException e) {
                     Log.e(TAG, "resolve: " + e.getClass() + ": " + e.getLocalizedMessage());
                 } catch (IOException e) {
@@ -749,6 +766,8 @@ public class HatchetInfoPlugin extends InfoPlugin {
                 } catch (KeyManagementException e) {
                     Log.e(TAG, "resolve: " + e.getClass() + ": " + e.getLocalizedMessage());
                 }
+                // Failed requests are being reported as well, so that nobody waits for them
+                InfoSystem.getInstance().reportResults(infoRequestData, success);
             }
         };
         ThreadManager.getInstance().execute(runnable);
@@ -0,0 +1,47 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.infosystem.hatchet.models;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.List;
+
+/**
+ * The persisted form of a timeline of {@link HatchetSocialAction}s, together with all the objects
+ * they refer to.
+ */
+@JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+public class HatchetTimeline {
+
+    public List<HatchetSocialAction> socialActions;
+
+    public List<HatchetTrackInfo> tracks;
+
+    public List<HatchetArtistInfo> artists;
+
+    public List<HatchetAlbumInfo> albums;
+
+    public List<HatchetPlaylistInfo> playlists;
+
+    public List<HatchetUserInfo> users;
+
+    public boolean endReached;
+
+    public HatchetTimeline() {
+    }
+}
@@ -116,9 +116,17 @@ public class DataBaseResolver extends Resolver {
     public boolean resolve(final Query queryToSearchFor) {
         if (mReady) {
             mStopped = false;
-            ArrayList<Result> results = new ArrayList<Result>();
-            List<Query> inputList = CollectionManager.getInstance().getCollection(mId).getQueries(
-                    false);
+            UserCollection userCollection = (UserCollection) CollectionManager.getInstance()
+                    .getCollection(mId);
+            ArrayList<Result> results = userCollection.search(queryToSearchFor);
+            if (results != null) {
+                PipeLine.getInstance().reportResults(queryToSearchFor, results, mId, true);
+                mStopped = true;
+                return mReady;
+            }
+            // The index isn't available, so we have to fall back to a linear search
+            results = new ArrayList<Result>();
+            List<Query> inputList = userCollection.getQueries(false);
 
             for (Query existingQuery : inputList) {
                 String existingTrackName = existingQuery.getName();
@@ -22,39 +22,57 @@ import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.FieldCache;
 import org.apache.lucene.search.FuzzyQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Version;
 import org.tomahawk.libtomahawk.resolver.models.ScriptResolverFuzzyIndex;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 
+import android.support.v4.util.LruCache;
 import android.util.Log;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FuzzyIndex {
 
     private final static String TAG = FuzzyIndex.class.getSimpleName();
 
+    private static final int RESULT_CACHE_SIZE = 500;
+
     private String mLucenePath;
 
     private IndexWriter mLuceneWriter;
 
-    private SearcherManager mSearcherManager;
+    private volatile SearcherManager mSearcherManager;
+
+    /**
+     * Recent search results. Cleared whenever the index changes. Keys of full text searches are
+     * prefixed with "F", keys of track searches with "T", so that they can't collide.
+     */
+    private final LruCache<String, double[][]> mResultCache =
+            new LruCache<String, double[][]>(RESULT_CACHE_SIZE);
+
+    private final AtomicInteger mGeneration = new AtomicInteger();
 
     /**
      * Tries to create a new fuzzy index
@@ -109,12 +127,14 @@ public class FuzzyIndex {
                 for (ScriptResolverFuzzyIndex index : indexList) {
                     Document document = new Document();
                     document.add(new IntField("id", index.id, Field.Store.YES));
+                    document.add(new NumericDocValuesField("id", index.id));
                     document.add(new StringField("artist", index.artist, Field.Store.YES));
                     document.add(new StringField("album", index.album, Field.Store.YES));
                     document.add(new StringField("track", index.track, Field.Store.YES));
                     mLuceneWriter.addDocument(document);
                 }
                 endIndexing();
+                onIndexChanged();
             } catch (IOException e) {
                 Log.e(TAG, "addScriptResolverFuzzyIndexList: " + e.getClass() + ": " + e
                         .getLocalizedMessage());
@@ -127,6 +147,8 @@ public class FuzzyIndex {
             try {
                 Log.d(TAG, "deleteIndex");
                 TomahawkUtils.deleteRecursive(new File(mLucenePath));
+                mGeneration.incrementAndGet();
+                mResultCache.evictAll();
             } catch (FileNotFoundException e) {
                 Log.e(TAG, "deleteIndex: " + e.getClass() + ": " + e
                         .getLocalizedMessage());
@@ -135,57 +157,100 @@ public class FuzzyIndex {
     }
 
     public double[][] search(Query query) {
-        synchronized (this) {
-            double[][] results = new double[][]{};
+        if (query.isFullTextQuery()) {
+            return search(query.getFullTextQuery());
+        } else {
+            return search(query.getArtist().getName(), query.getBasicTrack().getName());
+        }
+    }
+
+    /**
+     * Search the index for entries whose artist or track name is similar to the given text
+     *
+     * @return an array of [id, score] pairs
+     */
+    public double[][] search(String fullTextQuery) {
+        String cacheKey = "F\t" + fullTextQuery;
+        double[][] results = mResultCache.get(cacheKey);
+        if (results == null) {
+            BooleanQuery qry = new BooleanQuery();
+            Term term = new Term("track", fullTextQuery);
+            qry.add(new FuzzyQuery(term), BooleanClause.Occur.SHOULD);
+            term = new Term("artist", fullTextQuery);
+            qry.add(new FuzzyQuery(term), BooleanClause.Occur.SHOULD);
+            results = search(qry, cacheKey);
+        }
+        return results;
+    }
+
+    /**
+     * Search the index for entries whose artist and track name are similar to the given ones
+     *
+     * @return an array of [id, score] pairs
+     */
+    public double[][] search(String artistName, String trackName) {
+        String cacheKey = "T\t" + artistName + "\t" + trackName;
+        double[][] results = mResultCache.get(cacheKey);
+        if (results == null) {
+            BooleanQuery qry = new BooleanQuery();
+            Term term = new Term("track", trackName);
+            qry.add(new FuzzyQuery(term), BooleanClause.Occur.MUST);
+            term = new Term("artist", artistName);
+            qry.add(new FuzzyQuery(term), BooleanClause.Occur.MUST);
+            results = search(qry, cacheKey);
+        }
+        return results;
+    }
+
+    /**
+     * Runs the given query without holding any lock. The ids of the hits are read from the "id"
+     * doc values (or the FieldCache for indexes, which have been written without doc values)
+     * instead of loading every hit's stored Document.
+     */
+    private double[][] search(BooleanQuery qry, String cacheKey) {
+        double[][] results = new double[][]{};
+        SearcherManager searcherManager = mSearcherManager;
+        if (searcherManager == null) {
+            return results;
+        }
+        int generation = mGeneration.get();
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
             try {
-                BooleanQuery qry = new BooleanQuery();
-                if (query.isFullTextQuery()) {
-                    String escapedQuery = MultiFieldQueryParser.escape(query.getFullTextQuery());
-                    Term term = new Term("track", escapedQuery);
-                    org.apache.lucene.search.Query fqry = new FuzzyQuery(term);
-                    qry.add(fqry, BooleanClause.Occur.SHOULD);
-                    term = new Term("artist", escapedQuery);
-                    fqry = new FuzzyQuery(term);
-                    qry.add(fqry, BooleanClause.Occur.SHOULD);
-                    term = new Term("fulltext", escapedQuery);
-                    fqry = new FuzzyQuery(term);
-                    qry.add(fqry, BooleanClause.Occur.SHOULD);
-                    Log.d(TAG, "search - fulltext: " + escapedQuery);
-                } else {
-                    String escapedTrackName = MultiFieldQueryParser
-                            .escape(query.getBasicTrack().getName());
-                    String escapedArtistName = MultiFieldQueryParser
-                            .escape(query.getArtist().getName());
-                    Term term = new Term("track", escapedTrackName);
-                    org.apache.lucene.search.Query fqry = new FuzzyQuery(term);
-                    qry.add(fqry, BooleanClause.Occur.MUST);
-                    term = new Term("artist", escapedArtistName);
-                    fqry = new FuzzyQuery(term);
-                    qry.add(fqry, BooleanClause.Occur.MUST);
-                    Log.d(TAG, "search - non-fulltext: " + escapedArtistName + ", "
-                            + escapedTrackName);
-                }
-                IndexSearcher searcher = mSearcherManager.acquire();
-                long time = System.currentTimeMillis();
                 ScoreDoc[] hits = searcher.search(qry, 50).scoreDocs;
-                Log.d(TAG, "search - searching took " + (System.currentTimeMillis() - time) + "ms");
+                List<AtomicReaderContext> leaves = searcher.getIndexReader().leaves();
                 results = new double[hits.length][2];
                 for (int i = 0; i < hits.length; i++) {
                     ScoreDoc doc = hits[i];
-                    Document document = searcher.doc(doc.doc);
-                    results[i][0] = document.getField("id").numericValue().intValue();
+                    AtomicReaderContext leaf = leaves.get(ReaderUtil.subIndex(doc.doc, leaves));
+                    FieldCache.Ints ids = FieldCache.DEFAULT.getInts(leaf.reader(), "id",
+                            FieldCache.NUMERIC_UTILS_INT_PARSER, false);
+                    results[i][0] = ids.get(doc.doc - leaf.docBase);
                     results[i][1] = doc.score;
                 }
-                if (results.length > 0) {
-                    Log.d(TAG, "search - first result: id:" + results[0][0]
-                            + ", score: " + results[0][1]);
-                }
-                mSearcherManager.release(searcher);
-            } catch (IOException e) {
-                Log.e(TAG, "search: " + e.getClass() + ": " + e.getLocalizedMessage());
+            } finally {
+                searcherManager.release(searcher);
             }
+        } catch (IOException | AlreadyClosedException e) {
+            Log.e(TAG, "search: " + e.getClass() + ": " + e.getLocalizedMessage());
             return results;
         }
+        // Don't cache results from a searcher, which is older than the latest index change
+        if (generation == mGeneration.get()) {
+            mResultCache.put(cacheKey, results);
+        }
+        return results;
+    }
+
+    /**
+     * Makes the latest changes visible to searches and invalidates all cached results
+     */
+    private void onIndexChanged() throws IOException {
+        mGeneration.incrementAndGet();
+        if (mSearcherManager != null) {
+            mSearcherManager.maybeRefresh();
+        }
+        mResultCache.evictAll();
     }
 
     /**
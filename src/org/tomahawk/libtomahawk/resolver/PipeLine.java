@@ -22,25 +22,39 @@ import com.google.common.collect.Sets;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 
+import org.tomahawk.libtomahawk.authentication.AuthenticatorManager;
+import org.tomahawk.libtomahawk.authentication.AuthenticatorUtils;
 import org.tomahawk.libtomahawk.infosystem.InfoSystemUtils;
 import org.tomahawk.libtomahawk.resolver.models.ScriptResolverMetaData;
+import org.tomahawk.libtomahawk.resolver.models.ScriptResolverMetaDataCache;
 import org.tomahawk.libtomahawk.resolver.models.ScriptResolverUrlResult;
 import org.tomahawk.libtomahawk.resolver.spotify.SpotifyResolver;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.TomahawkApp;
+import org.tomahawk.tomahawk_android.utils.ResolveTracer;
 import org.tomahawk.tomahawk_android.utils.ThreadManager;
 import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
 
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import de.greenrobot.event.EventBus;
 
@@ -48,6 +62,11 @@ import de.greenrobot.event.EventBus;
  * The {@link PipeLine} is being used to provide all the resolving functionality. All {@link
  * Resolver}s are stored and invoked here. Callbacks which report the found {@link Result}s are also
  * included in this class.
+ *
+ * The {@link ScriptResolver}s are being added in the background after the metadata of the bundled
+ * resolvers has been loaded. Only the enabled ones are being started right away, all others are
+ * being started on demand. Every {@link Query} is being dispatched to each {@link Resolver} as
+ * soon as that {@link Resolver} is ready, instead of waiting for all of them.
  */
 public class PipeLine implements Resolver.OnResolverReadyListener {
 
@@ -69,6 +88,10 @@ public class PipeLine implements Resolver.OnResolverReadyListener {
 
     private static final float MINSCORE = 0.5F;
 
+    private static final int MAX_CANCELLED_QUERIES = 100;
+
+    private static final String METADATA_CACHE_FILE = "resolvermetadata.json";
+
     private static class Holder {
 
         private static final PipeLine instance = new PipeLine();
@@ -94,47 +117,145 @@ public class PipeLine implements Resolver.OnResolverReadyListener {
         public ScriptResolverUrlResult mResult;
     }
 
-    private ArrayList<Resolver> mResolvers = new ArrayList<Resolver>();
+    private List<Resolver> mResolvers = new CopyOnWriteArrayList<Resolver>();
+
+    // Queries, which have been resolved before all resolvers have been added, mapped to their
+    // forceOnlyLocal flag
+    private ConcurrentHashMap<Query, Boolean> mWaitingQueries =
+            new ConcurrentHashMap<Query, Boolean>();
 
-    private Set<Query> mWaitingQueries =
-            Sets.newSetFromMap(new ConcurrentHashMap<Query, Boolean>());
+    // Queries, which are waiting for the Resolver they have been dispatched to to become ready
+    private ConcurrentHashMap<Resolver, Set<Query>> mPendingQueries =
+            new ConcurrentHashMap<Resolver, Set<Query>>();
 
     private HashSet<String> mWaitingUrlLookups = new HashSet<>();
 
-    private boolean mAllResolversAdded;
+    // Queries, whose resolving has been cancelled. Results reported for them are dropped. Only
+    // the most recently cancelled ones are being kept, since Queries which have already been
+    // resolved completely are never removed again.
+    private final Set<Query> mCancelledQueries = Collections.synchronizedSet(
+            Collections.newSetFromMap(new LinkedHashMap<Query, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Query, Boolean> eldest) {
+                    return size() > MAX_CANCELLED_QUERIES;
+                }
+            }));
+
+    private volatile boolean mAllResolversAdded;
+
+    private final long mCreationTime = SystemClock.elapsedRealtime();
+
+    private final AtomicBoolean mFirstResultReported = new AtomicBoolean();
 
     private ConcurrentHashMap<String, ResolverUrlHandler> mUrlHandlerMap
             = new ConcurrentHashMap<>();
 
     private PipeLine() {
+        mResolvers.add(new DataBaseResolver(
+                TomahawkApp.getContext().getString(R.string.local_collection_pretty_name), this));
+        SpotifyResolver spotifyResolver = new SpotifyResolver(this);
+        mResolvers.add(spotifyResolver);
+        EventBus.getDefault().register(this);
+        ThreadManager.getInstance().execute(
+                new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_VERYHIGH) {
+                    @Override
+                    public void run() {
+                        addScriptResolvers();
+                    }
+                });
+    }
+
+    public static PipeLine getInstance() {
+        return Holder.instance;
+    }
+
+    /**
+     * Construct a {@link ScriptResolver} for every bundled resolver and start the enabled ones.
+     * Once all of them have been added, the queries, which have been waiting for that, are being
+     * dispatched to them.
+     */
+    private void addScriptResolvers() {
+        long startTime = SystemClock.elapsedRealtime();
+        Map<String, ScriptResolverMetaData> metaDataMap = loadScriptResolverMetaData();
+        for (Map.Entry<String, ScriptResolverMetaData> entry : metaDataMap.entrySet()) {
+            ScriptResolver scriptResolver =
+                    new ScriptResolver(entry.getValue(), entry.getKey(), this);
+            mResolvers.add(scriptResolver);
+            if (scriptResolver.isEnabled()) {
+                scriptResolver.start();
+            }
+        }
+        Log.d(TAG, "addScriptResolvers - added " + metaDataMap.size() + " resolvers in "
+                + (SystemClock.elapsedRealtime() - startTime) + "ms");
+        setAllResolversAdded(true);
+        for (Map.Entry<Query, Boolean> entry : mWaitingQueries.entrySet()) {
+            mWaitingQueries.remove(entry.getKey());
+            if (!mCancelledQueries.contains(entry.getKey())) {
+                for (Resolver resolver : mResolvers) {
+                    if (resolver instanceof ScriptResolver) {
+                        dispatch(resolver, entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
+        onResolverReady(null);
+    }
+
+    /**
+     * Load the metadata of every bundled resolver. The parsed metadata is being cached in a file,
+     * which is valid until the app is being updated, because the bundled resolvers can't change
+     * before that.
+     *
+     * @return a {@link Map} of every resolver's path to its {@link ScriptResolverMetaData}
+     */
+    private static Map<String, ScriptResolverMetaData> loadScriptResolverMetaData() {
+        Context context = TomahawkApp.getContext();
+        long appLastUpdateTime = 0;
         try {
-            String[] plugins = TomahawkApp.getContext().getAssets().list("js/resolvers");
+            appLastUpdateTime = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            Log.e(TAG, "loadScriptResolverMetaData: " + e.getClass() + ": "
+                    + e.getLocalizedMessage());
+        }
+        File cacheFile = new File(context.getFilesDir(), METADATA_CACHE_FILE);
+        if (cacheFile.exists()) {
+            try {
+                ScriptResolverMetaDataCache cache = InfoSystemUtils.getObjectMapper()
+                        .readValue(cacheFile, ScriptResolverMetaDataCache.class);
+                if (cache.appLastUpdateTime == appLastUpdateTime && cache.metaData != null) {
+                    return cache.metaData;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "loadScriptResolverMetaData: " + e.getClass() + ": "
+                        + e.getLocalizedMessage());
+            }
+        }
+
+        ScriptResolverMetaDataCache cache = new ScriptResolverMetaDataCache();
+        cache.appLastUpdateTime = appLastUpdateTime;
+        cache.metaData = new LinkedHashMap<String, ScriptResolverMetaData>();
+        try {
+            String[] plugins = context.getAssets().list("js/resolvers");
             for (String plugin : plugins) {
                 String path = "js/resolvers/" + plugin + "/content";
                 try {
-                    String rawJsonString = TomahawkUtils
-                            .inputStreamToString(TomahawkApp.getContext()
-                                    .getAssets().open(path + "/metadata.json"));
+                    String rawJsonString = TomahawkUtils.inputStreamToString(
+                            context.getAssets().open(path + "/metadata.json"));
                     ScriptResolverMetaData metaData = InfoSystemUtils.getObjectMapper()
                             .readValue(rawJsonString, ScriptResolverMetaData.class);
-                    ScriptResolver scriptResolver = new ScriptResolver(metaData, path, this);
-                    mResolvers.add(scriptResolver);
+                    cache.metaData.put(path, metaData);
                 } catch (FileNotFoundException | JsonMappingException | JsonParseException e) {
-                    Log.e(TAG, "PipeLine: " + e.getClass() + ": " + e.getLocalizedMessage());
+                    Log.e(TAG, "loadScriptResolverMetaData: " + e.getClass() + ": "
+                            + e.getLocalizedMessage());
                 }
             }
+            InfoSystemUtils.getObjectMapper().writeValue(cacheFile, cache);
         } catch (IOException e) {
-            Log.e(TAG, "ensureInit: " + e.getClass() + ": " + e.getLocalizedMessage());
+            Log.e(TAG, "loadScriptResolverMetaData: " + e.getClass() + ": "
+                    + e.getLocalizedMessage());
         }
-        mResolvers.add(new DataBaseResolver(
-                TomahawkApp.getContext().getString(R.string.local_collection_pretty_name), this));
-        SpotifyResolver spotifyResolver = new SpotifyResolver(this);
-        mResolvers.add(spotifyResolver);
-        setAllResolversAdded(true);
-    }
-
-    public static PipeLine getInstance() {
-        return Holder.instance;
+        return cache.metaData;
     }
 
     /**
@@ -194,25 +315,45 @@ public class PipeLine implements Resolver.OnResolverReadyListener {
      * This will invoke every {@link Resolver} to resolve the given {@link Query}.
      */
     public Query resolve(final Query q, final boolean forceOnlyLocal) {
+        return resolve(q, forceOnlyLocal, false);
+    }
+
+    /**
+     * This will invoke every {@link Resolver} to resolve the given {@link Query}.
+     *
+     * @param skipLocal whether or not the {@link DataBaseResolver} should be skipped, because the
+     *                  caller reports the local results itself
+     */
+    public Query resolve(final Query q, final boolean forceOnlyLocal, final boolean skipLocal) {
+        mCancelledQueries.remove(q);
+        final long queuedTime = ResolveTracer.getInstance().start();
         final TomahawkRunnable r = new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_RESOLVING) {
             @Override
             public void run() {
+                ResolveTracer.getInstance().end(ResolveTracer.STAGE_QUEUED, q, null, queuedTime);
+                if (mCancelledQueries.contains(q)) {
+                    return;
+                }
                 if (!forceOnlyLocal && q.isSolved()) {
                     ResultsEvent event = new ResultsEvent();
                     event.mQuery = q;
+                    ResolveTracer.getInstance().onPosted(q);
                     EventBus.getDefault().post(event);
                 } else {
-                    if (!isEveryResolverReady()) {
-                        if (!mWaitingQueries.contains(q)) {
-                            mWaitingQueries.add(q);
-                        }
-                    } else {
-                        for (final Resolver resolver : mResolvers) {
-                            if (shouldResolve(resolver, q, forceOnlyLocal)) {
-                                resolver.resolve(q);
-                            }
+                    if (!mAllResolversAdded) {
+                        // The ScriptResolvers will pick this Query up as soon as they've been added
+                        mWaitingQueries.put(q, forceOnlyLocal);
+                    }
+                    for (Resolver resolver : mResolvers) {
+                        if (!(skipLocal && resolver instanceof DataBaseResolver)) {
+                            dispatch(resolver, q, forceOnlyLocal);
                         }
                     }
+                    if (mAllResolversAdded) {
+                        // All resolvers have been added in the meantime and we've just
+                        // dispatched the Query to them
+                        mWaitingQueries.remove(q);
+                    }
                 }
             }
         };
@@ -220,6 +361,60 @@ public class PipeLine implements Resolver.OnResolverReadyListener {
         return q;
     }
 
+    /**
+     * Let the given {@link Resolver} resolve the given {@link Query}, if it should do so. If the
+     * {@link Resolver} isn't ready yet, the {@link Query} is being resolved as soon as it is.
+     */
+    private void dispatch(Resolver resolver, Query q, boolean forceOnlyLocal) {
+        if (!shouldResolve(resolver, q, forceOnlyLocal)) {
+            return;
+        }
+        if (resolver.isReady()) {
+            resolveWith(resolver, q);
+        } else {
+            Set<Query> pendingQueries = mPendingQueries.get(resolver);
+            if (pendingQueries == null) {
+                pendingQueries = Sets.newSetFromMap(new ConcurrentHashMap<Query, Boolean>());
+                Set<Query> existing = mPendingQueries.putIfAbsent(resolver, pendingQueries);
+                if (existing != null) {
+                    pendingQueries = existing;
+                }
+            }
+            pendingQueries.add(q);
+            if (resolver instanceof ScriptResolver) {
+                ((ScriptResolver) resolver).start();
+            }
+            if (resolver.isReady() && pendingQueries.remove(q)) {
+                // The resolver became ready in the meantime
+                resolveWith(resolver, q);
+            }
+        }
+    }
+
+    private void resolveWith(Resolver resolver, Query q) {
+        ResolveTracer.getInstance().onDispatched(q, resolver.getId());
+        resolver.resolve(q);
+    }
+
+    /**
+     * Cancel the resolving of the given {@link Query}. Queued resolving and reporting work is
+     * being removed and results, which are still reported by any {@link Resolver}, are dropped.
+     * Resolving the {@link Query} again reverts the cancellation.
+     */
+    public void cancel(Query query) {
+        mCancelledQueries.add(query);
+        mWaitingQueries.remove(query);
+        for (Set<Query> pendingQueries : mPendingQueries.values()) {
+            pendingQueries.remove(query);
+        }
+        ThreadManager.getInstance().stop(query);
+        for (Resolver resolver : mResolvers) {
+            if (resolver instanceof ScriptResolver) {
+                ((ScriptResolver) resolver).cancel(query);
+            }
+        }
+    }
+
     /**
      * Method to determine if a given Resolver should resolve the query or not
      */
@@ -271,6 +466,18 @@ public class PipeLine implements Resolver.OnResolverReadyListener {
      */
     public void reportResults(final Query query, final ArrayList<Result> results,
             final String resolverId) {
+        reportResults(query, results, resolverId, false);
+    }
+
+    /**
+     * Same as {@link #reportResults(Query, ArrayList, String)}, but allows the {@link Resolver} to
+     * provide its own track scores.
+     *
+     * @param isScored whether or not the track score of every given {@link Result} has already
+     *                 been set by the {@link Resolver}. If so, it won't be recalculated.
+     */
+    public void reportResults(final Query query, final ArrayList<Result> results,
+            final String resolverId, final boolean isScored) {
         int priority;
         if (TomahawkApp.PLUGINNAME_USERCOLLECTION.equals(resolverId)) {
             priority = TomahawkRunnable.PRIORITY_IS_REPORTING_LOCALSOURCE;
@@ -282,46 +489,31 @@ public class PipeLine implements Resolver.OnResolverReadyListener {
         } else {
             priority = TomahawkRunnable.PRIORITY_IS_REPORTING;
         }
+        final long reportTime = ResolveTracer.getInstance().start();
         ThreadManager.getInstance().execute(
                 new TomahawkRunnable(priority) {
                     @Override
                     public void run() {
-                        ArrayList<Result> cleanTrackResults = new ArrayList<Result>();
-                        /*ArrayList<Result> cleanAlbumResults = new ArrayList<Result>();
-                        ArrayList<Result> cleanArtistResults = new ArrayList<Result>();*/
-                        if (query != null) {
-                            for (Result r : results) {
-                                if (r != null) {
-                                    r.setTrackScore(
-                                            query.howSimilar(r, PIPELINE_SEARCHTYPE_TRACKS));
-                                    if (r.getTrackScore() >= MINSCORE
-                                            && !cleanTrackResults.contains(r)) {
-                                        r.setType(Result.RESULT_TYPE_TRACK);
-                                        cleanTrackResults.add(r);
-                                    }
-                                    /*if (q.isFullTextQuery()) {
-                                        r.setAlbumScore(
-                                                q.howSimilar(r, PIPELINE_SEARCHTYPE_ALBUMS));
-                                        if (r.getAlbumScore() >= MINSCORE
-                                                && !cleanAlbumResults.contains(r)) {
-                                            r.setType(Result.RESULT_TYPE_ALBUM);
-                                            cleanAlbumResults.add(r);
-                                        }
-                                        r.setArtistScore(
-                                                q.howSimilar(r, PIPELINE_SEARCHTYPE_ARTISTS));
-                                        if (r.getArtistScore() >= MINSCORE
-                                                && !cleanArtistResults.contains(r)) {
-                                            r.setType(Result.RESULT_TYPE_ARTIST);
-                                            cleanArtistResults.add(r);
-                                        }
-                                    }*/
-                                }
-                            }
-                            /*q.addArtistResults(cleanArtistResults);
-                            q.addAlbumResults(cleanAlbumResults);*/
+                        ResolveTracer tracer = ResolveTracer.getInstance();
+                        tracer.end(ResolveTracer.STAGE_REPORT_QUEUED, query, resolverId,
+                                reportTime);
+                        long scoringTime = tracer.start();
+                        if (query != null && !mCancelledQueries.contains(query)) {
+                            ArrayList<Result> cleanTrackResults =
+                                    scoreTrackResults(query, results, isScored);
                             query.addTrackResults(cleanTrackResults);
+                            tracer.end(ResolveTracer.STAGE_SCORING, query, resolverId,
+                                    scoringTime);
+                            tracer.onReported(query, resolverId, !cleanTrackResults.isEmpty());
+                            if (!cleanTrackResults.isEmpty()
+                                    && mFirstResultReported.compareAndSet(false, true)) {
+                                Log.d(TAG, "First result reported by " + resolverId + " after "
+                                        + (SystemClock.elapsedRealtime() - mCreationTime)
+                                        + "ms since start-up");
+                            }
                             ResultsEvent event = new ResultsEvent();
                             event.mQuery = query;
+                            tracer.onPosted(query);
                             EventBus.getDefault().post(event);
                             if (query.isSolved()) {
                                 ThreadManager.getInstance().stop(query);
@@ -332,7 +524,40 @@ public class PipeLine implements Resolver.OnResolverReadyListener {
         );
     }
 
+    /**
+     * Score the given {@link Result}s for the given {@link Query} and drop duplicates and those
+     * scoring below {@link #MINSCORE}. Every {@link Result} is only being scored once per {@link
+     * Query}, no matter how often it is being reported.
+     *
+     * @param isScored whether or not the track score of every given {@link Result} has already
+     *                 been set by the {@link Resolver}
+     * @return the remaining {@link Result}s
+     */
+    public static ArrayList<Result> scoreTrackResults(Query query, List<Result> results,
+            boolean isScored) {
+        ArrayList<Result> cleanTrackResults = new ArrayList<Result>();
+        HashSet<String> cleanTrackResultKeys = new HashSet<String>();
+        for (Result r : results) {
+            if (r != null) {
+                if (!isScored) {
+                    r.setTrackScore(query.getTrackScore(r));
+                }
+                if (r.getTrackScore() >= MINSCORE && cleanTrackResultKeys.add(r.getCacheKey())) {
+                    r.setType(Result.RESULT_TYPE_TRACK);
+                    cleanTrackResults.add(r);
+                }
+            }
+        }
+        return cleanTrackResults;
+    }
+
     public void lookupUrl(String url) {
+        for (Resolver resolver : mResolvers) {
+            if (resolver instanceof ScriptResolver) {
+                // We can only know which resolvers are able to look up urls after they've started
+                ((ScriptResolver) resolver).start();
+            }
+        }
         if (!isEveryResolverReady()) {
             Log.d(TAG, "lookupUrl - enqueuing url: " + url);
             mWaitingUrlLookups.add(url);
@@ -372,16 +597,41 @@ public class PipeLine implements Resolver.OnResolverReadyListener {
      */
     @Override
     public void onResolverReady(Resolver resolver) {
+        if (resolver != null) {
+            Log.d(TAG, "onResolverReady - " + resolver.getId() + " is ready after "
+                    + (SystemClock.elapsedRealtime() - mCreationTime) + "ms since start-up");
+            Set<Query> pendingQueries = mPendingQueries.get(resolver);
+            if (pendingQueries != null) {
+                for (Query query : pendingQueries) {
+                    if (pendingQueries.remove(query) && !mCancelledQueries.contains(query)) {
+                        resolveWith(resolver, query);
+                    }
+                }
+            }
+        }
         if (isEveryResolverReady()) {
-            resolve(mWaitingQueries);
-            mWaitingQueries.clear();
-            for (String url : mWaitingUrlLookups) {
+            for (String url : new ArrayList<String>(mWaitingUrlLookups)) {
                 mWaitingUrlLookups.remove(url);
                 lookupUrl(url);
             }
         }
     }
 
+    /**
+     * Start the {@link ScriptResolver} belonging to an {@link AuthenticatorUtils} as soon as the
+     * user has logged in, because it has been disabled until then.
+     */
+    @SuppressWarnings("unused")
+    public void onEvent(AuthenticatorManager.ConfigTestResultEvent event) {
+        if (event.mType == AuthenticatorManager.CONFIG_TEST_RESULT_TYPE_SUCCESS
+                && event.mComponent instanceof AuthenticatorUtils) {
+            Resolver resolver = getResolver(((AuthenticatorUtils) event.mComponent).getId());
+            if (resolver instanceof ScriptResolver) {
+                ((ScriptResolver) resolver).start();
+            }
+        }
+    }
+
     public void setAllResolversAdded(boolean allResolversAdded) {
         mAllResolversAdded = allResolversAdded;
     }
@@ -31,6 +31,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -48,14 +49,19 @@ public class Query implements TomahawkListItem {
 
     private String mCacheKey;
 
-    private ConcurrentHashMap<String, Result> mTrackResults
-            = new ConcurrentHashMap<String, Result>();
+    private final ScoredResults mTrackResults = new ScoredResults();
 
-    private ConcurrentHashMap<String, Result> mAlbumResults
-            = new ConcurrentHashMap<String, Result>();
+    // The track scores of all Results, which have been scored for this Query, by their cache key
+    private ConcurrentHashMap<String, Float> mTrackScores = new ConcurrentHashMap<String, Float>();
 
-    private ConcurrentHashMap<String, Result> mArtistResults
-            = new ConcurrentHashMap<String, Result>();
+    // The Queries returned by getTrackQueries and the snapshot of track results they were built of
+    private volatile List<Query> mTrackQueries;
+
+    private volatile List<Result> mTrackQueriesSource;
+
+    private final ScoredResults mAlbumResults = new ScoredResults();
+
+    private final ScoredResults mArtistResults = new ScoredResults();
 
     private Track mBasicTrack;
 
@@ -63,7 +69,9 @@ public class Query implements TomahawkListItem {
 
     private boolean mSolved = false;
 
-    private String mTopTrackResultKey = "";
+    private volatile String mTopTrackResultKey = "";
+
+    private volatile Result mPreferredTrackResult;
 
     private String mResultHint = "";
 
@@ -222,22 +230,27 @@ public class Query implements TomahawkListItem {
     }
 
     /**
-     * @return An ArrayList<Result> which contains all tracks in the resultList, sorted by score.
-     * Given as Results.
+     * @return An immutable List<Result> which contains all tracks in the resultList, sorted by
+     * score. Given as Results.
      */
-    public ArrayList<Result> getTrackResults() {
-        ArrayList<Result> results = new ArrayList<Result>(mTrackResults.values());
-        Collections.sort(results, new ResultComparator(ResultComparator.COMPARE_TRACK_SCORE));
-        return results;
+    public List<Result> getTrackResults() {
+        return mTrackResults.snapshot();
     }
 
     /**
-     * @return An ArrayList<Query> which contains all tracks in the resultList, sorted by score.
-     * Given as queries.
+     * @return An immutable List<Query> which contains all tracks in the resultList, sorted by
+     * score. Given as queries. It is only being rebuilt after the track results have changed.
      */
-    public ArrayList<Query> getTrackQueries() {
+    public List<Query> getTrackQueries() {
+        List<Result> results = getTrackResults();
+        if (mTrackQueriesSource == results) {
+            return mTrackQueries;
+        }
+        // No lock is being held here, because adding the results to the other Queries locks them.
+        // Concurrent rebuilds produce the same Queries, so the last one simply wins.
         HashMap<String, Query> queryMap = new HashMap<String, Query>();
-        for (Result result : getTrackResults()) {
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
             if (!isOnlyLocal() || result.isLocal()) {
                 Query query = Query.get(result, isOnlyLocal());
                 query.addTrackResult(result);
@@ -245,12 +258,16 @@ public class Query implements TomahawkListItem {
             }
         }
         ArrayList<Query> queries = new ArrayList<Query>(queryMap.values());
-        Collections.sort(queries, new QueryComparator(QueryComparator.COMPARE_TRACK_SCORE));
-        return queries;
+        QueryComparator.TRACK_SCORE.sort(queries);
+        List<Query> trackQueries = Collections.unmodifiableList(queries);
+        // Publish the Queries before their source, so that a matching source implies them
+        mTrackQueries = trackQueries;
+        mTrackQueriesSource = results;
+        return trackQueries;
     }
 
     public Result getPreferredTrackResult() {
-        return mTrackResults.get(mTopTrackResultKey);
+        return mPreferredTrackResult;
     }
 
     public Track getPreferredTrack() {
@@ -261,73 +278,98 @@ public class Query implements TomahawkListItem {
     }
 
     public void addTrackResult(Result result) {
-        if (!sBlacklistedResults.contains(result.getCacheKey())) {
-            mPlayable = true;
-            if (result.getTrackScore() == 1f) {
-                mSolved = true;
-            }
-            if (!mTrackResults.containsKey(result.getCacheKey())) {
-                mTrackResults.put(result.getCacheKey(), result);
-                if ((getPreferredTrackResult() == null
-                        || mResultHint.equals(result.getCacheKey())
-                        || getPreferredTrackResult().getTrackScore() < result.getTrackScore()
-                        || (getPreferredTrackResult().getTrackScore() == result.getTrackScore()
-                        && getPreferredTrackResult().getResolvedBy().getWeight()
-                        < result.getResolvedBy().getWeight()))) {
-                    mTopTrackResultKey = result.getCacheKey();
-                }
-            }
+        addTrackResults(Collections.singletonList(result));
+    }
+
+    /**
+     * @return the track score of the given {@link Result} for this Query. It is only being
+     * calculated once per {@link Result}, because the same {@link Result} is often reported
+     * multiple times.
+     */
+    public float getTrackScore(Result result) {
+        Float score = mTrackScores.get(result.getCacheKey());
+        if (score == null) {
+            score = howSimilar(result, PipeLine.PIPELINE_SEARCHTYPE_TRACKS);
+            mTrackScores.put(result.getCacheKey(), score);
         }
+        return score;
     }
 
     public void blacklistTrackResult(Result result) {
         sBlacklistedResults.add(result.getCacheKey());
-        for (Result r : getTrackResults()) {
+        List<Result> results = getTrackResults();
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
             if (!result.getCacheKey().equals(r.getCacheKey())
                     && !sBlacklistedResults.contains(r.getCacheKey())) {
-                mTopTrackResultKey = r.getCacheKey();
+                setPreferredTrackResult(r);
                 break;
             } else {
-                mTopTrackResultKey = "";
+                setPreferredTrackResult(null);
                 mPlayable = false;
                 mSolved = false;
             }
         }
     }
 
+    private void setPreferredTrackResult(Result result) {
+        mPreferredTrackResult = result;
+        mTopTrackResultKey = result != null ? result.getCacheKey() : "";
+    }
+
     /**
-     * Append an ArrayList<Result> to the track result list
+     * Append the given {@link Result}s to the track result list. The preferred track result is
+     * being determined once for the whole batch.
      */
-    public void addTrackResults(ArrayList<Result> results) {
-        for (Result result : results) {
-            addTrackResult(result);
+    public void addTrackResults(List<Result> results) {
+        synchronized (mTrackResults) {
+            Result preferred = getPreferredTrackResult();
+            for (Result result : results) {
+                if (!sBlacklistedResults.contains(result.getCacheKey())) {
+                    mPlayable = true;
+                    if (result.getTrackScore() == 1f) {
+                        mSolved = true;
+                    }
+                    if (mTrackResults.add(result.getCacheKey(), result, result.getTrackScore())) {
+                        if (preferred == null
+                                || mResultHint.equals(result.getCacheKey())
+                                || preferred.getTrackScore() < result.getTrackScore()
+                                || (preferred.getTrackScore() == result.getTrackScore()
+                                && preferred.getResolvedBy().getWeight()
+                                < result.getResolvedBy().getWeight())) {
+                            preferred = result;
+                        }
+                    }
+                }
+            }
+            if (preferred != null) {
+                setPreferredTrackResult(preferred);
+            }
         }
     }
 
     /**
-     * @return An ArrayList<Result> which contains all albums in the resultList, sorted by score.
-     * Given as Results.
+     * @return An immutable List<Result> which contains all albums in the resultList, sorted by
+     * score. Given as Results.
      */
-    public ArrayList<Result> getAlbumResults() {
-        ArrayList<Result> results = new ArrayList<Result>(mAlbumResults.values());
-        Collections.sort(results, new ResultComparator(ResultComparator.COMPARE_ALBUM_SCORE));
-        return results;
+    public List<Result> getAlbumResults() {
+        return mAlbumResults.snapshot();
     }
 
     /**
      * @return A ArrayList<Album> which contains all albums in the resultList, sorted by score.
      */
     public ArrayList<Album> getAlbums() {
-        ArrayList<Result> results = getAlbumResults();
-        ArrayList<Album> albums = new ArrayList<Album>();
-        for (Result result : results) {
-            albums.add(result.getAlbum());
+        List<Result> results = getAlbumResults();
+        ArrayList<Album> albums = new ArrayList<Album>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            albums.add(results.get(i).getAlbum());
         }
         return albums;
     }
 
     public void addAlbumResult(Result result) {
-        mAlbumResults.put(result.getAlbum().getCacheKey(), result);
+        mAlbumResults.put(result.getAlbum().getCacheKey(), result, result.getAlbumScore());
     }
 
     /**
@@ -340,30 +382,28 @@ public class Query implements TomahawkListItem {
     }
 
     /**
-     * @return An ArrayList<Result> which contains all artists in the resultList, sorted by score.
-     * Given as Results.
+     * @return An immutable List<Result> which contains all artists in the resultList, sorted by
+     * score. Given as Results.
      */
-    public ArrayList<Result> getArtistResults() {
-        ArrayList<Result> results = new ArrayList<Result>(mArtistResults.values());
-        Collections.sort(results, new ResultComparator(ResultComparator.COMPARE_ARTIST_SCORE));
-        return results;
+    public List<Result> getArtistResults() {
+        return mArtistResults.snapshot();
     }
 
     /**
      * @return the ArrayList containing all track results
      */
     public ArrayList<Artist> getArtists() {
-        ArrayList<Result> results = getArtistResults();
-        ArrayList<Artist> artists = new ArrayList<Artist>();
-        for (Result result : results) {
-            artists.add(result.getArtist());
+        List<Result> results = getArtistResults();
+        ArrayList<Artist> artists = new ArrayList<Artist>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            artists.add(results.get(i).getArtist());
         }
         return artists;
     }
 
 
     public void addArtistResult(Result result) {
-        mArtistResults.put(result.getArtist().getCacheKey(), result);
+        mArtistResults.put(result.getArtist().getCacheKey(), result, result.getArtistScore());
     }
 
     /**
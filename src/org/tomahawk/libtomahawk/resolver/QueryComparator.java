@@ -17,10 +17,18 @@
  */
 package org.tomahawk.libtomahawk.resolver;
 
+import org.tomahawk.libtomahawk.collection.TomahawkListItemComparator;
+
+import java.text.CollationKey;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
 
 /**
- * This class is used to compare two {@link org.tomahawk.libtomahawk.resolver.Query}s.
+ * This class is used to compare two {@link org.tomahawk.libtomahawk.resolver.Query}s. Instances
+ * are immutable and can be shared between threads. Use {@link #sort(List)} to sort big lists, so
+ * that every {@link Query}'s sort key is only determined once.
  */
 public class QueryComparator implements Comparator<Query> {
 
@@ -31,8 +39,14 @@ public class QueryComparator implements Comparator<Query> {
 
     public static final int COMPARE_TRACK_SCORE = 2;
 
-    //Flag containing the current mode to be used
-    private static int mFlag = COMPARE_ALBUMPOS;
+    public static final QueryComparator ALBUMPOS = new QueryComparator(COMPARE_ALBUMPOS);
+
+    public static final QueryComparator ALPHA = new QueryComparator(COMPARE_ALPHA);
+
+    public static final QueryComparator TRACK_SCORE = new QueryComparator(COMPARE_TRACK_SCORE);
+
+    //The mode to be used
+    private final int mFlag;
 
     /**
      * Construct this {@link QueryComparator}
@@ -55,34 +69,101 @@ public class QueryComparator implements Comparator<Query> {
     public int compare(Query q1, Query q2) {
         switch (mFlag) {
             case COMPARE_ALBUMPOS:
-                Integer num1 = q1.getPreferredTrack().getAlbumPos();
-                Integer num2 = q2.getPreferredTrack().getAlbumPos();
-                return num1.compareTo(num2);
+                return compareInts(q1.getPreferredTrack().getAlbumPos(),
+                        q2.getPreferredTrack().getAlbumPos());
             case COMPARE_ALPHA:
-                return q1.getName().compareTo(q2.getName());
+                return TomahawkListItemComparator.getSortKey(q1.getName())
+                        .compareTo(TomahawkListItemComparator.getSortKey(q2.getName()));
             case COMPARE_TRACK_SCORE:
-                Float score1 = 0f;
-                if (q1.getPreferredTrackResult() != null) {
-                    score1 = q1.getPreferredTrackResult().getTrackScore();
-                }
-                Float score2 = 0f;
-                if (q2.getPreferredTrackResult() != null) {
-                    score2 = q2.getPreferredTrackResult().getTrackScore();
-                }
-                int result = score2.compareTo(score1);
+                int result = Float.compare(getScore(q2), getScore(q1));
                 if (result == 0) {
-                    Integer weight1 = 0;
-                    if (q1.getPreferredTrackResult() != null) {
-                        weight1 = q1.getPreferredTrackResult().getResolvedBy().getWeight();
-                    }
-                    Integer weight2 = 0;
-                    if (q1.getPreferredTrackResult() != null) {
-                        weight2 = q2.getPreferredTrackResult().getResolvedBy().getWeight();
-                    }
-                    result = weight1.compareTo(weight2);
+                    result = compareInts(getWeight(q1), getWeight(q2));
                 }
                 return result;
         }
         return 0;
     }
+
+    /**
+     * Sort the given list according to this {@link QueryComparator}'s mode. The sort key of every
+     * {@link Query} is determined only once, so that the actual sorting doesn't have to go through
+     * {@link Query}, {@link Result} and {@link org.tomahawk.libtomahawk.collection.Track} on every
+     * comparison. The sort is stable.
+     */
+    public void sort(List<Query> queries) {
+        SortEntry[] entries = new SortEntry[queries.size()];
+        int i = 0;
+        for (Query query : queries) {
+            SortEntry entry = new SortEntry();
+            entry.mQuery = query;
+            switch (mFlag) {
+                case COMPARE_ALBUMPOS:
+                    entry.mPrimary = query.getPreferredTrack().getAlbumPos();
+                    break;
+                case COMPARE_ALPHA:
+                    entry.mKey = TomahawkListItemComparator.getSortKey(query.getName());
+                    break;
+                case COMPARE_TRACK_SCORE:
+                    // Higher scores first, so negate the score
+                    entry.mScore = -getScore(query);
+                    entry.mSecondary = getWeight(query);
+                    break;
+            }
+            entries[i++] = entry;
+        }
+        Arrays.sort(entries, mFlag == COMPARE_ALPHA ? KEY_ORDER : NUMERIC_ORDER);
+        ListIterator<Query> iterator = queries.listIterator();
+        for (SortEntry entry : entries) {
+            iterator.next();
+            iterator.set(entry.mQuery);
+        }
+    }
+
+    private static float getScore(Query query) {
+        Result result = query.getPreferredTrackResult();
+        return result != null ? result.getTrackScore() : 0f;
+    }
+
+    private static int getWeight(Query query) {
+        Result result = query.getPreferredTrackResult();
+        return result != null ? result.getResolvedBy().getWeight() : 0;
+    }
+
+    private static int compareInts(int lhs, int rhs) {
+        return lhs < rhs ? -1 : (lhs == rhs ? 0 : 1);
+    }
+
+    private static class SortEntry {
+
+        private Query mQuery;
+
+        private CollationKey mKey;
+
+        private float mScore;
+
+        private int mPrimary;
+
+        private int mSecondary;
+    }
+
+    private static final Comparator<SortEntry> KEY_ORDER = new Comparator<SortEntry>() {
+        @Override
+        public int compare(SortEntry lhs, SortEntry rhs) {
+            return lhs.mKey.compareTo(rhs.mKey);
+        }
+    };
+
+    private static final Comparator<SortEntry> NUMERIC_ORDER = new Comparator<SortEntry>() {
+        @Override
+        public int compare(SortEntry lhs, SortEntry rhs) {
+            int result = Float.compare(lhs.mScore, rhs.mScore);
+            if (result == 0) {
+                result = compareInts(lhs.mPrimary, rhs.mPrimary);
+            }
+            if (result == 0) {
+                result = compareInts(lhs.mSecondary, rhs.mSecondary);
+            }
+            return result;
+        }
+    };
 }
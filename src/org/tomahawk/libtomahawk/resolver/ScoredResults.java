@@ -0,0 +1,129 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The {@link Result}s of a {@link Query}, ordered by score. Higher scores come first, equal scores
+ * are ordered by the weight of the resolver, which has resolved the {@link Result}, and then by
+ * key.
+ *
+ * The score of a {@link Result} is being captured when it is added, because a {@link Result} can
+ * be shared by several {@link Query}s, which score it differently. Reading the {@link Result}s
+ * returns an immutable snapshot, which is only rebuilt after the {@link Result}s have changed.
+ */
+class ScoredResults {
+
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry lhs, Entry rhs) {
+            int result = Float.compare(rhs.mScore, lhs.mScore);
+            if (result == 0) {
+                result = rhs.mWeight < lhs.mWeight ? -1 : (rhs.mWeight == lhs.mWeight ? 0 : 1);
+            }
+            if (result == 0) {
+                result = lhs.mKey.compareTo(rhs.mKey);
+            }
+            return result;
+        }
+    };
+
+    private static class Entry {
+
+        private final float mScore;
+
+        private final int mWeight;
+
+        private final String mKey;
+
+        private final Result mResult;
+
+        private Entry(String key, Result result, float score) {
+            mScore = score;
+            mWeight = result.getResolvedBy() != null ? result.getResolvedBy().getWeight() : 0;
+            mKey = key;
+            mResult = result;
+        }
+    }
+
+    private final ConcurrentSkipListSet<Entry> mEntries = new ConcurrentSkipListSet<Entry>(ORDER);
+
+    private final ConcurrentHashMap<String, Entry> mEntriesByKey
+            = new ConcurrentHashMap<String, Entry>();
+
+    // The current snapshot of all Results. Null, if the Results have changed since building it.
+    private volatile List<Result> mSnapshot = Collections.emptyList();
+
+    /**
+     * Add the given {@link Result} with the given score, unless a {@link Result} with the same key
+     * has already been added.
+     *
+     * @return whether or not the {@link Result} has been added
+     */
+    public synchronized boolean add(String key, Result result, float score) {
+        if (mEntriesByKey.containsKey(key)) {
+            return false;
+        }
+        Entry entry = new Entry(key, result, score);
+        mEntriesByKey.put(key, entry);
+        mEntries.add(entry);
+        mSnapshot = null;
+        return true;
+    }
+
+    /**
+     * Add the given {@link Result} with the given score and replace the {@link Result} with the
+     * same key, if there is one.
+     */
+    public synchronized void put(String key, Result result, float score) {
+        Entry entry = new Entry(key, result, score);
+        Entry previous = mEntriesByKey.put(key, entry);
+        if (previous != null) {
+            mEntries.remove(previous);
+        }
+        mEntries.add(entry);
+        mSnapshot = null;
+    }
+
+    /**
+     * @return an immutable, random access list of all {@link Result}s ordered by score
+     */
+    public List<Result> snapshot() {
+        List<Result> snapshot = mSnapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = mSnapshot;
+                if (snapshot == null) {
+                    ArrayList<Result> results = new ArrayList<Result>(mEntries.size());
+                    for (Entry entry : mEntries) {
+                        results.add(entry.mResult);
+                    }
+                    snapshot = Collections.unmodifiableList(results);
+                    mSnapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+}
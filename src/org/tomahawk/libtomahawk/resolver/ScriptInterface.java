@@ -1,8 +1,5 @@
 package org.tomahawk.libtomahawk.resolver;
 
-import com.google.common.base.Charsets;
-import com.google.common.io.Files;
-
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 
@@ -12,13 +9,11 @@ import org.tomahawk.libtomahawk.resolver.models.ScriptInterfaceRequestOptions;
 import org.tomahawk.libtomahawk.resolver.models.ScriptResolverData;
 import org.tomahawk.libtomahawk.resolver.models.ScriptResolverFuzzyIndex;
 import org.tomahawk.libtomahawk.utils.TomahawkUtils;
-import org.tomahawk.tomahawk_android.TomahawkApp;
 
 import android.text.TextUtils;
 import android.util.Log;
 import android.webkit.JavascriptInterface;
 
-import java.io.File;
 import java.io.IOException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
@@ -26,15 +21,14 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * This class contains all methods that are being exposed to the javascript script inside a {@link
- * ScriptResolver} object.
+ * This class contains all methods that are being exposed to the javascript scripts of the {@link
+ * ScriptResolver}s running inside a {@link ScriptResolverHost.Runtime}. Every method takes the id
+ * of the calling {@link ScriptResolver}, which is being added by tomahawk_android_bridge.js.
  */
 public class ScriptInterface {
 
     private final static String TAG = ScriptInterface.class.getSimpleName();
 
-    private ScriptResolver mScriptResolver;
-
     /**
      * Class to make a callback on the javascript side of this ScriptInterface. The callback is
      * stored in a map on the js side and can be identified by its callback-id, which is given to
@@ -42,9 +36,12 @@ public class ScriptInterface {
      */
     public class JsCallback {
 
+        private ScriptResolver mScriptResolver;
+
         private int mReqId;
 
-        public JsCallback(int reqId) {
+        public JsCallback(ScriptResolver scriptResolver, int reqId) {
+            mScriptResolver = scriptResolver;
             mReqId = reqId;
         }
 
@@ -54,8 +51,28 @@ public class ScriptInterface {
         }
     }
 
-    ScriptInterface(ScriptResolver scriptResolver) {
-        mScriptResolver = scriptResolver;
+    ScriptInterface() {
+    }
+
+    /**
+     * @return the {@link ScriptResolver} with the given id. Throws an {@link
+     * IllegalArgumentException}, which is being reported to the calling script, if there is none.
+     */
+    private static ScriptResolver getResolver(String resolverId) {
+        ScriptResolver scriptResolver = ScriptResolverHost.getInstance().getResolver(resolverId);
+        if (scriptResolver == null) {
+            throw new IllegalArgumentException("Unknown resolver id: " + resolverId);
+        }
+        return scriptResolver;
+    }
+
+    /**
+     * Called by tomahawk_android_bridge.js as soon as all scripts of a {@link ScriptResolver} have
+     * been loaded.
+     */
+    @JavascriptInterface
+    public void onScriptsLoaded(String resolverId) {
+        ScriptResolverHost.getInstance().onScriptsLoaded(resolverId);
     }
 
     /**
@@ -68,11 +85,12 @@ public class ScriptInterface {
      * @param shouldReturnResult whether or not the javascript function will return a result
      */
     @JavascriptInterface
-    public void callbackToJava(int id, String in, boolean shouldReturnResult) {
+    public void callbackToJava(String resolverId, int id, String in, boolean shouldReturnResult) {
+        ScriptResolver scriptResolver = getResolver(resolverId);
         if (shouldReturnResult) {
-            mScriptResolver.handleCallbackToJava(id, in);
+            scriptResolver.handleCallbackToJava(id, in);
         } else {
-            mScriptResolver.handleCallbackToJava(id);
+            scriptResolver.handleCallbackToJava(id);
         }
     }
 
@@ -83,10 +101,11 @@ public class ScriptInterface {
      * @return a {@link JSONObject} containing the scriptPath and config.
      */
     @JavascriptInterface
-    public String resolverDataString() {
-        Map<String, Object> config = mScriptResolver.getConfig();
+    public String resolverDataString(String resolverId) {
+        ScriptResolver scriptResolver = getResolver(resolverId);
+        Map<String, Object> config = scriptResolver.getConfig();
         ScriptResolverData data = new ScriptResolverData();
-        data.scriptPath = mScriptResolver.getScriptFilePath();
+        data.scriptPath = scriptResolver.getScriptFilePath();
         data.config = config;
         String jsonString = "";
         try {
@@ -105,8 +124,8 @@ public class ScriptInterface {
      * A straightforward log method to write something into the Debug log.
      */
     @JavascriptInterface
-    public void log(String message) {
-        Log.d(TAG, "log: " + mScriptResolver.getId() + ": " + message);
+    public void log(String resolverId, String message) {
+        Log.d(TAG, "log: " + resolverId + ": " + message);
     }
 
     /**
@@ -117,23 +136,23 @@ public class ScriptInterface {
      * @param results the JSONObject {@link String} containing the resolved {@link Result}s
      */
     @JavascriptInterface
-    public void addTrackResultsString(String results) {
-        mScriptResolver.addTrackResultsString(results);
+    public void addTrackResultsString(String resolverId, String results) {
+        getResolver(resolverId).addTrackResultsString(results);
     }
 
     @JavascriptInterface
-    public void addAlbumResultsString(String results) {
-        mScriptResolver.addAlbumResultsString(results);
+    public void addAlbumResultsString(String resolverId, String results) {
+        getResolver(resolverId).addAlbumResultsString(results);
     }
 
     @JavascriptInterface
-    public void addArtistResultsString(String results) {
-        mScriptResolver.addArtistResultsString(results);
+    public void addArtistResultsString(String resolverId, String results) {
+        getResolver(resolverId).addArtistResultsString(results);
     }
 
     @JavascriptInterface
-    public void addAlbumTrackResultsString(String results) {
-        mScriptResolver.addAlbumTrackResultsString(results);
+    public void addAlbumTrackResultsString(String resolverId, String results) {
+        getResolver(resolverId).addAlbumTrackResultsString(results);
     }
 
     /**
@@ -143,30 +162,34 @@ public class ScriptInterface {
      * @param in the int pointing to the script's capabilities
      */
     @JavascriptInterface
-    public void reportCapabilities(int in) {
-        mScriptResolver.reportCapabilities(in);
+    public void reportCapabilities(String resolverId, int in) {
+        getResolver(resolverId).reportCapabilities(in);
     }
 
     @JavascriptInterface
-    public void reportStreamUrlString(String resultId, String url, String stringifiedHeaders) {
-        mScriptResolver.reportStreamUrl(resultId, url, stringifiedHeaders);
+    public void reportStreamUrlString(String resolverId, String resultId, String url,
+            String stringifiedHeaders) {
+        getResolver(resolverId).reportStreamUrl(resultId, url, stringifiedHeaders);
     }
 
     @JavascriptInterface
-    public void addCustomUrlHandler(String protocol, String callbackFuncName, boolean isAsync) {
-        PipeLine.getInstance().addCustomUrlHandler(protocol, mScriptResolver, callbackFuncName);
+    public void addCustomUrlHandler(String resolverId, String protocol, String callbackFuncName,
+            boolean isAsync) {
+        PipeLine.getInstance()
+                .addCustomUrlHandler(protocol, getResolver(resolverId), callbackFuncName);
     }
 
     @JavascriptInterface
-    public String readBase64(String fileName) {
+    public String readBase64(String resolverId, String fileName) {
         // We return an empty string because we don't want the base64 string containing png image
         // data or stuff from config.ui.
         return "";
     }
 
     @JavascriptInterface
-    public void nativeAsyncRequestString(final int reqId, final String url,
+    public void nativeAsyncRequestString(String resolverId, final int reqId, final String url,
             final String stringifiedExtraHeaders, final String stringifiedOptions) {
+        final ScriptResolver scriptResolver = getResolver(resolverId);
         new Thread(new Runnable() {
             @Override
             public void run() {
@@ -183,7 +206,7 @@ public class ScriptInterface {
                     }
                     JsCallback callback = null;
                     if (reqId >= 0) {
-                        callback = new JsCallback(reqId);
+                        callback = new JsCallback(scriptResolver, reqId);
                     }
                     String method = null;
                     String username = null;
@@ -215,17 +238,18 @@ public class ScriptInterface {
     }
 
     @JavascriptInterface
-    public boolean hasFuzzyIndex() {
-        return mScriptResolver.hasFuzzyIndex();
+    public boolean hasFuzzyIndex(String resolverId) {
+        return getResolver(resolverId).hasFuzzyIndex();
     }
 
     @JavascriptInterface
-    public void addToFuzzyIndexString(String stringifiedIndexList) {
-        if (mScriptResolver.hasFuzzyIndex()) {
+    public void addToFuzzyIndexString(String resolverId, String stringifiedIndexList) {
+        ScriptResolver scriptResolver = getResolver(resolverId);
+        if (scriptResolver.hasFuzzyIndex()) {
             try {
                 ScriptResolverFuzzyIndex[] indexList = InfoSystemUtils.getObjectMapper()
                         .readValue(stringifiedIndexList, ScriptResolverFuzzyIndex[].class);
-                mScriptResolver.getFuzzyIndex().addScriptResolverFuzzyIndexList(indexList);
+                scriptResolver.getFuzzyIndex().addScriptResolverFuzzyIndexList(indexList);
             } catch (IOException e) {
                 Log.e(TAG,
                         "addToFuzzyIndexString: " + e.getClass() + ": " + e.getLocalizedMessage());
@@ -237,21 +261,23 @@ public class ScriptInterface {
     }
 
     @JavascriptInterface
-    public void createFuzzyIndexString(String stringifiedIndexList) {
+    public void createFuzzyIndexString(String resolverId, String stringifiedIndexList) {
+        ScriptResolver scriptResolver = getResolver(resolverId);
         try {
-            mScriptResolver.createFuzzyIndex();
+            scriptResolver.createFuzzyIndex();
             ScriptResolverFuzzyIndex[] indexList = InfoSystemUtils.getObjectMapper()
                     .readValue(stringifiedIndexList, ScriptResolverFuzzyIndex[].class);
-            mScriptResolver.getFuzzyIndex().addScriptResolverFuzzyIndexList(indexList);
+            scriptResolver.getFuzzyIndex().addScriptResolverFuzzyIndexList(indexList);
         } catch (IOException e) {
             Log.e(TAG, "createFuzzyIndexString: " + e.getClass() + ": " + e.getLocalizedMessage());
         }
     }
 
     @JavascriptInterface
-    public String searchFuzzyIndexString(String query) {
-        if (mScriptResolver.hasFuzzyIndex()) {
-            double[][] results = mScriptResolver.getFuzzyIndex().search(Query.get(query, false));
+    public String searchFuzzyIndexString(String resolverId, String query) {
+        ScriptResolver scriptResolver = getResolver(resolverId);
+        if (scriptResolver.hasFuzzyIndex()) {
+            double[][] results = scriptResolver.getFuzzyIndex().search(query);
             try {
                 return InfoSystemUtils.getObjectMapper().writeValueAsString(results);
             } catch (IOException e) {
@@ -263,10 +289,11 @@ public class ScriptInterface {
     }
 
     @JavascriptInterface
-    public String resolveFromFuzzyIndexString(String artist, String album, String title) {
-        if (mScriptResolver.hasFuzzyIndex()) {
-            double[][] results = mScriptResolver.getFuzzyIndex().search(
-                    Query.get(title, album, artist, false));
+    public String resolveFromFuzzyIndexString(String resolverId, String artist, String album,
+            String title) {
+        ScriptResolver scriptResolver = getResolver(resolverId);
+        if (scriptResolver.hasFuzzyIndex()) {
+            double[][] results = scriptResolver.getFuzzyIndex().search(artist, title);
             try {
                 return InfoSystemUtils.getObjectMapper().writeValueAsString(results);
             } catch (IOException e) {
@@ -278,77 +305,50 @@ public class ScriptInterface {
     }
 
     @JavascriptInterface
-    public void deleteFuzzyIndex() {
-        if (mScriptResolver.getFuzzyIndex() != null) {
-            mScriptResolver.getFuzzyIndex().deleteIndex();
+    public void deleteFuzzyIndex(String resolverId) {
+        ScriptResolver scriptResolver = getResolver(resolverId);
+        if (scriptResolver.getFuzzyIndex() != null) {
+            scriptResolver.getFuzzyIndex().deleteIndex();
         }
     }
 
     @JavascriptInterface
-    public void localStorageSetItem(String key, String value) {
-        String dirPath = TomahawkApp.getContext().getFilesDir().getAbsolutePath()
-                + File.separator + "TomahawkWebViewStorage";
-        new File(dirPath).mkdirs();
-        try {
-            Files.write(value, new File(dirPath + File.separator + key), Charsets.UTF_8);
-        } catch (IOException e) {
-            Log.e(TAG, "setItem: " + e.getClass() + ": " + e.getLocalizedMessage());
-        }
+    public void localStorageSetItem(String resolverId, String key, String value) {
+        ScriptResolverStorage.get(resolverId).setItem(key, value);
     }
 
     @JavascriptInterface
-    public String localStorageGetItem(String key) {
-        String dirPath = TomahawkApp.getContext().getFilesDir().getAbsolutePath()
-                + File.separator + "TomahawkWebViewStorage";
-        new File(dirPath).mkdirs();
-        try {
-            return Files.toString(new File(dirPath + File.separator + key), Charsets.UTF_8);
-        } catch (IOException e) {
-            Log.e(TAG, "getItem: " + e.getClass() + ": " + e.getLocalizedMessage());
-        }
-        return null;
+    public String localStorageGetItem(String resolverId, String key) {
+        return ScriptResolverStorage.get(resolverId).getItem(key);
     }
 
     @JavascriptInterface
-    public void localStorageRemoveItem(String key) {
-        String path = TomahawkApp.getContext().getFilesDir().getAbsolutePath()
-                + File.separator + "TomahawkWebViewStorage" + File.separator + key;
-        new File(path).delete();
+    public void localStorageRemoveItem(String resolverId, String key) {
+        ScriptResolverStorage.get(resolverId).removeItem(key);
     }
 
     @JavascriptInterface
-    public String[] keys() {
-        String path = TomahawkApp.getContext().getFilesDir().getAbsolutePath()
-                + File.separator + "TomahawkWebViewStorage";
-        String[] keys = new File(path).list();
-        if (keys == null) {
-            keys = new String[]{};
-        }
-        return keys;
+    public String[] keys(String resolverId) {
+        return ScriptResolverStorage.get(resolverId).keys();
     }
 
     @JavascriptInterface
-    public String[] values() {
-        String[] keys = keys();
-        String[] values = new String[keys.length];
-        for (int i = 0; i < keys.length; i++) {
-            values[i] = localStorageGetItem(keys[i]);
-        }
-        return values;
+    public String[] values(String resolverId) {
+        return ScriptResolverStorage.get(resolverId).values();
     }
 
     @JavascriptInterface
-    public void onConfigTestResult(int type) {
-        mScriptResolver.onConfigTestResult(type, "");
+    public void onConfigTestResult(String resolverId, int type) {
+        getResolver(resolverId).onConfigTestResult(type, "");
     }
 
     @JavascriptInterface
-    public void onConfigTestResult(int type, String message) {
-        mScriptResolver.onConfigTestResult(type, message);
+    public void onConfigTestResult(String resolverId, int type, String message) {
+        getResolver(resolverId).onConfigTestResult(type, message);
     }
 
     @JavascriptInterface
-    public void addUrlResultString(String url, String resultString) {
-        mScriptResolver.addUrlResultString(url, resultString);
+    public void addUrlResultString(String resolverId, String url, String resultString) {
+        getResolver(resolverId).addUrlResultString(url, resultString);
     }
 }
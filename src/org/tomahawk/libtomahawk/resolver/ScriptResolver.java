@@ -47,17 +47,13 @@ import org.tomahawk.tomahawk_android.activities.TomahawkMainActivity;
 import org.tomahawk.tomahawk_android.utils.ThreadManager;
 import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
 
-import android.content.Context;
 import android.content.SharedPreferences;
-import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 import android.preference.PreferenceManager;
 import android.text.TextUtils;
 import android.util.Log;
-import android.webkit.WebSettings;
-import android.webkit.WebView;
 import android.widget.ImageView;
 
 import java.io.File;
@@ -66,6 +62,7 @@ import java.math.BigInteger;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -80,8 +77,6 @@ public class ScriptResolver extends Resolver {
 
     private final static String TAG = ScriptResolver.class.getSimpleName();
 
-    private final static String SCRIPT_INTERFACE_NAME = "Tomahawk";
-
     public final static String CONFIG = "config";
 
     public final static String ENABLED_KEY = "_enabled_";
@@ -99,8 +94,6 @@ public class ScriptResolver extends Resolver {
 
     private String mId;
 
-    private WebView mWebView;
-
     private String mPath;
 
     private ScriptResolverMetaData mMetaData;
@@ -119,6 +112,8 @@ public class ScriptResolver extends Resolver {
 
     private boolean mStopped;
 
+    private boolean mStarted;
+
     private ObjectMapper mObjectMapper;
 
     private SharedPreferences mSharedPreferences;
@@ -194,14 +189,17 @@ public class ScriptResolver extends Resolver {
         } else {
             Log.d(TAG, "Didn't find a fuzzy index");
         }
+    }
 
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
-            @Override
-            public void run() {
-                //pre-initalize WebView
-                getWebView();
-            }
-        });
+    /**
+     * Start this {@link ScriptResolver}'s runtime in the {@link ScriptResolverHost}, unless that
+     * has already been done. Until then this {@link ScriptResolver} isn't ready.
+     */
+    public synchronized void start() {
+        if (!mStarted) {
+            mStarted = true;
+            ScriptResolverHost.getInstance().start(this);
+        }
     }
 
     /**
@@ -240,72 +238,10 @@ public class ScriptResolver extends Resolver {
     }
 
     /**
-     * Initialize the WebView. Loads the .js script from the given path and sets the appropriate
-     * base URL.
-     *
-     * @return the initialized WebView
+     * This method is being called by the {@link ScriptResolverHost}, when it has completely loaded
+     * this resolver's scripts.
      */
-    private synchronized WebView getWebView() {
-        if (mWebView == null) {
-            mWebView = new WebView(TomahawkApp.getContext());
-            WebSettings settings = mWebView.getSettings();
-            settings.setJavaScriptEnabled(true);
-            settings.setDatabaseEnabled(true);
-            settings.setDatabasePath(
-                    TomahawkApp.getContext().getDir("databases", Context.MODE_PRIVATE)
-                            .getPath());
-            settings.setDomStorageEnabled(true);
-            mWebView.setWebChromeClient(new TomahawkWebChromeClient());
-            mWebView.setWebViewClient(new ScriptWebViewClient(ScriptResolver.this));
-            final ScriptInterface scriptInterface = new ScriptInterface(
-                    ScriptResolver.this);
-            mWebView.addJavascriptInterface(scriptInterface, SCRIPT_INTERFACE_NAME);
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
-                mWebView.getSettings().setAllowUniversalAccessFromFileURLs(true);
-            }
-
-            final String baseurl = "file:///android_asset/test.html";
-            String data = "<!DOCTYPE html>" + "<html><body>"
-                    + "<script src=\"file:///android_asset/js/cryptojs-core.js"
-                    + "\" type=\"text/javascript\"></script>";
-            for (String scriptPath : mMetaData.manifest.scripts) {
-                data += "<script src=\"file:///android_asset/" + mPath + "/"
-                        + scriptPath
-                        + "\" type=\"text/javascript\"></script>";
-            }
-            try {
-                String[] cryptoJsScripts =
-                        TomahawkApp.getContext().getAssets().list("js/cryptojs");
-                for (String scriptPath : cryptoJsScripts) {
-                    data += "<script src=\"file:///android_asset/js/cryptojs/"
-                            + scriptPath
-                            + "\" type=\"text/javascript\"></script>";
-                }
-            } catch (IOException e) {
-                Log.e(TAG,
-                        "ScriptResolver: " + e.getClass() + ": " + e
-                                .getLocalizedMessage());
-            }
-            data += "<script src=\"file:///android_asset/js/tomahawk_android_pre.js"
-                    + "\" type=\"text/javascript\"></script>"
-                    + "<script src=\"file:///android_asset/js/tomahawk.js"
-                    + "\" type=\"text/javascript\"></script>"
-                    + "<script src=\"file:///android_asset/js/tomahawk_android_post.js"
-                    + "\" type=\"text/javascript\"></script>"
-                    + "<script src=\"file:///android_asset/" + mPath + "/"
-                    + mMetaData.manifest.main + "\" type=\"text/javascript\"></script>"
-                    + "</body></html>";
-            final String finalData = data;
-            mWebView.loadDataWithBaseURL(baseurl, finalData, "text/html", null, null);
-        }
-        return mWebView;
-    }
-
-    /**
-     * This method is being called, when the {@link ScriptWebViewClient} has completely loaded the
-     * given .js script.
-     */
-    public void onWebViewClientReady() {
+    void onScriptsLoaded() {
         resolverInit();
         mReady = true;
         onResolverReady();
@@ -332,6 +268,10 @@ public class ScriptResolver extends Resolver {
      * This method tries to save the {@link Resolver}'s UserConfig.
      */
     private void resolverSaveUserConfig() {
+        if (!mStarted) {
+            // The script reads the config on its own, once it has been started
+            return;
+        }
         loadUrl("javascript: Tomahawk.resolver.instance.saveUserConfig()");
     }
 
@@ -456,7 +396,7 @@ public class ScriptResolver extends Resolver {
                                 for (String albumName : result.albums) {
                                     albums.add(Album.get(albumName, artist));
                                 }
-                                collection.addAlbumResults(albums);
+                                collection.addAlbumResults(artist, albums);
                             }
                         }
                         mTimeOutHandler.removeCallbacksAndMessages(null);
@@ -513,11 +453,11 @@ public class ScriptResolver extends Resolver {
                         if (result != null) {
                             ScriptResolverCollection collection = (ScriptResolverCollection)
                                     CollectionManager.getInstance().getCollection(result.qid);
-                            ArrayList<Result> parsedResults = parseResultList(
-                                    result.results, result.qid);
-                            Artist artist = Artist.get(result.artist);
-                            Album album = Album.get(result.album, artist);
-                            collection.addAlbumTrackResults(album, parsedResults);
+                            if (collection != null && result.results != null) {
+                                Artist artist = Artist.get(result.artist);
+                                Album album = Album.get(result.album, artist);
+                                collection.addAlbumTrackResults(album, result.results);
+                            }
                         }
                         mTimeOutHandler.removeCallbacksAndMessages(null);
                         mStopped = true;
@@ -609,13 +549,15 @@ public class ScriptResolver extends Resolver {
                 + escapedArtistName + "' )");
     }
 
+    /**
+     * Evaluate the given "javascript:" url inside this resolver's runtime.
+     */
     public void loadUrl(final String url) {
-        new Handler(Looper.getMainLooper()).post(new Runnable() {
-            @Override
-            public void run() {
-                getWebView().loadUrl(url);
-            }
-        });
+        String js = url;
+        if (js.startsWith("javascript:")) {
+            js = js.substring("javascript:".length());
+        }
+        ScriptResolverHost.getInstance().evaluate(this, js);
     }
 
     /**
@@ -655,6 +597,14 @@ public class ScriptResolver extends Resolver {
         return mReady;
     }
 
+    /**
+     * Forget the given {@link Query}, so that results, which are reported for it by the script
+     * afterwards, are being ignored.
+     */
+    public void cancel(Query query) {
+        mQueryKeys.values().removeAll(Collections.singleton(query));
+    }
+
     public void getStreamUrl(final Result result, String callbackFuncName) {
         if (result != null) {
             String resultId = TomahawkMainActivity.getSessionUniqueStringId();
@@ -673,7 +623,7 @@ public class ScriptResolver extends Resolver {
      *                      information
      * @return a {@link ArrayList} of {@link Result}s containing the parsed data
      */
-    private ArrayList<Result> parseResultList(ArrayList<ScriptResolverResultEntry> resultEntries,
+    public ArrayList<Result> parseResultList(List<ScriptResolverResultEntry> resultEntries,
             String queryKey) {
         ArrayList<Result> resultList = new ArrayList<Result>();
         for (ScriptResolverResultEntry resultEntry : resultEntries) {
@@ -728,7 +678,7 @@ public class ScriptResolver extends Resolver {
      * @return the computed {@link String}
      */
     private String makeJSFunctionCallbackJava(int id, String string, boolean shouldReturnResult) {
-        return SCRIPT_INTERFACE_NAME + ".callbackToJava(" + id + ",JSON.stringify(" + string + "),"
+        return "Tomahawk.callbackToJava(" + id + ",JSON.stringify(" + string + "),"
                 + shouldReturnResult + ");";
     }
 
@@ -756,6 +706,20 @@ public class ScriptResolver extends Resolver {
         return mPath + "/" + mMetaData.manifest.main;
     }
 
+    /**
+     * @return the filepaths (without file://android_asset) of the additional scripts, which have to
+     * be loaded before the main script
+     */
+    public List<String> getScriptPaths() {
+        List<String> scriptPaths = new ArrayList<String>();
+        if (mMetaData.manifest.scripts != null) {
+            for (String scriptPath : mMetaData.manifest.scripts) {
+                scriptPaths.add(mPath + "/" + scriptPath);
+            }
+        }
+        return scriptPaths;
+    }
+
     public void setConfig(Map<String, Object> config) {
         try {
             String rawJsonString = mObjectMapper.writeValueAsString(config);
@@ -811,6 +775,9 @@ public class ScriptResolver extends Resolver {
     public void setEnabled(boolean enabled) {
         Log.d(TAG, this.mId + " has been " + (enabled ? "enabled" : "disabled"));
         mEnabled = enabled;
+        if (enabled) {
+            start();
+        }
         Map<String, Object> config = getConfig();
         config.put(ENABLED_KEY, enabled);
         setConfig(config);
@@ -0,0 +1,329 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import org.tomahawk.libtomahawk.utils.StringEscapeUtils;
+import org.tomahawk.tomahawk_android.TomahawkApp;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hosts the javascript runtimes of all started {@link ScriptResolver}s. Instead of giving every
+ * {@link ScriptResolver} its own WebView, a small pool of WebViews is being shared. Every {@link
+ * ScriptResolver} runs in its own iframe inside one of them, so that its scripts are still
+ * isolated from the other resolvers' ones.
+ *
+ * The CryptoJS libraries, which make up most of the common scripts, are stateless. They are being
+ * loaded only once into the host page of every WebView and the frames use the host page's
+ * CryptoJS object. tomahawk.js and its Android glue keep per-resolver state in the global
+ * Tomahawk object, so they still have to be run once per frame.
+ *
+ * All calls from the scripts to Java go through a single {@link ScriptInterface} per WebView and
+ * are being routed by the id of the calling {@link ScriptResolver}.
+ */
+public class ScriptResolverHost {
+
+    private final static String TAG = ScriptResolverHost.class.getSimpleName();
+
+    private final static String SCRIPT_INTERFACE_NAME = "TomahawkBridge";
+
+    private static final int MAX_RUNTIMES = 2;
+
+    private static final int MAX_RESOLVERS_PER_RUNTIME = 8;
+
+    private static final String BASE_URL = "file:///android_asset/test.html";
+
+    private static final String HOST_PAGE_SCRIPT = "<script>"
+            + "function addResolverFrame(id, html) {"
+            + "  var frame = document.createElement('iframe');"
+            + "  frame.id = id;"
+            + "  frame.style.display = 'none';"
+            + "  document.body.appendChild(frame);"
+            + "  var doc = frame.contentWindow.document;"
+            + "  doc.open();"
+            + "  doc.write(html);"
+            + "  doc.close();"
+            + "}"
+            + "function evaluateInResolverFrame(id, js) {"
+            + "  var frame = document.getElementById(id);"
+            + "  if (frame) {"
+            + "    frame.contentWindow.eval(js);"
+            + "  }"
+            + "}"
+            + "</script>";
+
+    private static class Holder {
+
+        private static final ScriptResolverHost instance = new ScriptResolverHost();
+
+    }
+
+    /**
+     * A single WebView, which hosts the runtimes of up to {@link #MAX_RESOLVERS_PER_RUNTIME}
+     * {@link ScriptResolver}s.
+     */
+    class Runtime {
+
+        private final WebView mWebView;
+
+        private boolean mPageFinished;
+
+        private final List<ScriptResolver> mResolvers = new ArrayList<ScriptResolver>();
+
+        // Resolvers, which have been added before the host page has finished loading
+        private final List<ScriptResolver> mWaitingResolvers = new ArrayList<ScriptResolver>();
+
+        Runtime() {
+            mWebView = new WebView(TomahawkApp.getContext());
+            WebSettings settings = mWebView.getSettings();
+            settings.setJavaScriptEnabled(true);
+            settings.setDatabaseEnabled(true);
+            settings.setDatabasePath(
+                    TomahawkApp.getContext().getDir("databases", Context.MODE_PRIVATE)
+                            .getPath());
+            settings.setDomStorageEnabled(true);
+            mWebView.setWebChromeClient(new TomahawkWebChromeClient());
+            mWebView.setWebViewClient(new ScriptWebViewClient(this));
+            mWebView.addJavascriptInterface(new ScriptInterface(), SCRIPT_INTERFACE_NAME);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                mWebView.getSettings().setAllowUniversalAccessFromFileURLs(true);
+            }
+            mWebView.loadDataWithBaseURL(BASE_URL, buildHostPageHtml(), "text/html", null, null);
+        }
+
+        void addResolver(ScriptResolver scriptResolver) {
+            mResolvers.add(scriptResolver);
+            if (mPageFinished) {
+                evaluate("addResolverFrame('"
+                        + StringEscapeUtils.escapeJavaScript(scriptResolver.getId()) + "', '"
+                        + StringEscapeUtils.escapeJavaScript(buildFrameHtml(scriptResolver))
+                        + "')");
+            } else {
+                mWaitingResolvers.add(scriptResolver);
+            }
+        }
+
+        void onPageFinished() {
+            if (!mPageFinished) {
+                mPageFinished = true;
+                for (ScriptResolver scriptResolver : mWaitingResolvers) {
+                    mResolvers.remove(scriptResolver);
+                    addResolver(scriptResolver);
+                }
+                mWaitingResolvers.clear();
+            }
+        }
+
+        @TargetApi(Build.VERSION_CODES.KITKAT)
+        void evaluate(String js) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                mWebView.evaluateJavascript(js, null);
+            } else {
+                mWebView.loadUrl("javascript:" + js);
+            }
+        }
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // Only accessed on the main thread
+    private final List<Runtime> mRuntimes = new ArrayList<Runtime>();
+
+    private final Map<String, Runtime> mResolverRuntimes = new HashMap<String, Runtime>();
+
+    // Scripts, which are being evaluated as soon as the corresponding resolver's scripts are loaded
+    private final Map<String, List<String>> mWaitingScripts = new HashMap<String, List<String>>();
+
+    private final ConcurrentHashMap<String, ScriptResolver> mLoadedResolvers
+            = new ConcurrentHashMap<String, ScriptResolver>();
+
+    private final ConcurrentHashMap<String, ScriptResolver> mResolvers
+            = new ConcurrentHashMap<String, ScriptResolver>();
+
+    private String mSharedScripts;
+
+    private ScriptResolverHost() {
+    }
+
+    public static ScriptResolverHost getInstance() {
+        return Holder.instance;
+    }
+
+    /**
+     * Start the runtime of the given {@link ScriptResolver} in one of the pooled WebViews. As soon
+     * as its scripts have been loaded, {@link ScriptResolver#onScriptsLoaded()} is being called.
+     */
+    public void start(final ScriptResolver scriptResolver) {
+        mResolvers.put(scriptResolver.getId(), scriptResolver);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mResolverRuntimes.containsKey(scriptResolver.getId())) {
+                    return;
+                }
+                // Use the least busy runtime, as long as it isn't full or no more runtimes can be
+                // created
+                Runtime runtime = null;
+                for (Runtime r : mRuntimes) {
+                    if (runtime == null || r.mResolvers.size() < runtime.mResolvers.size()) {
+                        runtime = r;
+                    }
+                }
+                if (runtime == null || (runtime.mResolvers.size() >= MAX_RESOLVERS_PER_RUNTIME
+                        && mRuntimes.size() < MAX_RUNTIMES)) {
+                    runtime = new Runtime();
+                    mRuntimes.add(runtime);
+                    Log.d(TAG, "start - created runtime #" + mRuntimes.size());
+                }
+                mResolverRuntimes.put(scriptResolver.getId(), runtime);
+                runtime.addResolver(scriptResolver);
+            }
+        });
+    }
+
+    /**
+     * Evaluate the given javascript inside the runtime of the given {@link ScriptResolver}. If
+     * its scripts haven't been loaded yet, the javascript is being evaluated afterwards.
+     */
+    public void evaluate(final ScriptResolver scriptResolver, final String js) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                String id = scriptResolver.getId();
+                Runtime runtime = mResolverRuntimes.get(id);
+                if (runtime != null && mLoadedResolvers.containsKey(id)) {
+                    runtime.evaluate("evaluateInResolverFrame('"
+                            + StringEscapeUtils.escapeJavaScript(id) + "', '"
+                            + StringEscapeUtils.escapeJavaScript(js) + "')");
+                } else {
+                    List<String> scripts = mWaitingScripts.get(id);
+                    if (scripts == null) {
+                        scripts = new ArrayList<String>();
+                        mWaitingScripts.put(id, scripts);
+                    }
+                    scripts.add(js);
+                    scriptResolver.start();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the started {@link ScriptResolver} with the given id, null if not found
+     */
+    ScriptResolver getResolver(String id) {
+        return mResolvers.get(id);
+    }
+
+    /**
+     * Called through the {@link ScriptInterface}, as soon as all scripts of the {@link
+     * ScriptResolver} with the given id have been loaded.
+     */
+    void onScriptsLoaded(final String id) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                ScriptResolver scriptResolver = mResolvers.get(id);
+                if (scriptResolver == null || mLoadedResolvers.containsKey(id)) {
+                    return;
+                }
+                mLoadedResolvers.put(id, scriptResolver);
+                scriptResolver.onScriptsLoaded();
+                List<String> scripts = mWaitingScripts.remove(id);
+                if (scripts != null) {
+                    for (String js : scripts) {
+                        evaluate(scriptResolver, js);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Build the document of the host page, which loads the shared libraries once per WebView.
+     */
+    private String buildHostPageHtml() {
+        return "<!DOCTYPE html><html><body>" + getSharedScripts() + HOST_PAGE_SCRIPT
+                + "</body></html>";
+    }
+
+    /**
+     * Build the document of the iframe, which the given {@link ScriptResolver} runs in. The
+     * bridge script gives the resolver its own Tomahawk object, which tags every call with the
+     * resolver's id. CryptoJS is being taken from the host page instead of being loaded again.
+     */
+    private String buildFrameHtml(ScriptResolver scriptResolver) {
+        String escapedId = StringEscapeUtils.escapeJavaScript(scriptResolver.getId());
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html><html><body>");
+        sb.append("<script type=\"text/javascript\">var TomahawkResolverId = '").append(escapedId)
+                .append("'; var CryptoJS = parent.CryptoJS;</script>");
+        appendScript(sb, "js/tomahawk_android_bridge.js");
+        for (String scriptPath : scriptResolver.getScriptPaths()) {
+            appendScript(sb, scriptPath);
+        }
+        appendScript(sb, "js/tomahawk_android_pre.js");
+        appendScript(sb, "js/tomahawk.js");
+        appendScript(sb, "js/tomahawk_android_post.js");
+        appendScript(sb, scriptResolver.getScriptFilePath());
+        sb.append("<script type=\"text/javascript\">Tomahawk.onScriptsLoaded();</script>");
+        sb.append("</body></html>");
+        return sb.toString();
+    }
+
+    /**
+     * @return the script tags of the stateless libraries, which are being shared by all frames of
+     * a WebView
+     */
+    private String getSharedScripts() {
+        if (mSharedScripts == null) {
+            StringBuilder sb = new StringBuilder();
+            appendScript(sb, "js/cryptojs-core.js");
+            try {
+                String[] cryptoJsScripts =
+                        TomahawkApp.getContext().getAssets().list("js/cryptojs");
+                for (String scriptPath : cryptoJsScripts) {
+                    appendScript(sb, "js/cryptojs/" + scriptPath);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "getSharedScripts: " + e.getClass() + ": " + e.getLocalizedMessage());
+            }
+            mSharedScripts = sb.toString();
+        }
+        return mSharedScripts;
+    }
+
+    private static void appendScript(StringBuilder sb, String assetPath) {
+        sb.append("<script src=\"file:///android_asset/").append(assetPath)
+                .append("\" type=\"text/javascript\"></script>");
+    }
+}
@@ -0,0 +1,340 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import org.tomahawk.tomahawk_android.TomahawkApp;
+import org.tomahawk.tomahawk_android.utils.ThreadManager;
+import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The localStorage of a single {@link ScriptResolver}. All items are being kept in memory, so that
+ * reads never touch the disk. Changes are being appended to a log file in batches in the
+ * background. The log file is being compacted once it mostly consists of outdated entries.
+ */
+public class ScriptResolverStorage {
+
+    private final static String TAG = ScriptResolverStorage.class.getSimpleName();
+
+    private static final String STORAGE_DIR = "TomahawkWebViewStorage";
+
+    private static final int FILE_VERSION = 1;
+
+    private static final byte OP_SET = 1;
+
+    private static final byte OP_REMOVE = 2;
+
+    // Changes are being written FLUSH_DELAY ms after the first change since the last write
+    private static final int FLUSH_DELAY = 2000;
+
+    private static final int MIN_COMPACTION_ENTRIES = 100;
+
+    private static final ConcurrentHashMap<String, ScriptResolverStorage> sStorages
+            = new ConcurrentHashMap<String, ScriptResolverStorage>();
+
+    private static final Handler sFlushHandler = new Handler(Looper.getMainLooper());
+
+    private final File mFile;
+
+    private Map<String, String> mItems;
+
+    // Changes, which haven't been written to the log file yet. A null value marks a removal.
+    private final LinkedHashMap<String, String> mPendingChanges
+            = new LinkedHashMap<String, String>();
+
+    private int mLogEntryCount;
+
+    private boolean mNeedsCompaction;
+
+    // Whether or not a flush has been scheduled, which hasn't taken the pending changes yet
+    private boolean mFlushScheduled;
+
+    private final Object mFileLock = new Object();
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            ThreadManager.getInstance().execute(
+                    new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_DATABASEACTION) {
+                        @Override
+                        public void run() {
+                            flush();
+                        }
+                    });
+        }
+    };
+
+    private ScriptResolverStorage(String resolverId) {
+        File dir = new File(TomahawkApp.getContext().getFilesDir(), STORAGE_DIR);
+        mFile = new File(dir, resolverId + ".log");
+    }
+
+    /**
+     * @return the {@link ScriptResolverStorage} of the {@link ScriptResolver} with the given id
+     */
+    public static ScriptResolverStorage get(String resolverId) {
+        ScriptResolverStorage storage = sStorages.get(resolverId);
+        if (storage == null) {
+            storage = new ScriptResolverStorage(resolverId);
+            ScriptResolverStorage existing = sStorages.putIfAbsent(resolverId, storage);
+            if (existing != null) {
+                storage = existing;
+            }
+        }
+        return storage;
+    }
+
+    public synchronized String getItem(String key) {
+        return getItems().get(key);
+    }
+
+    public synchronized void setItem(String key, String value) {
+        getItems().put(key, value);
+        mPendingChanges.put(key, value);
+        scheduleFlush();
+    }
+
+    public synchronized void removeItem(String key) {
+        if (getItems().remove(key) != null) {
+            mPendingChanges.put(key, null);
+            scheduleFlush();
+        }
+    }
+
+    public synchronized String[] keys() {
+        return getItems().keySet().toArray(new String[getItems().size()]);
+    }
+
+    public synchronized String[] values() {
+        return getItems().values().toArray(new String[getItems().size()]);
+    }
+
+    /**
+     * Write the pending changes of all storages right away, e.g. because the app is going to the
+     * background and might be killed.
+     */
+    public static void flushAll() {
+        for (ScriptResolverStorage storage : sStorages.values()) {
+            sFlushHandler.removeCallbacks(storage.mFlushRunnable);
+            storage.mFlushRunnable.run();
+        }
+    }
+
+    /**
+     * Schedule a flush in {@link #FLUSH_DELAY} ms, unless one has already been scheduled. Further
+     * changes don't postpone it, so that changes are written at least every {@link #FLUSH_DELAY}
+     * ms, even if a resolver writes continuously.
+     */
+    private void scheduleFlush() {
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            sFlushHandler.postDelayed(mFlushRunnable, FLUSH_DELAY);
+        }
+    }
+
+    /**
+     * Write all pending changes to the log file. If the log file mostly consists of outdated
+     * entries, it is being rewritten from the items in memory instead.
+     */
+    private void flush() {
+        synchronized (mFileLock) {
+            Map<String, String> changes;
+            Map<String, String> items = null;
+            synchronized (this) {
+                mFlushScheduled = false;
+                if (mPendingChanges.isEmpty() && !mNeedsCompaction) {
+                    return;
+                }
+                changes = new LinkedHashMap<String, String>(mPendingChanges);
+                mPendingChanges.clear();
+                mLogEntryCount += changes.size();
+                if (mNeedsCompaction || (mLogEntryCount > MIN_COMPACTION_ENTRIES
+                        && mLogEntryCount > getItems().size() * 2)) {
+                    items = new LinkedHashMap<String, String>(getItems());
+                    mLogEntryCount = items.size();
+                    mNeedsCompaction = false;
+                }
+            }
+            try {
+                if (items != null) {
+                    compact(items);
+                } else {
+                    append(changes);
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "flush: " + e.getClass() + ": " + e.getLocalizedMessage());
+                synchronized (this) {
+                    // Rewrite the whole file next time, since we don't know what made it to disk
+                    mNeedsCompaction = true;
+                }
+            }
+        }
+    }
+
+    private void append(Map<String, String> changes) throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(mFile, true)));
+        try {
+            for (Map.Entry<String, String> entry : changes.entrySet()) {
+                if (entry.getValue() != null) {
+                    out.writeByte(OP_SET);
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue());
+                } else {
+                    out.writeByte(OP_REMOVE);
+                    writeString(out, entry.getKey());
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void compact(Map<String, String> items) throws IOException {
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        try {
+            mFile.getParentFile().mkdirs();
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(FILE_VERSION);
+                for (Map.Entry<String, String> entry : items.entrySet()) {
+                    out.writeByte(OP_SET);
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue());
+                }
+            } finally {
+                out.close();
+            }
+            if (!tempFile.renameTo(mFile)) {
+                throw new IOException("Couldn't rename " + tempFile + " to " + mFile);
+            }
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * @return the items of this storage, which are being loaded from disk on first access
+     */
+    private Map<String, String> getItems() {
+        if (mItems == null) {
+            mItems = new LinkedHashMap<String, String>();
+            if (mFile.exists()) {
+                load();
+            } else {
+                importLegacyItems();
+            }
+        }
+        return mItems;
+    }
+
+    private void load() {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (in.readInt() != FILE_VERSION) {
+                throw new IOException("Unknown file version");
+            }
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                String key = readString(in);
+                if (op == OP_SET) {
+                    mItems.put(key, readString(in));
+                } else if (op == OP_REMOVE) {
+                    mItems.remove(key);
+                } else {
+                    throw new IOException("Unknown operation " + op);
+                }
+                mLogEntryCount++;
+            }
+        } catch (IOException e) {
+            // Most likely the last write has been interrupted. Keep what we've read so far and
+            // rewrite the file, so that we don't append to a corrupt entry.
+            Log.e(TAG, "load: " + e.getClass() + ": " + e.getLocalizedMessage());
+            mNeedsCompaction = true;
+            scheduleFlush();
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "load: " + e.getClass() + ": " + e.getLocalizedMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Import the items, which have been stored as one file per key by earlier versions.
+     */
+    private void importLegacyItems() {
+        File[] files = mFile.getParentFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile() && !file.getName().endsWith(".log")
+                        && !file.getName().endsWith(".tmp")) {
+                    try {
+                        mItems.put(file.getName(), Files.toString(file, Charsets.UTF_8));
+                    } catch (IOException e) {
+                        Log.e(TAG, "importLegacyItems: " + e.getClass() + ": "
+                                + e.getLocalizedMessage());
+                    }
+                }
+            }
+        }
+        mNeedsCompaction = true;
+        scheduleFlush();
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(Charsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, Charsets.UTF_8);
+    }
+}
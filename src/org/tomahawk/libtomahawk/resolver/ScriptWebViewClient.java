@@ -21,17 +21,18 @@ import android.webkit.WebView;
 import android.webkit.WebViewClient;
 
 /**
- * Basic WebViewClient, which is being used to determine, when our javascript file has been loaded
+ * Basic WebViewClient, which is being used to determine, when the host page of a {@link
+ * ScriptResolverHost.Runtime} has been loaded
  */
 public class ScriptWebViewClient extends WebViewClient {
 
-    private ScriptResolver mScriptResolver;
+    private ScriptResolverHost.Runtime mRuntime;
 
-    public ScriptWebViewClient(ScriptResolver scriptResolver) {
-        mScriptResolver = scriptResolver;
+    ScriptWebViewClient(ScriptResolverHost.Runtime runtime) {
+        mRuntime = runtime;
     }
 
     public void onPageFinished(WebView view, String url) {
-        mScriptResolver.onWebViewClientReady();
+        mRuntime.onPageFinished();
     }
 }
@@ -0,0 +1,225 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.resolver;
+
+import org.tomahawk.libtomahawk.collection.CollectionManager;
+import org.tomahawk.libtomahawk.collection.UserCollection;
+import org.tomahawk.libtomahawk.infosystem.InfoSystem;
+import org.tomahawk.tomahawk_android.TomahawkApp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A search-as-you-type session. Text changes are debounced, so that only the text the user
+ * stopped typing at is being resolved, and every new search cancels the previous one in the {@link
+ * PipeLine} and the {@link InfoSystem}.
+ *
+ * If the new text only extends the previous one and the local collection returned all of its hits
+ * for the previous text, those local results are being refined in memory instead of querying the
+ * local index again.
+ *
+ * Must only be used from the main thread.
+ */
+public class SearchSession {
+
+    private final static String TAG = SearchSession.class.getSimpleName();
+
+    public static final int DEBOUNCE_DELAY = 300;
+
+    private static final AtomicLong sSearchCount = new AtomicLong();
+
+    private static final AtomicLong sFirstResultLatencySum = new AtomicLong();
+
+    /**
+     * Interface to be notified whenever the {@link SearchSession} starts a new search
+     */
+    public interface OnSearchStartedListener {
+
+        void onSearchStarted(String text, Query query, String requestId);
+
+    }
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final OnSearchStartedListener mListener;
+
+    private String mPendingText;
+
+    private String mText;
+
+    private Query mQuery;
+
+    private String mRequestId;
+
+    private long mStartTime;
+
+    private boolean mFirstResultReported;
+
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            startSearch(mPendingText);
+        }
+    };
+
+    public SearchSession(OnSearchStartedListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Search for the given text, as soon as it hasn't changed for {@link #DEBOUNCE_DELAY} ms.
+     */
+    public void search(String text) {
+        mHandler.removeCallbacks(mSearchRunnable);
+        if (TextUtils.isEmpty(text) || text.equals(mText)) {
+            return;
+        }
+        mPendingText = text;
+        mHandler.postDelayed(mSearchRunnable, DEBOUNCE_DELAY);
+    }
+
+    /**
+     * Search for the given text immediately, e.g. because it has been submitted.
+     */
+    public void searchNow(String text) {
+        mHandler.removeCallbacks(mSearchRunnable);
+        if (!TextUtils.isEmpty(text)) {
+            startSearch(text);
+        }
+    }
+
+    /**
+     * Cancel the pending and the currently running search.
+     */
+    public void cancel() {
+        mHandler.removeCallbacks(mSearchRunnable);
+        if (mQuery != null) {
+            PipeLine.getInstance().cancel(mQuery);
+        }
+        if (mRequestId != null) {
+            InfoSystem.getInstance().cancel(mRequestId);
+        }
+        mText = null;
+    }
+
+    /**
+     * @return whether or not the given {@link Query} belongs to the current search
+     */
+    public boolean isCurrent(Query query) {
+        return query != null && query == mQuery;
+    }
+
+    /**
+     * @return whether or not the given requestId belongs to the current search
+     */
+    public boolean isCurrent(String requestId) {
+        return requestId != null && requestId.equals(mRequestId);
+    }
+
+    /**
+     * Should be called, whenever results of the current search have been reported, so that the
+     * latency to the first result can be measured.
+     */
+    public void onResultsReported() {
+        if (!mFirstResultReported) {
+            mFirstResultReported = true;
+            long latency = System.currentTimeMillis() - mStartTime;
+            long count = sSearchCount.incrementAndGet();
+            long sum = sFirstResultLatencySum.addAndGet(latency);
+            Log.d(TAG, "First result for '" + mText + "' after " + latency + "ms, average "
+                    + (sum / count) + "ms over " + count + " searches");
+        }
+    }
+
+    private void startSearch(String text) {
+        Query previousQuery = mQuery;
+        String previousText = mText;
+        cancel();
+
+        mText = text;
+        mStartTime = System.currentTimeMillis();
+        mFirstResultReported = false;
+        mRequestId = InfoSystem.getInstance().resolve(text);
+        mQuery = Query.get(text, false);
+
+        ArrayList<Result> refinedResults = null;
+        if (previousQuery != null && previousText != null && mQuery != previousQuery
+                && text.toLowerCase(Locale.getDefault())
+                .startsWith(previousText.toLowerCase(Locale.getDefault()))) {
+            refinedResults = refineLocalResults(previousQuery, mQuery);
+        }
+        if (refinedResults != null) {
+            PipeLine.getInstance().resolve(mQuery, false, true);
+            PipeLine.getInstance().reportResults(mQuery, refinedResults,
+                    TomahawkApp.PLUGINNAME_USERCOLLECTION, true);
+        } else {
+            PipeLine.getInstance().resolve(mQuery, false);
+        }
+        if (mListener != null) {
+            mListener.onSearchStarted(text, mQuery, mRequestId);
+        }
+    }
+
+    /**
+     * Filter the local results of the given previous {@link Query} down to the ones matching every
+     * token of the given {@link Query}. The refined results are re-scored the same way the local
+     * index would score them, so that they rank like the results of an actual local search.
+     *
+     * @return the refined results, or null if the previous {@link Query} has no local results or
+     * the local index has cut off some of its matches for it
+     */
+    private static ArrayList<Result> refineLocalResults(Query previousQuery, Query query) {
+        UserCollection userCollection = (UserCollection) CollectionManager.getInstance()
+                .getCollection(TomahawkApp.PLUGINNAME_USERCOLLECTION);
+        ArrayList<Result> localResults = userCollection != null
+                ? userCollection.getCompleteSearchResults(previousQuery) : null;
+        if (localResults == null || localResults.isEmpty()) {
+            return null;
+        }
+        String[] tokens = query.getFullTextQuery().toLowerCase(Locale.getDefault()).trim()
+                .split("\\s+");
+        ArrayList<Result> refinedResults = new ArrayList<Result>();
+        for (Result result : localResults) {
+            String haystack = (result.getTrack().getName() + " "
+                    + result.getArtist().getName() + " "
+                    + result.getAlbum().getName()).toLowerCase(Locale.getDefault());
+            boolean matches = true;
+            for (String token : tokens) {
+                if (!haystack.contains(token)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                float score = userCollection.getSearchScore(query, result);
+                if (score > 0f) {
+                    result.setTrackScore(score);
+                    refinedResults.add(result);
+                }
+            }
+        }
+        return refinedResults;
+    }
+}
@@ -0,0 +1,275 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import org.tomahawk.tomahawk_android.TomahawkApp;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+/**
+ * A content-addressed disk cache for embedded artwork. Every picture is stored once as a JPEG file
+ * named after the SHA-1 hash of its bytes, so that the artwork shared by all tracks of an album is
+ * only stored a single time. The database only stores the resulting key.
+ *
+ * Down-sampled thumbnails are generated on demand and kept in the cache dir, since they can always
+ * be regenerated from the original. Pictures can be loaded by Picasso through {@link
+ * #getUri(String)} and the {@link ArtworkRequestHandler}.
+ */
+public class ArtworkCache {
+
+    private final static String TAG = ArtworkCache.class.getSimpleName();
+
+    public static final String SCHEME = "artwork";
+
+    private static final String DIR_NAME = "artwork";
+
+    private static final String FILE_EXTENSION = ".jpg";
+
+    private static final int JPEG_QUALITY = 90;
+
+    private static final long RETAIN_GRACE_PERIOD = 60 * 1000;
+
+    // The sizes of the thumbnail variants. Bigger requests are served from the original picture.
+    private static final int[] THUMBNAIL_SIZES = new int[]{128, 256, 512};
+
+    private static class Holder {
+
+        private static final ArtworkCache instance = new ArtworkCache();
+
+    }
+
+    private final File mOriginalsDir;
+
+    private final File mThumbnailsDir;
+
+    private ArtworkCache() {
+        mOriginalsDir = new File(TomahawkApp.getContext().getFilesDir(), DIR_NAME);
+        mThumbnailsDir = new File(TomahawkApp.getContext().getCacheDir(), DIR_NAME);
+    }
+
+    public static ArtworkCache getInstance() {
+        return Holder.instance;
+    }
+
+    /**
+     * @return the Uri with which the picture with the given key can be loaded by Picasso
+     */
+    public static String getUri(String key) {
+        return SCHEME + "://" + key;
+    }
+
+    /**
+     * @return the key of the picture that the given Uri points to. null, if the Uri isn't an
+     * artwork Uri.
+     */
+    public static String getKey(Uri uri) {
+        if (uri == null || !SCHEME.equals(uri.getScheme())) {
+            return null;
+        }
+        return uri.getHost();
+    }
+
+    /**
+     * @return the key of the picture that the given Uri String points to. null, if the Uri isn't
+     * an artwork Uri.
+     */
+    public static String getKey(String uri) {
+        if (uri == null || !uri.startsWith(SCHEME + "://")) {
+            return null;
+        }
+        return uri.substring(SCHEME.length() + 3);
+    }
+
+    /**
+     * JPEG-compress the given {@link Bitmap} and store it.
+     *
+     * @return the key of the stored picture
+     */
+    public String put(Bitmap bitmap) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        return put(out.toByteArray());
+    }
+
+    /**
+     * Store the given encoded picture, if it hasn't been stored yet.
+     *
+     * @return the key of the stored picture
+     */
+    public String put(byte[] data) throws IOException {
+        String key = hash(data);
+        File file = getOriginalFile(key);
+        if (!file.exists()) {
+            write(file, data);
+        }
+        return key;
+    }
+
+    /**
+     * Decode the picture with the given key.
+     *
+     * @param key        the key of the picture
+     * @param targetSize the size the picture will be shown in. The smallest thumbnail variant
+     *                   that is at least this big is being used. 0 to decode the original picture.
+     * @return the decoded {@link Bitmap}, or null if there's no such picture or it couldn't be
+     * decoded
+     */
+    public Bitmap get(String key, int targetSize) {
+        if (TextUtils.isEmpty(key)) {
+            return null;
+        }
+        File original = getOriginalFile(key);
+        if (!original.exists()) {
+            return null;
+        }
+        int thumbnailSize = 0;
+        for (int size : THUMBNAIL_SIZES) {
+            if (targetSize > 0 && targetSize <= size) {
+                thumbnailSize = size;
+                break;
+            }
+        }
+        try {
+            if (thumbnailSize == 0) {
+                return BitmapFactory.decodeFile(original.getPath());
+            }
+            File thumbnail = getThumbnailFile(key, thumbnailSize);
+            if (thumbnail.exists()) {
+                Bitmap bitmap = BitmapFactory.decodeFile(thumbnail.getPath());
+                if (bitmap != null) {
+                    return bitmap;
+                }
+            }
+            Bitmap bitmap = decodeSampled(original, thumbnailSize);
+            if (bitmap != null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+                try {
+                    write(thumbnail, out.toByteArray());
+                } catch (IOException e) {
+                    Log.e(TAG, "get: " + e.getClass() + ": " + e.getLocalizedMessage());
+                }
+            }
+            return bitmap;
+        } catch (OutOfMemoryError e) {
+            Log.e(TAG, "get: " + e.getClass() + ": " + e.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Delete all pictures, whose keys are not contained in the given Set. Pictures that have just
+     * been stored are kept, since their keys might not have been written to the database yet.
+     */
+    public void retainAll(Set<String> keys) {
+        File[] files = mOriginalsDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - RETAIN_GRACE_PERIOD;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(FILE_EXTENSION)) {
+                String key = name.substring(0, name.length() - FILE_EXTENSION.length());
+                if (!keys.contains(key) && file.lastModified() < cutoff) {
+                    for (int size : THUMBNAIL_SIZES) {
+                        getThumbnailFile(key, size).delete();
+                    }
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode the given file with the biggest power of two sample size, which keeps both sides at
+     * least as big as the given size.
+     */
+    private static Bitmap decodeSampled(File file, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= size
+                && options.outHeight / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    private File getOriginalFile(String key) {
+        return new File(mOriginalsDir, key + FILE_EXTENSION);
+    }
+
+    private File getThumbnailFile(String key, int size) {
+        return new File(mThumbnailsDir, key + "_" + size + FILE_EXTENSION);
+    }
+
+    /**
+     * Write the given data to a temporary file first and rename it afterwards, so that a
+     * concurrent reader never sees a partially written picture.
+     */
+    private static void write(File file, byte[] data) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs() && !dir.exists()) {
+            throw new IOException("Couldn't create directory " + dir);
+        }
+        File tmpFile = File.createTempFile(file.getName(), ".tmp", dir);
+        FileOutputStream out = new FileOutputStream(tmpFile);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            if (!file.exists()) {
+                throw new IOException("Couldn't rename " + tmpFile + " to " + file);
+            }
+        }
+    }
+
+    private static String hash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android device provides SHA-1
+            throw new RuntimeException(e);
+        }
+    }
+}
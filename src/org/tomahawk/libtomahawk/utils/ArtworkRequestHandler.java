@@ -0,0 +1,48 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Request;
+import com.squareup.picasso.RequestHandler;
+
+import android.graphics.Bitmap;
+
+import java.io.IOException;
+
+/**
+ * A Picasso {@link RequestHandler}, which serves pictures from the {@link ArtworkCache}. If the
+ * request has been resized, the matching down-sampled thumbnail is being used.
+ */
+public class ArtworkRequestHandler extends RequestHandler {
+
+    @Override
+    public boolean canHandleRequest(Request data) {
+        return ArtworkCache.SCHEME.equals(data.uri.getScheme());
+    }
+
+    @Override
+    public Result load(Request data) throws IOException {
+        int targetSize = data.hasSize() ? Math.max(data.targetWidth, data.targetHeight) : 0;
+        Bitmap bitmap = ArtworkCache.getInstance().get(ArtworkCache.getKey(data.uri), targetSize);
+        if (bitmap == null) {
+            throw new IOException("Couldn't load artwork " + data.uri);
+        }
+        return new Result(bitmap, Picasso.LoadedFrom.DISK);
+    }
+}
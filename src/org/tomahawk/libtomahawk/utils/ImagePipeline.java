@@ -0,0 +1,181 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.OkHttpDownloader;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.StatsSnapshot;
+
+import org.tomahawk.libtomahawk.collection.Image;
+import org.tomahawk.tomahawk_android.TomahawkApp;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The image pipeline, which is being used by every Picasso request in the app. It consists of a
+ * memory cache sized after the device's memory class, an OkHttp disk cache and the {@link
+ * ArtworkRequestHandler}.
+ *
+ * Hatchet images are always requested in one of a few canonical sizes, so that the same image
+ * isn't cached under many different URLs. If a bigger variant of an image has already been
+ * fetched, that one is used and down-sampled locally instead of fetching a smaller one.
+ */
+public class ImagePipeline {
+
+    private final static String TAG = ImagePipeline.class.getSimpleName();
+
+    private static final int[] SIZE_BUCKETS = new int[]{128, 256, 512, 1024};
+
+    private static final int DISK_CACHE_SIZE = 1024 * 1024 * 50;
+
+    // The fraction of the app's memory class, which is used for the memory cache
+    private static final int MEMORY_CACHE_DIVIDER = 6;
+
+    private static final int MAX_REMEMBERED_SIZES = 2000;
+
+    private static class Holder {
+
+        private static final ImagePipeline instance = new ImagePipeline();
+
+    }
+
+    private final Picasso mPicasso;
+
+    private final LruCache mMemoryCache;
+
+    private Cache mDiskCache;
+
+    // Maps image paths to the biggest size bucket that has been fetched so far
+    private final android.support.v4.util.LruCache<String, Integer> mFetchedSizes =
+            new android.support.v4.util.LruCache<String, Integer>(MAX_REMEMBERED_SIZES);
+
+    private ImagePipeline() {
+        Context context = TomahawkApp.getContext();
+        ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        mMemoryCache = new LruCache(1024 * 1024 * am.getMemoryClass() / MEMORY_CACHE_DIVIDER);
+
+        OkHttpClient okHttpClient = new OkHttpClient();
+        File cacheDir = new File(context.getCacheDir(), "imageCache");
+        try {
+            mDiskCache = new Cache(cacheDir, DISK_CACHE_SIZE);
+            okHttpClient.setCache(mDiskCache);
+        } catch (IOException e) {
+            Log.e(TAG, "<init>: " + e.getClass() + ": " + e.getLocalizedMessage());
+        }
+
+        mPicasso = new Picasso.Builder(context)
+                .memoryCache(mMemoryCache)
+                .downloader(new OkHttpDownloader(okHttpClient))
+                .addRequestHandler(new ArtworkRequestHandler())
+                .build();
+    }
+
+    public static ImagePipeline getInstance() {
+        return Holder.instance;
+    }
+
+    public Picasso getPicasso() {
+        return mPicasso;
+    }
+
+    /**
+     * Build the path with which the given {@link Image} should be requested, if it is going to be
+     * shown with the given width.
+     */
+    public String buildImagePath(Image image, int width) {
+        if (!image.isHatchetImage()) {
+            return image.getImagePath();
+        }
+        if (!TomahawkUtils.isWifiAvailable()) {
+            width = width * 2 / 3;
+        }
+        int bucket = getSizeBucket(width);
+        int squareImageWidth = Math.min(image.getHeight(), image.getWidth());
+        if (bucket == 0 || squareImageWidth <= bucket) {
+            return image.getImagePath();
+        }
+        synchronized (mFetchedSizes) {
+            Integer fetchedSize = mFetchedSizes.get(image.getImagePath());
+            if (fetchedSize != null && fetchedSize >= bucket) {
+                // Picasso down-samples the bigger variant, which is already in the disk cache
+                bucket = fetchedSize;
+            } else {
+                mFetchedSizes.put(image.getImagePath(), bucket);
+            }
+        }
+        return image.getImagePath() + "?width=" + bucket + "&height=" + bucket;
+    }
+
+    /**
+     * @return the smallest size bucket that is at least as big as the given width. 0, if the
+     * original image should be used.
+     */
+    private static int getSizeBucket(int width) {
+        for (int bucket : SIZE_BUCKETS) {
+            if (width <= bucket) {
+                return bucket;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Release memory, if the system asks us to.
+     *
+     * @param level the level given to {@link android.app.Application#onTrimMemory(int)}
+     */
+    public void onTrimMemory(int level) {
+        Log.d(TAG, "onTrimMemory - level " + level + ", " + getStats());
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            mMemoryCache.clear();
+        }
+    }
+
+    /**
+     * @return a human-readable summary of the memory and disk cache hit rates
+     */
+    public String getStats() {
+        StatsSnapshot snapshot = mPicasso.getSnapshot();
+        StringBuilder sb = new StringBuilder();
+        sb.append("memory cache: ").append(snapshot.size / 1024).append("/")
+                .append(snapshot.maxSize / 1024).append("kB, hit rate ")
+                .append(getHitRate(snapshot.cacheHits, snapshot.cacheHits + snapshot.cacheMisses));
+        if (mDiskCache != null) {
+            sb.append(", disk cache: hit rate ")
+                    .append(getHitRate(mDiskCache.getHitCount(), mDiskCache.getRequestCount()));
+        }
+        sb.append(", downloaded ").append(snapshot.totalDownloadSize / 1024).append("kB");
+        return sb.toString();
+    }
+
+    private static String getHitRate(long hits, long requests) {
+        if (requests == 0) {
+            return "-";
+        }
+        return (hits * 100 / requests) + "% (" + hits + "/" + requests + ")";
+    }
+}
@@ -0,0 +1,895 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.libtomahawk.utils;
+
+import com.google.common.base.Charsets;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/**
+ * Reads the metadata of local audio files directly from their headers, without having to start a
+ * decoder. Supports ID3v1/ID3v2 tags (mp3), Vorbis comments (flac, ogg, opus) and iTunes-style
+ * MP4 atoms (m4a), including embedded cover pictures. The relevant parts of the files are
+ * memory-mapped, so that only the pages which are actually being looked at are read from disk.
+ */
+public class TagReader {
+
+    /**
+     * Holds the metadata read by {@link TagReader}
+     */
+    public static class Tags {
+
+        public String mTitle;
+
+        public String mArtist;
+
+        public String mAlbum;
+
+        public String mGenre;
+
+        public int mTrackNumber;
+
+        /**
+         * Duration in milliseconds, 0 if unknown
+         */
+        public long mLength;
+
+        /**
+         * The encoded embedded picture (usually JPEG or PNG), null if there is none
+         */
+        public byte[] mPicture;
+
+        private int mPictureType = -1;
+
+        private boolean isEmpty() {
+            return mTitle == null && mArtist == null && mAlbum == null;
+        }
+    }
+
+    /**
+     * The maximum amount of bytes that are being mapped at once
+     */
+    private static final int MAX_MAP_SIZE = 16 * 1024 * 1024;
+
+    private static final int OGG_TAIL_SIZE = 64 * 1024;
+
+    /**
+     * Embedded pictures bigger than this are being ignored
+     */
+    private static final int MAX_PICTURE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The picture type of a front cover, as defined by ID3v2 and FLAC
+     */
+    private static final int PICTURE_TYPE_FRONT_COVER = 3;
+
+    private static final Charset UTF_16BE = Charset.forName("UTF-16BE");
+
+    private static final Charset UTF_16 = Charset.forName("UTF-16");
+
+    private static final String[] ID3V1_GENRES = new String[]{"Blues", "Classic Rock",
+            "Country", "Dance", "Disco", "Funk", "Grunge", "Hip-Hop", "Jazz", "Metal", "New Age",
+            "Oldies", "Other", "Pop", "R&B", "Rap", "Reggae", "Rock", "Techno", "Industrial",
+            "Alternative", "Ska", "Death Metal", "Pranks", "Soundtrack", "Euro-Techno", "Ambient",
+            "Trip-Hop", "Vocal", "Jazz+Funk", "Fusion", "Trance", "Classical", "Instrumental",
+            "Acid", "House", "Game", "Sound Clip", "Gospel", "Noise", "AlternRock", "Bass", "Soul",
+            "Punk", "Space", "Meditative", "Instrumental Pop", "Instrumental Rock", "Ethnic",
+            "Gothic", "Darkwave", "Techno-Industrial", "Electronic", "Pop-Folk", "Eurodance",
+            "Dream", "Southern Rock", "Comedy", "Cult", "Gangsta", "Top 40", "Christian Rap",
+            "Pop/Funk", "Jungle", "Native American", "Cabaret", "New Wave", "Psychadelic", "Rave",
+            "Showtunes", "Trailer", "Lo-Fi", "Tribal", "Acid Punk", "Acid Jazz", "Polka", "Retro",
+            "Musical", "Rock & Roll", "Hard Rock"};
+
+    private static final int[][] MP3_BITRATES = new int[][]{
+            // MPEG 1, layer I, II, III
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448, 0},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384, 0},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 0},
+            // MPEG 2/2.5, layer I, II/III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256, 0},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160, 0}};
+
+    private static final int[] MP3_SAMPLERATES = new int[]{44100, 48000, 32000};
+
+    /**
+     * Read the tags of the given file.
+     *
+     * @return the {@link Tags} of the given file. null, if the file's format isn't supported or if
+     * the file doesn't contain any tags at all, so that the caller can fall back to a full media
+     * parse.
+     */
+    public static Tags read(File file) throws IOException {
+        String fileName = file.getName().toLowerCase(Locale.ENGLISH);
+        int dotIndex = fileName.lastIndexOf(".");
+        if (dotIndex == -1) {
+            return null;
+        }
+        String ext = fileName.substring(dotIndex + 1);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            Tags tags = null;
+            if (ext.equals("mp3")) {
+                tags = readMp3(channel);
+            } else if (ext.equals("flac")) {
+                tags = readFlac(channel);
+            } else if (ext.equals("ogg") || ext.equals("oga") || ext.equals("opus")) {
+                tags = readOgg(channel);
+            } else if (ext.equals("m4a") || ext.equals("m4b")) {
+                tags = readMp4(channel);
+            }
+            if (tags == null || tags.isEmpty()) {
+                return null;
+            }
+            if (tags.mTitle == null) {
+                tags.mTitle = file.getName().substring(0, dotIndex);
+            }
+            if (tags.mArtist == null) {
+                tags.mArtist = "";
+            }
+            if (tags.mAlbum == null) {
+                tags.mAlbum = "";
+            }
+            if (tags.mGenre == null) {
+                tags.mGenre = "";
+            }
+            return tags;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size)
+            throws IOException {
+        size = Math.min(Math.min(size, channel.size() - position), MAX_MAP_SIZE);
+        if (size <= 0) {
+            return ByteBuffer.allocate(0);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /////////////////////////////////////////////////////////////////
+    // ID3
+    /////////////////////////////////////////////////////////////////
+
+    private static Tags readMp3(FileChannel channel) throws IOException {
+        Tags tags = new Tags();
+        long audioStart = 0;
+        ByteBuffer header = map(channel, 0, 10);
+        if (header.remaining() == 10 && header.get(0) == 'I' && header.get(1) == 'D'
+                && header.get(2) == '3') {
+            int tagSize = syncSafeInt(header, 6);
+            audioStart = 10 + tagSize;
+            readId3v2(map(channel, 0, audioStart), tags);
+        }
+        if (tags.isEmpty() && channel.size() >= 128) {
+            readId3v1(map(channel, channel.size() - 128, 128), tags);
+        }
+        tags.mLength = readMp3Length(channel, audioStart);
+        return tags;
+    }
+
+    private static void readId3v2(ByteBuffer buffer, Tags tags) {
+        int majorVersion = buffer.get(3) & 0xff;
+        int flags = buffer.get(5) & 0xff;
+        if (majorVersion < 2 || majorVersion > 4) {
+            return;
+        }
+        byte[] tag = new byte[buffer.limit() - 10];
+        buffer.position(10);
+        buffer.get(tag);
+        if ((flags & 0x80) != 0 && majorVersion < 4) {
+            // The whole tag has been unsynchronised
+            tag = unsynchronise(tag, 0, tag.length);
+        }
+        ByteBuffer frames = ByteBuffer.wrap(tag);
+        int pos = 0;
+        if ((flags & 0x40) != 0 && majorVersion > 2) {
+            // Skip the extended header
+            pos = majorVersion == 4 ? syncSafeInt(frames, 0) : frames.getInt(0) + 4;
+        }
+        int frameHeaderSize = majorVersion == 2 ? 6 : 10;
+        while (pos >= 0 && pos + frameHeaderSize < tag.length) {
+            if (tag[pos] == 0) {
+                // We've reached the padding
+                break;
+            }
+            String frameId;
+            int frameSize;
+            int formatFlags = 0;
+            if (majorVersion == 2) {
+                frameId = new String(tag, pos, 3, Charsets.ISO_8859_1);
+                frameSize = ((tag[pos + 3] & 0xff) << 16) | ((tag[pos + 4] & 0xff) << 8)
+                        | (tag[pos + 5] & 0xff);
+            } else {
+                frameId = new String(tag, pos, 4, Charsets.ISO_8859_1);
+                frameSize = majorVersion == 4 ? syncSafeInt(frames, pos + 4)
+                        : frames.getInt(pos + 4);
+                formatFlags = tag[pos + 9] & 0xff;
+            }
+            int dataStart = pos + frameHeaderSize;
+            pos = dataStart + frameSize;
+            if (frameSize <= 0 || pos > tag.length) {
+                break;
+            }
+            if ((formatFlags & 0x0c) != 0) {
+                // Compressed or encrypted frames aren't supported
+                continue;
+            }
+            byte[] data = tag;
+            int dataOffset = dataStart;
+            int dataLength = frameSize;
+            if ((formatFlags & 0x01) != 0) {
+                // Skip the data length indicator
+                dataOffset += 4;
+                dataLength -= 4;
+            }
+            if ((formatFlags & 0x02) != 0) {
+                data = unsynchronise(tag, dataOffset, dataLength);
+                dataOffset = 0;
+                dataLength = data.length;
+            }
+            if (frameId.equals("TIT2") || frameId.equals("TT2")) {
+                tags.mTitle = readId3Text(data, dataOffset, dataLength);
+            } else if (frameId.equals("TPE1") || frameId.equals("TP1")) {
+                tags.mArtist = readId3Text(data, dataOffset, dataLength);
+            } else if (frameId.equals("TALB") || frameId.equals("TAL")) {
+                tags.mAlbum = readId3Text(data, dataOffset, dataLength);
+            } else if (frameId.equals("TCON") || frameId.equals("TCO")) {
+                tags.mGenre = resolveId3Genre(readId3Text(data, dataOffset, dataLength));
+            } else if (frameId.equals("TRCK") || frameId.equals("TRK")) {
+                tags.mTrackNumber = parseTrackNumber(readId3Text(data, dataOffset, dataLength));
+            } else if (frameId.equals("TLEN") || frameId.equals("TLE")) {
+                tags.mLength = parseLong(readId3Text(data, dataOffset, dataLength));
+            } else if (frameId.equals("APIC") || frameId.equals("PIC")) {
+                readId3Picture(data, dataOffset, dataLength, majorVersion == 2, tags);
+            }
+        }
+    }
+
+    /**
+     * Read an APIC frame or, if isV22 is set, a PIC frame
+     */
+    private static void readId3Picture(byte[] data, int offset, int length, boolean isV22,
+            Tags tags) {
+        int end = offset + length;
+        int pos = offset;
+        if (pos >= end) {
+            return;
+        }
+        int encoding = data[pos++];
+        if (isV22) {
+            // Skip the three character image format
+            pos += 3;
+        } else {
+            // Skip the zero-terminated MIME type
+            while (pos < end && data[pos] != 0) {
+                pos++;
+            }
+            pos++;
+        }
+        if (pos >= end) {
+            return;
+        }
+        int pictureType = data[pos++] & 0xff;
+        // Skip the description, which is terminated by two zero bytes in UTF-16 encodings
+        if (encoding == 1 || encoding == 2) {
+            while (pos + 1 < end && (data[pos] != 0 || data[pos + 1] != 0)) {
+                pos += 2;
+            }
+            pos += 2;
+        } else {
+            while (pos < end && data[pos] != 0) {
+                pos++;
+            }
+            pos++;
+        }
+        if (pos < end) {
+            setPicture(ByteBuffer.wrap(data), pos, end - pos, pictureType, tags);
+        }
+    }
+
+    private static void readId3v1(ByteBuffer buffer, Tags tags) {
+        if (buffer.remaining() < 128 || buffer.get(0) != 'T' || buffer.get(1) != 'A'
+                || buffer.get(2) != 'G') {
+            return;
+        }
+        byte[] tag = new byte[128];
+        buffer.get(tag);
+        tags.mTitle = readFixedString(tag, 3, 30);
+        tags.mArtist = readFixedString(tag, 33, 30);
+        tags.mAlbum = readFixedString(tag, 63, 30);
+        if (tag[125] == 0 && tag[126] != 0) {
+            // ID3v1.1 stores the track number in the last byte of the comment field
+            tags.mTrackNumber = tag[126] & 0xff;
+        }
+        int genre = tag[127] & 0xff;
+        if (genre < ID3V1_GENRES.length) {
+            tags.mGenre = ID3V1_GENRES[genre];
+        }
+    }
+
+    private static String readId3Text(byte[] data, int offset, int length) {
+        if (length < 2) {
+            return null;
+        }
+        Charset charset;
+        switch (data[offset]) {
+            case 1:
+                charset = UTF_16;
+                break;
+            case 2:
+                charset = UTF_16BE;
+                break;
+            case 3:
+                charset = Charsets.UTF_8;
+                break;
+            default:
+                charset = Charsets.ISO_8859_1;
+                break;
+        }
+        String text = new String(data, offset + 1, length - 1, charset);
+        // Multiple values are separated by null characters. We're only interested in the first one
+        int nullIndex = text.indexOf('\u0000');
+        if (nullIndex >= 0) {
+            text = text.substring(0, nullIndex);
+        }
+        text = text.trim();
+        return text.length() > 0 ? text : null;
+    }
+
+    /**
+     * Resolves genre references like "(17)" or "17" to the corresponding ID3v1 genre name
+     */
+    private static String resolveId3Genre(String genre) {
+        if (genre == null) {
+            return null;
+        }
+        String reference = genre;
+        if (reference.startsWith("(") && reference.indexOf(')') > 0) {
+            String rest = reference.substring(reference.indexOf(')') + 1).trim();
+            if (rest.length() > 0) {
+                return rest;
+            }
+            reference = reference.substring(1, reference.indexOf(')'));
+        }
+        try {
+            int index = Integer.parseInt(reference);
+            if (index >= 0 && index < ID3V1_GENRES.length) {
+                return ID3V1_GENRES[index];
+            }
+        } catch (NumberFormatException e) {
+            // Not a reference, so it's the genre name itself
+        }
+        return genre;
+    }
+
+    private static byte[] unsynchronise(byte[] data, int offset, int length) {
+        byte[] result = new byte[length];
+        int resultLength = 0;
+        for (int i = offset; i < offset + length; i++) {
+            result[resultLength++] = data[i];
+            if ((data[i] & 0xff) == 0xff && i + 1 < offset + length && data[i + 1] == 0) {
+                i++;
+            }
+        }
+        if (resultLength == length) {
+            return result;
+        }
+        byte[] trimmed = new byte[resultLength];
+        System.arraycopy(result, 0, trimmed, 0, resultLength);
+        return trimmed;
+    }
+
+    /**
+     * Determine the duration of the mp3 stream starting at the given position, either through the
+     * Xing/Info or VBRI header of the first frame or by assuming a constant bitrate
+     */
+    private static long readMp3Length(FileChannel channel, long audioStart) throws IOException {
+        ByteBuffer buffer = map(channel, audioStart, 64 * 1024);
+        int limit = buffer.limit();
+        for (int i = 0; i + 4 < limit; i++) {
+            if ((buffer.get(i) & 0xff) != 0xff || (buffer.get(i + 1) & 0xe0) != 0xe0) {
+                continue;
+            }
+            int header = buffer.getInt(i);
+            int versionBits = (header >> 19) & 0x3;
+            int layerBits = (header >> 17) & 0x3;
+            int bitrateIndex = (header >> 12) & 0xf;
+            int sampleRateIndex = (header >> 10) & 0x3;
+            int channelMode = (header >> 6) & 0x3;
+            if (versionBits == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15
+                    || sampleRateIndex == 3) {
+                // Not a valid frame header
+                continue;
+            }
+            boolean mpeg1 = versionBits == 3;
+            int layer = 4 - layerBits;
+            int sampleRate = MP3_SAMPLERATES[sampleRateIndex];
+            if (versionBits == 2) {
+                sampleRate /= 2;
+            } else if (versionBits == 0) {
+                sampleRate /= 4;
+            }
+            int samplesPerFrame = layer == 1 ? 384 : (layer == 3 && !mpeg1) ? 576 : 1152;
+            int bitrate;
+            if (mpeg1) {
+                bitrate = MP3_BITRATES[layer - 1][bitrateIndex];
+            } else {
+                bitrate = MP3_BITRATES[layer == 1 ? 3 : 4][bitrateIndex];
+            }
+            int sideInfoSize = mpeg1 ? (channelMode == 3 ? 17 : 32) : (channelMode == 3 ? 9 : 17);
+            int xingOffset = i + 4 + sideInfoSize;
+            long frames = -1;
+            if (xingOffset + 12 <= limit && (matches(buffer, xingOffset, "Xing")
+                    || matches(buffer, xingOffset, "Info"))) {
+                int xingFlags = buffer.getInt(xingOffset + 4);
+                if ((xingFlags & 0x1) != 0) {
+                    frames = buffer.getInt(xingOffset + 8) & 0xffffffffL;
+                }
+            } else if (i + 36 + 18 <= limit && matches(buffer, i + 36, "VBRI")) {
+                frames = buffer.getInt(i + 36 + 14) & 0xffffffffL;
+            }
+            if (frames > 0) {
+                return frames * samplesPerFrame * 1000L / sampleRate;
+            }
+            long audioSize = channel.size() - audioStart - i;
+            return audioSize * 8L / bitrate;
+        }
+        return 0;
+    }
+
+    /////////////////////////////////////////////////////////////////
+    // FLAC / Ogg
+    /////////////////////////////////////////////////////////////////
+
+    private static Tags readFlac(FileChannel channel) throws IOException {
+        ByteBuffer buffer = map(channel, 0, channel.size());
+        if (buffer.limit() < 8 || !matches(buffer, 0, "fLaC")) {
+            return null;
+        }
+        Tags tags = new Tags();
+        int pos = 4;
+        boolean isLast = false;
+        while (!isLast && pos + 4 <= buffer.limit()) {
+            int blockHeader = buffer.getInt(pos);
+            isLast = (blockHeader & 0x80000000) != 0;
+            int blockType = (blockHeader >> 24) & 0x7f;
+            int blockLength = blockHeader & 0xffffff;
+            int blockStart = pos + 4;
+            pos = blockStart + blockLength;
+            if (pos > buffer.limit()) {
+                break;
+            }
+            if (blockType == 0 && blockLength >= 18) {
+                // STREAMINFO
+                long bits = buffer.getLong(blockStart + 10);
+                int sampleRate = (int) (bits >>> 44);
+                long totalSamples = bits & 0xfffffffffL;
+                if (sampleRate > 0) {
+                    tags.mLength = totalSamples * 1000L / sampleRate;
+                }
+            } else if (blockType == 4) {
+                // VORBIS_COMMENT
+                byte[] block = new byte[blockLength];
+                buffer.position(blockStart);
+                buffer.get(block);
+                readVorbisComments(block, 0, tags);
+            } else if (blockType == 6) {
+                readFlacPicture(buffer, blockStart, pos, tags);
+            }
+        }
+        return tags;
+    }
+
+    private static void readFlacPicture(ByteBuffer buffer, int start, int end, Tags tags) {
+        if (end - start < 32) {
+            return;
+        }
+        int pictureType = buffer.getInt(start);
+        int pos = start + 4;
+        int mimeLength = buffer.getInt(pos);
+        pos += 4;
+        if (mimeLength < 0 || mimeLength > end - pos - 4) {
+            return;
+        }
+        pos += mimeLength;
+        int descriptionLength = buffer.getInt(pos);
+        pos += 4;
+        if (descriptionLength < 0 || descriptionLength > end - pos - 20) {
+            return;
+        }
+        // Skip the description, width, height, color depth and number of colors
+        pos += descriptionLength + 16;
+        int dataLength = buffer.getInt(pos);
+        pos += 4;
+        if (dataLength > 0 && dataLength <= end - pos) {
+            setPicture(buffer, pos, dataLength, pictureType, tags);
+        }
+    }
+
+    private static Tags readOgg(FileChannel channel) throws IOException {
+        ByteBuffer buffer = map(channel, 0, 256 * 1024);
+        byte[] identification = readOggPacket(buffer, 0);
+        if (identification == null) {
+            return null;
+        }
+        long sampleRate;
+        long preSkip = 0;
+        int commentOffset;
+        if (identification.length >= 16 && identification[0] == 1
+                && matches(identification, 1, "vorbis")) {
+            sampleRate = ByteBuffer.wrap(identification).order(ByteOrder.LITTLE_ENDIAN)
+                    .getInt(12) & 0xffffffffL;
+            commentOffset = 7;
+        } else if (identification.length >= 19 && matches(identification, 0, "OpusHead")) {
+            // Opus granule positions are always in 48kHz
+            sampleRate = 48000;
+            preSkip = ByteBuffer.wrap(identification).order(ByteOrder.LITTLE_ENDIAN)
+                    .getShort(10) & 0xffff;
+            commentOffset = 8;
+        } else {
+            return null;
+        }
+        Tags tags = new Tags();
+        byte[] comments = readOggPacket(buffer, 1);
+        if (comments != null && comments.length > commentOffset) {
+            readVorbisComments(comments, commentOffset, tags);
+        }
+        long granule = readLastOggGranule(channel);
+        if (granule > preSkip && sampleRate > 0) {
+            tags.mLength = (granule - preSkip) * 1000L / sampleRate;
+        }
+        return tags;
+    }
+
+    /**
+     * Reassemble the packet with the given index from the Ogg pages contained in the given buffer
+     *
+     * @return the packet's data, or null if it couldn't be found in the buffer
+     */
+    private static byte[] readOggPacket(ByteBuffer buffer, int packetIndex) {
+        ByteBuffer packet = null;
+        int currentPacket = 0;
+        int pos = 0;
+        while (pos + 27 <= buffer.limit() && matches(buffer, pos, "OggS")) {
+            int segmentCount = buffer.get(pos + 26) & 0xff;
+            int dataPos = pos + 27 + segmentCount;
+            for (int i = 0; i < segmentCount; i++) {
+                int lacing = buffer.get(pos + 27 + i) & 0xff;
+                if (dataPos + lacing > buffer.limit()) {
+                    return null;
+                }
+                if (currentPacket == packetIndex) {
+                    if (packet == null) {
+                        packet = ByteBuffer.allocate(64 * 1024);
+                    }
+                    if (packet.remaining() < lacing) {
+                        ByteBuffer bigger = ByteBuffer.allocate(packet.capacity() * 2 + lacing);
+                        packet.flip();
+                        bigger.put(packet);
+                        packet = bigger;
+                    }
+                    buffer.position(dataPos);
+                    for (int j = 0; j < lacing; j++) {
+                        packet.put(buffer.get());
+                    }
+                }
+                dataPos += lacing;
+                if (lacing < 255) {
+                    if (currentPacket == packetIndex) {
+                        byte[] result = new byte[packet.position()];
+                        packet.flip();
+                        packet.get(result);
+                        return result;
+                    }
+                    currentPacket++;
+                }
+            }
+            pos = dataPos;
+        }
+        return null;
+    }
+
+    private static long readLastOggGranule(FileChannel channel) throws IOException {
+        long tailStart = Math.max(0, channel.size() - OGG_TAIL_SIZE);
+        ByteBuffer buffer = map(channel, tailStart, OGG_TAIL_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = buffer.limit() - 27; i >= 0; i--) {
+            if (matches(buffer, i, "OggS")) {
+                return buffer.getLong(i + 6);
+            }
+        }
+        return 0;
+    }
+
+    private static void readVorbisComments(byte[] data, int offset, Tags tags) {
+        ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+        if (offset + 4 > data.length) {
+            return;
+        }
+        int pos = offset + 4 + buffer.getInt(offset);
+        if (pos < 0 || pos + 4 > data.length) {
+            return;
+        }
+        int commentCount = buffer.getInt(pos);
+        pos += 4;
+        for (int i = 0; i < commentCount && pos + 4 <= data.length; i++) {
+            int length = buffer.getInt(pos);
+            pos += 4;
+            if (length < 0 || pos + length > data.length) {
+                return;
+            }
+            String comment = new String(data, pos, length, Charsets.UTF_8);
+            pos += length;
+            int separator = comment.indexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+            String key = comment.substring(0, separator).toUpperCase(Locale.ENGLISH);
+            String value = comment.substring(separator + 1).trim();
+            if (value.length() == 0) {
+                continue;
+            }
+            if (key.equals("TITLE") && tags.mTitle == null) {
+                tags.mTitle = value;
+            } else if (key.equals("ARTIST") && tags.mArtist == null) {
+                tags.mArtist = value;
+            } else if (key.equals("ALBUM") && tags.mAlbum == null) {
+                tags.mAlbum = value;
+            } else if (key.equals("GENRE") && tags.mGenre == null) {
+                tags.mGenre = value;
+            } else if (key.equals("TRACKNUMBER") && tags.mTrackNumber == 0) {
+                tags.mTrackNumber = parseTrackNumber(value);
+            }
+        }
+    }
+
+    /////////////////////////////////////////////////////////////////
+    // MP4
+    /////////////////////////////////////////////////////////////////
+
+    private static Tags readMp4(FileChannel channel) throws IOException {
+        long moovStart = -1;
+        long moovSize = 0;
+        long pos = 0;
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(16);
+        // Walk the top-level atoms with small positional reads, since "moov" might come after a
+        // big "mdat" atom
+        while (pos + 8 <= fileSize) {
+            header.clear();
+            if (channel.read(header, pos) < 8) {
+                break;
+            }
+            long size = header.getInt(0) & 0xffffffffL;
+            int headerSize = 8;
+            if (size == 1) {
+                size = header.getLong(8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = fileSize - pos;
+            }
+            if (size < headerSize) {
+                break;
+            }
+            if (matches(header, 4, "moov")) {
+                moovStart = pos + headerSize;
+                moovSize = size - headerSize;
+                break;
+            }
+            pos += size;
+        }
+        if (moovStart < 0 || moovSize > MAX_MAP_SIZE) {
+            return null;
+        }
+        ByteBuffer moov = map(channel, moovStart, moovSize);
+        Tags tags = new Tags();
+        int mvhd = findAtom(moov, 0, moov.limit(), "mvhd");
+        if (mvhd >= 0) {
+            int version = moov.get(mvhd) & 0xff;
+            long timeScale;
+            long duration;
+            if (version == 1) {
+                timeScale = moov.getInt(mvhd + 20) & 0xffffffffL;
+                duration = moov.getLong(mvhd + 24);
+            } else {
+                timeScale = moov.getInt(mvhd + 12) & 0xffffffffL;
+                duration = moov.getInt(mvhd + 16) & 0xffffffffL;
+            }
+            if (timeScale > 0) {
+                tags.mLength = duration * 1000L / timeScale;
+            }
+        }
+        int udta = findAtom(moov, 0, moov.limit(), "udta");
+        if (udta < 0) {
+            return tags;
+        }
+        int meta = findAtom(moov, udta, atomEnd(moov, udta), "meta");
+        if (meta < 0) {
+            return tags;
+        }
+        // "meta" is a full atom, so its children start after 4 bytes of version and flags
+        int ilst = findAtom(moov, meta + 4, atomEnd(moov, meta), "ilst");
+        if (ilst < 0) {
+            return tags;
+        }
+        int itemPos = ilst;
+        int ilstEnd = atomEnd(moov, ilst);
+        while (itemPos + 8 <= ilstEnd) {
+            int itemSize = moov.getInt(itemPos);
+            if (itemSize < 8 || itemPos + itemSize > ilstEnd) {
+                break;
+            }
+            int data = findAtom(moov, itemPos + 8, itemPos + itemSize, "data");
+            if (data >= 0) {
+                // Skip type indicator and locale
+                int valueStart = data + 8;
+                int valueLength = atomEnd(moov, data) - valueStart;
+                if (valueLength > 0) {
+                    if (matchesItem(moov, itemPos + 4, "nam")) {
+                        tags.mTitle = readUtf8(moov, valueStart, valueLength);
+                    } else if (matchesItem(moov, itemPos + 4, "ART")) {
+                        tags.mArtist = readUtf8(moov, valueStart, valueLength);
+                    } else if (matchesItem(moov, itemPos + 4, "alb")) {
+                        tags.mAlbum = readUtf8(moov, valueStart, valueLength);
+                    } else if (matchesItem(moov, itemPos + 4, "gen")) {
+                        tags.mGenre = readUtf8(moov, valueStart, valueLength);
+                    } else if (matches(moov, itemPos + 4, "gnre") && valueLength >= 2) {
+                        int genre = (moov.getShort(valueStart) & 0xffff) - 1;
+                        if (genre >= 0 && genre < ID3V1_GENRES.length) {
+                            tags.mGenre = ID3V1_GENRES[genre];
+                        }
+                    } else if (matches(moov, itemPos + 4, "trkn") && valueLength >= 4) {
+                        tags.mTrackNumber = moov.getShort(valueStart + 2) & 0xffff;
+                    } else if (matches(moov, itemPos + 4, "covr")) {
+                        setPicture(moov, valueStart, valueLength, PICTURE_TYPE_FRONT_COVER,
+                                tags);
+                    }
+                }
+            }
+            itemPos += itemSize;
+        }
+        return tags;
+    }
+
+    /**
+     * Find the child atom with the given type between start and end
+     *
+     * @return the position of the found atom's content, -1 if it couldn't be found
+     */
+    private static int findAtom(ByteBuffer buffer, int start, int end, String type) {
+        int pos = start;
+        while (pos + 8 <= end) {
+            int size = buffer.getInt(pos);
+            if (size < 8 || pos + size > end) {
+                return -1;
+            }
+            if (matches(buffer, pos + 4, type)) {
+                return pos + 8;
+            }
+            pos += size;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the end position of the atom whose content starts at the given position
+     */
+    private static int atomEnd(ByteBuffer buffer, int contentStart) {
+        return contentStart - 8 + buffer.getInt(contentStart - 8);
+    }
+
+    /**
+     * iTunes item atoms are prefixed with the copyright sign (0xa9)
+     */
+    private static boolean matchesItem(ByteBuffer buffer, int pos, String name) {
+        return (buffer.get(pos) & 0xff) == 0xa9 && matches(buffer, pos + 1, name);
+    }
+
+    private static String readUtf8(ByteBuffer buffer, int pos, int length) {
+        byte[] bytes = new byte[length];
+        buffer.position(pos);
+        buffer.get(bytes);
+        String value = new String(bytes, Charsets.UTF_8).trim();
+        return value.length() > 0 ? value : null;
+    }
+
+    /////////////////////////////////////////////////////////////////
+    // Helpers
+    /////////////////////////////////////////////////////////////////
+
+    /**
+     * Copy the picture at the given position, unless a front cover has already been found
+     */
+    private static void setPicture(ByteBuffer buffer, int pos, int length, int pictureType,
+            Tags tags) {
+        if (length <= 0 || length > MAX_PICTURE_SIZE || (tags.mPicture != null
+                && (tags.mPictureType == PICTURE_TYPE_FRONT_COVER
+                || pictureType != PICTURE_TYPE_FRONT_COVER))) {
+            return;
+        }
+        byte[] picture = new byte[length];
+        buffer.position(pos);
+        buffer.get(picture);
+        tags.mPicture = picture;
+        tags.mPictureType = pictureType;
+    }
+
+    private static boolean matches(ByteBuffer buffer, int pos, String magic) {
+        if (pos < 0 || pos + magic.length() > buffer.limit()) {
+            return false;
+        }
+        for (int i = 0; i < magic.length(); i++) {
+            if (buffer.get(pos + i) != magic.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(byte[] data, int pos, String magic) {
+        return matches(ByteBuffer.wrap(data), pos, magic);
+    }
+
+    private static int syncSafeInt(ByteBuffer buffer, int pos) {
+        return ((buffer.get(pos) & 0x7f) << 21) | ((buffer.get(pos + 1) & 0x7f) << 14)
+                | ((buffer.get(pos + 2) & 0x7f) << 7) | (buffer.get(pos + 3) & 0x7f);
+    }
+
+    private static String readFixedString(byte[] data, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && data[end] != 0) {
+            end++;
+        }
+        String value = new String(data, offset, end - offset, Charsets.ISO_8859_1).trim();
+        return value.length() > 0 ? value : null;
+    }
+
+    /**
+     * Parses track numbers like "3" or "3/12"
+     */
+    private static int parseTrackNumber(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int slashIndex = value.indexOf('/');
+        if (slashIndex >= 0) {
+            value = value.substring(0, slashIndex);
+        }
+        return (int) parseLong(value);
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
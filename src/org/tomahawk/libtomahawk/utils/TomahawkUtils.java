@@ -808,25 +808,15 @@ public class TomahawkUtils {
     }
 
     public static String preparePathForPicasso(String path) {
-        if (TextUtils.isEmpty(path) || path.contains("https://") || path.contains("http://")) {
+        if (TextUtils.isEmpty(path) || path.contains("https://") || path.contains("http://")
+                || path.startsWith(ArtworkCache.SCHEME + "://")) {
             return path;
         }
         return path.startsWith("file:") ? path : "file:" + path;
     }
 
     private static String buildImagePath(Image image, int width) {
-        if (image.isHatchetImage()) {
-            int squareImageWidth = Math.min(image.getHeight(), image.getWidth());
-            if (isWifiAvailable()) {
-                if (squareImageWidth > width) {
-                    return image.getImagePath() + "?width=" + width + "&height=" + width;
-                }
-            } else if (squareImageWidth > width * 2 / 3) {
-                return image.getImagePath() + "?width=" + width * 2 / 3 + "&height="
-                        + width * 2 / 3;
-            }
-        }
-        return image.getImagePath();
+        return ImagePipeline.getInstance().buildImagePath(image, width);
     }
 
     public static boolean containsIgnoreCase(String str1, String str2) {
@@ -18,9 +18,13 @@
  */
 package org.tomahawk.tomahawk_android;
 
+import com.squareup.picasso.Picasso;
+
 import org.acra.ACRA;
 import org.acra.ReportingInteractionMode;
 import org.acra.annotation.ReportsCrashes;
+import org.tomahawk.libtomahawk.resolver.ScriptResolverStorage;
+import org.tomahawk.libtomahawk.utils.ImagePipeline;
 import org.tomahawk.tomahawk_android.services.PlaybackService;
 import org.tomahawk.tomahawk_android.utils.TomahawkExceptionReporter;
 
@@ -87,6 +91,17 @@ public class TomahawkApp extends MultiDexApplication {
         super.onCreate();
 
         sApplicationContext = getApplicationContext();
+
+        Picasso.setSingletonInstance(ImagePipeline.getInstance().getPicasso());
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        ImagePipeline.getInstance().onTrimMemory(level);
+        // Also called with TRIM_MEMORY_UI_HIDDEN, as soon as the app goes to the background
+        ScriptResolverStorage.flushAll();
     }
 
     public static Context getContext() {
@@ -35,6 +35,7 @@ import org.tomahawk.libtomahawk.collection.Playlist;
 import org.tomahawk.libtomahawk.collection.ScriptResolverCollection;
 import org.tomahawk.libtomahawk.collection.UserCollection;
 import org.tomahawk.libtomahawk.database.DatabaseHelper;
+import org.tomahawk.libtomahawk.database.SearchSuggestionIndex;
 import org.tomahawk.libtomahawk.database.TomahawkSQLiteHelper;
 import org.tomahawk.libtomahawk.infosystem.InfoRequestData;
 import org.tomahawk.libtomahawk.infosystem.InfoSystem;
@@ -82,7 +83,7 @@ import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.res.Configuration;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteCursor;
+import android.database.MatrixCursor;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.TransitionDrawable;
 import android.media.AudioManager;
@@ -148,6 +149,12 @@ public class TomahawkMainActivity extends ActionBarActivity
 
     }
 
+    public static class SearchTextChangedEvent {
+
+        public String mText;
+
+    }
+
     private static long mSessionIdCounter = 0;
 
     protected HashSet<String> mCorrespondingRequestIds = new HashSet<String>();
@@ -213,7 +220,7 @@ public class TomahawkMainActivity extends ActionBarActivity
                 if (!noConnectivity) {
                     AuthenticatorUtils hatchetAuthUtils = AuthenticatorManager.getInstance()
                             .getAuthenticatorUtils(TomahawkApp.PLUGINNAME_HATCHET);
-                    InfoSystem.getInstance().sendLoggedOps(hatchetAuthUtils);
+                    InfoSystem.getInstance().sendLoggedOps(hatchetAuthUtils, true);
                 }
             }
         }
@@ -732,7 +739,7 @@ public class TomahawkMainActivity extends ActionBarActivity
             @Override
             public boolean onQueryTextSubmit(String query) {
                 if (query != null && !TextUtils.isEmpty(query)) {
-                    DatabaseHelper.getInstance().addEntryToSearchHistory(query);
+                    SearchSuggestionIndex.getInstance().add(query);
                     Bundle bundle = new Bundle();
                     bundle.putString(TomahawkFragment.QUERY_STRING, query);
                     bundle.putInt(TomahawkFragment.CONTENT_HEADER_MODE,
@@ -750,8 +757,18 @@ public class TomahawkMainActivity extends ActionBarActivity
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                Cursor cursor = DatabaseHelper.getInstance().getSearchHistoryCursor(newText);
-                if (cursor.getCount() != 0) {
+                SearchTextChangedEvent event = new SearchTextChangedEvent();
+                event.mText = newText;
+                EventBus.getDefault().post(event);
+                List<String> suggestions =
+                        SearchSuggestionIndex.getInstance().getSuggestions(newText);
+                if (!suggestions.isEmpty()) {
+                    MatrixCursor cursor = new MatrixCursor(new String[]{
+                            TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ID,
+                            TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY});
+                    for (int i = 0; i < suggestions.size(); i++) {
+                        cursor.addRow(new Object[]{i, suggestions.get(i)});
+                    }
                     String[] columns = new String[]{
                             TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY};
                     int[] columnTextId = new int[]{android.R.id.text1};
@@ -767,7 +784,6 @@ public class TomahawkMainActivity extends ActionBarActivity
                     searchView.setSuggestionsAdapter(simple);
                     return true;
                 } else {
-                    cursor.close();
                     return false;
                 }
             }
@@ -775,8 +791,7 @@ public class TomahawkMainActivity extends ActionBarActivity
         searchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
             @Override
             public boolean onSuggestionSelect(int position) {
-                SQLiteCursor cursor = (SQLiteCursor) searchView.getSuggestionsAdapter()
-                        .getItem(position);
+                Cursor cursor = (Cursor) searchView.getSuggestionsAdapter().getItem(position);
                 int indexColumnSuggestion = cursor
                         .getColumnIndex(TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY);
 
@@ -787,8 +802,7 @@ public class TomahawkMainActivity extends ActionBarActivity
 
             @Override
             public boolean onSuggestionClick(int position) {
-                SQLiteCursor cursor = (SQLiteCursor) searchView.getSuggestionsAdapter()
-                        .getItem(position);
+                Cursor cursor = (Cursor) searchView.getSuggestionsAdapter().getItem(position);
                 int indexColumnSuggestion = cursor
                         .getColumnIndex(TomahawkSQLiteHelper.SEARCHHISTORY_COLUMN_ENTRY);
 
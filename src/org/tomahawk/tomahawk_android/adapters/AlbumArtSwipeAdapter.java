@@ -95,7 +95,7 @@ public class AlbumArtSwipeAdapter extends PagerAdapter implements ViewPager.OnPa
                 if (mPlaybackService.isRepeating()) {
                     position = position % mPlaybackService.getPlaylist().size();
                 }
-                Query query = mPlaybackService.getPlaylist().getEntries().get(position).getQuery();
+                Query query = mPlaybackService.getPlaylist().getEntryAtPos(position).getQuery();
                 refreshTrackInfo(view, query);
                 mActivity.showPanel();
             } else {
@@ -17,6 +17,7 @@
  */
 package org.tomahawk.tomahawk_android.adapters;
 
+import org.tomahawk.libtomahawk.collection.Playlist;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 
 import android.content.res.Resources;
@@ -154,8 +155,19 @@ public class Segment {
         return mShowAsGrid ? mGridItems.get(location) : mListItems.get(location);
     }
 
+    /**
+     * @return the item at the given location like {@link #get(int)}, but null instead of
+     * materializing it, if it is being loaded lazily and hasn't been materialized yet
+     */
+    public Object peek(int location) {
+        if (!mShowAsGrid && mListItems instanceof Playlist.LazyList) {
+            return ((Playlist.LazyList) mListItems).peek(location);
+        }
+        return get(location);
+    }
+
     public Object getFirstSegmentItem() {
-        return mShowAsGrid ? mGridItems.get(0).get(0) : mListItems.get(0);
+        return mShowAsGrid ? mGridItems.get(0).get(0) : peek(0);
     }
 
     public int getHorizontalPadding() {
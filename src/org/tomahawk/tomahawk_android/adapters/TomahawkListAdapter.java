@@ -65,6 +65,8 @@ public class TomahawkListAdapter extends StickyBaseAdapter {
 
     private int mRowCount;
 
+    private long[] mRowSignatures;
+
     private MultiColumnClickListener mClickListener;
 
     private LayoutInflater mLayoutInflater;
@@ -140,6 +142,7 @@ public class TomahawkListAdapter extends StickyBaseAdapter {
      */
     public void setSegments(List<Segment> segments, StickyListHeadersListView listView) {
         mSegments = segments;
+        mRowSignatures = null;
         mRowCount = 0;
         for (Segment segment : mSegments) {
             mRowCount += segment.size();
@@ -148,6 +151,118 @@ public class TomahawkListAdapter extends StickyBaseAdapter {
         notifyDataSetChanged();
     }
 
+    /**
+     * Set the complete list of {@link Segment}s and compare it to the currently shown one with the
+     * help of the given row signatures (see {@link #getRowSignatures(List)}). If no row has been
+     * added, removed or moved, the list isn't being invalidated at all, or only rebound if the
+     * content of some row has changed. Since the ListView only rebinds its visible rows in that
+     * case, rows that haven't changed are left alone.
+     *
+     * @param rowSignatures the signatures of the given {@link Segment}s' rows. If null, the list is
+     *                      always completely invalidated.
+     */
+    public void setSegments(List<Segment> segments, long[] rowSignatures,
+            StickyListHeadersListView listView) {
+        boolean structureChanged = rowSignatures == null || mRowSignatures == null
+                || rowSignatures.length != mRowSignatures.length
+                || !haveSameHeaders(mSegments, segments);
+        boolean contentChanged = false;
+        for (int i = 0; !structureChanged && i < rowSignatures.length; i++) {
+            long identity = rowSignatures[i] >>> 32;
+            long previousIdentity = mRowSignatures[i] >>> 32;
+            if (identity != previousIdentity && identity != 0 && previousIdentity != 0) {
+                structureChanged = true;
+            } else if (rowSignatures[i] != mRowSignatures[i]) {
+                // This includes rows, whose lazily loaded item has been materialized meanwhile
+                contentChanged = true;
+            }
+        }
+        if (structureChanged) {
+            setSegments(segments, listView);
+        } else {
+            mSegments = segments;
+            if (contentChanged) {
+                notifyDataSetChanged();
+            }
+        }
+        mRowSignatures = rowSignatures;
+    }
+
+    private static boolean haveSameHeaders(List<Segment> segments, List<Segment> otherSegments) {
+        if (segments.size() != otherSegments.size()) {
+            return false;
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            Segment otherSegment = otherSegments.get(i);
+            if (segment.size() != otherSegment.size()
+                    || segment.isSpinnerSegment() != otherSegment.isSpinnerSegment()
+                    || segment.getInitialPos() != otherSegment.getInitialPos()
+                    || !segment.getHeaderStrings().equals(otherSegment.getHeaderStrings())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculate a signature for every row of the given {@link Segment}s. The upper 32 bits of a
+     * signature identify the row's item(s), the lower 32 bits describe the state which is being
+     * displayed (name, image, resolved result). Lazily loaded items aren't being materialized, the
+     * signature of a row whose item hasn't been materialized yet is 0. Should be called off the UI
+     * thread.
+     */
+    public static long[] getRowSignatures(List<Segment> segments) {
+        int rowCount = 0;
+        for (Segment segment : segments) {
+            rowCount += segment.size();
+        }
+        long[] rowSignatures = new long[rowCount];
+        int row = 0;
+        for (Segment segment : segments) {
+            for (int i = 0; i < segment.size(); i++) {
+                Object item = segment.peek(i);
+                int identity;
+                int content;
+                if (item == null) {
+                    identity = 0;
+                    content = 0;
+                } else if (item instanceof List) {
+                    identity = 1;
+                    content = 1;
+                    for (Object gridItem : (List) item) {
+                        identity = 31 * identity + System.identityHashCode(gridItem);
+                        content = 31 * content + getContentSignature(gridItem);
+                    }
+                } else {
+                    identity = System.identityHashCode(item);
+                    content = getContentSignature(item);
+                }
+                rowSignatures[row++] = ((long) identity << 32) | (content & 0xffffffffL);
+            }
+        }
+        return rowSignatures;
+    }
+
+    private static int getContentSignature(Object item) {
+        if (item instanceof PlaylistEntry) {
+            item = ((PlaylistEntry) item).getQuery();
+        }
+        int signature = 0;
+        if (item instanceof Query) {
+            Query query = (Query) item;
+            signature = 31 * System.identityHashCode(query.getPreferredTrackResult())
+                    + (query.isPlayable() ? 1 : 0);
+        }
+        if (item instanceof TomahawkListItem) {
+            TomahawkListItem listItem = (TomahawkListItem) item;
+            String name = listItem.getName();
+            signature = 31 * signature + (name != null ? name.hashCode() : 0);
+            signature = 31 * signature + System.identityHashCode(listItem.getImage());
+        }
+        return signature;
+    }
+
     /**
      * Set the complete list of {@link Segment}
      */
@@ -163,6 +278,26 @@ public class TomahawkListAdapter extends StickyBaseAdapter {
         updateFooterSpacerHeight(listView);
     }
 
+    /**
+     * Set the whole playstate, which should be shown, at once
+     *
+     * @return whether or not anything has changed, so that the list has to be rebound
+     */
+    public boolean setPlaystate(boolean showPlaystate, boolean highlightedItemIsPlaying,
+            PlaylistEntry highlightedEntry, Query highlightedQuery) {
+        boolean changed = mShowPlaystate != showPlaystate
+                || (showPlaystate && (mHighlightedItemIsPlaying != highlightedItemIsPlaying
+                || mHighlightedPlaylistEntry != highlightedEntry
+                || mHighlightedQuery != highlightedQuery));
+        mShowPlaystate = showPlaystate;
+        if (showPlaystate) {
+            mHighlightedItemIsPlaying = highlightedItemIsPlaying;
+            mHighlightedPlaylistEntry = highlightedEntry;
+            mHighlightedQuery = highlightedQuery;
+        }
+        return changed;
+    }
+
     /**
      * Set whether or not to highlight the currently playing {@link TomahawkListItem} and show the
      * play/pause state
@@ -416,7 +551,8 @@ public class TomahawkListAdapter extends StickyBaseAdapter {
     }
 
     /**
-     * @return item for the given position
+     * @return item for the given position. Null for items of lazily loaded segments, which haven't
+     * been materialized yet, since they must not be loaded on the UI thread.
      */
     @Override
     public Object getItem(int position) {
@@ -432,7 +568,7 @@ public class TomahawkListAdapter extends StickyBaseAdapter {
         for (Segment segment : mSegments) {
             counter += segment.size();
             if (position < counter) {
-                return segment.get(correctedPos);
+                return segment.peek(correctedPos);
             } else {
                 correctedPos -= segment.size();
             }
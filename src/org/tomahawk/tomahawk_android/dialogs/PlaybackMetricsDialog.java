@@ -0,0 +1,88 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.tomahawk_android.dialogs;
+
+import org.tomahawk.tomahawk_android.R;
+import org.tomahawk.tomahawk_android.utils.BlurTransformation;
+import org.tomahawk.tomahawk_android.utils.PlaybackMetrics;
+
+import android.app.AlertDialog;
+import android.app.Dialog;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.view.LayoutInflater;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+/**
+ * A {@link ConfigDialog} which shows the report of the {@link PlaybackMetrics}, so that slow track
+ * starts can be tracked down to the stage they're coming from. The time spent blurring background
+ * images by the {@link BlurTransformation} is being shown as well.
+ */
+public class PlaybackMetricsDialog extends ConfigDialog {
+
+    public final static String TAG = PlaybackMetricsDialog.class.getSimpleName();
+
+    private TextView mReportTextView;
+
+    /**
+     * Called when this {@link android.support.v4.app.DialogFragment} is being created
+     */
+    @NonNull
+    @Override
+    public Dialog onCreateDialog(Bundle savedInstanceState) {
+        LayoutInflater inflater = getActivity().getLayoutInflater();
+        LinearLayout reportLayout =
+                (LinearLayout) inflater.inflate(R.layout.config_textview, null);
+        mReportTextView = (TextView) reportLayout.findViewById(R.id.config_textview);
+        mReportTextView.setText(getReport());
+        addScrollingViewToFrame(reportLayout);
+
+        setDialogTitle(getString(R.string.preferences_app_playbackmetrics));
+        setNegativeButtonText(R.string.preferences_app_playbackmetrics_reset);
+        hideStatusImage();
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setView(getDialogView());
+        return builder.create();
+    }
+
+    @Override
+    protected void onEnabledCheckedChange(boolean checked) {
+    }
+
+    @Override
+    protected void onConfigTestResult(Object component, int type, String message) {
+    }
+
+    @Override
+    protected void onPositiveAction() {
+        dismiss();
+    }
+
+    @Override
+    protected void onNegativeAction() {
+        PlaybackMetrics.getInstance().reset();
+        BlurTransformation.reset();
+        mReportTextView.setText(getReport());
+    }
+
+    private static String getReport() {
+        return PlaybackMetrics.getInstance().getReport() + BlurTransformation.getReport();
+    }
+}
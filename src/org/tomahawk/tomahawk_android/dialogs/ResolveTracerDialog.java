@@ -0,0 +1,108 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.tomahawk_android.dialogs;
+
+import org.tomahawk.tomahawk_android.R;
+import org.tomahawk.tomahawk_android.ui.widgets.ConfigCheckbox;
+import org.tomahawk.tomahawk_android.utils.ResolveTracer;
+
+import android.app.AlertDialog;
+import android.app.Dialog;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.view.LayoutInflater;
+import android.widget.CompoundButton;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.File;
+
+/**
+ * A {@link ConfigDialog} which enables the {@link ResolveTracer} and shows its report, so that slow
+ * resolvers can be identified. The positive button dumps all traced spans to a file.
+ */
+public class ResolveTracerDialog extends ConfigDialog {
+
+    public final static String TAG = ResolveTracerDialog.class.getSimpleName();
+
+    private TextView mReportTextView;
+
+    /**
+     * Called when this {@link android.support.v4.app.DialogFragment} is being created
+     */
+    @NonNull
+    @Override
+    public Dialog onCreateDialog(Bundle savedInstanceState) {
+        LayoutInflater inflater = getActivity().getLayoutInflater();
+        LinearLayout checkboxLayout =
+                (LinearLayout) inflater.inflate(R.layout.config_checkbox, null);
+        TextView textView = (TextView) checkboxLayout.findViewById(R.id.config_textview);
+        textView.setText(R.string.preferences_app_resolvetracing_enabled);
+        ConfigCheckbox checkBox =
+                (ConfigCheckbox) checkboxLayout.findViewById(R.id.config_checkbox);
+        checkBox.setChecked(ResolveTracer.getInstance().isEnabled());
+        checkBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                onEnabledCheckedChange(isChecked);
+            }
+        });
+        addViewToFrame(checkboxLayout);
+        LinearLayout reportLayout =
+                (LinearLayout) inflater.inflate(R.layout.config_textview, null);
+        mReportTextView = (TextView) reportLayout.findViewById(R.id.config_textview);
+        mReportTextView.setText(ResolveTracer.getInstance().getReport());
+        addScrollingViewToFrame(reportLayout);
+
+        setDialogTitle(getString(R.string.preferences_app_resolvetracing));
+        setPositiveButtonText(R.string.preferences_app_resolvetracing_dump);
+        setNegativeButtonText(R.string.preferences_app_resolvetracing_reset);
+        hideStatusImage();
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setView(getDialogView());
+        return builder.create();
+    }
+
+    @Override
+    protected void onEnabledCheckedChange(boolean checked) {
+        ResolveTracer.getInstance().setEnabled(checked);
+        mReportTextView.setText(ResolveTracer.getInstance().getReport());
+    }
+
+    @Override
+    protected void onConfigTestResult(Object component, int type, String message) {
+    }
+
+    @Override
+    protected void onPositiveAction() {
+        File file = ResolveTracer.getInstance().dump();
+        if (file != null) {
+            Toast.makeText(getActivity(), getString(R.string.preferences_app_resolvetracing_dumped,
+                    file.getPath()), Toast.LENGTH_LONG).show();
+        }
+        dismiss();
+    }
+
+    @Override
+    protected void onNegativeAction() {
+        ResolveTracer.getInstance().reset();
+        mReportTextView.setText(ResolveTracer.getInstance().getReport());
+    }
+}
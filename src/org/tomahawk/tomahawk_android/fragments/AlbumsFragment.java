@@ -38,12 +38,10 @@ import org.tomahawk.tomahawk_android.utils.FragmentUtils;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.AdapterView;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -90,7 +88,8 @@ public class AlbumsFragment extends TomahawkFragment {
                     playbackService.playPause();
                 } else {
                     Playlist playlist = Playlist.fromQueryList(
-                            TomahawkMainActivity.getLifetimeUniqueStringId(), mShownQueries);
+                            TomahawkMainActivity.getLifetimeUniqueStringId(),
+                            new ArrayList<Query>(mShownQueries));
                     if (playbackService != null) {
                         playbackService.setPlaylist(playlist, playlist.getEntryWithQuery(query));
                         Class clss = mContainerFragmentClass != null ? mContainerFragmentClass
@@ -118,45 +117,32 @@ public class AlbumsFragment extends TomahawkFragment {
     }
 
     /**
-     * Update this {@link TomahawkFragment}'s {@link TomahawkListAdapter} content
+     * Build this {@link TomahawkFragment}'s {@link TomahawkListAdapter} content. Called on a
+     * background thread.
      */
     @Override
-    protected void updateAdapter() {
-        if (!mIsResumed) {
-            return;
-        }
-
-        TomahawkMainActivity activity = (TomahawkMainActivity) getActivity();
-        LayoutInflater layoutInflater = getActivity().getLayoutInflater();
-        List<Segment> segments = new ArrayList<>();
+    protected AdapterModel buildAdapterModel() {
+        AdapterModel model = new AdapterModel();
         ArrayList items = new ArrayList<Object>();
         if (mArtist != null) {
             if (mCollection != null
                     && !TomahawkApp.PLUGINNAME_HATCHET.equals(mCollection.getId())) {
                 items.addAll(mCollection.getArtistAlbums(mArtist, true));
-                segments.add(new Segment(mCollection.getName() + " " + getString(R.string.albums),
-                        items, R.integer.grid_column_count, R.dimen.padding_superlarge,
+                model.mSegments.add(new Segment(
+                        mCollection.getName() + " " + TomahawkApp.getContext().getString(
+                                R.string.albums), items,
+                        R.integer.grid_column_count, R.dimen.padding_superlarge,
                         R.dimen.padding_superlarge));
             } else {
                 items.addAll(CollectionUtils.getArtistAlbums(mArtist, null));
-                segments.add(new Segment(R.string.top_albums, items,
+                model.mSegments.add(new Segment(R.string.top_albums, items,
                         R.integer.grid_column_count, R.dimen.padding_superlarge,
                         R.dimen.padding_superlarge));
                 ArrayList<Query> topHits = CollectionUtils.getArtistTopHits(mArtist);
                 items = new ArrayList<Object>();
                 items.addAll(topHits);
-                segments.add(new Segment(R.string.top_hits, items));
-                mShownQueries = topHits;
-            }
-            if (getListAdapter() == null) {
-                TomahawkListAdapter tomahawkListAdapter = new TomahawkListAdapter(activity,
-                        layoutInflater, segments, this);
-                tomahawkListAdapter.setShowDuration(true);
-                tomahawkListAdapter.setHideArtistName(true);
-                tomahawkListAdapter.setShowNumeration(true);
-                setListAdapter(tomahawkListAdapter);
-            } else {
-                getListAdapter().setSegments(segments, getListView());
+                model.mSegments.add(new Segment(R.string.top_hits, items));
+                model.mShownQueries = topHits;
             }
         } else if (mShowMode == SHOW_MODE_STARREDALBUMS) {
             ArrayList<Album> albums = DatabaseHelper.getInstance().getStarredAlbums();
@@ -164,24 +150,10 @@ public class AlbumsFragment extends TomahawkFragment {
                 mCorrespondingRequestIds.add(InfoSystem.getInstance().resolve(album));
             }
             items.addAll(albums);
-            segments.add(new Segment(items));
-            if (getListAdapter() == null) {
-                TomahawkListAdapter tomahawkListAdapter = new TomahawkListAdapter(activity,
-                        layoutInflater, segments, this);
-                setListAdapter(tomahawkListAdapter);
-            } else {
-                getListAdapter().setSegments(segments, getListView());
-            }
+            model.mSegments.add(new Segment(items));
         } else if (mAlbumArray != null) {
             items.addAll(mAlbumArray);
-            segments.add(new Segment(items));
-            if (getListAdapter() == null) {
-                TomahawkListAdapter tomahawkListAdapter = new TomahawkListAdapter(activity,
-                        layoutInflater, segments, this);
-                setListAdapter(tomahawkListAdapter);
-            } else {
-                getListAdapter().setSegments(segments, getListView());
-            }
+            model.mSegments.add(new Segment(items));
         } else {
             items.addAll(CollectionManager.getInstance()
                     .getCollection(TomahawkApp.PLUGINNAME_USERCOLLECTION).getAlbums());
@@ -219,28 +191,26 @@ public class AlbumsFragment extends TomahawkFragment {
             if (initialPos == 0) {
                 Collection userColl = CollectionManager.getInstance().getCollection(
                         TomahawkApp.PLUGINNAME_USERCOLLECTION);
-                Collections.sort(items, new TomahawkListItemComparator(
-                        TomahawkListItemComparator.COMPARE_RECENTLY_ADDED,
-                        userColl.getAlbumAddedTimeStamps()));
+                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_RECENTLY_ADDED,
+                        userColl.getAlbumAddedTimeStamps()).sort(items);
             } else if (initialPos == 1) {
-                Collections.sort(items, new TomahawkListItemComparator(
-                        TomahawkListItemComparator.COMPARE_ALPHA));
+                TomahawkListItemComparator.ALPHA.sort(items);
             } else if (initialPos == 2) {
-                Collections.sort(items, new TomahawkListItemComparator(
-                        TomahawkListItemComparator.COMPARE_ARTIST_ALPHA));
+                TomahawkListItemComparator.ARTIST_ALPHA.sort(items);
             }
-            segments.add(new Segment(initialPos, dropDownItems, spinnerClickListener, items,
-                    R.integer.grid_column_count, R.dimen.padding_superlarge,
+            model.mSegments.add(new Segment(initialPos, dropDownItems, spinnerClickListener,
+                    items, R.integer.grid_column_count, R.dimen.padding_superlarge,
                     R.dimen.padding_superlarge));
-            if (getListAdapter() == null) {
-                TomahawkListAdapter tomahawkListAdapter = new TomahawkListAdapter(activity,
-                        layoutInflater, segments, this);
-                setListAdapter(tomahawkListAdapter);
-            } else {
-                getListAdapter().setSegments(segments, getListView());
-            }
         }
+        return model;
+    }
 
-        onUpdateAdapterFinished();
+    @Override
+    protected void onListAdapterCreated(TomahawkListAdapter adapter, AdapterModel model) {
+        if (mArtist != null) {
+            adapter.setShowDuration(true);
+            adapter.setHideArtistName(true);
+            adapter.setShowNumeration(true);
+        }
     }
 }
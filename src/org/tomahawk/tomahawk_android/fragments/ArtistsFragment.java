@@ -33,12 +33,10 @@ import org.tomahawk.tomahawk_android.utils.FragmentUtils;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.AdapterView;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -91,17 +89,12 @@ public class ArtistsFragment extends TomahawkFragment {
     }
 
     /**
-     * Update this {@link TomahawkFragment}'s {@link org.tomahawk.tomahawk_android.adapters.TomahawkListAdapter}
-     * content
+     * Build this {@link TomahawkFragment}'s {@link TomahawkListAdapter} content. Called on a
+     * background thread.
      */
     @Override
-    protected void updateAdapter() {
-        if (!mIsResumed) {
-            return;
-        }
-
-        LayoutInflater layoutInflater = getActivity().getLayoutInflater();
-
+    protected AdapterModel buildAdapterModel() {
+        AdapterModel model = new AdapterModel();
         List artists = new ArrayList<Object>();
         if (mShowMode == SHOW_MODE_STARREDARTISTS) {
             ArrayList<Artist> starredArtists = DatabaseHelper.getInstance().getStarredArtists();
@@ -112,24 +105,10 @@ public class ArtistsFragment extends TomahawkFragment {
                 }
             }
             artists.addAll(starredArtists);
-            if (getListAdapter() == null) {
-                TomahawkListAdapter tomahawkListAdapter =
-                        new TomahawkListAdapter((TomahawkMainActivity) getActivity(),
-                                layoutInflater, new Segment(artists), this);
-                setListAdapter(tomahawkListAdapter);
-            } else {
-                getListAdapter().setSegments(new Segment(artists), getListView());
-            }
+            model.mSegments.add(new Segment(artists));
         } else if (mArtistArray != null) {
             artists.addAll(mArtistArray);
-            if (getListAdapter() == null) {
-                TomahawkListAdapter tomahawkListAdapter =
-                        new TomahawkListAdapter((TomahawkMainActivity) getActivity(),
-                                layoutInflater, new Segment(artists), this);
-                setListAdapter(tomahawkListAdapter);
-            } else {
-                getListAdapter().setSegments(new Segment(artists), getListView());
-            }
+            model.mSegments.add(new Segment(artists));
         } else {
             artists.addAll(CollectionManager.getInstance()
                     .getCollection(TomahawkApp.PLUGINNAME_USERCOLLECTION).getArtists());
@@ -166,27 +145,15 @@ public class ArtistsFragment extends TomahawkFragment {
             if (initialPos == 0) {
                 Collection userColl = CollectionManager.getInstance().getCollection(
                         TomahawkApp.PLUGINNAME_USERCOLLECTION);
-                Collections.sort(artists, new TomahawkListItemComparator(
-                        TomahawkListItemComparator.COMPARE_RECENTLY_ADDED,
-                        userColl.getArtistAddedTimeStamps()));
+                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_RECENTLY_ADDED,
+                        userColl.getArtistAddedTimeStamps()).sort(artists);
             } else if (initialPos == 1) {
-                Collections.sort(artists, new TomahawkListItemComparator(
-                        TomahawkListItemComparator.COMPARE_ALPHA));
+                TomahawkListItemComparator.ALPHA.sort(artists);
             }
-            List<Segment> segments = new ArrayList<Segment>();
-            segments.add(new Segment(initialPos, dropDownItems, spinnerClickListener, artists,
-                    R.integer.grid_column_count, R.dimen.padding_superlarge,
+            model.mSegments.add(new Segment(initialPos, dropDownItems, spinnerClickListener,
+                    artists, R.integer.grid_column_count, R.dimen.padding_superlarge,
                     R.dimen.padding_superlarge));
-            if (getListAdapter() == null) {
-                TomahawkListAdapter tomahawkListAdapter =
-                        new TomahawkListAdapter((TomahawkMainActivity) getActivity(),
-                                layoutInflater, segments, this);
-                setListAdapter(tomahawkListAdapter);
-            } else {
-                getListAdapter().setSegments(segments, getListView());
-            }
         }
-
-        onUpdateAdapterFinished();
+        return model;
     }
 }
@@ -199,9 +199,11 @@ public class ContextMenuFragment extends Fragment {
                             rootView.getHeight(), Bitmap.Config.ARGB_8888);
                     Canvas canvas = new Canvas(bm);
                     rootView.draw(canvas);
-                    bm = Bitmap.createScaledBitmap(bm, bm.getWidth() / 4,
+                    Bitmap scaled = Bitmap.createScaledBitmap(bm, bm.getWidth() / 4,
                             bm.getHeight() / 4, true);
-                    bm = BlurTransformation.staticTransform(bm, 25f);
+                    bm.recycle();
+                    bm = BlurTransformation.staticTransform(scaled, 25f);
+                    scaled.recycle();
 
                     ImageView bgImageView =
                             (ImageView) getView().findViewById(R.id.background);
@@ -31,8 +31,8 @@ import org.tomahawk.tomahawk_android.services.PlaybackService;
 import org.tomahawk.tomahawk_android.utils.ThreadManager;
 import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
 
-import android.view.LayoutInflater;
 import android.view.View;
+import android.widget.AbsListView;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -43,6 +43,12 @@ import java.util.List;
  */
 public class PlaylistEntriesFragment extends TomahawkFragment {
 
+    private volatile int mFirstVisiblePosition;
+
+    private volatile int mLastVisiblePosition;
+
+    private int mPreloadRequestedWindow = -1;
+
     @Override
     public void onResume() {
         super.onResume();
@@ -77,17 +83,18 @@ public class PlaylistEntriesFragment extends TomahawkFragment {
         if (item instanceof PlaylistEntry) {
             PlaylistEntry entry = (PlaylistEntry) item;
             if (entry.getQuery().isPlayable()) {
-                ArrayList<PlaylistEntry> entries = new ArrayList<PlaylistEntry>();
-                if (mPlaylist != null) {
-                    entries = mPlaylist.getEntries();
-                }
                 PlaybackService playbackService =
                         ((TomahawkMainActivity) getActivity()).getPlaybackService();
                 if (playbackService != null && playbackService.getCurrentEntry() == entry) {
                     playbackService.playPause();
                 } else {
                     Playlist playlist = Playlist.fromEntriesList(
-                            DatabaseHelper.CACHED_PLAYLIST_NAME, "", entries);
+                            DatabaseHelper.CACHED_PLAYLIST_NAME, "",
+                            new ArrayList<PlaylistEntry>());
+                    if (mPlaylist != null) {
+                        // Share the lazily loaded entries instead of materializing all of them
+                        playlist.setEntries(mPlaylist);
+                    }
                     playlist.setId(DatabaseHelper.CACHED_PLAYLIST_ID);
                     if (playbackService != null) {
                         playbackService.setPlaylist(playlist, entry);
@@ -101,10 +108,24 @@ public class PlaylistEntriesFragment extends TomahawkFragment {
         }
     }
 
-    /**
-     * Update this {@link org.tomahawk.tomahawk_android.fragments.TomahawkFragment}'s {@link
-     * org.tomahawk.tomahawk_android.adapters.TomahawkListAdapter} content
-     */
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+            int totalItemCount) {
+        super.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+
+        mFirstVisiblePosition = firstVisibleItem;
+        mLastVisiblePosition = firstVisibleItem + visibleItemCount;
+        Playlist playlist = mPlaylist;
+        int window = firstVisibleItem / Playlist.WINDOW_SIZE;
+        if (playlist != null && window != mPreloadRequestedWindow
+                && !playlist.isLoaded(firstVisibleItem - Playlist.WINDOW_SIZE / 2,
+                firstVisibleItem + visibleItemCount + Playlist.WINDOW_SIZE / 2)) {
+            // Let the background model build load the windows we are scrolling towards
+            mPreloadRequestedWindow = window;
+            updateAdapter();
+        }
+    }
+
     @Override
     protected void updateAdapter() {
         if (!mIsResumed) {
@@ -113,52 +134,68 @@ public class PlaylistEntriesFragment extends TomahawkFragment {
 
         mResolveQueriesHandler.removeCallbacksAndMessages(null);
         mResolveQueriesHandler.sendEmptyMessage(RESOLVE_QUERIES_REPORTER_MSG);
-        List playlistEntries = new ArrayList();
-        TomahawkListAdapter tomahawkListAdapter;
-        TomahawkMainActivity activity = (TomahawkMainActivity) getActivity();
-        LayoutInflater layoutInflater = getActivity().getLayoutInflater();
-        if (mPlaylist != null) {
-            if (!mPlaylist.isFilled()) {
+        super.updateAdapter();
+    }
+
+    /**
+     * Build this {@link org.tomahawk.tomahawk_android.fragments.TomahawkFragment}'s {@link
+     * org.tomahawk.tomahawk_android.adapters.TomahawkListAdapter} content. Called on a background
+     * thread.
+     */
+    @Override
+    protected AdapterModel buildAdapterModel() {
+        AdapterModel model = new AdapterModel();
+        Playlist playlist = mPlaylist;
+        if (playlist != null) {
+            if (!playlist.isFilled()) {
                 refreshCurrentPlaylist();
             } else {
-                playlistEntries.addAll(mPlaylist.getEntries());
-                Segment segment = new Segment(R.string.playlist_details, playlistEntries);
-                if (getListAdapter() == null) {
-                    tomahawkListAdapter = new TomahawkListAdapter(activity, layoutInflater,
-                            segment, this);
-                    tomahawkListAdapter.setShowNumeration(true);
-                    setListAdapter(tomahawkListAdapter);
-                } else {
-                    getListAdapter().setSegments(segment, getListView());
-                }
-                showContentHeader(mPlaylist);
-                showFancyDropDown(mPlaylist);
-                ThreadManager.getInstance()
-                        .execute(new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_INFOSYSTEM_LOW) {
-                            @Override
-                            public void run() {
-                                if (mPlaylist.getTopArtistNames() == null
-                                        || mPlaylist.getTopArtistNames().length == 0) {
-                                    mPlaylist.updateTopArtistNames();
-                                }
-                                for (int i = 0; i < mPlaylist.getTopArtistNames().length && i < 5;
-                                        i++) {
-                                    mCorrespondingRequestIds.addAll(InfoSystem.getInstance()
-                                            .resolve(Artist.get(mPlaylist.getTopArtistNames()[i]),
-                                                    false));
-                                }
-                            }
-                        });
+                // The list adapter only peeks at the entries, so materialize the windows around
+                // the visible part of the list here
+                playlist.loadWindows(mFirstVisiblePosition - Playlist.WINDOW_SIZE,
+                        mLastVisiblePosition + Playlist.WINDOW_SIZE);
+                List playlistEntries = playlist.getEntriesWindowed();
+                model.mSegments.add(new Segment(R.string.playlist_details, playlistEntries));
+                model.mShownQueries = playlist.getQueriesWindowed();
+                model.mShownPlaylistEntries = playlistEntries;
             }
         }
+        return model;
+    }
 
-        mShownQueries.clear();
-        mShownPlaylistEntries.clear();
-        for (Object playlistEntry : playlistEntries) {
-            mShownQueries.add(((PlaylistEntry) playlistEntry).getQuery());
-            mShownPlaylistEntries.add((PlaylistEntry) playlistEntry);
+    @Override
+    protected void onListAdapterCreated(TomahawkListAdapter adapter, AdapterModel model) {
+        adapter.setShowNumeration(true);
+    }
+
+    @Override
+    protected void applyAdapterModel(AdapterModel model) {
+        mPreloadRequestedWindow = -1;
+        if (model.mSegments.isEmpty()) {
+            mShownQueries = model.mShownQueries;
+            mShownPlaylistEntries = model.mShownPlaylistEntries;
+            onUpdateAdapterFinished();
+            return;
         }
 
-        onUpdateAdapterFinished();
+        super.applyAdapterModel(model);
+
+        showContentHeader(mPlaylist);
+        showFancyDropDown(mPlaylist);
+        ThreadManager.getInstance()
+                .execute(new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_INFOSYSTEM_LOW) {
+                    @Override
+                    public void run() {
+                        if (mPlaylist.getTopArtistNames() == null
+                                || mPlaylist.getTopArtistNames().length == 0) {
+                            mPlaylist.updateTopArtistNames();
+                        }
+                        for (int i = 0; i < mPlaylist.getTopArtistNames().length && i < 5; i++) {
+                            mCorrespondingRequestIds.addAll(InfoSystem.getInstance()
+                                    .resolve(Artist.get(mPlaylist.getTopArtistNames()[i]),
+                                            false));
+                        }
+                    }
+                });
     }
 }
@@ -92,6 +92,9 @@ public class PreferenceConnectFragment extends TomahawkListFragment
         for (ScriptResolver scriptResolver : PipeLine.getInstance().getScriptResolvers()) {
             if (!scriptResolver.getId().contains("-metadata")) {
                 resolvers.add(scriptResolver);
+                // Disabled resolvers are only started on demand, but their config dialogs need
+                // the config UI provided by the running script
+                scriptResolver.start();
             }
         }
         segment = new Segment(resolvers, R.integer.grid_column_count,
@@ -22,6 +22,8 @@ import com.uservoice.uservoicesdk.UserVoice;
 import org.acra.ACRA;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.adapters.FakePreferencesAdapter;
+import org.tomahawk.tomahawk_android.dialogs.PlaybackMetricsDialog;
+import org.tomahawk.tomahawk_android.dialogs.ResolveTracerDialog;
 import org.tomahawk.tomahawk_android.utils.FakePreferenceGroup;
 
 import android.content.SharedPreferences;
@@ -53,6 +55,10 @@ public class PreferenceInfoFragment extends TomahawkListFragment
 
     public static final String FAKEPREFERENCEFRAGMENT_ID_SENDLOG = "sendlog";
 
+    public static final String FAKEPREFERENCEFRAGMENT_ID_PLAYBACKMETRICS = "playbackmetrics";
+
+    public static final String FAKEPREFERENCEFRAGMENT_ID_RESOLVETRACING = "resolvetracing";
+
     public static final String FAKEPREFERENCEFRAGMENT_KEY_APPVERSION
             = "org.tomahawk.tomahawk_android.appversion";
 
@@ -62,6 +68,12 @@ public class PreferenceInfoFragment extends TomahawkListFragment
     public static final String FAKEPREFERENCEFRAGMENT_KEY_SENDLOG
             = "org.tomahawk.tomahawk_android.sendlog";
 
+    public static final String FAKEPREFERENCEFRAGMENT_KEY_PLAYBACKMETRICS
+            = "org.tomahawk.tomahawk_android.playbackmetrics";
+
+    public static final String FAKEPREFERENCEFRAGMENT_KEY_RESOLVETRACING
+            = "org.tomahawk.tomahawk_android.resolvetracingreport";
+
     private SharedPreferences mSharedPreferences;
 
     private List<FakePreferenceGroup> mFakePreferenceGroups;
@@ -94,6 +106,18 @@ public class PreferenceInfoFragment extends TomahawkListFragment
                 FAKEPREFERENCEFRAGMENT_KEY_SENDLOG,
                 getString(R.string.preferences_app_sendlog),
                 getString(R.string.preferences_app_sendlog_text)));
+        prefGroup.addFakePreference(new FakePreferenceGroup.FakePreference(
+                FakePreferenceGroup.FAKEPREFERENCE_TYPE_PLAIN,
+                FAKEPREFERENCEFRAGMENT_ID_PLAYBACKMETRICS,
+                FAKEPREFERENCEFRAGMENT_KEY_PLAYBACKMETRICS,
+                getString(R.string.preferences_app_playbackmetrics),
+                getString(R.string.preferences_app_playbackmetrics_text)));
+        prefGroup.addFakePreference(new FakePreferenceGroup.FakePreference(
+                FakePreferenceGroup.FAKEPREFERENCE_TYPE_PLAIN,
+                FAKEPREFERENCEFRAGMENT_ID_RESOLVETRACING,
+                FAKEPREFERENCEFRAGMENT_KEY_RESOLVETRACING,
+                getString(R.string.preferences_app_resolvetracing),
+                getString(R.string.preferences_app_resolvetracing_text)));
         String versionName = "";
         try {
             if (getActivity().getPackageManager() != null) {
@@ -149,6 +173,10 @@ public class PreferenceInfoFragment extends TomahawkListFragment
             UserVoice.launchUserVoice(getActivity());
         } else if (fakePreference.getKey().equals(FAKEPREFERENCEFRAGMENT_ID_SENDLOG)) {
             ACRA.getErrorReporter().handleSilentException(null);
+        } else if (fakePreference.getKey().equals(FAKEPREFERENCEFRAGMENT_ID_PLAYBACKMETRICS)) {
+            new PlaybackMetricsDialog().show(getFragmentManager(), null);
+        } else if (fakePreference.getKey().equals(FAKEPREFERENCEFRAGMENT_ID_RESOLVETRACING)) {
+            new ResolveTracerDialog().show(getFragmentManager(), null);
         }
     }
 
@@ -23,14 +23,13 @@ import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Artist;
 import org.tomahawk.libtomahawk.collection.Image;
 import org.tomahawk.libtomahawk.infosystem.InfoRequestData;
-import org.tomahawk.libtomahawk.infosystem.InfoSystem;
 import org.tomahawk.libtomahawk.infosystem.User;
 import org.tomahawk.libtomahawk.resolver.PipeLine;
 import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.SearchSession;
 import org.tomahawk.tomahawk_android.R;
 import org.tomahawk.tomahawk_android.activities.TomahawkMainActivity;
 import org.tomahawk.tomahawk_android.utils.FragmentInfo;
-import org.tomahawk.tomahawk_android.utils.ThreadManager;
 
 import android.content.BroadcastReceiver;
 import android.content.Context;
@@ -64,6 +63,22 @@ public class SearchPagerFragment extends PagerFragment {
 
     private SearchFragmentReceiver mSearchFragmentReceiver;
 
+    private final SearchSession mSearchSession =
+            new SearchSession(new SearchSession.OnSearchStartedListener() {
+                @Override
+                public void onSearchStarted(String text, Query query, String requestId) {
+                    mSongIds.clear();
+                    mAlbumIds.clear();
+                    mArtistIds.clear();
+                    mUserIds.clear();
+                    mCurrentQueryString = text;
+                    mCorrespondingRequestIds.clear();
+                    mCorrespondingRequestIds.add(requestId);
+                    mCorrespondingQueries.clear();
+                    mCorrespondingQueries.add(query);
+                }
+            });
+
     /**
      * Handles incoming broadcasts.
      */
@@ -84,6 +99,7 @@ public class SearchPagerFragment extends PagerFragment {
     @SuppressWarnings("unused")
     public void onEventMainThread(PipeLine.ResultsEvent event) {
         if (mCorrespondingQueries.contains(event.mQuery)) {
+            mSearchSession.onResultsReported();
             mSongIds.clear();
             if (event.mQuery != null) {
                 for (Query q : event.mQuery.getTrackQueries()) {
@@ -94,6 +110,14 @@ public class SearchPagerFragment extends PagerFragment {
         }
     }
 
+    /**
+     * Refine the search, while the user is typing into the search view
+     */
+    @SuppressWarnings("unused")
+    public void onEventMainThread(TomahawkMainActivity.SearchTextChangedEvent event) {
+        mSearchSession.search(event.mText);
+    }
+
     /**
      * Restore the {@link String} inside the search {@link android.widget.TextView}. Either through
      * the savedInstanceState {@link Bundle} or through the a {@link Bundle} provided in the
@@ -159,11 +183,8 @@ public class SearchPagerFragment extends PagerFragment {
     public void onPause() {
         super.onPause();
 
-        for (Query query : mCorrespondingQueries) {
-            if (ThreadManager.getInstance().stop(query)) {
-                mCorrespondingQueries.remove(query);
-            }
-        }
+        mSearchSession.cancel();
+        mCorrespondingQueries.clear();
 
         if (mSearchFragmentReceiver != null) {
             getActivity().unregisterReceiver(mSearchFragmentReceiver);
@@ -243,22 +264,12 @@ public class SearchPagerFragment extends PagerFragment {
      */
     public void resolveFullTextQuery(String fullTextQuery) {
         ((TomahawkMainActivity) getActivity()).closeDrawer();
-        mSongIds.clear();
-        mAlbumIds.clear();
-        mArtistIds.clear();
-        mUserIds.clear();
-        mCurrentQueryString = fullTextQuery;
-        mCorrespondingRequestIds.clear();
-        mCorrespondingRequestIds.add(InfoSystem.getInstance().resolve(fullTextQuery));
-        Query query = PipeLine.getInstance().resolve(fullTextQuery, false);
-        if (query != null) {
-            mCorrespondingQueries.clear();
-            mCorrespondingQueries.add(query);
-        }
+        mSearchSession.searchNow(fullTextQuery);
     }
 
     @Override
     protected void onInfoSystemResultsReported(InfoRequestData infoRequestData) {
+        mSearchSession.onResultsReported();
         for (Artist artist : infoRequestData.getResultList(Artist.class)) {
             if (mContentHeaderImage == null && artist.getImage() != null) {
                 mContentHeaderImage = artist.getImage();
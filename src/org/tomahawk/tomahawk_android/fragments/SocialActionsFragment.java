@@ -23,8 +23,10 @@ import org.tomahawk.libtomahawk.collection.Album;
 import org.tomahawk.libtomahawk.collection.Artist;
 import org.tomahawk.libtomahawk.collection.Playlist;
 import org.tomahawk.libtomahawk.database.DatabaseHelper;
+import org.tomahawk.libtomahawk.infosystem.InfoRequestData;
 import org.tomahawk.libtomahawk.infosystem.InfoSystem;
 import org.tomahawk.libtomahawk.infosystem.SocialAction;
+import org.tomahawk.libtomahawk.infosystem.TimelineStore;
 import org.tomahawk.libtomahawk.infosystem.User;
 import org.tomahawk.libtomahawk.infosystem.hatchet.HatchetInfoPlugin;
 import org.tomahawk.libtomahawk.resolver.Query;
@@ -39,8 +41,6 @@ import org.tomahawk.tomahawk_android.utils.FragmentUtils;
 import org.tomahawk.tomahawk_android.utils.TomahawkListItem;
 
 import android.os.Bundle;
-import android.util.SparseArray;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.AbsListView;
 
@@ -63,6 +63,25 @@ public class SocialActionsFragment extends TomahawkFragment implements
 
     public HashSet<Integer> mResolvingPages = new HashSet<Integer>();
 
+    /**
+     * A chunk of the timeline, which is as large as a single page, and its merged list items
+     */
+    private static class Chunk {
+
+        List<SocialAction> mSocialActions;
+
+        List<List<TomahawkListItem>> mMergedActionsList = new ArrayList<List<TomahawkListItem>>();
+
+        List<Query> mShownQueries = new ArrayList<Query>();
+
+    }
+
+    private final List<Chunk> mChunks = new ArrayList<Chunk>();
+
+    private volatile int mTimelineSize = -1;
+
+    private volatile boolean mEndReached;
+
     @Override
     public void onResume() {
         super.onResume();
@@ -74,18 +93,16 @@ public class SocialActionsFragment extends TomahawkFragment implements
                     if (mContainerFragmentClass == null) {
                         getActivity().setTitle(getString(R.string.drawer_title_feed).toUpperCase());
                     }
-                    for (int i = 0; i < mUser.getFriendsFeed().size(); i++) {
-                        mCorrespondingRequestIds.add(
-                                InfoSystem.getInstance().resolveFriendsFeed(mUser, i));
-                    }
+                    // Only refresh the newest page, older ones are being served from the
+                    // TimelineStore
+                    mCorrespondingRequestIds.add(
+                            InfoSystem.getInstance().resolveFriendsFeed(mUser, 0));
                 } else {
                     if (mContainerFragmentClass == null) {
                         getActivity().setTitle("");
                     }
-                    for (int i = 0; i < mUser.getSocialActions().size(); i++) {
-                        mCorrespondingRequestIds.add(
-                                InfoSystem.getInstance().resolveSocialActions(mUser, i));
-                    }
+                    mCorrespondingRequestIds.add(
+                            InfoSystem.getInstance().resolveSocialActions(mUser, 0));
                     HatchetAuthenticatorUtils authUtils = (HatchetAuthenticatorUtils)
                             AuthenticatorManager.getInstance().getAuthenticatorUtils(
                                     TomahawkApp.PLUGINNAME_HATCHET);
@@ -187,111 +204,126 @@ public class SocialActionsFragment extends TomahawkFragment implements
     }
 
     /**
-     * Update this {@link TomahawkFragment}'s {@link TomahawkListAdapter} content
+     * Build the {@link AdapterModel} from the timeline in the {@link TimelineStore}. The timeline
+     * is being merged in chunks of one page. Chunks, which haven't changed since the last build,
+     * are being reused, so that fetching another page only merges the newly appended items.
      */
     @Override
-    protected void updateAdapter() {
-        if (!mIsResumed) {
-            return;
+    protected AdapterModel buildAdapterModel() {
+        if (mUser == null) {
+            return null;
         }
 
-        TomahawkMainActivity activity = (TomahawkMainActivity) getActivity();
-        LayoutInflater layoutInflater = getActivity().getLayoutInflater();
-        mShownQueries.clear();
-        if (mUser != null) {
-            SparseArray<List<SocialAction>> socialActionsList;
-            if (mShowMode == SHOW_MODE_DASHBOARD) {
-                socialActionsList = mUser.getFriendsFeed();
-            } else {
-                socialActionsList = mUser.getSocialActions();
+        int type = getTimelineType();
+        int limit = getPageLimit();
+        TimelineStore timelineStore = TimelineStore.getInstance();
+        List<SocialAction> socialActions = timelineStore.getSocialActions(type, mUser);
+        mTimelineSize = socialActions.size();
+        mEndReached = timelineStore.isEndReached(type, mUser);
+        AdapterModel model = new AdapterModel();
+        synchronized (mChunks) {
+            int chunkCount = 0;
+            for (int i = 0; i < socialActions.size(); i += limit) {
+                List<SocialAction> chunkActions =
+                        socialActions.subList(i, Math.min(i + limit, socialActions.size()));
+                Chunk chunk = chunkCount < mChunks.size() ? mChunks.get(chunkCount) : null;
+                if (chunk == null || !chunk.mSocialActions.equals(chunkActions)) {
+                    chunk = mergeSocialActions(chunkActions);
+                    if (chunkCount < mChunks.size()) {
+                        mChunks.set(chunkCount, chunk);
+                    } else {
+                        mChunks.add(chunk);
+                    }
+                }
+                chunkCount++;
+                for (List mergedActions : chunk.mMergedActionsList) {
+                    SocialAction first = (SocialAction) mergedActions.get(0);
+                    if (first.getTargetObject() instanceof Album
+                            || first.getTargetObject() instanceof User
+                            || first.getTargetObject() instanceof Artist) {
+                        model.mSegments.add(new Segment(mergedActions,
+                                R.integer.grid_column_count_feed, R.dimen.padding_superlarge,
+                                R.dimen.padding_small));
+                    } else {
+                        model.mSegments.add(new Segment(mergedActions));
+                    }
+                }
+                model.mShownQueries.addAll(chunk.mShownQueries);
             }
-            List<List<TomahawkListItem>> mergedActionsList
-                    = new ArrayList<List<TomahawkListItem>>();
-            int i = 0;
-            while (socialActionsList.get(i) != null) {
-                List<SocialAction> socialActions =
-                        new ArrayList<SocialAction>(socialActionsList.get(i));
-                i++;
-                while (socialActions.size() > 0) {
-                    SocialAction socialAction = socialActions.remove(0);
-
-                    boolean action = Boolean.valueOf(socialAction.getAction());
-                    String type = socialAction.getType();
-                    if (HatchetInfoPlugin.HATCHET_SOCIALACTION_TYPE_CREATEPLAYLIST.equals(type)
-                            || HatchetInfoPlugin.HATCHET_SOCIALACTION_TYPE_LATCHON.equals(type)
-                            || HatchetInfoPlugin.HATCHET_SOCIALACTION_TYPE_FOLLOW.equals(type)
-                            || (HatchetInfoPlugin.HATCHET_SOCIALACTION_TYPE_LOVE.equals(type)
-                            && action && (socialAction.getTargetObject() instanceof Query
-                            || socialAction.getTargetObject() instanceof Album
-                            || socialAction.getTargetObject() instanceof Artist))) {
-                        List<TomahawkListItem> mergedActions = new ArrayList<TomahawkListItem>();
-                        mergedActions.add(socialAction);
-                        if (socialAction.getTargetObject() instanceof Query) {
-                            mShownQueries.add((Query) socialAction.getTargetObject());
-                        }
-                        List<SocialAction> actionsToDelete = new ArrayList<SocialAction>();
-                        for (TomahawkListItem item : socialActions) {
-                            SocialAction actionToCompare = (SocialAction) item;
-                            if (actionToCompare.getUser() == socialAction.getUser()
-                                    && actionToCompare.getType().equals(socialAction.getType())
-                                    && actionToCompare.getTargetObject().getClass()
-                                    == socialAction.getTargetObject().getClass()) {
-                                boolean alreadyMerged = false;
-                                for (TomahawkListItem mergedItem : mergedActions) {
-                                    SocialAction mergedAction = (SocialAction) mergedItem;
-                                    if (mergedAction.getTargetObject()
-                                            == actionToCompare.getTargetObject()) {
-                                        alreadyMerged = true;
-                                        break;
-                                    }
-                                }
-                                if (!alreadyMerged) {
-                                    mergedActions.add(actionToCompare);
-                                    if (actionToCompare.getTargetObject() instanceof Query) {
-                                        mShownQueries
-                                                .add((Query) actionToCompare.getTargetObject());
-                                    }
-                                }
-                                actionsToDelete.add(actionToCompare);
+            while (mChunks.size() > chunkCount) {
+                mChunks.remove(mChunks.size() - 1);
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Merge consecutive {@link SocialAction}s of the same user, type and kind of target object
+     * into a single list item.
+     */
+    private static Chunk mergeSocialActions(List<SocialAction> chunkActions) {
+        Chunk chunk = new Chunk();
+        chunk.mSocialActions = new ArrayList<SocialAction>(chunkActions);
+        List<SocialAction> socialActions = new ArrayList<SocialAction>(chunkActions);
+        while (socialActions.size() > 0) {
+            SocialAction socialAction = socialActions.remove(0);
+
+            boolean action = Boolean.valueOf(socialAction.getAction());
+            String type = socialAction.getType();
+            if (HatchetInfoPlugin.HATCHET_SOCIALACTION_TYPE_CREATEPLAYLIST.equals(type)
+                    || HatchetInfoPlugin.HATCHET_SOCIALACTION_TYPE_LATCHON.equals(type)
+                    || HatchetInfoPlugin.HATCHET_SOCIALACTION_TYPE_FOLLOW.equals(type)
+                    || (HatchetInfoPlugin.HATCHET_SOCIALACTION_TYPE_LOVE.equals(type)
+                    && action && (socialAction.getTargetObject() instanceof Query
+                    || socialAction.getTargetObject() instanceof Album
+                    || socialAction.getTargetObject() instanceof Artist))) {
+                List<TomahawkListItem> mergedActions = new ArrayList<TomahawkListItem>();
+                mergedActions.add(socialAction);
+                if (socialAction.getTargetObject() instanceof Query) {
+                    chunk.mShownQueries.add((Query) socialAction.getTargetObject());
+                }
+                List<SocialAction> actionsToDelete = new ArrayList<SocialAction>();
+                for (TomahawkListItem item : socialActions) {
+                    SocialAction actionToCompare = (SocialAction) item;
+                    if (actionToCompare.getUser() == socialAction.getUser()
+                            && actionToCompare.getType().equals(socialAction.getType())
+                            && actionToCompare.getTargetObject().getClass()
+                            == socialAction.getTargetObject().getClass()) {
+                        boolean alreadyMerged = false;
+                        for (TomahawkListItem mergedItem : mergedActions) {
+                            SocialAction mergedAction = (SocialAction) mergedItem;
+                            if (mergedAction.getTargetObject()
+                                    == actionToCompare.getTargetObject()) {
+                                alreadyMerged = true;
+                                break;
                             }
                         }
-                        for (SocialAction actionToDelete : actionsToDelete) {
-                            socialActions.remove(actionToDelete);
+                        if (!alreadyMerged) {
+                            mergedActions.add(actionToCompare);
+                            if (actionToCompare.getTargetObject() instanceof Query) {
+                                chunk.mShownQueries.add((Query) actionToCompare.getTargetObject());
+                            }
                         }
-                        mergedActionsList.add(mergedActions);
+                        actionsToDelete.add(actionToCompare);
                     }
                 }
-            }
-
-            TomahawkListAdapter tomahawkListAdapter;
-            List<Segment> segments = new ArrayList<Segment>();
-            for (List mergedActions : mergedActionsList) {
-                SocialAction first = (SocialAction) mergedActions.get(0);
-                if (first.getTargetObject() instanceof Album
-                        || first.getTargetObject() instanceof User
-                        || first.getTargetObject() instanceof Artist) {
-                    segments.add(new Segment(mergedActions, R.integer.grid_column_count_feed,
-                            R.dimen.padding_superlarge, R.dimen.padding_small));
-                } else {
-                    segments.add(new Segment(mergedActions));
+                for (SocialAction actionToDelete : actionsToDelete) {
+                    socialActions.remove(actionToDelete);
                 }
+                chunk.mMergedActionsList.add(mergedActions);
             }
-            if (getListAdapter() == null) {
-                tomahawkListAdapter = new TomahawkListAdapter(activity, layoutInflater,
-                        segments, this);
-                int extraPadding = getResources().getDimensionPixelSize(R.dimen.padding_medium)
-                        + TomahawkUtils.convertDpToPixel(32);
-                tomahawkListAdapter.setLeftExtraPadding(extraPadding);
-                setListAdapter(tomahawkListAdapter);
-            } else {
-                getListAdapter().setSegments(segments, getListView());
-            }
-            if (mShowMode == SHOW_MODE_DASHBOARD
-                    && !getResources().getBoolean(R.bool.is_landscape)) {
-                getListView().setAreHeadersSticky(true);
-            }
+        }
+        return chunk;
+    }
 
-            onUpdateAdapterFinished();
+    @Override
+    protected void onListAdapterCreated(TomahawkListAdapter adapter, AdapterModel model) {
+        int extraPadding = getResources().getDimensionPixelSize(R.dimen.padding_medium)
+                + TomahawkUtils.convertDpToPixel(32);
+        adapter.setLeftExtraPadding(extraPadding);
+        if (mShowMode == SHOW_MODE_DASHBOARD
+                && !getResources().getBoolean(R.bool.is_landscape)) {
+            getListView().setAreHeadersSticky(true);
         }
     }
 
@@ -300,21 +332,32 @@ public class SocialActionsFragment extends TomahawkFragment implements
             int totalItemCount) {
         super.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
 
-        if (firstVisibleItem + visibleItemCount + 5 > totalItemCount) {
+        // Prefetch the next page before the end of the list has been reached. mTimelineSize is
+        // only known after the timeline has been loaded from the TimelineStore.
+        if (firstVisibleItem + visibleItemCount + 5 > totalItemCount && mUser != null
+                && mTimelineSize >= 0 && !mEndReached) {
             mShowMode = getArguments().getInt(SHOW_MODE);
-            if (mShowMode == SHOW_MODE_DASHBOARD) {
-                if (!mResolvingPages.contains(mUser.getFriendsFeed().size())) {
-                    mResolvingPages.add(mUser.getFriendsFeed().size());
-                    mCorrespondingRequestIds.add(InfoSystem.getInstance()
-                            .resolveFriendsFeed(mUser, mUser.getFriendsFeed().size()));
-                }
-            } else {
-                if (!mResolvingPages.contains(mUser.getSocialActions().size())) {
-                    mResolvingPages.add(mUser.getSocialActions().size());
-                    mCorrespondingRequestIds.add(InfoSystem.getInstance()
-                            .resolveSocialActions(mUser, mUser.getSocialActions().size()));
+            int page = mTimelineSize / getPageLimit();
+            if (mResolvingPages.add(page)) {
+                if (mShowMode == SHOW_MODE_DASHBOARD) {
+                    mCorrespondingRequestIds.add(
+                            InfoSystem.getInstance().resolveFriendsFeed(mUser, page));
+                } else {
+                    mCorrespondingRequestIds.add(
+                            InfoSystem.getInstance().resolveSocialActions(mUser, page));
                 }
             }
         }
     }
+
+    private int getTimelineType() {
+        return mShowMode == SHOW_MODE_DASHBOARD
+                ? InfoRequestData.INFOREQUESTDATA_TYPE_USERS_FRIENDSFEED
+                : InfoRequestData.INFOREQUESTDATA_TYPE_USERS_SOCIALACTIONS;
+    }
+
+    private int getPageLimit() {
+        return mShowMode == SHOW_MODE_DASHBOARD
+                ? HatchetInfoPlugin.FRIENDSFEED_LIMIT : HatchetInfoPlugin.SOCIALACTIONS_LIMIT;
+    }
 }
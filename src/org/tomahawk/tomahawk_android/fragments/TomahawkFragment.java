@@ -35,15 +35,18 @@ import org.tomahawk.libtomahawk.resolver.PipeLine;
 import org.tomahawk.libtomahawk.resolver.Query;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.activities.TomahawkMainActivity;
+import org.tomahawk.tomahawk_android.adapters.Segment;
 import org.tomahawk.tomahawk_android.adapters.TomahawkListAdapter;
 import org.tomahawk.tomahawk_android.services.PlaybackService;
 import org.tomahawk.tomahawk_android.utils.FragmentUtils;
 import org.tomahawk.tomahawk_android.utils.MultiColumnClickListener;
+import org.tomahawk.tomahawk_android.utils.ResolveTracer;
 import org.tomahawk.tomahawk_android.utils.ThreadManager;
 import org.tomahawk.tomahawk_android.utils.TomahawkListItem;
 import org.tomahawk.tomahawk_android.utils.TomahawkRunnable;
 
 import android.os.Handler;
+import android.os.Looper;
 import android.os.Message;
 import android.text.TextUtils;
 import android.view.View;
@@ -55,6 +58,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import se.emilsjolander.stickylistheaders.StickyListHeadersListView;
 
@@ -140,7 +144,7 @@ public abstract class TomahawkFragment extends TomahawkListFragment
     protected Set<Query> mCorrespondingQueries
             = Sets.newSetFromMap(new ConcurrentHashMap<Query, Boolean>());
 
-    protected ArrayList<Query> mShownQueries = new ArrayList<Query>();
+    protected List<Query> mShownQueries = new ArrayList<Query>();
 
     protected ArrayList<Query> mQueryArray;
 
@@ -150,7 +154,7 @@ public abstract class TomahawkFragment extends TomahawkListFragment
 
     protected ArrayList<User> mUserArray;
 
-    protected ArrayList<PlaylistEntry> mShownPlaylistEntries = new ArrayList<PlaylistEntry>();
+    protected List<PlaylistEntry> mShownPlaylistEntries = new ArrayList<PlaylistEntry>();
 
     protected Album mAlbum;
 
@@ -176,6 +180,31 @@ public abstract class TomahawkFragment extends TomahawkListFragment
         }
     };
 
+    // Incremented with every adapter update, so that outdated background builds can be discarded
+    private final AtomicInteger mAdapterModelGeneration = new AtomicInteger();
+
+    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+
+    // The Queries, whose results have been reported but not yet been shown, if tracing is enabled
+    private final Set<Query> mUndeliveredQueries
+            = Sets.newSetFromMap(new ConcurrentHashMap<Query, Boolean>());
+
+    /**
+     * The content of a {@link TomahawkFragment}'s list, which is being built on a background
+     * thread by {@link #buildAdapterModel()} and then applied on the UI thread by {@link
+     * #applyAdapterModel(AdapterModel)}.
+     */
+    protected static class AdapterModel {
+
+        public List<Segment> mSegments = new ArrayList<Segment>();
+
+        public List<Query> mShownQueries = new ArrayList<Query>();
+
+        public List<PlaylistEntry> mShownPlaylistEntries = new ArrayList<PlaylistEntry>();
+
+        private long[] mRowSignatures;
+    }
+
     // Handler which reports the PipeLine's and InfoSystem's results in intervals
     private final Handler mAdapterUpdateHandler = new Handler() {
         @Override
@@ -188,6 +217,9 @@ public abstract class TomahawkFragment extends TomahawkListFragment
     @SuppressWarnings("unused")
     public void onEvent(PipeLine.ResultsEvent event) {
         if (mCorrespondingQueries.contains(event.mQuery)) {
+            if (ResolveTracer.getInstance().isEnabled()) {
+                mUndeliveredQueries.add(event.mQuery);
+            }
             if (!mAdapterUpdateHandler.hasMessages(ADAPTER_UPDATE_MSG)) {
                 mAdapterUpdateHandler.sendEmptyMessageDelayed(ADAPTER_UPDATE_MSG,
                         ADAPTER_UPDATE_DELAY);
@@ -222,17 +254,12 @@ public abstract class TomahawkFragment extends TomahawkListFragment
 
     @SuppressWarnings("unused")
     public void onEventMainThread(CollectionManager.UpdatedEvent event) {
-        if (event.mUpdatedItemId != null) {
-            if (event.mUpdatedItemId.equals(mPlaylist.getId())
-                    || event.mUpdatedItemId.equals(mAlbum.getCacheKey())
-                    || event.mUpdatedItemId.equals(mArtist.getCacheKey())
-                    || event.mUpdatedItemId.equals(mQuery.getCacheKey())) {
-                if (!mAdapterUpdateHandler.hasMessages(ADAPTER_UPDATE_MSG)) {
-                    mAdapterUpdateHandler.sendEmptyMessageDelayed(ADAPTER_UPDATE_MSG,
-                            ADAPTER_UPDATE_DELAY);
-                }
-            }
-        } else {
+        Set<String> ids = event.mUpdatedItemIds;
+        if (ids == null
+                || (mPlaylist != null && ids.contains(mPlaylist.getId()))
+                || (mAlbum != null && ids.contains(mAlbum.getCacheKey()))
+                || (mArtist != null && ids.contains(mArtist.getCacheKey()))
+                || (mQuery != null && ids.contains(mQuery.getCacheKey()))) {
             if (!mAdapterUpdateHandler.hasMessages(ADAPTER_UPDATE_MSG)) {
                 mAdapterUpdateHandler.sendEmptyMessageDelayed(ADAPTER_UPDATE_MSG,
                         ADAPTER_UPDATE_DELAY);
@@ -388,6 +415,7 @@ public abstract class TomahawkFragment extends TomahawkListFragment
         }
 
         mAdapterUpdateHandler.removeCallbacksAndMessages(null);
+        mAdapterModelGeneration.incrementAndGet();
 
         mIsResumed = false;
     }
@@ -431,9 +459,87 @@ public abstract class TomahawkFragment extends TomahawkListFragment
     }
 
     /**
-     * Update this {@link TomahawkFragment}'s {@link TomahawkListAdapter} content
+     * Update this {@link TomahawkFragment}'s {@link TomahawkListAdapter} content. By default the
+     * new {@link AdapterModel} is built by {@link #buildAdapterModel()} on a background thread. If
+     * another update has been started in the meantime, the result is being discarded. Otherwise it
+     * is applied on the UI thread.
+     */
+    protected void updateAdapter() {
+        if (!mIsResumed) {
+            return;
+        }
+
+        final int generation = mAdapterModelGeneration.incrementAndGet();
+        ThreadManager.getInstance().execute(
+                new TomahawkRunnable(TomahawkRunnable.PRIORITY_IS_VERYHIGH) {
+                    @Override
+                    public void run() {
+                        if (generation != mAdapterModelGeneration.get()) {
+                            return;
+                        }
+                        final List<Query> deliveredQueries =
+                                new ArrayList<Query>(mUndeliveredQueries);
+                        mUndeliveredQueries.removeAll(deliveredQueries);
+                        final AdapterModel model = buildAdapterModel();
+                        if (model == null || generation != mAdapterModelGeneration.get()) {
+                            mUndeliveredQueries.addAll(deliveredQueries);
+                            return;
+                        }
+                        model.mRowSignatures =
+                                TomahawkListAdapter.getRowSignatures(model.mSegments);
+                        mUiHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (generation == mAdapterModelGeneration.get() && mIsResumed) {
+                                    applyAdapterModel(model);
+                                    for (Query query : deliveredQueries) {
+                                        ResolveTracer.getInstance().onDelivered(query);
+                                    }
+                                } else {
+                                    mUndeliveredQueries.addAll(deliveredQueries);
+                                }
+                            }
+                        });
+                    }
+                }
+        );
+    }
+
+    /**
+     * Build the {@link AdapterModel} of this {@link TomahawkFragment}. Called on a background
+     * thread, so implementations must not touch any {@link View}s.
+     *
+     * @return the new {@link AdapterModel}, or null if nothing should be shown
      */
-    protected abstract void updateAdapter();
+    protected AdapterModel buildAdapterModel() {
+        return null;
+    }
+
+    /**
+     * Apply the given {@link AdapterModel}, which has been built in the background. Only the rows
+     * that actually differ from the currently shown ones cause the list to be rebound.
+     */
+    protected void applyAdapterModel(AdapterModel model) {
+        mShownQueries = model.mShownQueries;
+        mShownPlaylistEntries = model.mShownPlaylistEntries;
+        if (getListAdapter() == null) {
+            TomahawkListAdapter tomahawkListAdapter = new TomahawkListAdapter(
+                    (TomahawkMainActivity) getActivity(), getActivity().getLayoutInflater(),
+                    model.mSegments, this);
+            onListAdapterCreated(tomahawkListAdapter, model);
+            setListAdapter(tomahawkListAdapter);
+        } else {
+            getListAdapter().setSegments(model.mSegments, model.mRowSignatures, getListView());
+        }
+        onUpdateAdapterFinished();
+    }
+
+    /**
+     * Called by {@link #applyAdapterModel(AdapterModel)} after the {@link TomahawkListAdapter} has
+     * been created for the first time, so that subclasses are able to configure it.
+     */
+    protected void onListAdapterCreated(TomahawkListAdapter adapter, AdapterModel model) {
+    }
 
     /**
      * This method _MUST_ be called at the end of updateAdapter (with the exception of
@@ -482,15 +588,16 @@ public abstract class TomahawkFragment extends TomahawkListFragment
         PlaybackService playbackService = ((TomahawkMainActivity) getActivity())
                 .getPlaybackService();
         if (getListAdapter() != null) {
+            boolean changed;
             if (playbackService != null) {
-                getListAdapter().setShowPlaystate(true);
-                getListAdapter().setHighlightedItemIsPlaying(playbackService.isPlaying());
-                getListAdapter().setHighlightedEntry(playbackService.getCurrentEntry());
-                getListAdapter().setHighlightedQuery(playbackService.getCurrentQuery());
+                changed = getListAdapter().setPlaystate(true, playbackService.isPlaying(),
+                        playbackService.getCurrentEntry(), playbackService.getCurrentQuery());
             } else {
-                getListAdapter().setShowPlaystate(false);
+                changed = getListAdapter().setPlaystate(false, false, null, null);
+            }
+            if (changed) {
+                getListAdapter().notifyDataSetChanged();
             }
-            getListAdapter().notifyDataSetChanged();
         }
     }
 
@@ -529,8 +636,10 @@ public abstract class TomahawkFragment extends TomahawkListFragment
     private void resolveQueriesFromTo(final int start, final int end) {
         Set<Query> qs = new HashSet<>();
         for (int i = (start < 0 ? 0 : start); i < end && i < mShownQueries.size(); i++) {
-            Query q = mShownQueries.get(i);
-            if (!q.isSolved() && !mCorrespondingQueries.contains(q)) {
+            // Don't load entries of lazily loaded playlists on the UI thread
+            Query q = mShownQueries instanceof Playlist.LazyList
+                    ? (Query) ((Playlist.LazyList) mShownQueries).peek(i) : mShownQueries.get(i);
+            if (q != null && !q.isSolved() && !mCorrespondingQueries.contains(q)) {
                 qs.add(q);
             }
         }
@@ -35,12 +35,10 @@ import org.tomahawk.tomahawk_android.views.FancyDropDown;
 
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.AdapterView;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -54,7 +52,8 @@ public class TracksFragment extends TomahawkFragment {
 
     @SuppressWarnings("unused")
     public void onEventMainThread(CollectionManager.UpdatedEvent event) {
-        if (event.mUpdatedItemId != null && mAlbum.getCacheKey().equals(event.mUpdatedItemId)) {
+        if (event.mUpdatedItemIds != null
+                && event.mUpdatedItemIds.contains(mAlbum.getCacheKey())) {
             showAlbumFancyDropDown();
         }
     }
@@ -86,7 +85,7 @@ public class TracksFragment extends TomahawkFragment {
                     playbackService.playPause();
                 } else {
                     Playlist playlist = Playlist.fromQueryList(DatabaseHelper.CACHED_PLAYLIST_NAME,
-                            mShownQueries);
+                            new ArrayList<Query>(mShownQueries));
                     playlist.setId(DatabaseHelper.CACHED_PLAYLIST_ID);
                     if (playbackService != null) {
                         playbackService.setPlaylist(playlist, playlist.getEntryWithQuery(query));
@@ -100,10 +99,6 @@ public class TracksFragment extends TomahawkFragment {
         }
     }
 
-    /**
-     * Update this {@link TomahawkFragment}'s {@link org.tomahawk.tomahawk_android.adapters.TomahawkListAdapter}
-     * content
-     */
     @Override
     protected void updateAdapter() {
         if (!mIsResumed) {
@@ -112,50 +107,26 @@ public class TracksFragment extends TomahawkFragment {
 
         mResolveQueriesHandler.removeCallbacksAndMessages(null);
         mResolveQueriesHandler.sendEmptyMessage(RESOLVE_QUERIES_REPORTER_MSG);
+        super.updateAdapter();
+    }
+
+    /**
+     * Build this {@link TomahawkFragment}'s {@link TomahawkListAdapter} content. Called on a
+     * background thread.
+     */
+    @Override
+    protected AdapterModel buildAdapterModel() {
+        AdapterModel model = new AdapterModel();
         ArrayList queries = new ArrayList();
-        TomahawkListAdapter tomahawkListAdapter;
-        TomahawkMainActivity activity = (TomahawkMainActivity) getActivity();
-        LayoutInflater layoutInflater = getActivity().getLayoutInflater();
         if (mAlbum != null) {
             queries.addAll(CollectionUtils.getAlbumTracks(mAlbum, mCollection));
-            Segment segment = new Segment(mAlbum.getArtist().getName(), queries);
-            if (getListAdapter() == null) {
-                tomahawkListAdapter = new TomahawkListAdapter(activity, layoutInflater, segment,
-                        this);
-                if (CollectionUtils.allFromOneArtist(queries)) {
-                    tomahawkListAdapter.setHideArtistName(true);
-                    tomahawkListAdapter.setShowDuration(true);
-                }
-                tomahawkListAdapter.setShowNumeration(true);
-                setListAdapter(tomahawkListAdapter);
-            } else {
-                getListAdapter().setSegments(segment, getListView());
-            }
-            showContentHeader(mAlbum);
-            showAlbumFancyDropDown();
+            model.mSegments.add(new Segment(mAlbum.getArtist().getName(), queries));
         } else if (mQuery != null) {
             queries.add(mQuery);
-            Segment segment = new Segment(queries);
-            if (getListAdapter() == null) {
-                tomahawkListAdapter = new TomahawkListAdapter(activity, layoutInflater, segment,
-                        this);
-                tomahawkListAdapter.setShowDuration(true);
-                setListAdapter(tomahawkListAdapter);
-            } else {
-                getListAdapter().setSegments(segment, getListView());
-            }
-            showContentHeader(mQuery);
-            showFancyDropDown(mQuery);
+            model.mSegments.add(new Segment(queries));
         } else if (mQueryArray != null) {
             queries.addAll(mQueryArray);
-            if (getListAdapter() == null) {
-                tomahawkListAdapter = new TomahawkListAdapter((TomahawkMainActivity) getActivity(),
-                        layoutInflater, new Segment(queries), this);
-                tomahawkListAdapter.setShowDuration(true);
-                setListAdapter(tomahawkListAdapter);
-            } else {
-                getListAdapter().setSegments(new Segment(queries), getListView());
-            }
+            model.mSegments.add(new Segment(queries));
         } else {
             queries.addAll(CollectionManager.getInstance()
                     .getCollection(TomahawkApp.PLUGINNAME_USERCOLLECTION).getQueries());
@@ -188,30 +159,44 @@ public class TracksFragment extends TomahawkFragment {
             if (initialPos == 0) {
                 Collection userColl = CollectionManager.getInstance().getCollection(
                         TomahawkApp.PLUGINNAME_USERCOLLECTION);
-                Collections.sort(queries, new TomahawkListItemComparator(
-                        TomahawkListItemComparator.COMPARE_RECENTLY_ADDED,
-                        userColl.getTrackAddedTimeStamps()));
+                new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_RECENTLY_ADDED,
+                        userColl.getTrackAddedTimeStamps()).sort(queries);
             } else if (initialPos == 1) {
-                Collections.sort(queries, new TomahawkListItemComparator(
-                        TomahawkListItemComparator.COMPARE_ALPHA));
+                TomahawkListItemComparator.ALPHA.sort(queries);
             } else if (initialPos == 2) {
-                Collections.sort(queries, new TomahawkListItemComparator(
-                        TomahawkListItemComparator.COMPARE_ARTIST_ALPHA));
+                TomahawkListItemComparator.ARTIST_ALPHA.sort(queries);
             }
-            List<Segment> segments = new ArrayList<Segment>();
-            segments.add(new Segment(initialPos, dropDownItems, spinnerClickListener, queries));
-            if (getListAdapter() == null) {
-                tomahawkListAdapter = new TomahawkListAdapter(activity, layoutInflater, segments,
-                        this);
-                setListAdapter(tomahawkListAdapter);
-            } else {
-                getListAdapter().setSegments(segments, getListView());
+            model.mSegments.add(new Segment(initialPos, dropDownItems, spinnerClickListener,
+                    queries));
+        }
+        model.mShownQueries = queries;
+        return model;
+    }
+
+    @Override
+    protected void onListAdapterCreated(TomahawkListAdapter adapter, AdapterModel model) {
+        if (mAlbum != null) {
+            if (CollectionUtils.allFromOneArtist((ArrayList) model.mShownQueries)) {
+                adapter.setHideArtistName(true);
+                adapter.setShowDuration(true);
             }
+            adapter.setShowNumeration(true);
+        } else if (mQuery != null || mQueryArray != null) {
+            adapter.setShowDuration(true);
         }
+    }
 
-        mShownQueries = queries;
+    @Override
+    protected void applyAdapterModel(AdapterModel model) {
+        super.applyAdapterModel(model);
 
-        onUpdateAdapterFinished();
+        if (mAlbum != null) {
+            showContentHeader(mAlbum);
+            showAlbumFancyDropDown();
+        } else if (mQuery != null) {
+            showContentHeader(mQuery);
+            showFancyDropDown(mQuery);
+        }
     }
 
     private void showAlbumFancyDropDown() {
@@ -33,12 +33,10 @@ import org.tomahawk.tomahawk_android.utils.FragmentUtils;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
-import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.AdapterView;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class UserCollectionFragment extends TomahawkFragment {
@@ -90,18 +88,12 @@ public class UserCollectionFragment extends TomahawkFragment {
     }
 
     /**
-     * Update this {@link org.tomahawk.tomahawk_android.fragments.TomahawkFragment}'s {@link
-     * org.tomahawk.tomahawk_android.adapters.TomahawkListAdapter} content
+     * Build this {@link TomahawkFragment}'s {@link TomahawkListAdapter} content. Called on a
+     * background thread.
      */
     @Override
-    protected void updateAdapter() {
-        if (!mIsResumed) {
-            return;
-        }
-
-        TomahawkMainActivity activity = (TomahawkMainActivity) getActivity();
-        LayoutInflater layoutInflater = getActivity().getLayoutInflater();
-        List<Segment> segments = new ArrayList<Segment>();
+    protected AdapterModel buildAdapterModel() {
+        AdapterModel model = new AdapterModel();
         ArrayList items = new ArrayList();
         if (mUser != null) {
             items.addAll(mUser.getStarredAlbums());
@@ -142,31 +134,30 @@ public class UserCollectionFragment extends TomahawkFragment {
         if (initialPos == 0) {
             Collection userColl = CollectionManager.getInstance().getCollection(
                     TomahawkApp.PLUGINNAME_USERCOLLECTION);
-            Collections.sort(items, new TomahawkListItemComparator(
-                    TomahawkListItemComparator.COMPARE_RECENTLY_ADDED,
-                    userColl.getAlbumAddedTimeStamps()));
+            new TomahawkListItemComparator(TomahawkListItemComparator.COMPARE_RECENTLY_ADDED,
+                    userColl.getAlbumAddedTimeStamps()).sort(items);
         } else if (initialPos == 1) {
-            Collections.sort(items, new TomahawkListItemComparator(
-                    TomahawkListItemComparator.COMPARE_ALPHA));
+            TomahawkListItemComparator.ALPHA.sort(items);
         } else if (initialPos == 2) {
-            Collections.sort(items, new TomahawkListItemComparator(
-                    TomahawkListItemComparator.COMPARE_ARTIST_ALPHA));
+            TomahawkListItemComparator.ARTIST_ALPHA.sort(items);
         }
-        segments.add(new Segment(initialPos, dropDownItems, spinnerClickListener, items,
+        model.mSegments.add(new Segment(initialPos, dropDownItems, spinnerClickListener, items,
                 R.integer.grid_column_count, R.dimen.padding_superlarge,
                 R.dimen.padding_superlarge));
-        if (getListAdapter() == null) {
-            TomahawkListAdapter tomahawkListAdapter = new TomahawkListAdapter(activity,
-                    layoutInflater, segments, this);
-            setListAdapter(tomahawkListAdapter);
-        } else {
-            getListAdapter().setSegments(segments, getListView());
-        }
+        return model;
+    }
+
+    @Override
+    protected void onListAdapterCreated(TomahawkListAdapter adapter, AdapterModel model) {
         if (!getResources().getBoolean(R.bool.is_landscape)) {
             getListView().setAreHeadersSticky(true);
         }
-        showContentHeader(R.drawable.collection_header);
+    }
 
-        onUpdateAdapterFinished();
+    @Override
+    protected void applyAdapterModel(AdapterModel model) {
+        super.applyAdapterModel(model);
+
+        showContentHeader(R.drawable.collection_header);
     }
 }
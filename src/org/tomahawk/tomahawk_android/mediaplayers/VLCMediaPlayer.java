@@ -24,6 +24,7 @@ import org.tomahawk.libtomahawk.resolver.Result;
 import org.tomahawk.libtomahawk.resolver.ScriptResolver;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 import org.tomahawk.tomahawk_android.utils.MediaPlayerInterface;
+import org.tomahawk.tomahawk_android.utils.PlaybackMetrics;
 import org.videolan.libvlc.LibVLC;
 import org.videolan.libvlc.LibVlcException;
 
@@ -161,6 +162,7 @@ public class VLCMediaPlayer implements MediaPlayerInterface {
                 path = result.getPath();
             }
         }
+        PlaybackMetrics.getInstance().markStage(query, PlaybackMetrics.STAGE_STREAM_URL);
         getLibVlcInstance().playMRL(LibVLC.PathToURI(path));
         onPrepared(null);
         return this;
@@ -49,6 +49,7 @@ import org.tomahawk.tomahawk_android.utils.MediaButtonHelper;
 import org.tomahawk.tomahawk_android.utils.MediaButtonReceiver;
 import org.tomahawk.tomahawk_android.utils.MediaPlayerInterface;
 import org.tomahawk.tomahawk_android.utils.MusicFocusable;
+import org.tomahawk.tomahawk_android.utils.PlaybackMetrics;
 import org.tomahawk.tomahawk_android.utils.RemoteControlClientCompat;
 import org.tomahawk.tomahawk_android.utils.RemoteControlHelper;
 import org.tomahawk.tomahawk_android.utils.ThreadManager;
@@ -245,6 +246,9 @@ public class PlaybackService extends Service
                     case EventHandler.MediaPlayerEndReached:
                         VLCMediaPlayer.getInstance().onCompletion(null);
                         break;
+                    case EventHandler.MediaPlayerTimeChanged:
+                        PlaybackMetrics.getInstance().onProgress(getCurrentQuery());
+                        break;
                     default:
                         return false;
                 }
@@ -587,6 +591,8 @@ public class PlaybackService extends Service
      */
     @Override
     public void onPrepared(MediaPlayer mp) {
+        PlaybackMetrics.getInstance()
+                .markStage(getCurrentQuery(), PlaybackMetrics.STAGE_PREPARED);
         Log.d(TAG, "MediaPlayer successfully prepared the track '"
                 + getCurrentQuery().getName() + "' by '"
                 + getCurrentQuery().getArtist().getName()
@@ -707,6 +713,7 @@ public class PlaybackService extends Service
         Log.d(TAG, "start");
         if (getCurrentQuery() != null) {
             mPlayState = PLAYBACKSERVICE_PLAYSTATE_PLAYING;
+            PlaybackMetrics.getInstance().startTrack(getCurrentQuery());
             EventBus.getDefault().post(new PlayStateChangedEvent());
             handlePlayState();
 
@@ -732,6 +739,7 @@ public class PlaybackService extends Service
     public void pause(boolean dismissNotificationOnPause) {
         Log.d(TAG, "pause, dismissing Notification:" + dismissNotificationOnPause);
         mPlayState = PLAYBACKSERVICE_PLAYSTATE_PAUSED;
+        PlaybackMetrics.getInstance().onPaused();
         EventBus.getDefault().post(new PlayStateChangedEvent());
         handlePlayState();
         if (dismissNotificationOnPause) {
@@ -765,6 +773,13 @@ public class PlaybackService extends Service
                             if (!getCurrentQuery().getMediaPlayerInterface()
                                     .isPlaying(getCurrentQuery())) {
                                 getCurrentQuery().getMediaPlayerInterface().start();
+                                if (!(getCurrentQuery().getMediaPlayerInterface()
+                                        instanceof VLCMediaPlayer)) {
+                                    // Only VLC reports its playback progress, so for all other
+                                    // players the start of playback has to do
+                                    PlaybackMetrics.getInstance().markStage(getCurrentQuery(),
+                                            PlaybackMetrics.STAGE_FIRST_AUDIO);
+                                }
                             }
                         } else if (!isPreparing()) {
                             prepareCurrentQuery();
@@ -855,11 +870,11 @@ public class PlaybackService extends Service
             if (shuffled) {
                 mShuffledPlaylist.setEntries(getShuffledPlaylistEntries());
             }
-            mMergedPlaylist.setEntries(getMergedPlaylistEntries());
+            updateMergedPlaylist();
             if (getCurrentEntry() != null) {
                 int index = mMergedPlaylist.getIndexOfEntry(mCurrentEntry);
-                resolveQueriesFromTo(mMergedPlaylist.getEntries(), index, index + 10);
-                resolveQueriesFromTo(mQueue.getEntries(), index, index + 10);
+                resolveQueriesFromTo(mMergedPlaylist, index, index + 10);
+                resolveQueriesFromTo(mQueue, index, index + 10);
             }
 
             EventBus.getDefault().post(new PlayingPlaylistChangedEvent());
@@ -985,6 +1000,8 @@ public class PlaybackService extends Service
         Log.d(TAG, "prepareCurrentQuery");
         if (getCurrentQuery() != null) {
             if (getCurrentQuery().isPlayable()) {
+                PlaybackMetrics.getInstance()
+                        .markStage(getCurrentQuery(), PlaybackMetrics.STAGE_RESOLVED);
                 mKillTimerHandler.removeCallbacksAndMessages(null);
                 Message msg = mKillTimerHandler.obtainMessage();
                 mKillTimerHandler.sendMessageDelayed(msg, DELAY_TO_KILL);
@@ -1006,6 +1023,8 @@ public class PlaybackService extends Service
                     @Override
                     public void run() {
                         if (isPlaying() && getCurrentQuery().getMediaPlayerInterface() != null) {
+                            PlaybackMetrics.getInstance().markStage(getCurrentQuery(),
+                                    PlaybackMetrics.STAGE_PREPARE_CALLED);
                             if (getCurrentQuery().getMediaPlayerInterface().prepare(
                                     getApplication(), getCurrentQuery(), PlaybackService.this,
                                     PlaybackService.this, PlaybackService.this) == null) {
@@ -1053,9 +1072,12 @@ public class PlaybackService extends Service
         Log.d(TAG, "onTrackChanged");
         EventBus.getDefault().post(new PlayingTrackChangedEvent());
         if (getCurrentEntry() != null) {
+            if (isPlaying()) {
+                PlaybackMetrics.getInstance().startTrack(getCurrentQuery());
+            }
             int index = mMergedPlaylist.getIndexOfEntry(mCurrentEntry);
-            resolveQueriesFromTo(mMergedPlaylist.getEntries(), index - 2, index + 10);
-            resolveQueriesFromTo(mQueue.getEntries(), index, index - 2 + 10);
+            resolveQueriesFromTo(mMergedPlaylist, index - 2, index + 10);
+            resolveQueriesFromTo(mQueue, index, index - 2 + 10);
             updateNotification();
             updateLockscreenControls();
         }
@@ -1098,7 +1120,7 @@ public class PlaybackService extends Service
         mQueueStartPos = -1;
         deleteQueryInQueue(mCurrentEntry);
         mCurrentEntry = currentEntry;
-        mMergedPlaylist.setEntries(getMergedPlaylistEntries());
+        updateMergedPlaylist();
 
         handlePlayState();
         EventBus.getDefault().post(new PlayingPlaylistChangedEvent());
@@ -1118,6 +1140,24 @@ public class PlaybackService extends Service
         return mReturnFragmentArgs;
     }
 
+    /**
+     * Update the merged playlist, which consists of the current playlist (or its shuffled
+     * version) and the queue. If there's nothing to merge, the merged playlist simply shares the
+     * current playlist's entries, so that a lazily loaded playlist doesn't have to be materialized
+     * as a whole.
+     */
+    private void updateMergedPlaylist() {
+        if (!mShuffled && mQueue.size() == 0) {
+            mMergedPlaylist.setEntries(mPlaylist);
+            int insertPos = mPlaylist.getIndexOfEntry(mCurrentEntry);
+            if (insertPos > 0) {
+                mQueueStartPos = insertPos;
+            }
+        } else {
+            mMergedPlaylist.setEntries(getMergedPlaylistEntries());
+        }
+    }
+
     private ArrayList<PlaylistEntry> getMergedPlaylistEntries() {
         ArrayList<PlaylistEntry> entries = new ArrayList<PlaylistEntry>();
         entries.addAll(mShuffled ? mShuffledPlaylist.getEntries() : mPlaylist.getEntries());
@@ -1137,7 +1177,7 @@ public class PlaybackService extends Service
     public void addQueriesToQueue(ArrayList<Query> queries) {
         Log.d(TAG, "addQueriesToQueue count: " + queries.size());
         mQueue.addQueries(queries);
-        mMergedPlaylist.setEntries(getMergedPlaylistEntries());
+        updateMergedPlaylist();
         EventBus.getDefault().post(new PlayingPlaylistChangedEvent());
         onTrackChanged();
     }
@@ -1148,7 +1188,7 @@ public class PlaybackService extends Service
     public void deleteQueryInQueue(PlaylistEntry entry) {
         Log.d(TAG, "deleteQueryInQueue");
         if (mQueue.deleteEntry(entry)) {
-            mMergedPlaylist.setEntries(getMergedPlaylistEntries());
+            updateMergedPlaylist();
             EventBus.getDefault().post(new PlayingPlaylistChangedEvent());
             onTrackChanged();
         }
@@ -1174,6 +1214,7 @@ public class PlaybackService extends Service
      */
     public void seekTo(int msec) {
         Log.d(TAG, "seekTo " + msec);
+        PlaybackMetrics.getInstance().onPaused();
         if (getCurrentQuery() != null && getCurrentQuery().getMediaPlayerInterface() != null
                 && getCurrentQuery().getMediaPlayerInterface().isPrepared(getCurrentQuery())) {
             getCurrentQuery().getMediaPlayerInterface().seekTo(msec);
@@ -1459,11 +1500,12 @@ public class PlaybackService extends Service
         }
     }
 
-    private void resolveQueriesFromTo(ArrayList<PlaylistEntry> entries, int start, int end) {
+    private void resolveQueriesFromTo(Playlist playlist, int start, int end) {
         Set<Query> qs = new HashSet<>();
         for (int i = start; i < end; i++) {
-            if (i >= 0 && i < entries.size()) {
-                Query q = entries.get(i).getQuery();
+            PlaylistEntry entry = playlist.getEntryAtPos(i);
+            if (entry != null) {
+                Query q = entry.getQuery();
                 if (!mCorrespondingQueries.contains(q)) {
                     qs.add(q);
                 }
@@ -22,36 +22,143 @@ import com.squareup.picasso.Transformation;
 import org.tomahawk.tomahawk_android.TomahawkApp;
 
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.support.v8.renderscript.Allocation;
 import android.support.v8.renderscript.Element;
 import android.support.v8.renderscript.RenderScript;
+import android.os.SystemClock;
 import android.support.v8.renderscript.ScriptIntrinsicBlur;
 
+/**
+ * Blurs images with RenderScript's {@link ScriptIntrinsicBlur}. The image is down-scaled before
+ * being blurred and up-scaled afterwards, which is much cheaper than blurring the full-size image
+ * and looks the same. The script and the {@link Allocation}s are reused as long as the size of
+ * the blurred images doesn't change.
+ *
+ * The radius is part of the {@link #key()}, so that Picasso caches the blurred results per source
+ * image and radius.
+ */
 public class BlurTransformation implements Transformation {
 
+    public static final float DEFAULT_RADIUS = 16f;
+
+    // The factor by which images are down-scaled before blurring them
+    private static final int DOWNSCALE_FACTOR = 4;
+
+    // Images are only down-scaled as long as both sides stay at least this big
+    private static final int MIN_DOWNSCALED_SIZE = 32;
+
+    // ScriptIntrinsicBlur only supports radii up to 25
+    private static final float MAX_RADIUS = 25f;
+
     private static RenderScript mRenderScript = RenderScript.create(TomahawkApp.getContext());
 
+    private static ScriptIntrinsicBlur sScript;
+
+    private static Allocation sInput;
+
+    private static Allocation sOutput;
+
+    // How long each call of staticTransform took in ms
+    private static PlaybackMetrics.Histogram sBlurTimes = new PlaybackMetrics.Histogram();
+
+    private final float mRadius;
+
+    public BlurTransformation() {
+        this(DEFAULT_RADIUS);
+    }
+
+    public BlurTransformation(float radius) {
+        mRadius = radius;
+    }
+
     @Override
     public Bitmap transform(Bitmap source) {
-        return staticTransform(source, 16f);
+        Bitmap result = staticTransform(source, mRadius);
+        if (result != source) {
+            source.recycle();
+        }
+        return result;
     }
 
     @Override
     public String key() {
-        return "BlurTransformation";
+        return "BlurTransformation(radius=" + mRadius + ")";
     }
 
+    /**
+     * Blur the given {@link Bitmap}. The given {@link Bitmap} is left untouched.
+     *
+     * @return a new {@link Bitmap} of the same size as the given one
+     */
     public static Bitmap staticTransform(Bitmap source, float radius) {
-        final Allocation input = Allocation.createFromBitmap(mRenderScript, source);
-        // Use this constructor for best performance, because it uses USAGE_SHARED mode which reuses
-        // memory
-        final Allocation output = Allocation.createTyped(mRenderScript, input.getType());
-        final ScriptIntrinsicBlur script =
-                ScriptIntrinsicBlur.create(mRenderScript, Element.U8_4(mRenderScript));
-        script.setRadius(radius);
-        script.setInput(input);
-        script.forEach(output);
-        output.copyTo(source);
-        return source;
-    }
-}
\ No newline at end of file
+        long startTime = SystemClock.elapsedRealtime();
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int factor = 1;
+        if (width / DOWNSCALE_FACTOR >= MIN_DOWNSCALED_SIZE
+                && height / DOWNSCALE_FACTOR >= MIN_DOWNSCALED_SIZE) {
+            factor = DOWNSCALE_FACTOR;
+        }
+        float scaledRadius = Math.max(1f, Math.min(MAX_RADIUS, radius / factor));
+
+        // Draw into a new ARGB_8888 bitmap, which is what the blur script expects
+        Bitmap scaled = Bitmap.createBitmap(width / factor, height / factor,
+                Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(scaled);
+        canvas.scale(1f / factor, 1f / factor);
+        canvas.drawBitmap(source, 0, 0, new Paint(Paint.FILTER_BITMAP_FLAG));
+
+        blur(scaled, scaledRadius);
+
+        Bitmap result = scaled;
+        if (factor > 1) {
+            result = Bitmap.createScaledBitmap(scaled, width, height, true);
+            scaled.recycle();
+        }
+        synchronized (BlurTransformation.class) {
+            sBlurTimes.add(SystemClock.elapsedRealtime() - startTime);
+        }
+        return result;
+    }
+
+    /**
+     * @return a human-readable summary of how long the blurs done so far took
+     */
+    public static synchronized String getReport() {
+        return "Blur time: " + sBlurTimes + "\n";
+    }
+
+    /**
+     * Throw away all blur times measured so far.
+     */
+    public static synchronized void reset() {
+        sBlurTimes = new PlaybackMetrics.Histogram();
+    }
+
+    /**
+     * Blur the given ARGB_8888 {@link Bitmap} in place.
+     */
+    private static synchronized void blur(Bitmap bitmap, float radius) {
+        if (sScript == null) {
+            sScript = ScriptIntrinsicBlur.create(mRenderScript, Element.U8_4(mRenderScript));
+        }
+        if (sInput == null || sInput.getType().getX() != bitmap.getWidth()
+                || sInput.getType().getY() != bitmap.getHeight()) {
+            if (sInput != null) {
+                sInput.destroy();
+                sOutput.destroy();
+            }
+            sInput = Allocation.createFromBitmap(mRenderScript, bitmap,
+                    Allocation.MipmapControl.MIPMAP_NONE, Allocation.USAGE_SCRIPT);
+            sOutput = Allocation.createTyped(mRenderScript, sInput.getType());
+        } else {
+            sInput.copyFrom(bitmap);
+        }
+        sScript.setRadius(radius);
+        sScript.setInput(sInput);
+        sScript.forEach(sOutput);
+        sOutput.copyTo(bitmap);
+    }
+}
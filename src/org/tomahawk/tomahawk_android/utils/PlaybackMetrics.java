@@ -0,0 +1,338 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.tomahawk_android.utils;
+
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.libtomahawk.resolver.Result;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Measures how long it takes to start playing a track. Every track start is being traced through
+ * the stages defined below and the time each stage took is being aggregated in in-memory
+ * histograms. Stalls during playback are being recorded as well.
+ *
+ * Additional {@link Listener}s can be registered to receive every single measurement.
+ */
+public class PlaybackMetrics {
+
+    private final static String TAG = PlaybackMetrics.class.getSimpleName();
+
+    public static final int STAGE_RESOLVED = 0;
+
+    public static final int STAGE_PREPARE_CALLED = 1;
+
+    public static final int STAGE_STREAM_URL = 2;
+
+    public static final int STAGE_PREPARED = 3;
+
+    public static final int STAGE_FIRST_AUDIO = 4;
+
+    private static final String[] STAGE_NAMES = new String[]{
+            "resolved", "prepare called", "stream url", "prepared", "first audio"};
+
+    // If no playback progress has been reported for this long, playback has stalled
+    public static final int STALL_THRESHOLD = 2000;
+
+    /**
+     * Interface to receive every single measurement taken by {@link PlaybackMetrics}
+     */
+    public interface Listener {
+
+        /**
+         * @param stage    the stage that has been reached
+         * @param duration the time in ms since the previous stage has been reached
+         */
+        void onStageReached(Query query, String resolverId, int stage, long duration);
+
+        void onStall(Query query, String resolverId, long duration);
+
+    }
+
+    private static class Holder {
+
+        private static final PlaybackMetrics instance = new PlaybackMetrics();
+
+    }
+
+    /**
+     * A histogram with exponentially growing buckets. Bucket i holds all values in [2^(i-1),
+     * 2^i).
+     */
+    public static class Histogram {
+
+        private static final int BUCKET_COUNT = 32;
+
+        private final long[] mBuckets = new long[BUCKET_COUNT];
+
+        private long mCount;
+
+        private long mSum;
+
+        private long mMax;
+
+        public void add(long value) {
+            value = Math.max(0, value);
+            int bucket = 64 - Long.numberOfLeadingZeros(value);
+            mBuckets[Math.min(bucket, BUCKET_COUNT - 1)]++;
+            mCount++;
+            mSum += value;
+            mMax = Math.max(mMax, value);
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * @return the upper bound of the bucket containing the given percentile
+         */
+        public long getPercentile(int percentile) {
+            long threshold = (mCount * percentile + 99) / 100;
+            long count = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                count += mBuckets[i];
+                if (count >= threshold && count > 0) {
+                    return Math.min(1L << i, mMax);
+                }
+            }
+            return mMax;
+        }
+
+        @Override
+        public String toString() {
+            return toString("ms");
+        }
+
+        /**
+         * @param unit the unit of the values in this histogram
+         */
+        public String toString(String unit) {
+            if (mCount == 0) {
+                return "-";
+            }
+            return "n=" + mCount + " avg=" + (mSum / mCount) + unit + " p50<="
+                    + getPercentile(50) + unit + " p90<=" + getPercentile(90) + unit + " p99<="
+                    + getPercentile(99) + unit + " max=" + mMax + unit;
+        }
+    }
+
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+
+    private final Histogram[] mStageHistograms = new Histogram[STAGE_NAMES.length];
+
+    private Histogram mTimeToFirstAudio = new Histogram();
+
+    private Histogram mStalls = new Histogram();
+
+    private final Map<String, Histogram> mTimeToFirstAudioByResolver =
+            new TreeMap<String, Histogram>();
+
+    private int mStartedCount;
+
+    private int mAbandonedCount;
+
+    private Query mQuery;
+
+    private long mStartTime;
+
+    private long mLastStageTime;
+
+    private final long[] mStageTimes = new long[STAGE_NAMES.length];
+
+    private long mLastProgressTime;
+
+    private PlaybackMetrics() {
+        for (int i = 0; i < mStageHistograms.length; i++) {
+            mStageHistograms[i] = new Histogram();
+        }
+    }
+
+    public static PlaybackMetrics getInstance() {
+        return Holder.instance;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Start tracing the start of the given {@link Query}'s playback. Does nothing if the given
+     * {@link Query} has already been traced up to its first audio output, so that resuming
+     * playback isn't being measured as a new track start.
+     */
+    public synchronized void startTrack(Query query) {
+        if (query == null
+                || (query == mQuery && mStageTimes[STAGE_FIRST_AUDIO] >= 0)) {
+            return;
+        }
+        if (mQuery != null && mStageTimes[STAGE_FIRST_AUDIO] < 0) {
+            mAbandonedCount++;
+        }
+        mStartedCount++;
+        mQuery = query;
+        mStartTime = SystemClock.elapsedRealtime();
+        mLastStageTime = mStartTime;
+        mLastProgressTime = 0;
+        for (int i = 0; i < mStageTimes.length; i++) {
+            mStageTimes[i] = -1;
+        }
+    }
+
+    /**
+     * Mark the given stage as reached for the given {@link Query}. Does nothing if the given
+     * {@link Query} isn't being traced or if the stage has already been reached.
+     */
+    public void markStage(Query query, int stage) {
+        long duration;
+        synchronized (this) {
+            if (query == null || query != mQuery || mStageTimes[stage] >= 0) {
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            duration = now - mLastStageTime;
+            mLastStageTime = now;
+            mStageTimes[stage] = now;
+            mStageHistograms[stage].add(duration);
+            if (stage == STAGE_FIRST_AUDIO) {
+                long timeToFirstAudio = now - mStartTime;
+                mTimeToFirstAudio.add(timeToFirstAudio);
+                String resolverId = getResolverId(query);
+                Histogram histogram = mTimeToFirstAudioByResolver.get(resolverId);
+                if (histogram == null) {
+                    histogram = new Histogram();
+                    mTimeToFirstAudioByResolver.put(resolverId, histogram);
+                }
+                histogram.add(timeToFirstAudio);
+                mLastProgressTime = now;
+                Log.d(TAG, "First audio of '" + query.getName() + "' after "
+                        + timeToFirstAudio + "ms (" + getStageSummary() + ")");
+            }
+        }
+        for (Listener listener : mListeners) {
+            listener.onStageReached(query, getResolverId(query), stage, duration);
+        }
+    }
+
+    /**
+     * Should be called whenever the player reports playback progress for the given {@link Query}.
+     * The first progress report marks {@link #STAGE_FIRST_AUDIO}. A gap of more than {@link
+     * #STALL_THRESHOLD} ms between two progress reports is being recorded as a stall.
+     */
+    public void onProgress(Query query) {
+        long stallDuration = 0;
+        synchronized (this) {
+            if (query == null || query != mQuery) {
+                return;
+            }
+            if (mStageTimes[STAGE_FIRST_AUDIO] < 0) {
+                stallDuration = -1;
+            } else {
+                long now = SystemClock.elapsedRealtime();
+                if (mLastProgressTime > 0 && now - mLastProgressTime > STALL_THRESHOLD) {
+                    stallDuration = now - mLastProgressTime;
+                    mStalls.add(stallDuration);
+                }
+                mLastProgressTime = now;
+            }
+        }
+        if (stallDuration < 0) {
+            markStage(query, STAGE_FIRST_AUDIO);
+        } else if (stallDuration > 0) {
+            Log.d(TAG, "Playback of '" + query.getName() + "' stalled for " + stallDuration
+                    + "ms");
+            for (Listener listener : mListeners) {
+                listener.onStall(query, getResolverId(query), stallDuration);
+            }
+        }
+    }
+
+    /**
+     * Should be called whenever playback is being paused or seeked, so that the resulting gap in
+     * playback progress isn't being recorded as a stall.
+     */
+    public synchronized void onPaused() {
+        mLastProgressTime = 0;
+    }
+
+    /**
+     * @return a human-readable report of all the measurements taken so far
+     */
+    public synchronized String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Track starts: ").append(mStartedCount).append(", abandoned before first audio: ")
+                .append(mAbandonedCount).append("\n");
+        sb.append("Time to first audio: ").append(mTimeToFirstAudio).append("\n");
+        for (Map.Entry<String, Histogram> entry : mTimeToFirstAudioByResolver.entrySet()) {
+            sb.append("  ").append(entry.getKey()).append(": ").append(entry.getValue())
+                    .append("\n");
+        }
+        sb.append("Time per stage:\n");
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            sb.append("  ").append(STAGE_NAMES[i]).append(": ").append(mStageHistograms[i])
+                    .append("\n");
+        }
+        sb.append("Stalls: ").append(mStalls).append("\n");
+        return sb.toString();
+    }
+
+    /**
+     * Throw away all measurements taken so far.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < mStageHistograms.length; i++) {
+            mStageHistograms[i] = new Histogram();
+        }
+        mTimeToFirstAudio = new Histogram();
+        mStalls = new Histogram();
+        mTimeToFirstAudioByResolver.clear();
+        mStartedCount = 0;
+        mAbandonedCount = 0;
+    }
+
+    private String getStageSummary() {
+        List<String> stages = new ArrayList<String>();
+        long previous = mStartTime;
+        for (int i = 0; i < mStageTimes.length; i++) {
+            if (mStageTimes[i] >= 0) {
+                stages.add(STAGE_NAMES[i] + " +" + (mStageTimes[i] - previous) + "ms");
+                previous = mStageTimes[i];
+            }
+        }
+        return stages.toString();
+    }
+
+    private static String getResolverId(Query query) {
+        Result result = query.getPreferredTrackResult();
+        if (result != null && result.getResolvedBy() != null) {
+            return result.getResolvedBy().getId();
+        }
+        return "unknown";
+    }
+}
@@ -0,0 +1,342 @@
+/* == This file is part of Tomahawk Player - <http://tomahawk-player.org> ===
+ *
+ *   Copyright 2015, Enno Gottschalk <mrmaffen@googlemail.com>
+ *
+ *   Tomahawk is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   Tomahawk is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with Tomahawk. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.tomahawk.tomahawk_android.utils;
+
+import org.tomahawk.libtomahawk.resolver.Query;
+import org.tomahawk.tomahawk_android.TomahawkApp;
+
+import android.content.Context;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Traces how long a {@link Query} spends in each stage of the resolve pipeline. Every measured
+ * span is being stored in a fixed-size ring buffer and aggregated in per-stage and per-resolver
+ * histograms, so that slow resolvers can be identified.
+ *
+ * Tracing is disabled by default. While disabled, {@link #start()} returns 0 and all other
+ * methods return right away, so that the pipeline doesn't pay for it.
+ */
+public class ResolveTracer {
+
+    private final static String TAG = ResolveTracer.class.getSimpleName();
+
+    public static final String PREF_KEY_ENABLED = "org.tomahawk.tomahawk_android.resolvetracing";
+
+    // From PipeLine.resolve until the resolving runnable is being run by the ThreadManager
+    public static final int STAGE_QUEUED = 0;
+
+    // From dispatching a Query to a Resolver until the Resolver reports its results
+    public static final int STAGE_RESOLVER = 1;
+
+    // From reporting results until the reporting runnable is being run by the ThreadManager
+    public static final int STAGE_REPORT_QUEUED = 2;
+
+    // Scoring and adding the reported results to the Query
+    public static final int STAGE_SCORING = 3;
+
+    // From posting a PipeLine.ResultsEvent until a fragment has shown the Query's results
+    public static final int STAGE_DELIVERY = 4;
+
+    private static final String[] STAGE_NAMES = new String[]{
+            "queued", "resolver", "report queued", "scoring", "delivery"};
+
+    private static final int BUFFER_SIZE = 2048;
+
+    // Dispatches, which never get any results reported, are being thrown away at this size
+    private static final int MAX_PENDING_DISPATCHES = 4096;
+
+    // Posted results, which are never being shown, are being thrown away at this size
+    private static final int MAX_PENDING_DELIVERIES = 4096;
+
+    private static class Holder {
+
+        private static final ResolveTracer instance = new ResolveTracer();
+
+    }
+
+    private static class ResolverStats {
+
+        private final PlaybackMetrics.Histogram mLatency = new PlaybackMetrics.Histogram();
+
+        private int mReportCount;
+
+        private int mHitCount;
+
+    }
+
+    private volatile boolean mEnabled;
+
+    // The ring buffer of spans. mNext is the index the next span will be written to.
+    private final long[] mSpanEnds = new long[BUFFER_SIZE];
+
+    private final long[] mSpanDurations = new long[BUFFER_SIZE];
+
+    private final int[] mSpanStages = new int[BUFFER_SIZE];
+
+    private final String[] mSpanQueries = new String[BUFFER_SIZE];
+
+    private final String[] mSpanResolvers = new String[BUFFER_SIZE];
+
+    private int mNext;
+
+    private int mSpanCount;
+
+    private final PlaybackMetrics.Histogram[] mStageHistograms =
+            new PlaybackMetrics.Histogram[STAGE_NAMES.length];
+
+    private final Map<String, ResolverStats> mResolverStats = new TreeMap<String, ResolverStats>();
+
+    // Maps the resolver id and Query key of every dispatch to the time it happened
+    private final ConcurrentHashMap<String, Long> mDispatchTimes =
+            new ConcurrentHashMap<String, Long>();
+
+    // Maps the key of every Query, whose results have been posted but not yet been shown, to the
+    // time they have first been posted
+    private final ConcurrentHashMap<String, Long> mPostTimes =
+            new ConcurrentHashMap<String, Long>();
+
+    private ResolveTracer() {
+        for (int i = 0; i < mStageHistograms.length; i++) {
+            mStageHistograms[i] = new PlaybackMetrics.Histogram();
+        }
+        mEnabled = PreferenceManager.getDefaultSharedPreferences(TomahawkApp.getContext())
+                .getBoolean(PREF_KEY_ENABLED, false);
+    }
+
+    public static ResolveTracer getInstance() {
+        return Holder.instance;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+        if (!enabled) {
+            mDispatchTimes.clear();
+            mPostTimes.clear();
+        }
+        PreferenceManager.getDefaultSharedPreferences(TomahawkApp.getContext()).edit()
+                .putBoolean(PREF_KEY_ENABLED, enabled).commit();
+    }
+
+    /**
+     * @return the start time of a span, which is to be passed to {@link #end(int, Query, String,
+     * long)}. 0, if tracing is disabled.
+     */
+    public long start() {
+        return mEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * End the span of the given stage, which has been started at the given time.
+     *
+     * @param resolverId the id of the involved resolver, may be null
+     * @param startTime  the time returned by {@link #start()}
+     */
+    public void end(int stage, Query query, String resolverId, long startTime) {
+        if (startTime == 0 || !mEnabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        record(stage, query != null ? query.getCacheKey() : null, resolverId, now,
+                (now - startTime) / 1000);
+    }
+
+    /**
+     * Should be called whenever the given {@link Query} is being dispatched to the resolver with
+     * the given id.
+     */
+    public void onDispatched(Query query, String resolverId) {
+        if (!mEnabled) {
+            return;
+        }
+        if (mDispatchTimes.size() >= MAX_PENDING_DISPATCHES) {
+            mDispatchTimes.clear();
+        }
+        mDispatchTimes.put(resolverId + "\t" + query.getCacheKey(), System.nanoTime());
+    }
+
+    /**
+     * Should be called whenever the resolver with the given id has reported results for the given
+     * {@link Query}. Ends the {@link #STAGE_RESOLVER} span, which has been started by {@link
+     * #onDispatched(Query, String)}.
+     *
+     * @param hit whether or not any of the reported results matched the {@link Query}
+     */
+    public void onReported(Query query, String resolverId, boolean hit) {
+        if (!mEnabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        String queryKey = query.getCacheKey();
+        Long dispatchTime = mDispatchTimes.remove(resolverId + "\t" + queryKey);
+        synchronized (this) {
+            ResolverStats stats = mResolverStats.get(resolverId);
+            if (stats == null) {
+                stats = new ResolverStats();
+                mResolverStats.put(resolverId, stats);
+            }
+            stats.mReportCount++;
+            if (hit) {
+                stats.mHitCount++;
+            }
+            if (dispatchTime != null) {
+                long duration = (now - dispatchTime) / 1000;
+                stats.mLatency.add(duration);
+                record(STAGE_RESOLVER, queryKey, resolverId, now, duration);
+            }
+        }
+    }
+
+    /**
+     * Should be called whenever a PipeLine.ResultsEvent for the given {@link Query} is being
+     * posted. Starts the {@link #STAGE_DELIVERY} span, unless the results of a previous post
+     * haven't been shown yet.
+     */
+    public void onPosted(Query query) {
+        if (!mEnabled) {
+            return;
+        }
+        if (mPostTimes.size() >= MAX_PENDING_DELIVERIES) {
+            mPostTimes.clear();
+        }
+        mPostTimes.putIfAbsent(query.getCacheKey(), System.nanoTime());
+    }
+
+    /**
+     * Should be called whenever a fragment has shown the results of the given {@link Query}. Ends
+     * the {@link #STAGE_DELIVERY} span, which has been started by {@link #onPosted(Query)}, so
+     * that it is only being measured once, no matter how many fragments show the {@link Query}.
+     */
+    public void onDelivered(Query query) {
+        if (!mEnabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        String queryKey = query.getCacheKey();
+        Long postTime = mPostTimes.remove(queryKey);
+        if (postTime != null) {
+            record(STAGE_DELIVERY, queryKey, null, now, (now - postTime) / 1000);
+        }
+    }
+
+    private synchronized void record(int stage, String queryKey, String resolverId, long end,
+            long duration) {
+        mSpanEnds[mNext] = end;
+        mSpanDurations[mNext] = duration;
+        mSpanStages[mNext] = stage;
+        mSpanQueries[mNext] = queryKey;
+        mSpanResolvers[mNext] = resolverId;
+        mNext = (mNext + 1) % BUFFER_SIZE;
+        mSpanCount = Math.min(mSpanCount + 1, BUFFER_SIZE);
+        mStageHistograms[stage].add(duration);
+    }
+
+    /**
+     * @return a human-readable report of the aggregated measurements
+     */
+    public synchronized String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Tracing ").append(mEnabled ? "enabled" : "disabled").append("\n");
+        sb.append("Time per stage:\n");
+        for (int i = 0; i < STAGE_NAMES.length; i++) {
+            sb.append("  ").append(STAGE_NAMES[i]).append(": ")
+                    .append(mStageHistograms[i].toString("us")).append("\n");
+        }
+        sb.append("Resolvers:\n");
+        for (Map.Entry<String, ResolverStats> entry : mResolverStats.entrySet()) {
+            ResolverStats stats = entry.getValue();
+            sb.append("  ").append(entry.getKey()).append(": hits ").append(stats.mHitCount)
+                    .append("/").append(stats.mReportCount).append(" (")
+                    .append(stats.mHitCount * 100 / Math.max(1, stats.mReportCount))
+                    .append("%), latency ").append(stats.mLatency.toString("us")).append("\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write the report and all spans in the ring buffer to a file in the app's external files
+     * dir.
+     *
+     * @return the written file, null if writing failed
+     */
+    public File dump() {
+        Context context = TomahawkApp.getContext();
+        File dir = context.getExternalFilesDir(null);
+        if (dir == null) {
+            dir = context.getFilesDir();
+        }
+        File file = new File(dir, "resolvetrace-" + System.currentTimeMillis() + ".txt");
+        Writer writer = null;
+        try {
+            writer = new FileWriter(file);
+            synchronized (this) {
+                writer.write(getReport());
+                writer.write("\nSpans (end time, stage, duration, resolver, query):\n");
+                int first = (mNext - mSpanCount + BUFFER_SIZE) % BUFFER_SIZE;
+                for (int i = 0; i < mSpanCount; i++) {
+                    int index = (first + i) % BUFFER_SIZE;
+                    writer.write(mSpanEnds[index] / 1000 + "us\t" + STAGE_NAMES[mSpanStages[index]]
+                            + "\t" + mSpanDurations[index] + "us\t" + mSpanResolvers[index] + "\t"
+                            + mSpanQueries[index] + "\n");
+                }
+            }
+            return file;
+        } catch (IOException e) {
+            Log.e(TAG, "dump: " + e.getClass() + ": " + e.getLocalizedMessage());
+            return null;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "dump: " + e.getClass() + ": " + e.getLocalizedMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Throw away all measurements taken so far.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < mStageHistograms.length; i++) {
+            mStageHistograms[i] = new PlaybackMetrics.Histogram();
+        }
+        mResolverStats.clear();
+        mDispatchTimes.clear();
+        mPostTimes.clear();
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            mSpanQueries[i] = null;
+            mSpanResolvers[i] = null;
+        }
+        mNext = 0;
+        mSpanCount = 0;
+    }
+}
@@ -146,6 +146,14 @@ public class TomahawkExceptionReporter implements ReportSender {
                 .append("\r\n");
         body.append("-----------------------------------\r\n\r\n");
 
+        body.append("--------- Playback Metrics --------\r\n");
+        body.append(PlaybackMetrics.getInstance().getReport().replace("\n", "\r\n"));
+        body.append("-----------------------------------\r\n\r\n");
+
+        body.append("--------- Resolve Tracing ---------\r\n");
+        body.append(ResolveTracer.getInstance().getReport().replace("\n", "\r\n"));
+        body.append("-----------------------------------\r\n\r\n");
+
         body.append("---------------- Logs -------------\r\n");
         body.append("Logcat: ").append(data.getProperty(ReportField.LOGCAT)).append("\r\n\r\n");
         body.append("Events Log: ").append(data.getProperty(ReportField.EVENTSLOG))
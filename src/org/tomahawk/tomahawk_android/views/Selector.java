@@ -85,9 +85,11 @@ public class Selector extends FrameLayout {
                     mRootView.getHeight(), Bitmap.Config.ARGB_8888);
             Canvas canvas = new Canvas(bm);
             mRootView.draw(canvas);
-            bm = Bitmap.createScaledBitmap(bm, bm.getWidth() / 4,
+            Bitmap scaled = Bitmap.createScaledBitmap(bm, bm.getWidth() / 4,
                     bm.getHeight() / 4, true);
-            bm = BlurTransformation.staticTransform(bm, 25f);
+            bm.recycle();
+            bm = BlurTransformation.staticTransform(scaled, 25f);
+            scaled.recycle();
             final ImageView bgImageView = (ImageView) findViewById(R.id.background);
             bgImageView.setImageBitmap(bm);
 